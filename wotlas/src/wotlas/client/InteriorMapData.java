@@ -43,6 +43,7 @@ import wotlas.libs.graphics2d.ImageLibraryException;
 import wotlas.libs.graphics2d.drawable.MultiLineText;
 import wotlas.libs.graphics2d.drawable.MultiRegionImage;
 import wotlas.libs.graphics2d.filter.BrightnessFilter;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.libs.sound.SoundLibrary;
 import wotlas.utils.Debug;
 import wotlas.utils.ScreenPoint;
@@ -113,7 +114,7 @@ public class InteriorMapData implements MapData {
 
     /** To init the display<br>
      * - load background and mask images<br>
-     * - init the AStar algorithm
+     * - init the pathfinding context of the map
      * - init the Graphics Director
      * - show the other images (shadows, buildings, towns...)
      */
@@ -235,8 +236,8 @@ public class InteriorMapData implements MapData {
             BrightnessFilter.setBrightnessMask(null, 10);
         }
 
-        // 5 - We initialize the AStar algo
-        myPlayer.getMovementComposer().setMovementMask(BinaryMask.create(bufIm), 5, 4);
+        // 5 - We initialize the pathfinding context of the map
+        this.imap.setPathfindingContext(new PathfindingContext(BinaryMask.create(bufIm), 5, 4));
         myPlayer.getMovementComposer().resetMovement();
         bufIm.flush(); // free image resource
 
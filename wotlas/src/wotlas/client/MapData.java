@@ -49,7 +49,7 @@ public interface MapData {
 
     /** To init the display<br>
      * - load background and mask images<br>
-     * - init the AStar algorithm
+     * - init the pathfinding context of the map
      * - init the Graphics Director
      * - show the other images (shadows, buildings, towns...)
      */
@@ -30,12 +30,14 @@ import wotlas.common.WorldManager;
 import wotlas.common.character.WotCharacter;
 import wotlas.common.chat.ChatRoom;
 import wotlas.common.message.description.PlayerAwayMessage;
+import wotlas.common.message.description.PlayerDataBlob;
 import wotlas.common.message.description.PlayerPastMessage;
 import wotlas.common.movement.MovementComposer;
 import wotlas.common.movement.PathFollower;
 import wotlas.common.objects.ObjectManager;
 import wotlas.common.universe.Room;
 import wotlas.common.universe.WotlasLocation;
+import wotlas.common.universe.WotlasMap;
 import wotlas.libs.graphics2d.Animation;
 import wotlas.libs.graphics2d.Drawable;
 import wotlas.libs.graphics2d.GraphicsDirector;
@@ -325,6 +327,16 @@ public class PlayerImpl implements Player, SpriteDataSupplier, Tickable {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the cached encoding of our public data. Not used on the client side.
+     *
+     *  @return null, the client never sends other players' data.
+     */
+    public PlayerDataBlob getPublicDataBlob() {
+        return null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To get the player's object manager
      *
      *  @return player object manager
@@ -667,6 +679,30 @@ public class PlayerImpl implements Player, SpriteDataSupplier, Tickable {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the map we are on : our Room, TownMap or WorldMap.
+     * @return current map, null if our location is not valid.
+     */
+    public WotlasMap getMyMap() {
+        if (this.myRoom != null)
+            return this.myRoom;
+
+        if (this.location == null)
+            return null;
+
+        WorldManager worldManager = ClientDirector.getDataManager().getWorldManager();
+
+        if (this.location.isWorld())
+            return worldManager.getWorldMap(this.location);
+        else if (this.location.isTown())
+            return worldManager.getTownMap(this.location);
+        else if (this.location.isRoom())
+            return worldManager.getRoom(this.location);
+
+        return null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To get a text drawable representing the name of this player.
      */
     public Drawable getTextDrawable() {
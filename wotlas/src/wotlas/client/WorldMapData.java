@@ -39,6 +39,8 @@ import wotlas.libs.graphics2d.ImageIdentifier;
 import wotlas.libs.graphics2d.ImageLibraryException;
 import wotlas.libs.graphics2d.drawable.MotionlessSprite;
 import wotlas.libs.graphics2d.drawable.MultiLineText;
+import wotlas.libs.pathfinding.ClusterGraph;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.libs.sound.SoundLibrary;
 import wotlas.utils.Debug;
 import wotlas.utils.ScreenPoint;
@@ -88,7 +90,7 @@ public class WorldMapData implements MapData {
 
     /** To init the display<br>
      * - load background and mask images<br>
-     * - init the AStar algorithm
+     * - init the pathfinding context of the map
      * - init the Graphics Director
      * - show the other images (shadows, buildings, towns...)
      */
@@ -141,6 +143,7 @@ public class WorldMapData implements MapData {
 
         // 4 - We load the mask
         BufferedImage bufIm = null;
+        String graphFile = null;
 
         try {
             ImageIdentifier mapMaskID = gDirector.getImageLibrary().getImageIdentifier(backgroundImageID, "mask");
@@ -148,8 +151,13 @@ public class WorldMapData implements MapData {
             if (mapMaskID != null) {
                 String maskFile = gDirector.getImageLibrary().getImageFile(mapMaskID);
 
-                if (maskFile != null)
+                if (maskFile != null) {
                     bufIm = gDirector.getImageLibrary().loadBufferedImage(maskFile, BufferedImage.TYPE_INT_ARGB);
+
+                    // the pathfinding graph is saved next to the mask if we can write there
+                    if (!ClientDirector.getResourceManager().inJar())
+                        graphFile = maskFile + ClusterGraph.FILE_EXT;
+                }
             }
 
             if (bufIm == null) {
@@ -161,8 +169,9 @@ public class WorldMapData implements MapData {
             Debug.exit();
         }
 
-        // 5 - We initialize the AStar algo
-        myPlayer.getMovementComposer().setMovementMask(BinaryMask.create(bufIm), 5, 1);
+        // 5 - We initialize the pathfinding context of the map
+        PathfindingContext context = new PathfindingContext(BinaryMask.create(bufIm), 5, 1);
+        worldMap.setPathfindingContext(context.getHierarchicalContext(ClusterGraph.getClusterGraph(context, graphFile)));
         myPlayer.getMovementComposer().resetMovement();
         bufIm.flush(); // free image resource
 
@@ -58,12 +58,17 @@ public class AddPlayerToRoomMsgBehaviour extends AddPlayerToRoomMessage implemen
         PlayerImpl myPlayer = dataManager.getMyPlayer();
 
         // 1 - Control
-        if (!myPlayer.getLocation().isRoom()) {
-            Debug.signal(Debug.ERROR, this, "Master player is not on an InteriorMap");
+        WotlasLocation myLocation = myPlayer.getLocation();
+
+        if (!myLocation.isRoom()) {
+            // on TownMaps & WorldMaps the server only sends us the players near us
+            if (myLocation.equals(this.player.getLocation()))
+                addPlayer(dataManager);
+            else
+                Debug.signal(Debug.WARNING, this, "Received message with far location");
             return;
         }
 
-        WotlasLocation myLocation = myPlayer.getLocation();
         Room myRoom = myPlayer.getMyRoom();
 
         if (myLocation.getWorldMapID() != this.player.getLocation().getWorldMapID() || myLocation.getTownMapID() != this.player.getLocation().getTownMapID() || myLocation.getBuildingID() != this.player.getLocation().getBuildingID() || myLocation.getInteriorMapID() != this.player.getLocation().getInteriorMapID()) {
@@ -73,17 +78,7 @@ public class AddPlayerToRoomMsgBehaviour extends AddPlayerToRoomMessage implemen
 
         // Search in Current Room
         if (myRoom.getRoomID() == this.player.getLocation().getRoomID()) {
-            Hashtable<String, PlayerImpl> players = dataManager.getPlayers();
-
-            synchronized (players) {
-                if (!players.containsKey(this.player.getPrimaryKey())) {
-                    players.put(this.player.getPrimaryKey(), (PlayerImpl) this.player);
-                    ((PlayerImpl) this.player).init();
-                    ((PlayerImpl) this.player).initVisualProperties(dataManager.getGraphicsDirector());
-                    SoundLibrary.getSoundPlayer().playSound("human-steps.wav");
-                }
-            }
-
+            addPlayer(dataManager);
             return; // success
         }
 
@@ -100,17 +95,7 @@ public class AddPlayerToRoomMsgBehaviour extends AddPlayerToRoomMessage implemen
             }
 
             if (otherRoom.getRoomID() == this.player.getLocation().getRoomID()) {
-                Hashtable<String, PlayerImpl> players = dataManager.getPlayers();
-
-                synchronized (players) {
-                    if (!players.containsKey(this.player.getPrimaryKey())) {
-                        players.put(this.player.getPrimaryKey(), (PlayerImpl) this.player);
-                        ((PlayerImpl) this.player).init();
-                        ((PlayerImpl) this.player).initVisualProperties(dataManager.getGraphicsDirector());
-                        SoundLibrary.getSoundPlayer().playSound("human-steps.wav");
-                    }
-                }
-
+                addPlayer(dataManager);
                 return; // success
             }
         }
@@ -119,5 +104,23 @@ public class AddPlayerToRoomMsgBehaviour extends AddPlayerToRoomMessage implemen
         Debug.signal(Debug.NOTICE, this, "Player's Room is not near master's");
     }
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To add our player to the DataManager's players if he's not already there.
+     *
+     * @param dataManager our DataManager
+     */
+    private void addPlayer(DataManager dataManager) {
+        Hashtable<String, PlayerImpl> players = dataManager.getPlayers();
+
+        synchronized (players) {
+            if (!players.containsKey(this.player.getPrimaryKey())) {
+                players.put(this.player.getPrimaryKey(), (PlayerImpl) this.player);
+                ((PlayerImpl) this.player).init();
+                ((PlayerImpl) this.player).initVisualProperties(dataManager.getGraphicsDirector());
+                SoundLibrary.getSoundPlayer().playSound("human-steps.wav");
+            }
+        }
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 }
@@ -55,8 +55,8 @@ public class RemovePlayerFromRoomMsgBehaviour extends RemovePlayerFromRoomMessag
         PlayerImpl myPlayer = dataManager.getMyPlayer();
 
         // 1 - Control
-        if (!myPlayer.getLocation().isRoom()) {
-            Debug.signal(Debug.ERROR, this, "Master player is not on an InteriorMap");
+        if (!myPlayer.getLocation().isRoom() && !myPlayer.getLocation().equals(this.location)) {
+            Debug.signal(Debug.WARNING, this, "Received message with far location");
             return;
         }
 
@@ -109,7 +109,8 @@ public class RoomPlayerDataMsgBehaviour extends RoomPlayerDataMessage implements
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
-    /** To merge our players the DataManager's hashtable...
+    /** To merge our players the DataManager's hashtable... When we change of room the
+     *  server only sends the players we know if their data has changed : we replace them.
      */
     private void merge(DataManager dataManager) {
         Hashtable<String, PlayerImpl> dest = dataManager.getPlayers();
@@ -119,9 +120,14 @@ public class RoomPlayerDataMsgBehaviour extends RoomPlayerDataMessage implements
 
             while (it.hasNext()) {
                 PlayerImpl playerImpl = (PlayerImpl) it.next();
+                PlayerImpl oldPlayer = dest.get(playerImpl.getPrimaryKey());
 
-                if (dest.containsKey(playerImpl.getPrimaryKey())) {
-                    continue;
+                if (oldPlayer != null) {
+                    oldPlayer.cleanVisualProperties(dataManager.getGraphicsDirector());
+
+                    if (dataManager.getSelectedPlayerKey() != null && oldPlayer.getPrimaryKey().equals(dataManager.getSelectedPlayerKey())) {
+                        dataManager.removeCircle();
+                    }
                 }
 
                 dest.put(playerImpl.getPrimaryKey(), playerImpl);
@@ -23,15 +23,16 @@ import wotlas.client.DataManager;
 import wotlas.client.PlayerImpl;
 import wotlas.common.Player;
 import wotlas.common.message.movement.PathUpdateMovementMessage;
-import wotlas.libs.net.NetMessageBehaviour;
+import wotlas.libs.net.ReusableMessageBehaviour;
 import wotlas.utils.Debug;
 
 /**
- * Associated behaviour to the PathUpdateMovementMessage...
+ * Associated behaviour to the PathUpdateMovementMessage... The PathFollower copies the
+ * update data, so the NetReceiver can reuse this message for the next updates.
  *
  * @author Aldiss
  */
-public class PathUpdateMovementMsgBehaviour extends PathUpdateMovementMessage implements NetMessageBehaviour {
+public class PathUpdateMovementMsgBehaviour extends PathUpdateMovementMessage implements ReusableMessageBehaviour {
     /*------------------------------------------------------------------------------------*/
 
     /** Constructor.
@@ -65,27 +66,24 @@ public class PathUpdateMovementMsgBehaviour extends PathUpdateMovementMessage im
             return;
         }
 
-        // We search for the "primaryKey" owner among the players around the master player's rooms
-        if (player.getLocation().isRoom()) {
-            Player playerToUpdate = null;
+        // We search for the "primaryKey" owner among the players around the master player
+        // ( players of the rooms near us, or players near us on TownMaps & WorldMaps )
+        Player playerToUpdate = null;
+        Hashtable<String, PlayerImpl> players = dataManager.getPlayers();
 
-            // Search in Current Room
-            Hashtable<String, PlayerImpl> players = dataManager.getPlayers();
+        synchronized (players) {
+            playerToUpdate = players.get(this.primaryKey);
+        }
 
-            synchronized (players) {
-                playerToUpdate = players.get(this.primaryKey);
+        if (playerToUpdate != null && playerToUpdate.getPrimaryKey().equals(this.primaryKey)) {
+            if (DataManager.SHOW_DEBUG) {
+                System.out.println("Movement successfully updated for " + this.primaryKey);
             }
-
-            if (playerToUpdate != null && playerToUpdate.getPrimaryKey().equals(this.primaryKey)) {
-                if (DataManager.SHOW_DEBUG) {
-                    System.out.println("Movement successfully updated for " + this.primaryKey);
-                }
-                playerToUpdate.getMovementComposer().setUpdate(this);
-                return; // success !
-            } else {
-                if (DataManager.SHOW_DEBUG) {
-                    System.out.println("Movement NOOOT updated for " + this.primaryKey);
-                }
+            playerToUpdate.getMovementComposer().setUpdate(this);
+            return; // success !
+        } else {
+            if (DataManager.SHOW_DEBUG) {
+                System.out.println("Movement NOOOT updated for " + this.primaryKey);
             }
         }
 
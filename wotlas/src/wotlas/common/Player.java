@@ -20,11 +20,13 @@
 package wotlas.common;
 
 import wotlas.common.character.WotCharacter;
+import wotlas.common.message.description.PlayerDataBlob;
 import wotlas.common.movement.MovementComposer;
 import wotlas.common.objects.ObjectManager;
 import wotlas.common.universe.PreciseLocationOwner;
 import wotlas.common.universe.Room;
 import wotlas.common.universe.WotlasLocation;
+import wotlas.common.universe.WotlasMap;
 import wotlas.libs.net.NetMessage;
 
 /** Interface of a Wotlas Player.
@@ -165,6 +167,15 @@ public interface Player extends PreciseLocationOwner {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the cached encoding of our public data, shared by the messages that send
+     *  it to other players.
+     *
+     *  @return public data blob, null if we don't cache our public data.
+     */
+    public PlayerDataBlob getPublicDataBlob();
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To get the player's object manager
      *
      *  @return player object manager
@@ -204,6 +215,13 @@ public interface Player extends PreciseLocationOwner {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the map we are on : our Room, TownMap or WorldMap.
+     * @return current map, null if our location is not valid.
+     */
+    public WotlasMap getMyMap();
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** Is this player connected to the game ?
      * @return true if the player is in the game, false if the client is not connected.
      */
@@ -32,6 +32,8 @@ import wotlas.libs.aswing.ASwingResourceLocator;
 import wotlas.libs.graphics2d.FontResourceLocator;
 import wotlas.libs.graphics2d.ImageResourceLocator;
 import wotlas.libs.log.LogResourceLocator;
+import wotlas.libs.persistence.FileObjectStore;
+import wotlas.libs.persistence.ObjectStore;
 import wotlas.libs.persistence.PersistenceException;
 import wotlas.libs.persistence.PropertiesConverter;
 import wotlas.libs.sound.MusicResourceLocator;
@@ -127,6 +129,9 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
     /** Home Directory Name (where players are stored)
      */
     public static final String PLAYERS_HOME_DIR = "home";
+    /** Journal Directory Name (where the journal object store keeps its segments)
+     */
+    public static final String JOURNAL_DIR = "journal";
     /** Server Configs Directory Name
      */
     public static final String SERVER_CONFIGS_DIR = "servers";
@@ -198,6 +203,9 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
      *  plus WOTLAS_JAR_EXTERNAL_DIR directory.
      */
     private String wotlasJarExternalDir;
+    /** Where we load & save our objects (outside of the JAR).
+     */
+    private ObjectStore objectStore;
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
     /** Constructor that uses default resource locations. Check the default
@@ -210,6 +218,9 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
      */
     public ResourceManager(String defaultBasePath, boolean serverSide) {
 
+        // Objects are saved in files by default
+        this.objectStore = new FileObjectStore();
+
         // Are we in a JAR FILE ?
         this.inJar = false;
         this.jarName = getJarName();
@@ -357,6 +368,14 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
         return this.inJar;
     }
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To tell if we are in a wotlas client JAR ( universe data is then in the JAR ).
+     * @return true if we are in a client JAR.
+     */
+    public boolean inClientJar() {
+        return this.inClientJar;
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
     /** Returns the name of the JAR we are into. We return the path+name.
      *  @return null if we are not in a jar.
@@ -559,6 +578,13 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
         return getExternalResourceDir(ResourceManager.PLAYERS_HOME_DIR);
     }
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /**  To get the Journal Directory (where the journal object store keeps its segments)
+     */
+    public String getExternalJournalDir() {
+        return getExternalResourceDir(ResourceManager.JOURNAL_DIR);
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
     /** To get the Server Configs Directory (outside the jar)
      */
@@ -689,7 +715,7 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
 
         } else {
             try {
-                return PropertiesConverter.load(filePath);
+                return this.objectStore.load(filePath);
             } catch (PersistenceException pe) {
                 Debug.signal(Debug.ERROR, this, "" + pe);
             }
@@ -707,7 +733,7 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
      */
     public boolean saveObject(Object o, String filePath) {
         try {
-            PropertiesConverter.save(o, filePath);
+            this.objectStore.save(o, filePath);
             return true;
         } catch (PersistenceException pe) {
             Debug.signal(Debug.ERROR, this, pe);
@@ -715,6 +741,52 @@ public class ResourceManager implements LogResourceLocator, ImageResourceLocator
         }
     }
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To delete an object saved with saveObject(). The filePath MUST be corresponding to
+     *  an external path.
+     *
+     * @param filePath path given to saveObject()
+     * @return true if the object has been deleted
+     */
+    public boolean deleteObject(String filePath) {
+        return this.objectStore.delete(filePath);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To list the objects saved with saveObject() in a directory ( on one level only ).
+     *  Objects inside the JAR are listed like with listFiles().
+     *
+     *  @param dirName directory name (must be a complete path)
+     *  @param ext extension of the objects to search, enter "" to get all the objects.
+     *  @return the paths of the objects found, that can be given to loadObject().
+     */
+    public String[] listObjects(String dirName, String ext) {
+        if (this.inClientJar && !isExternal(dirName)) {
+            return listFiles(dirName, ext);
+        }
+        return this.objectStore.list(dirName, ext);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To set where we load & save our objects. By default objects are saved in
+     *  "dot-properties" files (see FileObjectStore). Objects inside the JAR are always
+     *  loaded from the JAR.
+     *
+     * @param objectStore new object store
+     */
+    public void setObjectStore(ObjectStore objectStore) {
+        this.objectStore = objectStore;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get where we load & save our objects.
+     *
+     * @return our object store
+     */
+    public ObjectStore getObjectStore() {
+        return this.objectStore;
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
     /** To load text from a file. The filePath MUST be corresponding to a valid resource
      *  path.
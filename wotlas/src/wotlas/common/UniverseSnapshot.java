@@ -0,0 +1,378 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.common;
+
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import wotlas.common.universe.Building;
+import wotlas.common.universe.InteriorMap;
+import wotlas.common.universe.TownMap;
+import wotlas.common.universe.WorldMap;
+import wotlas.libs.persistence.BinaryObjectReader;
+import wotlas.libs.persistence.BinaryObjectWriter;
+import wotlas.libs.persistence.PersistenceException;
+import wotlas.utils.Debug;
+
+/** A binary snapshot of the universe location data ( worlds, towns, buildings & maps ).
+ *  The text files of the universe remain the editable format : the snapshot is compiled
+ *  from them by the WorldManager the first time it loads them, and is used instead of them
+ *  as long as they don't change. The snapshot file is memory-mapped and decoded in one pass.
+ *<br>
+ *  The snapshot header contains a stamp of the text files ( number of files, total size
+ *  and latest modification date of the files and their directories ) : if the text
+ *  files change the snapshot is out of date and is compiled again.
+ *
+ * @author Aldiss
+ * @see wotlas.common.WorldManager
+ * @see wotlas.libs.persistence.BinaryObjectWriter
+ */
+
+public class UniverseSnapshot {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Suffix of the default snapshot file, saved next to the universe directory.
+     */
+    public final static String SNAPSHOT_SUFFIX = ".snapshot";
+
+    /** Snapshot header.
+     */
+    private final static int MAGIC = 0x574f5553;
+    private final static int FORMAT_VERSION = 1;
+    private final static int HEADER_SIZE = 28;
+
+    /** Entry types, in the order the WorldManager loads the text files.
+     */
+    private final static byte END = 0;
+    private final static byte WORLD = 1;
+    private final static byte TOWN = 2;
+    private final static byte BUILDING = 3;
+    private final static byte MAP = 4;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our resource manager.
+     */
+    private ResourceManager rManager;
+
+    /** Universe directory (text files).
+     */
+    private String universeHome;
+
+    /** Our snapshot file.
+     */
+    private File snapshotFile;
+
+    /** Stamp of the text files : number of files, total size, latest modification.
+     */
+    private int nbFiles;
+    private long totalSize;
+    private long lastModified;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param rManager our resource manager
+     * @param universeHome universe directory, must be outside of any JAR.
+     * @param snapshotPath path of the snapshot file
+     */
+    public UniverseSnapshot(ResourceManager rManager, String universeHome, String snapshotPath) {
+        this.rManager = rManager;
+        this.universeHome = universeHome;
+        this.snapshotFile = new File(snapshotPath);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To load the universe from the snapshot.
+     *
+     * @return the worlds, null if the snapshot doesn't exist, is out of date or is corrupted.
+     */
+    public WorldMap[] load() {
+        computeStamp();
+
+        if (!this.snapshotFile.exists())
+            return null;
+
+        long startTime = System.currentTimeMillis();
+
+        try {
+            // we check the header before mapping the file, so that we can replace it
+            DataInputStream in = new DataInputStream(new FileInputStream(this.snapshotFile));
+
+            try {
+                if (in.readInt() != UniverseSnapshot.MAGIC || in.readInt() != UniverseSnapshot.FORMAT_VERSION) {
+                    Debug.signal(Debug.NOTICE, null, "Universe snapshot has an old format, it will be compiled again.");
+                    return null;
+                }
+
+                if (in.readInt() != this.nbFiles || in.readLong() != this.totalSize || in.readLong() != this.lastModified) {
+                    Debug.signal(Debug.NOTICE, null, "Universe snapshot is out of date, it will be compiled again.");
+                    return null;
+                }
+            } finally {
+                in.close();
+            }
+
+            RandomAccessFile file = new RandomAccessFile(this.snapshotFile, "r");
+            MappedByteBuffer buffer;
+
+            try {
+                buffer = file.getChannel().map(FileChannel.MapMode.READ_ONLY, UniverseSnapshot.HEADER_SIZE, file.length() - UniverseSnapshot.HEADER_SIZE);
+            } finally {
+                file.close(); // the mapping remains valid
+            }
+
+            WorldMap worldMaps[] = decode(new BinaryObjectReader(buffer));
+            Debug.signal(Debug.NOTICE, null, "Universe loaded from snapshot " + this.snapshotFile + " in " + (System.currentTimeMillis() - startTime) + " ms.");
+            return worldMaps;
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, this, "Failed to read universe snapshot : " + e);
+        } catch (PersistenceException e) {
+            Debug.signal(Debug.WARNING, this, "Universe snapshot is corrupted : " + e.getMessage());
+        } catch (RuntimeException e) {
+            Debug.signal(Debug.WARNING, this, "Universe snapshot is corrupted : " + e);
+        }
+
+        return null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To save the universe in the snapshot. Should be called just after the universe was
+     *  loaded from the text files, with the stamp computed by load().
+     *
+     * @param worldMaps worlds to save
+     * @return true if the snapshot has been saved
+     */
+    public boolean save(WorldMap worldMaps[]) {
+        File tmpFile = new File(this.snapshotFile.getPath() + ".tmp");
+
+        try {
+            DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(tmpFile), 64 * 1024));
+
+            try {
+                out.writeInt(UniverseSnapshot.MAGIC);
+                out.writeInt(UniverseSnapshot.FORMAT_VERSION);
+                out.writeInt(this.nbFiles);
+                out.writeLong(this.totalSize);
+                out.writeLong(this.lastModified);
+
+                encode(new BinaryObjectWriter(out), worldMaps);
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            Debug.signal(Debug.WARNING, this, "Failed to save universe snapshot : " + e);
+            return false;
+        } catch (PersistenceException e) {
+            tmpFile.delete();
+            Debug.signal(Debug.WARNING, this, "Failed to save universe snapshot : " + e.getMessage());
+            return false;
+        }
+
+        if ((this.snapshotFile.exists() && !this.snapshotFile.delete()) || !tmpFile.renameTo(this.snapshotFile)) {
+            tmpFile.delete();
+            Debug.signal(Debug.WARNING, this, "Failed to replace universe snapshot " + this.snapshotFile);
+            return false;
+        }
+
+        Debug.signal(Debug.NOTICE, null, "Universe snapshot saved to " + this.snapshotFile);
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To delete the snapshot, when the universe is saved. The text files may not be
+     *  saved as files ( see ResourceManager.setObjectStore() ) so we can't rely on
+     *  their stamp.
+     */
+    public void delete() {
+        if (this.snapshotFile.exists() && !this.snapshotFile.delete())
+            Debug.signal(Debug.WARNING, this, "Failed to delete universe snapshot " + this.snapshotFile);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Writes the universe entries.
+     */
+    private void encode(BinaryObjectWriter writer, WorldMap worldMaps[]) throws PersistenceException {
+        for (int w = 0; w < worldMaps.length; w++) {
+            if (worldMaps[w] == null)
+                continue;
+
+            writer.writeByte(UniverseSnapshot.WORLD);
+            writer.writeObject(worldMaps[w]);
+
+            TownMap towns[] = worldMaps[w].getTownMaps();
+
+            for (int t = 0; towns != null && t < towns.length; t++) {
+                if (towns[t] == null)
+                    continue;
+
+                writer.writeByte(UniverseSnapshot.TOWN);
+                writer.writeObject(towns[t]);
+
+                Building buildings[] = towns[t].getBuildings();
+
+                for (int b = 0; buildings != null && b < buildings.length; b++) {
+                    if (buildings[b] == null)
+                        continue;
+
+                    writer.writeByte(UniverseSnapshot.BUILDING);
+                    writer.writeObject(buildings[b]);
+
+                    InteriorMap maps[] = buildings[b].getInteriorMaps();
+
+                    for (int m = 0; maps != null && m < maps.length; m++) {
+                        if (maps[m] == null)
+                            continue;
+
+                        writer.writeByte(UniverseSnapshot.MAP);
+                        writer.writeObject(maps[m]);
+                    }
+                }
+            }
+        }
+
+        writer.writeByte(UniverseSnapshot.END);
+        writer.flush();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads the universe entries. Objects are linked like the WorldManager does when it
+     *  loads the text files.
+     */
+    private WorldMap[] decode(BinaryObjectReader reader) throws PersistenceException {
+        WorldMap worldMaps[] = null;
+        WorldMap world = null;
+        TownMap town = null;
+        Building building = null;
+        int worldCount = 0, townCount = 0, buildingCount = 0, mapCount = 0;
+
+        for (byte type = reader.readByte(); type != UniverseSnapshot.END; type = reader.readByte()) {
+            switch (type) {
+                case WORLD:
+                    world = (WorldMap) reader.readObject();
+
+                    if (worldMaps == null) {
+                        worldMaps = new WorldMap[world.getWorldMapID() + 1];
+                    } else if (worldMaps.length <= world.getWorldMapID()) {
+                        WorldMap[] myWorldMaps = new WorldMap[world.getWorldMapID() + 1];
+                        System.arraycopy(worldMaps, 0, myWorldMaps, 0, worldMaps.length);
+                        worldMaps = myWorldMaps;
+                    }
+
+                    worldMaps[world.getWorldMapID()] = world;
+                    worldCount++;
+                    break;
+
+                case TOWN:
+                    town = (TownMap) reader.readObject();
+                    world.addTownMap(town);
+                    townCount++;
+                    break;
+
+                case BUILDING:
+                    building = (Building) reader.readObject();
+                    town.addBuilding(building);
+                    buildingCount++;
+                    break;
+
+                case MAP:
+                    building.addInteriorMap((InteriorMap) reader.readObject());
+                    mapCount++;
+                    break;
+
+                default:
+                    Debug.signal(Debug.WARNING, this, "Unknown universe snapshot entry : " + type);
+                    return null;
+            }
+        }
+
+        Debug.signal(Debug.NOTICE, null, "World Manager loaded " + worldCount + " worlds, " + townCount + " towns, " + buildingCount + " buildings, " + mapCount + " maps.");
+        return worldMaps;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Computes the stamp of the universe text files, walking them like the WorldManager.
+     */
+    private void computeStamp() {
+        this.nbFiles = 0;
+        this.totalSize = 0;
+        this.lastModified = new File(this.universeHome).lastModified();
+
+        String worldList[] = this.rManager.listUniverseDirectories(this.universeHome);
+
+        for (int w = 0; w < worldList.length; w++) {
+            stampFile(worldList[w]);
+            stampFile(worldList[w] + WorldManager.WORLD_FILE);
+
+            String townList[] = this.rManager.listUniverseDirectories(worldList[w]);
+
+            for (int t = 0; t < townList.length; t++) {
+                stampFile(townList[t]);
+                stampFile(townList[t] + WorldManager.TOWN_FILE);
+
+                String buildingList[] = this.rManager.listUniverseDirectories(townList[t]);
+
+                for (int b = 0; b < buildingList.length; b++) {
+                    stampFile(buildingList[b]);
+                    stampFile(buildingList[b] + WorldManager.BUILDING_FILE);
+
+                    String mapList[] = this.rManager.listUniverseFiles(buildingList[b], WorldManager.MAP_SUFFIX);
+
+                    for (int m = 0; m < mapList.length; m++)
+                        stampFile(mapList[m]);
+                }
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Adds a file or directory to our stamp.
+     */
+    private void stampFile(String path) {
+        File file = new File(path);
+
+        if (file.isFile()) {
+            this.nbFiles++;
+            this.totalSize += file.length();
+        }
+
+        this.lastModified = Math.max(this.lastModified, file.lastModified());
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
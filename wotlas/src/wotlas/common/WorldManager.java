@@ -20,7 +20,10 @@
 package wotlas.common;
 
 import java.io.File;
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
 import wotlas.common.objects.inventories.RoomInventory;
+import wotlas.common.router.MessageRouter;
 import wotlas.common.router.MessageRouterFactory;
 import wotlas.common.universe.Building;
 import wotlas.common.universe.InteriorMap;
@@ -29,6 +32,7 @@ import wotlas.common.universe.TownMap;
 import wotlas.common.universe.WorldMap;
 import wotlas.common.universe.WotlasLocation;
 import wotlas.utils.Debug;
+import wotlas.utils.ParallelLoader;
 
 /** A WorldManager provides all the methods needed to handle & manage the game world
  *  from its root.<p><br>
@@ -72,6 +76,11 @@ public class WorldManager {
      */
     protected ResourceManager rManager;
 
+    /** Where we compile the binary snapshot of the universe text files ( null if we don't
+     *  use a snapshot ).
+     */
+    protected String universeSnapshot;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Constructor with resource Manager. We do not load universe data.
@@ -79,6 +88,7 @@ public class WorldManager {
      */
     public WorldManager(ResourceManager rManager) {
         this.rManager = rManager;
+        this.universeSnapshot = WorldManager.getDefaultUniverseSnapshot(rManager);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -107,6 +117,7 @@ public class WorldManager {
      */
     public WorldManager(ResourceManager rManager, boolean loadDefault, boolean failureIfNoData) {
         this.rManager = rManager;
+        this.universeSnapshot = WorldManager.getDefaultUniverseSnapshot(rManager);
         loadUniverse(loadDefault);
 
         if (this.worldMaps == null) {
@@ -124,11 +135,37 @@ public class WorldManager {
      */
     public WorldManager(WorldMap worldMaps[], ResourceManager rManager) {
         this.rManager = rManager;
+        this.universeSnapshot = WorldManager.getDefaultUniverseSnapshot(rManager);
         this.worldMaps = worldMaps;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get where we save the universe snapshot by default : next to the universe
+     *  directory. Universe data in a client JAR has no snapshot.
+     *
+     * @param rManager our resource manager
+     * @return snapshot path, null if we can't use a snapshot
+     */
+    private static String getDefaultUniverseSnapshot(ResourceManager rManager) {
+        if (rManager.inClientJar())
+            return null;
+        return rManager.getUniverseDataDir() + WorldManager.DEFAULT_UNIVERSE + UniverseSnapshot.SNAPSHOT_SUFFIX;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set where we compile the binary snapshot of the universe text files. If it is up
+     *  to date, loadUniverse() loads it instead of the text files.
+     *
+     * @param snapshotPath snapshot file path, null to always load the text files.
+     */
+    public void setUniverseSnapshot(String snapshotPath) {
+        this.universeSnapshot = snapshotPath;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To initialize this whole universe ( it rebuilds shortcuts ). This method calls
      *  recursively the init() method of the WorldMaps, TownMaps, buildings, interiorMaps
      *  and rooms.
@@ -316,6 +353,53 @@ public class WorldManager {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the MessageRouter of a WotlasLocation ( world map, town map or room ).
+     *
+     * @param location wotlas location
+     * @return the router of the location, null if the location does not exist.
+     */
+    public MessageRouter getMessageRouter(WotlasLocation location) {
+        if (location.isWorld()) {
+            WorldMap world = getWorldMap(location);
+            return (world == null) ? null : world.getMessageRouter();
+        }
+
+        if (location.isTown()) {
+            TownMap town = getTownMap(location);
+            return (town == null) ? null : town.getMessageRouter();
+        }
+
+        if (location.isRoom()) {
+            Room room = getRoom(location);
+            return (room == null) ? null : room.getMessageRouter();
+        }
+
+        return null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To replace a player of the universe by another object with the same primary key
+     *  and location, without sending any messages ( see MessageRouter.replacePlayer() ).
+     *
+     * @param oldPlayer player in the universe
+     * @param newPlayer player that takes its place
+     * @return true if the player was replaced, false if oldPlayer was not found.
+     */
+    public boolean replacePlayerInUniverse(Player oldPlayer, Player newPlayer) {
+        if (oldPlayer.getLocation() == null)
+            return false;
+
+        MessageRouter router = getMessageRouter(oldPlayer.getLocation());
+
+        if (router == null)
+            return false;
+
+        return router.replacePlayer(oldPlayer, newPlayer);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** Add a player to this universe.
      * @param player player to add to this world.
      */
@@ -435,154 +519,209 @@ public class WorldManager {
 
     /*------------------------------------------------------------------------------------*/
 
-    /** To load the local game universe.
+    /** To load the local game universe. Files are loaded in parallel, level by level,
+     *  and merged in the order they are listed.
      *
      *  @param loadDefault do we have to load default data ?
      */
     public void loadUniverse(boolean loadDefault) {
-        int worldCount = 0, townCount = 0, buildingCount = 0, mapCount = 0;
-
         String universeHome = this.rManager.getUniverseDataDir() + WorldManager.DEFAULT_UNIVERSE + "/";
+        ParallelLoader loader = new ParallelLoader("UniverseLoader");
+        long startTime = System.currentTimeMillis();
 
         /*** STEP 1 - WE LOAD LOCATIONS (default data) ***/
 
-        String worldList[] = this.rManager.listUniverseDirectories(universeHome);
-        Debug.signal(Debug.NOTICE, null, "Loading Universe Data from :" + universeHome);
+        // we use the binary snapshot of the text files if it's up to date
+        UniverseSnapshot snapshot = null;
         this.worldMaps = null;
 
-        // ok, here we go ! we load all the worlds we can find...
-        for (int w = 0; w < worldList.length; w++) {
+        if (this.universeSnapshot != null) {
+            snapshot = new UniverseSnapshot(this.rManager, universeHome, this.universeSnapshot);
+            this.worldMaps = snapshot.load();
+        }
 
-            // we load the world object
-            WorldMap world = (WorldMap) this.rManager.loadObject(worldList[w] + WorldManager.WORLD_FILE);
+        boolean fromSnapshot = (this.worldMaps != null);
 
-            if (world == null) {
-                Debug.signal(Debug.WARNING, this, "Failed to load World : " + worldList[w]);
-                continue;
-            }
+        if (!fromSnapshot) {
+            loadUniverseFiles(universeHome, loader);
 
-            if (this.worldMaps == null) {
-                this.worldMaps = new WorldMap[world.getWorldMapID() + 1];
-            } else if (this.worldMaps.length <= world.getWorldMapID()) {
-                WorldMap[] myWorldMaps = new WorldMap[world.getWorldMapID() + 1];
-                System.arraycopy(this.worldMaps, 0, myWorldMaps, 0, this.worldMaps.length);
-                this.worldMaps = myWorldMaps;
-            }
+            if (snapshot != null && this.worldMaps != null)
+                snapshot.save(this.worldMaps);
+        }
 
-            this.worldMaps[world.getWorldMapID()] = world;
-            worldCount++;
+        long locationsTime = System.currentTimeMillis();
 
-            // we load all the towns of this world
-            String townList[] = this.rManager.listUniverseDirectories(worldList[w]);
+        /*** STEP 2 - WE LOAD OBJECTS (latest data) ***/
+        int roomInventoryCount = 0;
 
-            for (int t = 0; t < townList.length; t++) {
+        if (!loadDefault) { // if loaddefault==true we only want to save default location data, not objects
 
-                // we load the town objects
-                TownMap town = (TownMap) this.rManager.loadObject(townList[t] + WorldManager.TOWN_FILE);
+            String objectsHome = this.rManager.getUniverseDataDir() + WorldManager.DEFAULT_UNIVERSE_OBJECTS + "/";
+            ArrayList inventoryFiles = new ArrayList();
 
-                if (town == null) {
-                    Debug.signal(Debug.WARNING, this, "Failed to load Town : " + townList[t]);
-                    continue;
-                }
+            String worldList[] = this.rManager.listUniverseDirectories(objectsHome);
 
-                world.addTownMap(town);
-                townCount++;
+            // ok, here we go ! we list all the objects we can find...
+            for (int w = 0; w < worldList.length; w++) {
 
-                // we load all this town's buildings
-                String buildingList[] = this.rManager.listUniverseDirectories(townList[t]);
+                // we list all the towns of this world
+                String townList[] = this.rManager.listUniverseDirectories(worldList[w]);
 
-                for (int b = 0; b < buildingList.length; b++) {
+                for (int t = 0; t < townList.length; t++) {
 
-                    // we load the building objects
-                    Building building = (Building) this.rManager.loadObject(buildingList[b] + WorldManager.BUILDING_FILE);
+                    // we list all this town's buildings
+                    String buildingList[] = this.rManager.listUniverseDirectories(townList[t]);
 
-                    if (building == null) {
-                        Debug.signal(Debug.WARNING, this, "Failed to load building : " + buildingList[b]);
-                        continue;
-                    }
+                    for (int b = 0; b < buildingList.length; b++) {
 
-                    town.addBuilding(building);
-                    buildingCount++;
+                        // we load all this building's maps
+                        String mapList[] = this.rManager.listObjects(buildingList[b], WorldManager.MAP_SUFFIX);
 
-                    // we load all this building's maps
-                    String mapList[] = this.rManager.listUniverseFiles(buildingList[b], WorldManager.MAP_SUFFIX);
+                        for (int m = 0; m < mapList.length; m++) {
+                            inventoryFiles.add(mapList[m]);
+                            loader.submit(new UniverseLoadTask(mapList[m], null, false, null));
+                        }
+                    }
+                }
+            }
 
-                    for (int m = 0; m < mapList.length; m++) {
-                        if (mapList[m].equals(buildingList[b] + WorldManager.BUILDING_FILE))
-                            continue;
+            Object inventoryTasks[] = loader.getResults();
 
-                        // we load the map objects
-                        InteriorMap map = (InteriorMap) this.rManager.loadObject(mapList[m]);
+            for (int i = 0; i < inventoryTasks.length; i++) {
+                String inventoryFile = (String) inventoryFiles.get(i);
+                RoomInventory roomInv = (inventoryTasks[i] == null) ? null : (RoomInventory) ((UniverseLoadTask) inventoryTasks[i]).object;
 
-                        if (map == null) {
-                            Debug.signal(Debug.WARNING, this, "Failed to load map : " + mapList[m]);
-                            continue;
-                        }
+                if (roomInv == null) {
+                    Debug.signal(Debug.WARNING, this, "Failed to load inventory : " + inventoryFile);
+                    continue;
+                }
 
-                        building.addInteriorMap(map);
-                        mapCount++;
-                    }
+                // we associate the RoomInventory to its Room
+                Room associatedRoom = getRoom(roomInv.getLocation());
+
+                if (associatedRoom == null) {
+                    Debug.signal(Debug.ERROR, this, "Failed to find room for roomInventory : " + inventoryFile);
+                    continue;
                 }
+
+                associatedRoom.setInventory(roomInv);
+                roomInv.clearDirty(); // freshly loaded
+                roomInventoryCount++;
             }
         }
 
-        Debug.signal(Debug.NOTICE, null, "World Manager loaded " + worldCount + " worlds, " + townCount + " towns, " + buildingCount + " buildings, " + mapCount + " maps.");
+        loader.shutdown();
+        Debug.signal(Debug.NOTICE, null, "World Manager loaded " + roomInventoryCount + " room inventories.");
+        long objectsTime = System.currentTimeMillis();
 
-        /*** STEP 2 - WE LOAD OBJECTS (latest data) ***/
-        int roomInventoryCount = 0;
+        /*** STEP 3 - WE INIT THE WORLD ***/
+        init();
 
-        if (!loadDefault) { // if loaddefault==true we only want to save default location data, not objects
+        long endTime = System.currentTimeMillis();
+        Debug.signal(Debug.NOTICE, null, "Universe loaded in " + (endTime - startTime) + " ms ( locations" + (fromSnapshot ? " from snapshot" : "") + " : " + (locationsTime - startTime) + " ms, room inventories : " + (objectsTime - locationsTime) + " ms, init : " + (endTime - objectsTime) + " ms ).");
+    }
 
-            String objectsHome = this.rManager.getUniverseDataDir() + WorldManager.DEFAULT_UNIVERSE_OBJECTS + "/";
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-            worldList = this.rManager.listUniverseDirectories(objectsHome);
+    /** To load the universe locations from their text files. Each level ( worlds, towns,
+     *  buildings, maps ) is loaded in parallel, then linked to its parents in the order
+     *  the files were listed : the result is the same as a sequential load.
+     *
+     *  @param universeHome universe directory
+     *  @param loader loader that runs our tasks
+     */
+    private void loadUniverseFiles(String universeHome, ParallelLoader loader) {
+        int worldCount = 0, townCount = 0, buildingCount = 0, mapCount = 0;
 
-            // ok, here we go ! we load all the objects we can find...
-            for (int w = 0; w < worldList.length; w++) {
+        String worldList[] = this.rManager.listUniverseDirectories(universeHome);
+        Debug.signal(Debug.NOTICE, null, "Loading Universe Data from :" + universeHome);
 
-                // we load all the towns of this world
-                String townList[] = this.rManager.listUniverseDirectories(worldList[w]);
+        // ok, here we go ! we load all the worlds we can find...
+        for (int w = 0; w < worldList.length; w++)
+            loader.submit(new UniverseLoadTask(worldList[w] + WorldManager.WORLD_FILE, worldList[w], false, null));
 
-                for (int t = 0; t < townList.length; t++) {
+        Object tasks[] = loader.getResults();
 
-                    // we load all this town's buildings
-                    String buildingList[] = this.rManager.listUniverseDirectories(townList[t]);
+        for (int w = 0; w < tasks.length; w++) {
+            UniverseLoadTask task = (UniverseLoadTask) tasks[w];
 
-                    for (int b = 0; b < buildingList.length; b++) {
+            if (task == null || task.object == null) {
+                Debug.signal(Debug.WARNING, this, "Failed to load World : " + worldList[w]);
+                continue;
+            }
 
-                        // we load all this building's maps
-                        String mapList[] = this.rManager.listUniverseFiles(buildingList[b], WorldManager.MAP_SUFFIX);
+            WorldMap world = (WorldMap) task.object;
 
-                        for (int m = 0; m < mapList.length; m++) {
+            if (this.worldMaps == null) {
+                this.worldMaps = new WorldMap[world.getWorldMapID() + 1];
+            } else if (this.worldMaps.length <= world.getWorldMapID()) {
+                WorldMap[] myWorldMaps = new WorldMap[world.getWorldMapID() + 1];
+                System.arraycopy(this.worldMaps, 0, myWorldMaps, 0, this.worldMaps.length);
+                this.worldMaps = myWorldMaps;
+            }
 
-                            // we load the map objects
-                            RoomInventory roomInv = (RoomInventory) this.rManager.loadObject(mapList[m]);
+            this.worldMaps[world.getWorldMapID()] = world;
+            worldCount++;
 
-                            if (roomInv == null) {
-                                Debug.signal(Debug.WARNING, this, "Failed to load inventory : " + mapList[m]);
-                                continue;
-                            }
+            // we load all the towns of this world
+            for (int t = 0; t < task.children.length; t++)
+                loader.submit(new UniverseLoadTask(task.children[t] + WorldManager.TOWN_FILE, task.children[t], false, world));
+        }
 
-                            // we associate the RoomInventory to its Room
-                            Room associatedRoom = getRoom(roomInv.getLocation());
+        tasks = loader.getResults();
 
-                            if (associatedRoom == null) {
-                                Debug.signal(Debug.ERROR, this, "Failed to find room for roomInventory : " + mapList[m]);
-                                continue;
-                            }
+        for (int t = 0; t < tasks.length; t++) {
+            UniverseLoadTask task = (UniverseLoadTask) tasks[t];
 
-                            associatedRoom.setInventory(roomInv);
-                            roomInventoryCount++;
-                        }
-                    }
-                }
+            if (task == null || task.object == null) {
+                Debug.signal(Debug.WARNING, this, "Failed to load Town : " + (task == null ? "?" : task.dir));
+                continue;
             }
+
+            TownMap town = (TownMap) task.object;
+            ((WorldMap) task.parent).addTownMap(town);
+            townCount++;
+
+            // we load all this town's buildings
+            for (int b = 0; b < task.children.length; b++)
+                loader.submit(new UniverseLoadTask(task.children[b] + WorldManager.BUILDING_FILE, task.children[b], true, town));
         }
 
-        Debug.signal(Debug.NOTICE, null, "World Manager loaded " + roomInventoryCount + " room inventories.");
+        tasks = loader.getResults();
 
-        /*** STEP 3 - WE INIT THE WORLD ***/
-        init();
+        for (int b = 0; b < tasks.length; b++) {
+            UniverseLoadTask task = (UniverseLoadTask) tasks[b];
+
+            if (task == null || task.object == null) {
+                Debug.signal(Debug.WARNING, this, "Failed to load building : " + (task == null ? "?" : task.dir));
+                continue;
+            }
+
+            Building building = (Building) task.object;
+            ((TownMap) task.parent).addBuilding(building);
+            buildingCount++;
+
+            // we load all this building's maps
+            for (int m = 0; m < task.children.length; m++)
+                if (!task.children[m].equals(task.file))
+                    loader.submit(new UniverseLoadTask(task.children[m], null, false, building));
+        }
+
+        tasks = loader.getResults();
+
+        for (int m = 0; m < tasks.length; m++) {
+            UniverseLoadTask task = (UniverseLoadTask) tasks[m];
+
+            if (task == null || task.object == null) {
+                Debug.signal(Debug.WARNING, this, "Failed to load map : " + (task == null ? "?" : task.file));
+                continue;
+            }
+
+            ((Building) task.parent).addInteriorMap((InteriorMap) task.object);
+            mapCount++;
+        }
+
+        Debug.signal(Debug.NOTICE, null, "World Manager loaded " + worldCount + " worlds, " + townCount + " towns, " + buildingCount + " buildings, " + mapCount + " maps.");
     }
 
     /*------------------------------------------------------------------------------------*/
@@ -605,6 +744,10 @@ public class WorldManager {
             // We create this directory... (we expect that the directory is outside the JAR)
             new File(universeHome).mkdirs();
 
+            // the snapshot will be compiled again from the new data
+            if (this.universeSnapshot != null)
+                new UniverseSnapshot(this.rManager, universeHome, this.universeSnapshot).delete();
+
             // ok, here we go ! we save all our world data...
             Debug.signal(Debug.NOTICE, this, "Saving Universe Data to :" + universeHome);
 
@@ -758,7 +901,10 @@ public class WorldManager {
 
                                 String inventoryName = buildingHome + WorldManager.INVENTORY_PREFIX + rooms[r].getMyInteriorMap().getInteriorMapID() + "-" + rooms[r].getRoomID() + WorldManager.INVENTORY_SUFFIX;
 
+                                rooms[r].getInventory().clearDirty();
+
                                 if (!this.rManager.saveObject(rooms[r].getInventory(), inventoryName)) {
+                                    rooms[r].getInventory().markDirty();
                                     Debug.signal(Debug.ERROR, this, "Failed to save room inventory : " + inventoryName);
                                     continue;
                                 }
@@ -782,4 +928,133 @@ public class WorldManager {
 
     /*------------------------------------------------------------------------------------*/
 
+    /** To get the rooms whose inventory has changed since it was last saved.
+     *
+     *  @return rooms with a dirty RoomInventory
+     */
+    public Room[] getDirtyInventoryRooms() {
+        ArrayList dirtyRooms = new ArrayList();
+
+        for (int w = 0; w < this.worldMaps.length; w++) {
+            if (this.worldMaps[w] == null || this.worldMaps[w].getTownMaps() == null)
+                continue;
+
+            TownMap towns[] = this.worldMaps[w].getTownMaps();
+
+            for (int t = 0; t < towns.length; t++) {
+                if (towns[t] == null || towns[t].getBuildings() == null)
+                    continue;
+
+                Building buildings[] = towns[t].getBuildings();
+
+                for (int b = 0; b < buildings.length; b++) {
+                    if (buildings[b] == null || buildings[b].getInteriorMaps() == null)
+                        continue;
+
+                    InteriorMap interiorMaps[] = buildings[b].getInteriorMaps();
+
+                    for (int m = 0; m < interiorMaps.length; m++) {
+                        if (interiorMaps[m] == null || interiorMaps[m].getRooms() == null)
+                            continue;
+
+                        Room rooms[] = interiorMaps[m].getRooms();
+
+                        for (int r = 0; r < rooms.length; r++)
+                            if (rooms[r] != null && rooms[r].getInventory() != null && rooms[r].getInventory().isDirty())
+                                dirtyRooms.add(rooms[r]);
+                    }
+                }
+            }
+        }
+
+        return (Room[]) dirtyRooms.toArray(new Room[dirtyRooms.size()]);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To save the inventory of a room in the objects directory ( same file as the one
+     *  saveUniverse(false) writes ). The dirty flag of the inventory is cleared before
+     *  the save, and set again if the save fails.
+     *
+     *  @param room room whose inventory we save
+     *  @return true if the inventory has been saved successfully
+     */
+    public boolean saveRoomInventory(Room room) {
+        RoomInventory inventory = room.getInventory();
+
+        if (inventory == null)
+            return true;
+
+        Building building = room.getMyInteriorMap().getMyBuilding();
+        TownMap town = building.getMyTownMap();
+
+        String buildingHome = this.rManager.getUniverseDataDir() + WorldManager.DEFAULT_UNIVERSE_OBJECTS + "/" + town.getMyWorldMap().getShortName() + "/" + town.getShortName() + "/" + building.getShortName() + "/";
+        String inventoryName = buildingHome + WorldManager.INVENTORY_PREFIX + room.getMyInteriorMap().getInteriorMapID() + "-" + room.getRoomID() + WorldManager.INVENTORY_SUFFIX;
+
+        new File(buildingHome).mkdirs();
+        inventory.clearDirty();
+
+        if (!this.rManager.saveObject(inventory, inventoryName)) {
+            inventory.markDirty();
+            Debug.signal(Debug.ERROR, this, "Failed to save room inventory : " + inventoryName);
+            return false;
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A task of the universe loading : loads an object file then lists the files of the
+     *  next level ( sub-directories or map files of a directory ).
+     */
+    private class UniverseLoadTask implements Callable {
+
+        /** Object file to load.
+         */
+        protected String file;
+
+        /** Directory to list once the object is loaded, null if none.
+         */
+        protected String dir;
+
+        /** Do we list the map files of the directory instead of its sub-directories ?
+         */
+        protected boolean listMaps;
+
+        /** Object the loaded object will be linked to.
+         */
+        protected Object parent;
+
+        /** Loaded object, null if it failed to load.
+         */
+        protected Object object;
+
+        /** Files of the next level.
+         */
+        protected String children[];
+
+        protected UniverseLoadTask(String file, String dir, boolean listMaps, Object parent) {
+            this.file = file;
+            this.dir = dir;
+            this.listMaps = listMaps;
+            this.parent = parent;
+        }
+
+        public Object call() {
+            this.object = WorldManager.this.rManager.loadObject(this.file);
+
+            if (this.object != null && this.dir != null) {
+                if (this.listMaps)
+                    this.children = WorldManager.this.rManager.listUniverseFiles(this.dir, WorldManager.MAP_SUFFIX);
+                else
+                    this.children = WorldManager.this.rManager.listUniverseDirectories(this.dir);
+            }
+
+            return this;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
 }
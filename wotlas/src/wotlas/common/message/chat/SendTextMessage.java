@@ -22,6 +22,9 @@ package wotlas.common.message.chat;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import wotlas.libs.net.NetBufferCodec;
+import wotlas.libs.net.NetBuffers;
 import wotlas.libs.net.NetMessage;
 
 /** 
@@ -30,7 +33,7 @@ import wotlas.libs.net.NetMessage;
  * @author Petrus, Aldiss
  */
 
-public class SendTextMessage extends NetMessage {
+public class SendTextMessage extends NetMessage implements NetBufferCodec {
 
     /*------------------------------------------------------------------------------------*/
 
@@ -111,6 +114,36 @@ public class SendTextMessage extends NetMessage {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** Buffer codec version of encode(DataOutputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to put the data
+     * @exception IOException if the data can't be encoded.
+     */
+    public void encode(ByteBuffer buffer) throws IOException {
+        NetBuffers.putUTF(buffer, this.senderPrimaryKey);
+        NetBuffers.putUTF(buffer, this.senderFullName);
+        NetBuffers.putUTF(buffer, this.chatRoomPrimaryKey);
+        NetBuffers.putUTF(buffer, this.message);
+        buffer.put(this.voiceSoundLevel);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of decode(DataInputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to get the data
+     * @exception IOException if the data is corrupted.
+     */
+    public void decode(ByteBuffer buffer) throws IOException {
+        this.senderPrimaryKey = NetBuffers.getUTF(buffer);
+        this.senderFullName = NetBuffers.getUTF(buffer);
+        this.chatRoomPrimaryKey = NetBuffers.getUTF(buffer);
+        this.message = NetBuffers.getUTF(buffer);
+        this.voiceSoundLevel = buffer.get();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To set the message for this chat message...
      */
     public void setMessage(String message) {
@@ -21,8 +21,7 @@ package wotlas.common.message.chat;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
-import java.util.Hashtable;
-import java.util.Iterator;
+import java.util.Map;
 import wotlas.common.Player;
 import wotlas.libs.net.NetMessage;
 
@@ -56,7 +55,7 @@ public class SetCurrentChatRoomMessage extends NetMessage {
     /*------------------------------------------------------------------------------------*/
     /** Constructor with parameters.
      */
-    public SetCurrentChatRoomMessage(String chatRoomPrimaryKey, Hashtable<String, Player> players) {
+    public SetCurrentChatRoomMessage(String chatRoomPrimaryKey, Map<String, Player> players) {
         super();
         this.chatRoomPrimaryKey = chatRoomPrimaryKey;
 
@@ -66,19 +65,15 @@ public class SetCurrentChatRoomMessage extends NetMessage {
             return;
         }
 
-        synchronized (players) {
-            Iterator<Player> it = players.values().iterator();
-            int i = 0;
+        // the players may change meanwhile, we work on a copy
+        Player list[] = players.values().toArray(new Player[0]);
 
-            this.playersPrimaryKey = new String[players.size()];
-            this.fullPlayerNames = new String[players.size()];
+        this.playersPrimaryKey = new String[list.length];
+        this.fullPlayerNames = new String[list.length];
 
-            while (it.hasNext()) {
-                Player p = it.next();
-                this.playersPrimaryKey[i] = p.getPrimaryKey();
-                this.fullPlayerNames[i] = p.getPlayerName();
-                i++;
-            }
+        for (int i = 0; i < list.length; i++) {
+            this.playersPrimaryKey[i] = list[i].getPrimaryKey();
+            this.fullPlayerNames[i] = list[i].getPlayerName();
         }
     }
 
@@ -22,7 +22,10 @@ package wotlas.common.message.description;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import wotlas.common.universe.WotlasLocation;
+import wotlas.libs.net.NetBufferCodec;
+import wotlas.libs.net.NetBuffers;
 import wotlas.libs.net.NetMessage;
 
 /** 
@@ -32,7 +35,7 @@ import wotlas.libs.net.NetMessage;
  * @author Aldiss
  */
 
-public class DoorStateMessage extends NetMessage {
+public class DoorStateMessage extends NetMessage implements NetBufferCodec {
     /*------------------------------------------------------------------------------------*/
 
     /** Door state.
@@ -111,4 +114,33 @@ public class DoorStateMessage extends NetMessage {
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of encode(DataOutputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to put the data
+     */
+    public void encode(ByteBuffer buffer) {
+
+        this.location.writeTo(buffer);
+
+        buffer.putInt(this.roomLinkID);
+        NetBuffers.putBoolean(buffer, this.isOpened);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of decode(DataInputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to get the data
+     */
+    public void decode(ByteBuffer buffer) {
+
+        this.location = new WotlasLocation();
+        this.location.readFrom(buffer);
+
+        this.roomLinkID = buffer.getInt();
+        this.isOpened = NetBuffers.getBoolean(buffer);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 }
@@ -0,0 +1,176 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.common.message.description;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import wotlas.common.Player;
+import wotlas.common.message.movement.MovementUpdateMessage;
+
+/** The public data of a player, encoded once for all the PlayerDataMessages that send
+ *  it to other players ( RoomPlayerDataMessage, AddPlayerToRoomMessage ).
+ *<br>
+ *  We only cache the data that rarely changes : player name, primary key, movement
+ *  composer class and character. The player increments our version when one of them
+ *  changes ( see invalidate() ) and they are encoded again on the next write. The
+ *  location, full name ( it depends on who receives it ), state and movement update are
+ *  written each time. The data written is exactly the one of PlayerDataMessage.encode().
+ *
+ * @author Aldiss
+ * @see wotlas.common.message.description.PlayerDataMessage
+ */
+
+public class PlayerDataBlob {
+    /*------------------------------------------------------------------------------------*/
+
+    /** Version of the player's public data.
+     */
+    private int version;
+
+    /** Version of the data we have encoded, -1 if none.
+     */
+    private int encodedVersion;
+
+    /** Encoded player name.
+     */
+    private byte nameData[];
+
+    /** Encoded primary key.
+     */
+    private byte keyData[];
+
+    /** Encoded movement composer class name.
+     */
+    private byte composerData[];
+
+    /** Encoded character class name and public data.
+     */
+    private byte characterData[];
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     */
+    public PlayerDataBlob() {
+        this.version = 0;
+        this.encodedVersion = -1;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To signal that the cached data of the player has changed. It will be encoded
+     *  again on the next write.
+     */
+    public synchronized void invalidate() {
+        this.version++;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the version of the player's public data.
+     *
+     * @return version, incremented by each invalidate().
+     */
+    public synchronized int getVersion() {
+        return this.version;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To write the player's public data, as PlayerDataMessage.encode() would ( without
+     *  the publicInfoOnly flag ).
+     *
+     * @param ostream data stream where to put the data
+     * @param player player whose data we write ( the owner of this blob )
+     * @param otherPlayer player the data is sent to
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    public void write(DataOutputStream ostream, Player player, Player otherPlayer) throws IOException {
+        byte name[], key[], composer[], character[];
+
+        synchronized (this) {
+            if (this.encodedVersion != this.version)
+                encode(player);
+
+            name = this.nameData;
+            key = this.keyData;
+            composer = this.composerData;
+            character = this.characterData;
+        }
+
+        // Wotlas Location
+        ostream.writeInt(player.getLocation().getWorldMapID());
+        ostream.writeInt(player.getLocation().getTownMapID());
+        ostream.writeInt(player.getLocation().getBuildingID());
+        ostream.writeInt(player.getLocation().getInteriorMapID());
+        ostream.writeInt(player.getLocation().getRoomID());
+
+        // Player Data
+        ostream.write(name);
+        ostream.writeUTF(player.getFullPlayerName(otherPlayer));
+        ostream.write(key);
+        ostream.writeBoolean(player.isConnectedToGame());
+        ostream.writeByte(player.getPlayerState().value);
+
+        // Movement Composer
+        ostream.write(composer);
+
+        MovementUpdateMessage updateMsg = player.getMovementComposer().getUpdate();
+
+        ostream.writeUTF(updateMsg.getClass().getName());
+        updateMsg.encode(ostream);
+
+        // Wotlas Character Data
+        ostream.write(character);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Encodes the cached data of the player. Called with our lock.
+     *
+     * @param player player whose data we encode
+     * @exception IOException if the character failed to encode
+     */
+    private void encode(Player player) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream out = new DataOutputStream(bytes);
+
+        out.writeUTF(player.getPlayerName());
+        this.nameData = bytes.toByteArray();
+        bytes.reset();
+
+        out.writeUTF(player.getPrimaryKey());
+        this.keyData = bytes.toByteArray();
+        bytes.reset();
+
+        out.writeUTF(player.getMovementComposer().getClass().getName());
+        this.composerData = bytes.toByteArray();
+        bytes.reset();
+
+        out.writeUTF(player.getWotCharacter().getClass().getName());
+        player.getWotCharacter().encode(out, true);
+        this.characterData = bytes.toByteArray();
+
+        this.encodedVersion = this.version;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
@@ -114,6 +114,16 @@ public class PlayerDataMessage extends NetMessage {
     public void encode(DataOutputStream ostream) throws IOException {
         ostream.writeBoolean(this.publicInfoOnly);
 
+        // Public data is encoded from the player's cache if it has one
+        if (this.publicInfoOnly) {
+            PlayerDataBlob blob = this.player.getPublicDataBlob();
+
+            if (blob != null) {
+                blob.write(ostream, this.player, this.otherPlayer);
+                return;
+            }
+        }
+
         // Wotlas Location
         ostream.writeInt(this.player.getLocation().getWorldMapID());
         ostream.writeInt(this.player.getLocation().getTownMapID());
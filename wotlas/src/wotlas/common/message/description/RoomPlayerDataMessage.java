@@ -22,7 +22,6 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.util.Hashtable;
-import java.util.Iterator;
 import wotlas.common.Player;
 import wotlas.common.universe.Room;
 import wotlas.common.universe.WotlasLocation;
@@ -40,10 +39,14 @@ public class RoomPlayerDataMessage extends PlayerDataMessage {
      */
     private Player myPlayer;
 
-    /** Players.
+    /** Players (received messages only).
      */
     protected Hashtable<String, Player> players;
 
+    /** Players to send (copy of the room's players).
+     */
+    private Player playerList[];
+
     /** Wotlas Location
      */
     protected WotlasLocation location;
@@ -69,7 +72,24 @@ public class RoomPlayerDataMessage extends PlayerDataMessage {
         this.myPlayer = myPlayer;
         this.otherPlayer = myPlayer;
         this.location = room.getLocation();
-        this.players = room.getMessageRouter().getPlayers();
+        this.playerList = room.getMessageRouter().getPlayerList();
+        this.publicInfoOnly = true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Constructor with the players of the room to send. Used to send only some of them
+     *  ( the ones the client doesn't know ).
+     *
+     * @param location location of the room the players are in.
+     * @param myPlayer our player ( not sent ).
+     * @param playerList players to send.
+     */
+    public RoomPlayerDataMessage(WotlasLocation location, Player myPlayer, Player playerList[]) {
+        super();
+        this.myPlayer = myPlayer;
+        this.otherPlayer = myPlayer;
+        this.location = location;
+        this.playerList = playerList;
         this.publicInfoOnly = true;
     }
 
@@ -91,21 +111,21 @@ public class RoomPlayerDataMessage extends PlayerDataMessage {
         ostream.writeInt(this.location.getRoomID());
 
         // Players
-        synchronized (this.players) {
-            if (this.players.containsKey(this.myPlayer.getPrimaryKey())) {
-                ostream.writeInt(this.players.size() - 1);
-            } else {
-                ostream.writeInt(this.players.size());
+        int nbPlayers = this.playerList.length;
+
+        for (int i = 0; i < this.playerList.length; i++) {
+            if (this.playerList[i] == this.myPlayer) {
+                nbPlayers--;
             }
+        }
 
-            Iterator<Player> it = this.players.values().iterator();
+        ostream.writeInt(nbPlayers);
 
-            while (it.hasNext()) {
-                this.player = it.next();
+        for (int i = 0; i < this.playerList.length; i++) {
+            this.player = this.playerList[i];
 
-                if (this.myPlayer != this.player) {
-                    super.encode(ostream);
-                }
+            if (this.myPlayer != this.player) {
+                super.encode(ostream);
             }
         }
     }
@@ -22,7 +22,10 @@ package wotlas.common.message.movement;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import wotlas.common.universe.WotlasLocation;
+import wotlas.libs.net.NetBufferCodec;
+import wotlas.libs.net.NetBuffers;
 import wotlas.libs.net.NetMessage;
 
 /** 
@@ -31,7 +34,7 @@ import wotlas.libs.net.NetMessage;
  * @author Aldiss
  */
 
-public class LocationChangeMessage extends NetMessage {
+public class LocationChangeMessage extends NetMessage implements NetBufferCodec {
     /*------------------------------------------------------------------------------------*/
 
     /** Primary Key
@@ -126,4 +129,40 @@ public class LocationChangeMessage extends NetMessage {
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of encode(DataOutputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to put the data
+     * @exception IOException if the data can't be encoded.
+     */
+    public void encode(ByteBuffer buffer) throws IOException {
+
+        NetBuffers.putUTF(buffer, this.primaryKey);
+        this.location.writeTo(buffer);
+
+        buffer.putInt(this.x);
+        buffer.putInt(this.y);
+        buffer.putFloat(this.orientation);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of decode(DataInputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to get the data
+     * @exception IOException if the data is corrupted.
+     */
+    public void decode(ByteBuffer buffer) throws IOException {
+
+        this.primaryKey = NetBuffers.getUTF(buffer);
+
+        this.location = new WotlasLocation();
+        this.location.readFrom(buffer);
+
+        this.x = buffer.getInt();
+        this.y = buffer.getInt();
+        this.orientation = buffer.getFloat();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 }
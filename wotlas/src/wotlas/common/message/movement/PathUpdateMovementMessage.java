@@ -23,7 +23,11 @@ import java.awt.Point;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
 import wotlas.common.movement.PathFollower;
+import wotlas.libs.net.CoalescableMessage;
+import wotlas.libs.net.NetBufferCodec;
+import wotlas.libs.net.NetBuffers;
 
 /** 
  * A message containing movement update along a path. (Message Sent by Server or Client).
@@ -31,7 +35,7 @@ import wotlas.common.movement.PathFollower;
  * @author Aldiss
  */
 
-public class PathUpdateMovementMessage extends MovementUpdateMessage {
+public class PathUpdateMovementMessage extends MovementUpdateMessage implements CoalescableMessage, NetBufferCodec {
     /*------------------------------------------------------------------------------------*/
 
     /** Source Point
@@ -103,6 +107,17 @@ public class PathUpdateMovementMessage extends MovementUpdateMessage {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the key of the state this message updates : a newer movement of the same
+     *  player makes this one useless.
+     *
+     * @return the player's primary key, null if not set.
+     */
+    public String getCoalescingKey() {
+        return this.primaryKey;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** This is where we put your message data on the stream. You don't need
      * to invoke this method yourself, it's done automatically.
      *
@@ -136,7 +151,8 @@ public class PathUpdateMovementMessage extends MovementUpdateMessage {
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** This is where we retrieve our message data from the stream. You don't need
-     * to invoke this method yourself, it's done automatically.
+     * to invoke this method yourself, it's done automatically. All the fields are set,
+     * and the Points of a reused message are reused (see ReusableMessageBehaviour).
      *
      * @param istream data stream where you retrieve your data (see java.io.DataInputStream)
      * @exception IOException if the stream has been closed or is corrupted.
@@ -146,7 +162,8 @@ public class PathUpdateMovementMessage extends MovementUpdateMessage {
 
         this.syncID = istream.readByte();
 
-        this.srcPoint = new Point();
+        if (this.srcPoint == null)
+            this.srcPoint = new Point();
 
         this.srcPoint.x = istream.readInt();
         this.srcPoint.y = istream.readInt();
@@ -155,7 +172,9 @@ public class PathUpdateMovementMessage extends MovementUpdateMessage {
         this.isMoving = istream.readBoolean();
 
         if (this.isMoving) {
-            this.dstPoint = new Point();
+            if (this.dstPoint == null)
+                this.dstPoint = new Point();
+
             this.dstPoint.x = istream.readInt();
             this.dstPoint.y = istream.readInt();
             this.movementDeltaTime = istream.readInt();
@@ -163,6 +182,73 @@ public class PathUpdateMovementMessage extends MovementUpdateMessage {
 
         if (istream.readBoolean())
             this.primaryKey = istream.readUTF();
+        else
+            this.primaryKey = null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of encode(DataOutputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to put the data
+     * @exception IOException if the data can't be encoded.
+     */
+    public void encode(ByteBuffer buffer) throws IOException {
+
+        buffer.put(this.syncID);
+
+        buffer.putInt(this.srcPoint.x);
+        buffer.putInt(this.srcPoint.y);
+
+        buffer.putFloat(this.orientationAngle);
+        NetBuffers.putBoolean(buffer, this.isMoving);
+
+        if (this.isMoving) {
+            buffer.putInt(this.dstPoint.x);
+            buffer.putInt(this.dstPoint.y);
+            buffer.putInt(this.movementDeltaTime);
+        }
+
+        if (this.primaryKey != null) {
+            NetBuffers.putBoolean(buffer, true);
+            NetBuffers.putUTF(buffer, this.primaryKey);
+        } else
+            NetBuffers.putBoolean(buffer, false);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of decode(DataInputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to get the data
+     * @exception IOException if the data is corrupted.
+     */
+    public void decode(ByteBuffer buffer) throws IOException {
+
+        this.syncID = buffer.get();
+
+        if (this.srcPoint == null)
+            this.srcPoint = new Point();
+
+        this.srcPoint.x = buffer.getInt();
+        this.srcPoint.y = buffer.getInt();
+
+        this.orientationAngle = buffer.getFloat();
+        this.isMoving = NetBuffers.getBoolean(buffer);
+
+        if (this.isMoving) {
+            if (this.dstPoint == null)
+                this.dstPoint = new Point();
+
+            this.dstPoint.x = buffer.getInt();
+            this.dstPoint.y = buffer.getInt();
+            this.movementDeltaTime = buffer.getInt();
+        }
+
+        if (NetBuffers.getBoolean(buffer))
+            this.primaryKey = NetBuffers.getUTF(buffer);
+        else
+            this.primaryKey = null;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
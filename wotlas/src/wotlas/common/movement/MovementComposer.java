@@ -35,15 +35,6 @@ public interface MovementComposer extends Tickable {
 
     /*------------------------------------------------------------------------------------*/
 
-    /** To init the MovementComposer classes with the ground's mask.
-     * @param mask two dimension mask representing the zones where the players can go.
-     * @param maskTileSize mask tile size (in pixels).
-     * @param playerSize represents the average player size ( in maskTileSize unit )
-     */
-    public void setMovementMask(boolean mask[][], int maskTileSize, int playerSize);
-
-    /*------------------------------------------------------------------------------------*/
-
     /** To init this MovementComposer.
      * @param player associated player.
      */
@@ -156,6 +147,16 @@ public interface MovementComposer extends Tickable {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the current position when the movement is not followed ( the server
+     *  doesn't load the map masks, its players stay where their movement started ). The
+     *  position is then estimated from the movement's start, end and time stamp.
+     *
+     * @return estimated position, the current position if the movement is followed.
+     */
+    public Point getEstimatedPosition();
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** Returns true if the player is moving.
      * @return isMoving
      */
@@ -27,7 +27,8 @@ import wotlas.common.message.movement.PathUpdateMovementMessage;
 import wotlas.common.universe.TownMap;
 import wotlas.common.universe.WorldMap;
 import wotlas.common.universe.WotlasLocation;
-import wotlas.libs.pathfinding.AStarDouble;
+import wotlas.common.universe.WotlasMap;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.utils.Debug;
 import wotlas.utils.List;
 import wotlas.utils.ScreenPoint;
@@ -54,7 +55,7 @@ public class PathFollower implements MovementComposer {
     /*------------------------------------------------------------------------------------*/
 
     /** To tell that we must reconstruct a trajectory that was not possible
-     *  to construct before, due to a AStar not initialized...
+     *  to construct before, due to a mask not loaded...
      */
     transient private boolean reconstructTrajectory = false;
 
@@ -146,29 +147,17 @@ public class PathFollower implements MovementComposer {
 
     /*------------------------------------------------------------------------------------*/
 
-    /** To init the MovementComposer classes with the ground's mask.
-     * @param mask two dimension mask representing the zones where the players can go.
-     * @param maskTileSize mask tile size (in pixels).
-     * @param playerSize represents the average player size ( in maskTileSize unit )
-     */
-    public void setMovementMask(boolean mask[][], int maskTileSize, int playerSize) {
-        AStarDouble.setMask(mask);
-        AStarDouble.setTileSize(maskTileSize);
-        AStarDouble.setSpriteSize(playerSize);
-    }
-
-    /*------------------------------------------------------------------------------------*/
-
     /** To get a path between two points via Astar.
+     * @param context pathfinding context of the map
      * @param a first point
      * @param b second point
      * @return path
      */
-    public static List findPath(Point a, Point b, boolean pathInRoom) {
-        int tileSize = AStarDouble.getTileSize();
+    public static List findPath(PathfindingContext context, Point a, Point b, boolean pathInRoom) {
+        int tileSize = context.getTileSize();
 
-        List path = AStarDouble.findPath(new Point(a.x / tileSize, a.y / tileSize), new Point(b.x / tileSize, b.y / tileSize));
-        path = AStarDouble.smoothPath(path);
+        List path = context.findPath(new Point(a.x / tileSize, a.y / tileSize), new Point(b.x / tileSize, b.y / tileSize));
+        path = context.smoothPath(path);
 
         if (path == null || path.size() < 2)
             return null; // no movement
@@ -225,6 +214,23 @@ public class PathFollower implements MovementComposer {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the pathfinding context of the map our player is on.
+     * @return context, null if the mask of the map is not loaded ( server side ).
+     */
+    private PathfindingContext getPathfindingContext() {
+        if (this.player == null)
+            return null;
+
+        WotlasMap map = this.player.getMyMap();
+
+        if (map == null)
+            return null;
+
+        return map.getPathfindingContext();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     // KINEMATIC GETTERS & SETTERS
     /** To get the X position.
      * @return x position
@@ -353,6 +359,39 @@ public class PathFollower implements MovementComposer {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the current position when we don't follow the path ( no mask loaded ). We
+     *  then move on the straight line from the start of the movement to its end point, at
+     *  the speed of the character, since the beginning of the movement. The straight line
+     *  is the shortest way : the estimate can be ahead of the real position but never goes
+     *  beyond the end point.
+     *
+     * @return estimated position, the current position if we follow the path.
+     */
+    public synchronized Point getEstimatedPosition() {
+        if (!this.walkingAlongPath || this.path != null || this.endPoint == null)
+            return getPosition();
+
+        float currentSpeed = this.speed;
+
+        if (this.player != null && this.player.getLocation() != null && this.player.getWotCharacter() != null)
+            currentSpeed = this.player.getWotCharacter().getSpeed(this.player.getLocation());
+
+        double dx = this.endPoint.x - this.xPosition;
+        double dy = this.endPoint.y - this.yPosition;
+        double distance = Math.sqrt(dx * dx + dy * dy);
+        double walked = currentSpeed * (System.currentTimeMillis() - this.movementTimeStamp + this.movementDeltaTime) / 1000.0;
+
+        if (walked >= distance)
+            return this.endPoint.toPoint();
+
+        if (walked <= 0)
+            return getPosition();
+
+        return new Point((int) (this.xPosition + dx * walked / distance), (int) (this.yPosition + dy * walked / distance));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** Returns true if we are moving
      */
     public boolean isMoving() {
@@ -416,7 +455,7 @@ public class PathFollower implements MovementComposer {
      * @return a MovementUpdateMessage 
      */
     public MovementUpdateMessage getUpdate() {
-        if (AStarDouble.isInitialized())
+        if (getPathfindingContext() != null)
             return new PathUpdateMovementMessage(this, null, this.player.getSyncID());
         else
             return new PathUpdateMovementMessage(this, this.player.getPrimaryKey(), this.player.getSyncID());
@@ -447,7 +486,7 @@ public class PathFollower implements MovementComposer {
                    if( walkingAlongPath ) {
                        Point pDst = new Point( msg.dstPoint.x, msg.dstPoint.y );
 
-                       if (AStarDouble.isInitialized()) {
+                       if (getPathfindingContext() != null) {
                           // Astar initialized, re-creating path
                              recreateTrajectory( pDst, msg.movementDeltaTime );
                        }
@@ -467,7 +506,9 @@ public class PathFollower implements MovementComposer {
 
         /* METHOD 2 : ADVANCED UPDATE : WE TEST THE NEW POSITION */
 
-        if (!AStarDouble.isInitialized()) {
+        PathfindingContext context = getPathfindingContext();
+
+        if (context == null) {
             // We just save the data
             this.xPosition = msg.srcPoint.x;
             this.yPosition = msg.srcPoint.y;
@@ -483,7 +524,7 @@ public class PathFollower implements MovementComposer {
             } else
                 resetMovement(); // No movement
         } else {
-            // AStar initialized
+            // mask loaded
             // Do we have to consider this update ?
             boolean takeUpdate = false;
 
@@ -491,7 +532,7 @@ public class PathFollower implements MovementComposer {
                 Point target = getTargetPosition();
 
                 if (msg.isMoving) {
-                    if (PathFollower.distance(msg.srcPoint, getPosition()) > PathFollower.MAX_DISTANCE_DELAY || PathFollower.findPath(getPosition(), msg.dstPoint, this.player.getLocation().isRoom()) == null)
+                    if (PathFollower.distance(msg.srcPoint, getPosition()) > PathFollower.MAX_DISTANCE_DELAY || PathFollower.findPath(context, getPosition(), msg.dstPoint, this.player.getLocation().isRoom()) == null)
                         takeUpdate = true;
                     else
                         recreateTrajectory(msg.dstPoint, 0);
@@ -564,7 +605,7 @@ public class PathFollower implements MovementComposer {
     /** Our Tick method. Call this method regularly to update the position along the path.
      */
     public void tick() {
-        if (AStarDouble.isInitialized()) {
+        if (getPathfindingContext() != null) {
             if (this.reconstructTrajectory) {
                 if (this.endPoint != null)
                     recreateTrajectory(this.endPoint.toPoint(), this.movementDeltaTime);
@@ -661,10 +702,17 @@ public class PathFollower implements MovementComposer {
      */
     public void moveTo(Point endPosition, WorldManager wManager) {
 
+        PathfindingContext context = getPathfindingContext();
+
+        if (context == null) {
+            Debug.signal(Debug.ERROR, this, "PathFollower : no mask for " + this.player.getLocation());
+            return;
+        }
+
         // Test if xPosition,yPosition is a valid point
         Point startPt = new Point((int) this.xPosition, (int) this.yPosition);
 
-        if (!AStarDouble.isValidStart(startPt)) {
+        if (!context.isValidStart(startPt)) {
             Debug.signal(Debug.WARNING, this, "PathFollower : invalid start point");
 
             // We reset the position
@@ -699,7 +747,7 @@ public class PathFollower implements MovementComposer {
             startPt.y = pReset.y;
         }
 
-        this.path = PathFollower.findPath(startPt, new Point(endPosition.x, endPosition.y), this.player.getLocation().isRoom());
+        this.path = PathFollower.findPath(context, startPt, new Point(endPosition.x, endPosition.y), this.player.getLocation().isRoom());
 
         if (this.path == null) {
             if (this.walkingAlongPath)
@@ -735,7 +783,12 @@ public class PathFollower implements MovementComposer {
     /** To recreate a trajectory from a dest. point & a DeltaTime.
      */
     public void recreateTrajectory(Point pDst, int movementDeltaTime) {
-        this.path = PathFollower.findPath(new Point((int) this.xPosition, (int) this.yPosition), new Point(pDst.x, pDst.y), this.player.getLocation().isRoom());
+        PathfindingContext context = getPathfindingContext();
+
+        if (context == null)
+            this.path = null; // mask not loaded
+        else
+            this.path = PathFollower.findPath(context, new Point((int) this.xPosition, (int) this.yPosition), new Point(pDst.x, pDst.y), this.player.getLocation().isRoom());
 
         if (this.path == null) {
             Debug.signal(Debug.ERROR, this, "Failed to re-create path !");
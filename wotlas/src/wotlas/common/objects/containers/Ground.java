@@ -19,6 +19,7 @@
 
 package wotlas.common.objects.containers;
 
+import wotlas.common.objects.BaseObject;
 import wotlas.common.universe.Room;
 
 /** 
@@ -110,4 +111,35 @@ public class Ground extends ContainerObject {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** Add an object on the ground. The inventory of the owner room is marked dirty.
+     * @param o the object to add
+     * @return false if max capacity is already reached ; true if the object was added
+     */
+    @Override
+    public boolean addObject(BaseObject o) {
+        if (!super.addObject(o))
+            return false;
+
+        markRoomInventoryDirty();
+        return true;
+    }
+
+    /** Remove an object from the ground. The inventory of the owner room is marked dirty.
+     * @param o the object to remove
+     */
+    @Override
+    public void removeObject(BaseObject o) {
+        super.removeObject(o);
+        markRoomInventoryDirty();
+    }
+
+    /** Tells the inventory of the owner room that it needs to be saved.
+     */
+    private void markRoomInventoryDirty() {
+        if (this.ownerRoom != null && this.ownerRoom.getInventory() != null)
+            this.ownerRoom.getInventory().markDirty();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
 }
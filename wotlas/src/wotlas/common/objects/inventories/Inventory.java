@@ -96,6 +96,12 @@ public class Inventory implements InventoryInterface {
 
     /*------------------------------------------------------------------------------------*/
 
+    /** Has the inventory changed since it was last saved ?
+     */
+    protected transient volatile boolean isDirty;
+
+    /*------------------------------------------------------------------------------------*/
+
     /** Constructor.
      */
     public Inventory() {
@@ -113,6 +119,7 @@ public class Inventory implements InventoryInterface {
      */
     public boolean receiveObject(BaseObject object) {
         String clName = object.getClassName();
+        this.isDirty = true;
 
         if ("Bag".equals(clName)) {
             if (this.bag == null) {
@@ -159,6 +166,28 @@ public class Inventory implements InventoryInterface {
         return this.bag.addObject(object);
     }
 
+    /** Has the inventory changed since it was last saved ?
+     * @return true if the inventory needs to be saved
+     */
+    public boolean isDirty() {
+        return this.isDirty;
+    }
+
+    /** To tell that the inventory has been saved (or that its changes don't need to be).
+     * @return true if the inventory was dirty
+     */
+    public boolean clearDirty() {
+        boolean wasDirty = this.isDirty;
+        this.isDirty = false;
+        return wasDirty;
+    }
+
+    /** To tell that the inventory needs to be saved.
+     */
+    public void markDirty() {
+        this.isDirty = true;
+    }
+
     /* - - - - - - - - - - - - - - Getters / Setters - - - - - - - - - - - - - - - - - - -*/
 
     /** Get the body armor.
@@ -173,6 +202,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setBodyArmor(BodyArmor bodyArmor) {
         this.bodyArmor = bodyArmor;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -189,6 +219,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setHeadArmor(HeadArmor headArmor) {
         this.headArmor = headArmor;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -205,6 +236,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setHeavyWeapon(HeavyWeapon heavyWeapon) {
         this.heavyWeapon = heavyWeapon;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -221,6 +253,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setBow(Bow bow) {
         this.bow = bow;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -237,6 +270,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setBeltWeapon(LightWeapon beltWeapon) {
         this.beltWeapon = beltWeapon;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -253,6 +287,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setRightSleeveWeapon(LightWeapon rightSleeveWeapon) {
         this.rightSleeveWeapon = rightSleeveWeapon;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -269,6 +304,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setLeftSleeveWeapon(LightWeapon leftSleeveWeapon) {
         this.leftSleeveWeapon = leftSleeveWeapon;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -285,6 +321,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setRightBootWeapon(LightWeapon rightBootWeapon) {
         this.rightBootWeapon = rightBootWeapon;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -301,6 +338,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setLeftBootWeapon(LightWeapon leftBootWeapon) {
         this.leftBootWeapon = leftBootWeapon;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -317,6 +355,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setPurse(Purse purse) {
         this.purse = purse;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -333,6 +372,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setBag(Bag bag) {
         this.bag = bag;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -349,6 +389,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setBelt(Belt belt) {
         this.belt = belt;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -366,6 +407,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setRightObject(BaseObject rightObject) {
         this.rightObject = rightObject;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -383,6 +425,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setLeftObject(BaseObject leftObject) {
         this.leftObject = leftObject;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -399,6 +442,7 @@ public class Inventory implements InventoryInterface {
      */
     public void setBook(Book book) {
         this.book = book;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
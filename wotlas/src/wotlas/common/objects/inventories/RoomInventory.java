@@ -44,6 +44,10 @@ public class RoomInventory {
      */
     private WotlasLocation location;
 
+    /** Has the inventory changed since it was last saved ?
+     */
+    private transient volatile boolean isDirty;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Default constructor
@@ -65,6 +69,31 @@ public class RoomInventory {
      */
     public void setGround(Ground ground) {
         this.ground = ground;
+        this.isDirty = true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Has the inventory changed since it was last saved ?
+     * @return true if the inventory needs to be saved
+     */
+    public boolean isDirty() {
+        return this.isDirty;
+    }
+
+    /** To tell that the inventory has been saved (or that its changes don't need to be).
+     * @return true if the inventory was dirty
+     */
+    public boolean clearDirty() {
+        boolean wasDirty = this.isDirty;
+        this.isDirty = false;
+        return wasDirty;
+    }
+
+    /** To tell that the inventory needs to be saved.
+     */
+    public void markDirty() {
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -18,7 +18,9 @@
  */
 package wotlas.common.router;
 
-import java.util.Hashtable;
+import java.util.Collections;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
 import wotlas.common.Player;
 import wotlas.common.WorldManager;
 import wotlas.common.universe.WotlasLocation;
@@ -27,6 +29,11 @@ import wotlas.utils.Debug;
 
 /** A router of NetMessages. We manage messages that are shared between a group of
  *  players.
+ *<br>
+ *  Our players are kept in a ConcurrentHashMap and in a copy-on-write array (see
+ *  getPlayerList()) that is replaced each time a player is added or removed. Messages
+ *  are sent to the players of this array : sending messages to a group never locks it,
+ *  so groups don't wait for each other.
  *
  * @author Aldiss
  */
@@ -50,16 +57,43 @@ public abstract class MessageRouter {
      */
     public final static byte EXC_EXTENDED_GROUP = 2;
 
+    /** Available send options. Send message(s) only to the players of the local group
+     *  that are near the excepted player. The implementation of the MessageRouter is not
+     *  obliged to implement this option : the messages are then sent to the local group.
+     */
+    public final static byte NEAR_GROUP = 3;
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** An empty player list.
+     */
+    private final static Player EMPTY_LIST[] = new Player[0];
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
-    /** Our players.
+    /** Our players. Use registerPlayer() & unregisterPlayer() to modify it.
+     */
+    protected ConcurrentHashMap<String, Player> players;
+
+    /** Read-only view of our players.
+     */
+    private Map<String, Player> playersView;
+
+    /** Copy of our players, replaced when a player is added or removed.
+     */
+    private volatile Player playerList[];
+
+    /** Lock for the updates of our players. MessageRouters can use it to update their
+     *  own data with our players.
      */
-    protected Hashtable<String, Player> players;
+    protected final Object playersLock;
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
     /** Constructor. Just creates internals.
      */
     public MessageRouter() {
-        this.players = new Hashtable<String, Player>(5);
+        this.players = new ConcurrentHashMap<String, Player>(8, 0.75f, 4);
+        this.playersView = Collections.unmodifiableMap(this.players);
+        this.playerList = MessageRouter.EMPTY_LIST;
+        this.playersLock = new Object();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -83,7 +117,7 @@ public abstract class MessageRouter {
             return false;
         }
 
-        this.players.put(player.getPrimaryKey(), player);
+        registerPlayer(player);
         return true;
     }
 
@@ -95,12 +129,11 @@ public abstract class MessageRouter {
      * @return true if the player was removed successfully, false if an error occured.
      */
     public boolean removePlayer(Player player) {
-        if (!this.players.containsKey(player.getPrimaryKey())) {
+        if (!unregisterPlayer(player)) {
             Debug.signal(Debug.WARNING, this, "Remove failed : player not found.");
             return false;
         }
 
-        this.players.remove(player.getPrimaryKey());
         return true;
     }
 
@@ -109,7 +142,73 @@ public abstract class MessageRouter {
      *  just removes all the players WITHOUT sending any messages.
      */
     public void removeAllPlayers() {
-        this.players.clear();
+        synchronized (this.playersLock) {
+            this.players.clear();
+            this.playerList = MessageRouter.EMPTY_LIST;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To put a player in our list WITHOUT sending any messages. If a player with the
+     *  same primary key is already there it is replaced. This method is not overridden
+     *  by MessageRouters, use it to move players between groups.
+     *
+     * @param player player to add
+     * @return true if the player was not in our list, false if it was already there.
+     */
+    public boolean registerPlayer(Player player) {
+        synchronized (this.playersLock) {
+            Player previous = this.players.put(player.getPrimaryKey(), player);
+
+            if (previous != player)
+                updatePlayerList();
+
+            return previous == null;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To remove a player from our list WITHOUT sending any messages. This method is
+     *  not overridden by MessageRouters, use it to move players between groups.
+     *
+     * @param player player to remove
+     * @return true if the player was removed, false if it was not in our list.
+     */
+    public boolean unregisterPlayer(Player player) {
+        synchronized (this.playersLock) {
+            if (this.players.remove(player.getPrimaryKey()) == null)
+                return false;
+
+            updatePlayerList();
+            return true;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To replace a player of our list by another object with the same primary key,
+     *  WITHOUT sending any messages : for the other players nothing has changed. Used to
+     *  swap an offline player's stub and its loaded player.
+     *
+     * @param oldPlayer player in our list
+     * @param newPlayer player that takes its place
+     * @return true if the player was replaced, false if oldPlayer was not in our list.
+     */
+    public boolean replacePlayer(Player oldPlayer, Player newPlayer) {
+        synchronized (this.playersLock) {
+            if (this.players.get(oldPlayer.getPrimaryKey()) != oldPlayer)
+                return false;
+
+            registerPlayer(newPlayer);
+            return true;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Replaces our player list by a copy of our players. The caller must hold our
+     *  playersLock.
+     */
+    private void updatePlayerList() {
+        this.playerList = this.players.values().toArray(new Player[this.players.size()]);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -121,20 +220,24 @@ public abstract class MessageRouter {
     abstract public boolean movePlayer(Player player, WotlasLocation targetLocation);
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
-    /** To get the list of all the players managed by this router.
-     *  IMPORTANT: before ANY process on this list, synchronize your code on it :<br>
+    /** To get all the players managed by this router. The returned map can't be
+     *  modified. It can be read and iterated without any lock, the iterators reflect
+     *  the players at some point since their creation.
      *
-     *<pre>
-     *   Hashtable players = msgRouter.getPlayers();
-     *   
-     *   synchronized( players ) {
-     *       ... some SIMPLE and SHORT processes...
-     *   }
+     * @return our players, the player.getPrimaryKey() is the key.
+     */
+    public Map<String, Player> getPlayers() {
+        return this.playersView;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get a copy of the players managed by this router. The copy is not updated :
+     *  a new one is created when a player is added or removed. Don't modify it.
      *
-     * @return our players hashtable, the player.getPrimaryKey() is the key.
+     * @return our players
      */
-    public Hashtable<String, Player> getPlayers() {
-        return this.players;
+    public Player[] getPlayerList() {
+        return this.playerList;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -194,7 +297,7 @@ public abstract class MessageRouter {
      *         given player is null the message will be sent to everyone in the selected
      *         groups. 
      *  @param groupOption gives the groups to send the message to. See the constants
-     *         defined in this class : LOCAL_GROUP, EXTENDED_GROUP, EXC_EXTENDED_GROUP
+     *         defined in this class : LOCAL_GROUP, EXTENDED_GROUP, EXC_EXTENDED_GROUP, NEAR_GROUP
      */
     public void sendMessage(NetMessage msg, Player exceptThisPlayer, byte groupOption) {
         NetMessage list[] = {msg};
@@ -208,7 +311,7 @@ public abstract class MessageRouter {
      *         given player is null the message will be sent to everyone in the selected
      *         groups. 
      *  @param groupOption gives the groups to send the message to. See the constants
-     *         defined in this class : LOCAL_GROUP, EXTENDED_GROUP, EXC_EXTENDED_GROUP
+     *         defined in this class : LOCAL_GROUP, EXTENDED_GROUP, EXC_EXTENDED_GROUP, NEAR_GROUP
      */
     abstract public void sendMessages(NetMessage msg[], Player exceptThisPlayer, byte groupOption);
 
@@ -19,11 +19,11 @@
 
 package wotlas.common.router;
 
-import java.util.Iterator;
 import wotlas.common.Player;
 import wotlas.common.WorldManager;
 import wotlas.common.universe.WotlasLocation;
 import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.PreEncodedMessage;
 
 /** A message router that manages only a single group of players. Useful for WorldMaps
  *  TownMaps. We don't advertise people's presence...
@@ -62,7 +62,7 @@ public class SingleGroupMessageRouter extends MessageRouter {
      */
     @Override
     public boolean addPlayer(Player player) {
-        this.players.put(player.getPrimaryKey(), player);
+        registerPlayer(player);
         return true;
     }
 
@@ -98,18 +98,16 @@ public class SingleGroupMessageRouter extends MessageRouter {
         if (groupOption == MessageRouter.EXC_EXTENDED_GROUP)
             return;
 
-        // We send the messages to the local group.
-        synchronized (this.players) {
-            Iterator it = this.players.values().iterator();
+        // We send the messages to the local group. They are encoded only once.
+        Player list[] = getPlayerList();
 
-            while (it.hasNext()) {
-                Player p = (Player) it.next();
+        if (list.length > 1)
+            msg = PreEncodedMessage.preEncode(msg);
 
-                if (p != exceptThisPlayer)
-                    for (int i = 0; i < msg.length; i++)
-                        p.sendMessage(msg[i]);
-            }
-        }
+        for (int j = 0; j < list.length; j++)
+            if (list[j] != exceptThisPlayer)
+                for (int i = 0; i < msg.length; i++)
+                    list[j].sendMessage(msg[i]);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -25,7 +25,7 @@ import wotlas.common.ImageLibRef;
 import wotlas.libs.graphics2d.Drawable;
 import wotlas.libs.graphics2d.ImageIdentifier;
 import wotlas.libs.graphics2d.drawable.DoorDrawable;
-import wotlas.libs.pathfinding.AStarDouble;
+import wotlas.libs.pathfinding.PathfindingContext;
 
 /** A Door on an InteriorMap... Doors are possessed by RoomLinks.
  *
@@ -84,6 +84,10 @@ public class Door {
      */
     transient private int myRoomLinkID;
 
+    /** InteriorMap of the door, owner of the mask we change.
+     */
+    transient private InteriorMap myInteriorMap;
+
     /** Is the door displayed on screen ?
      */
     transient private boolean isDisplayed;
@@ -189,6 +193,18 @@ public class Door {
         this.myRoomLinkID = myRoomLinkID;
     }
 
+    /** To get my InteriorMap.
+     */
+    public InteriorMap getMyInteriorMap() {
+        return this.myInteriorMap;
+    }
+
+    /** To set my InteriorMap.
+     */
+    public void setMyInteriorMap(InteriorMap myInteriorMap) {
+        this.myInteriorMap = myInteriorMap;
+    }
+
     /*------------------------------------------------------------------------------------*/
 
     /** To clean this door : erases the associated DoorDrawable.
@@ -204,7 +220,7 @@ public class Door {
      * @return DoorDrawable corresponding to this room.
      */
     public Drawable getDoorDrawable() {
-        if (!AStarDouble.isInitialized())
+        if (getPathfindingContext() == null)
             return null;
 
         if (this.doorDrawable != null)
@@ -217,10 +233,10 @@ public class Door {
 
         if (this.isOpened) {
             this.doorDrawable.setOpened();
-            AStarDouble.cleanRectangle(this.doorDrawable.getRealDoorRectangle());
+            changeMask(true);
         } else {
             this.doorDrawable.setClosed();
-            AStarDouble.fillRectangle(this.doorDrawable.getRealDoorRectangle());
+            changeMask(false);
         }
 
         return this.doorDrawable;
@@ -228,6 +244,25 @@ public class Door {
 
     /*------------------------------------------------------------------------------------*/
 
+    /** To get the pathfinding context of our InteriorMap.
+     * @return context, null if the mask of our map is not loaded.
+     */
+    private PathfindingContext getPathfindingContext() {
+        if (this.myInteriorMap == null)
+            return null;
+        return this.myInteriorMap.getPathfindingContext();
+    }
+
+    /** To update the mask of our InteriorMap with the door rectangle.
+     * @param opened true if the door is opened, false if it blocks the way.
+     */
+    private void changeMask(boolean opened) {
+        if (this.myInteriorMap != null)
+            this.myInteriorMap.changePathfindingMask(this.doorDrawable.getRealDoorRectangle(), opened);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
     /** To open the door...
      */
     public synchronized void open() {
@@ -237,7 +272,7 @@ public class Door {
         }
 
         this.doorDrawable.open();
-        AStarDouble.cleanRectangle(this.doorDrawable.getRealDoorRectangle());
+        changeMask(true);
     }
 
     /*------------------------------------------------------------------------------------*/
@@ -251,7 +286,7 @@ public class Door {
         }
 
         this.doorDrawable.close();
-        AStarDouble.fillRectangle(this.doorDrawable.getRealDoorRectangle());
+        changeMask(false);
     }
 
     /*------------------------------------------------------------------------------------*/
@@ -265,7 +300,7 @@ public class Door {
         }
 
         this.doorDrawable.setOpened();
-        AStarDouble.cleanRectangle(this.doorDrawable.getRealDoorRectangle());
+        changeMask(true);
     }
 
     /*------------------------------------------------------------------------------------*/
@@ -279,7 +314,7 @@ public class Door {
         }
 
         this.doorDrawable.setClosed();
-        AStarDouble.fillRectangle(this.doorDrawable.getRealDoorRectangle());
+        changeMask(false);
     }
 
     /*------------------------------------------------------------------------------------*/
@@ -338,9 +373,14 @@ public class Door {
      * @return a point near the door.
      */
     public Point getPointNearDoor(Rectangle playerRectangle) {
-        if (this.doorDrawable == null)
+        PathfindingContext context = getPathfindingContext();
+
+        if (this.doorDrawable == null || context == null)
             return null;
 
+        int tileSize = context.getTileSize();
+        int spriteSize = context.getSpriteSize();
+
         Point resultPoint = new Point();
         Rectangle doorR = this.doorDrawable.getRealDoorRectangle();
 
@@ -354,16 +394,16 @@ public class Door {
             resultPoint.y = ydc;
 
             if (xpc < xdc)
-                resultPoint.x = ((xdc / AStarDouble.getTileSize()) - AStarDouble.getSpriteSize()) * AStarDouble.getTileSize();
+                resultPoint.x = ((xdc / tileSize) - spriteSize) * tileSize;
             else
-                resultPoint.x = ((xdc / AStarDouble.getTileSize()) + AStarDouble.getSpriteSize()) * AStarDouble.getTileSize();
+                resultPoint.x = ((xdc / tileSize) + spriteSize) * tileSize;
         } else {
             resultPoint.x = xdc;
 
             if (ypc < ydc)
-                resultPoint.y = ((ydc / AStarDouble.getTileSize()) - AStarDouble.getSpriteSize()) * AStarDouble.getTileSize();
+                resultPoint.y = ((ydc / tileSize) - spriteSize) * tileSize;
             else
-                resultPoint.y = ((ydc / AStarDouble.getTileSize()) + AStarDouble.getSpriteSize()) * AStarDouble.getTileSize();
+                resultPoint.y = ((ydc / tileSize) + spriteSize) * tileSize;
         }
 
         return resultPoint;
@@ -19,7 +19,9 @@
 
 package wotlas.common.universe;
 
+import java.awt.Rectangle;
 import wotlas.libs.graphics2d.ImageIdentifier;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.utils.Debug;
 
 /** An InteriorMap represents any maps where players can walk. It usually belongs
@@ -80,6 +82,10 @@ public class InteriorMap {
      */
     private transient Building myBuilding;
 
+    /** Pathfinding context of our mask (null if the mask is not loaded).
+     */
+    private transient volatile PathfindingContext pathfindingContext;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Constructor
@@ -181,6 +187,27 @@ public class InteriorMap {
         return this.myBuilding;
     }
 
+    public PathfindingContext getPathfindingContext() {
+        return this.pathfindingContext;
+    }
+
+    public synchronized void setPathfindingContext(PathfindingContext pathfindingContext) {
+        this.pathfindingContext = pathfindingContext;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To change a part of our mask (doors). Our pathfinding context is replaced by a
+     *  modified copy, so that the searches in progress are not disturbed.
+     *
+     * @param r the rectangle to change (in screen pixels coordinate)
+     * @param walkable new value of the mask's cells
+     */
+    public synchronized void changePathfindingMask(Rectangle r, boolean walkable) {
+        if (this.pathfindingContext != null)
+            this.pathfindingContext = this.pathfindingContext.getChangedContext(r, walkable);
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** To Get a room by its ID.
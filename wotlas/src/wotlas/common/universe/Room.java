@@ -24,6 +24,7 @@ import wotlas.common.WorldManager;
 import wotlas.common.objects.inventories.RoomInventory;
 import wotlas.common.router.MessageRouter;
 import wotlas.common.router.MessageRouterFactory;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.utils.Debug;
 import wotlas.utils.ScreenPoint;
 import wotlas.utils.ScreenRectangle;
@@ -166,6 +167,12 @@ public class Room implements WotlasMap {
         return this.messageRouter;
     }
 
+    public PathfindingContext getPathfindingContext() {
+        if (this.myInteriorMap == null)
+            return null;
+        return this.myInteriorMap.getPathfindingContext();
+    }
+
     public RoomInventory getInventory() {
         return this.inventory;
     }
@@ -338,6 +345,7 @@ public class Room implements WotlasMap {
             if (this.roomLinks[i].getDoor() != null) {
                 this.roomLinks[i].getDoor().setMyRoomLinkID(this.roomLinks[i].getRoomLinkID());
                 this.roomLinks[i].getDoor().setMyRoomID(this.roomID);
+                this.roomLinks[i].getDoor().setMyInteriorMap(myInteriorMap);
             }
 
             Room other = null;
@@ -24,6 +24,7 @@ import wotlas.common.WorldManager;
 import wotlas.common.router.MessageRouter;
 import wotlas.common.router.MessageRouterFactory;
 import wotlas.libs.graphics2d.ImageIdentifier;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.utils.Debug;
 import wotlas.utils.ScreenPoint;
 import wotlas.utils.ScreenRectangle;
@@ -85,6 +86,10 @@ public class TownMap extends ScreenRectangle implements WotlasMap {
      */
     private transient MessageRouter messageRouter;
 
+    /** Pathfinding context of our mask (null if the mask is not loaded).
+     */
+    private transient volatile PathfindingContext pathfindingContext;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Constructor for persistence.
@@ -194,6 +199,14 @@ public class TownMap extends ScreenRectangle implements WotlasMap {
         return this.messageRouter;
     }
 
+    public PathfindingContext getPathfindingContext() {
+        return this.pathfindingContext;
+    }
+
+    public void setPathfindingContext(PathfindingContext pathfindingContext) {
+        this.pathfindingContext = pathfindingContext;
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** To Get a building by its ID.
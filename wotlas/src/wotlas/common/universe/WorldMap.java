@@ -24,6 +24,7 @@ import wotlas.common.WorldManager;
 import wotlas.common.router.MessageRouter;
 import wotlas.common.router.MessageRouterFactory;
 import wotlas.libs.graphics2d.ImageIdentifier;
+import wotlas.libs.pathfinding.PathfindingContext;
 import wotlas.utils.Debug;
 import wotlas.utils.ScreenPoint;
 
@@ -71,6 +72,10 @@ public class WorldMap implements WotlasMap {
      */
     private transient MessageRouter messageRouter;
 
+    /** Pathfinding context of our mask (null if the mask is not loaded).
+     */
+    private transient volatile PathfindingContext pathfindingContext;
+
     /*------------------------------------------------------------------------------------*/
 
     /**
@@ -149,6 +154,14 @@ public class WorldMap implements WotlasMap {
         return this.messageRouter;
     }
 
+    public PathfindingContext getPathfindingContext() {
+        return this.pathfindingContext;
+    }
+
+    public void setPathfindingContext(PathfindingContext pathfindingContext) {
+        this.pathfindingContext = pathfindingContext;
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** To Get a Town by its ID.
@@ -19,6 +19,8 @@
 
 package wotlas.common.universe;
 
+import java.nio.ByteBuffer;
+
 /** Location class. Identifies a precise location in the universe. Normally,
  *  it points out a room of an InteriorMap, building, town, world.<br>
  *  But it can points out :<p><br>
@@ -270,6 +272,35 @@ public class WotlasLocation {
 
     /*------------------------------------------------------------------------------------*/
 
+    /** To put this location in a buffer (five ints), for the NetBufferCodec messages.
+     *  It's the same format as the one the messages use on their DataOutputStream.
+     *
+     * @param buffer buffer where to put the location
+     */
+    public void writeTo(ByteBuffer buffer) {
+        buffer.putInt(this.worldMapID);
+        buffer.putInt(this.townMapID);
+        buffer.putInt(this.buildingID);
+        buffer.putInt(this.interiorMapID);
+        buffer.putInt(this.roomID);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To set this location with the data of a buffer written by writeTo().
+     *
+     * @param buffer buffer where to get the location
+     */
+    public void readFrom(ByteBuffer buffer) {
+        this.worldMapID = buffer.getInt();
+        this.townMapID = buffer.getInt();
+        this.buildingID = buffer.getInt();
+        this.interiorMapID = buffer.getInt();
+        this.roomID = buffer.getInt();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
     /** String Info.
      */
     @Override
@@ -20,6 +20,7 @@
 package wotlas.common.universe;
 
 import wotlas.common.router.MessageRouter;
+import wotlas.libs.pathfinding.PathfindingContext;
 
 /** Represents a Map of the game.
  *
@@ -39,6 +40,13 @@ public interface WotlasMap extends LocationOwner {
 
     /*------------------------------------------------------------------------------------*/
 
+    /** To get the pathfinding context of our mask.
+     * @return pathfinding context, null if the mask is not loaded (server side)
+     */
+    public PathfindingContext getPathfindingContext();
+
+    /*------------------------------------------------------------------------------------*/
+
     /** To get the full name of the map.
      * @return fullName
      */
@@ -0,0 +1,47 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+/** 
+ * A NetMessage that just updates a state on the remote side (a player's position for
+ * example). When such a message is still waiting in a NetSender queue, a newer message
+ * with the same coalescing key makes it useless : the NetSender can then drop the older
+ * one.
+ *<br>
+ * Two queued messages are considered as updates of the same state if they have the same
+ * message class name and the same coalescing key.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetSender
+ */
+
+public interface CoalescableMessage {
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the key of the state this message updates (a player primary key for
+     *  example).
+     *
+     * @return the coalescing key, null if this message must never be dropped.
+     */
+    public String getCoalescingKey();
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+}
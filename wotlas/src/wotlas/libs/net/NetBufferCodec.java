@@ -0,0 +1,78 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+
+/** 
+ * An optional second codec for a NetMessage, working directly on a ByteBuffer instead
+ * of a DataOutputStream/DataInputStream. The network layer uses it when it can encode
+ * or decode the message in place (frames, selector-based connections) : it avoids the
+ * stream layers and the allocations of writeUTF()/readUTF().
+ *<br>
+ * Both codecs must produce exactly the same bytes (big-endian values, strings in the
+ * writeUTF() format, see NetBuffers), so that each peer can use either of them. The
+ * stream codec remains the reference : the buffer codec is just a faster path.
+ *<br>
+ * Example: <pre>
+ *
+ *    class PasswordMsg extends NetMessage implements NetBufferCodec {
+ *         ...
+ *         public void encode( ByteBuffer buffer ) {
+ *              buffer.putInt( mySecretID );
+ *         }
+ *
+ *         public void decode( ByteBuffer buffer ) {
+ *              mySecretID = buffer.getInt();
+ *         }
+ *    }
+ * </pre>
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetMessage
+ * @see wotlas.libs.net.NetBuffers
+ */
+
+public interface NetBufferCodec {
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Puts the message data in the buffer, from its current position. If the buffer is
+     *  too small a java.nio.BufferOverflowException is thrown : the caller then retries
+     *  with a larger buffer.
+     *
+     * @param buffer buffer where to put the data
+     * @exception IOException if the message data can't be encoded.
+     */
+    public void encode(ByteBuffer buffer) throws IOException;
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Retrieves the message data from the buffer, from its current position. If the
+     *  buffer doesn't contain all the data a java.nio.BufferUnderflowException is thrown.
+     *
+     * @param buffer buffer where to get the data
+     * @exception IOException if the data is corrupted.
+     */
+    public void decode(ByteBuffer buffer) throws IOException;
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+}
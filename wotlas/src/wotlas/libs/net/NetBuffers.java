@@ -0,0 +1,224 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.io.IOException;
+import java.io.UTFDataFormatException;
+import java.nio.BufferOverflowException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+
+/** Helpers for the NetBufferCodec messages. Strings and booleans are written in the
+ *  same format as the DataOutputStream writeUTF() and writeBoolean() methods, so
+ *  the data can be read by a stream codec on the other side.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetBufferCodec
+ */
+
+public class NetBuffers {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Chars used to decode strings, one array per thread.
+     */
+    private static final ThreadLocal charBuffers = new ThreadLocal() {
+        @Override
+        protected Object initialValue() {
+            return new char[256];
+        }
+    };
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Puts a string in the writeUTF() format : the length in bytes (unsigned short)
+     *  followed by the modified UTF-8 encoding of the string.
+     *
+     * @param buffer buffer where to put the string
+     * @param str string to put (not null)
+     * @exception UTFDataFormatException if the encoded string is longer than 65535 bytes.
+     * @exception java.nio.BufferOverflowException if the buffer is too small.
+     */
+    public static void putUTF(ByteBuffer buffer, String str) throws UTFDataFormatException {
+        int strlen = str.length();
+        int utflen = 0;
+
+        for (int i = 0; i < strlen; i++) {
+            char c = str.charAt(i);
+
+            if (c >= 0x0001 && c <= 0x007F)
+                utflen++;
+            else if (c > 0x07FF)
+                utflen += 3;
+            else
+                utflen += 2;
+        }
+
+        if (utflen > 65535)
+            throw new UTFDataFormatException("encoded string too long: " + utflen + " bytes");
+
+        if (buffer.remaining() < utflen + 2)
+            throw new BufferOverflowException();
+
+        buffer.putShort((short) utflen);
+
+        for (int i = 0; i < strlen; i++) {
+            char c = str.charAt(i);
+
+            if (c >= 0x0001 && c <= 0x007F) {
+                buffer.put((byte) c);
+            } else if (c > 0x07FF) {
+                buffer.put((byte) (0xE0 | ((c >> 12) & 0x0F)));
+                buffer.put((byte) (0x80 | ((c >> 6) & 0x3F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            } else {
+                buffer.put((byte) (0xC0 | ((c >> 6) & 0x1F)));
+                buffer.put((byte) (0x80 | (c & 0x3F)));
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Gets a string written in the writeUTF() format.
+     *
+     * @param buffer buffer where to get the string
+     * @return the decoded string
+     * @exception UTFDataFormatException if the bytes are not a valid modified UTF-8.
+     * @exception java.nio.BufferUnderflowException if the buffer doesn't contain the
+     *            whole string.
+     */
+    public static String getUTF(ByteBuffer buffer) throws UTFDataFormatException {
+        int utflen = buffer.getShort() & 0xffff;
+
+        if (buffer.remaining() < utflen)
+            throw new BufferUnderflowException();
+
+        char chars[] = (char[]) NetBuffers.charBuffers.get();
+
+        if (chars.length < utflen) {
+            chars = new char[utflen];
+            NetBuffers.charBuffers.set(chars);
+        }
+
+        int end = buffer.position() + utflen;
+        int nb = 0;
+
+        while (buffer.position() < end) {
+            int c = buffer.get() & 0xff;
+
+            switch (c >> 4) {
+                case 0: case 1: case 2: case 3: case 4: case 5: case 6: case 7:
+                    chars[nb++] = (char) c; // 0xxxxxxx
+                    break;
+
+                case 12: case 13:
+                    { // 110x xxxx 10xx xxxx
+                        if (buffer.position() + 1 > end)
+                            throw new UTFDataFormatException("malformed input: partial character at end");
+
+                        int c2 = buffer.get();
+
+                        if ((c2 & 0xC0) != 0x80)
+                            throw new UTFDataFormatException("malformed input around byte " + buffer.position());
+
+                        chars[nb++] = (char) (((c & 0x1F) << 6) | (c2 & 0x3F));
+                    }
+                    break;
+
+                case 14:
+                    { // 1110 xxxx 10xx xxxx 10xx xxxx
+                        if (buffer.position() + 2 > end)
+                            throw new UTFDataFormatException("malformed input: partial character at end");
+
+                        int c2 = buffer.get();
+                        int c3 = buffer.get();
+
+                        if ((c2 & 0xC0) != 0x80 || (c3 & 0xC0) != 0x80)
+                            throw new UTFDataFormatException("malformed input around byte " + buffer.position());
+
+                        chars[nb++] = (char) (((c & 0x0F) << 12) | ((c2 & 0x3F) << 6) | (c3 & 0x3F));
+                    }
+                    break;
+
+                default:
+                    // 10xx xxxx, 1111 xxxx
+                    throw new UTFDataFormatException("malformed input around byte " + buffer.position());
+            }
+        }
+
+        return new String(chars, 0, nb);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Puts a boolean in the writeBoolean() format.
+     *
+     * @param buffer buffer where to put the boolean
+     * @param b boolean to put
+     */
+    public static void putBoolean(ByteBuffer buffer, boolean b) {
+        buffer.put(b ? (byte) 1 : (byte) 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Gets a boolean written in the writeBoolean() format.
+     *
+     * @param buffer buffer where to get the boolean
+     * @return the boolean
+     */
+    public static boolean getBoolean(ByteBuffer buffer) {
+        return buffer.get() != 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Encodes a message in a buffer, growing it if it's too small. The message data is
+     *  put from the buffer's current position, up to its capacity.
+     *
+     * @param codec message to encode
+     * @param buffer buffer where to put the data
+     * @return the given buffer, or a larger copy of it if it was too small
+     * @exception IOException if the message data can't be encoded.
+     */
+    public static ByteBuffer encode(NetBufferCodec codec, ByteBuffer buffer) throws IOException {
+        int start = buffer.position();
+
+        while (true) {
+            try {
+                codec.encode(buffer);
+                return buffer;
+            } catch (BufferOverflowException e) {
+                if (buffer.capacity() >= NetFrameWriter.MAX_FRAME_SIZE)
+                    throw new IOException("Message too large : " + codec.getClass().getName());
+
+                int size = Math.max(buffer.capacity() * 2, 256);
+                ByteBuffer larger = buffer.isDirect() ? ByteBuffer.allocateDirect(size) : ByteBuffer.allocate(size);
+                buffer.limit(start).position(0);
+                larger.put(buffer);
+                buffer = larger;
+            }
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
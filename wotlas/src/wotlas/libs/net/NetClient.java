@@ -44,6 +44,10 @@ public class NetClient implements NetErrorCodeList {
      */
     private static final int CONNECTION_TIMEOUT = 10000;
 
+    /** Frame options we ask for : frames & compression (see NetFrameWriter).
+     */
+    private static final byte FRAME_OPTIONS = NetFrameWriter.OPTION_FRAMES | NetFrameWriter.OPTION_COMPRESSION;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Latest error message generated during the NetConnection creation.
@@ -142,7 +146,7 @@ public class NetClient implements NetErrorCodeList {
             this.connection = getNewConnection(socket);
             this.connection.setContext(this);
 
-            this.connection.queueMessage(new ClientRegisterMessage(key));
+            this.connection.queueMessage(new ClientRegisterMessage(key, NetMessageFactory.getMessageFactory().getMessageTypes(), NetClient.FRAME_OPTIONS));
             this.connection.sendAllMessages();
 
             if (stop()) {
@@ -270,6 +274,25 @@ public class NetClient implements NetErrorCodeList {
      *  connection with the server and sets the NetMessage Context.
      */
     public synchronized void validateConnection() {
+        validateConnection(null, (byte) 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** This method is for the ServerWelcomeMsgBehaviour only: it validates the
+     *  connection with the server, switches it to compact message headers (and to
+     *  the framed format if the server chose it) and sets the NetMessage Context.
+     *
+     * @param serverMessageTypes message types the server can receive, null if unknown.
+     * @param frameOptions frame options chosen by the server (see NetFrameWriter).
+     */
+    public synchronized void validateConnection(String serverMessageTypes[], byte frameOptions) {
+        if (serverMessageTypes != null) {
+            this.connection.setPeerMessageTypes(serverMessageTypes);
+            this.connection.setFrameOptions(frameOptions);
+            this.connection.useCompactHeaders();
+        }
+
         this.validConnection = true;
         this.connection.setContext(this.sessionContext);
 
@@ -75,13 +75,47 @@ public abstract class NetConnection {
      */
     private NetConnectionListener listeners[];
 
-    /** An eventual PingThread ( internal class )
+    /** Period of our ping messages (ms).
      */
-    private PingThread pingThread;
+    public static final long PING_PERIOD = 2000;
 
-    /** A lock for the pingThread
+    /** Delay after which a ping message that was not received back is declared lost (ms).
      */
-    private Object pingLock;
+    public static final long PING_TIMEOUT = 4000;
+
+    /** Our eventual PingTask ( internal class ), executed by the NetTimerWheel.
+     */
+    private PingTask pingTask;
+
+    /** A lock for the pingTask
+     */
+    private Object pingLock = new Object();
+
+    /** Round trip times measured by our PingTask.
+     */
+    private NetPingHistogram pingHistogram = new NetPingHistogram();
+
+    /** Last time a message was received on this connection.
+     */
+    private volatile long lastReceivedTime = System.currentTimeMillis();
+
+    /** Time without received message after which this connection is closed (ms, 0 if
+     *  there is no idle timeout).
+     */
+    private long idleTimeout;
+
+    /** Idle check scheduled on the NetTimerWheel (null if there is no idle timeout).
+     */
+    private IdleCheck idleCheck;
+
+    /** Message types the remote peer can receive, as sent during the handshake
+     *  (null if the peer uses the legacy message headers).
+     */
+    private String peerMessageTypes[];
+
+    /** Frame options of this connection (see NetFrameWriter).
+     */
+    private byte frameOptions;
 
     /*------------------------------------------------------------------------------------*/
 
@@ -276,6 +310,71 @@ public abstract class NetConnection {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To set the message types the remote peer can receive. Called during the
+     *  connection handshake. See useCompactHeaders().
+     *
+     * @param peerMessageTypes message class names indexed by their ID on the peer side,
+     *        null if the peer uses the legacy message headers.
+     */
+    public void setPeerMessageTypes(String peerMessageTypes[]) {
+        this.peerMessageTypes = peerMessageTypes;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the message types the remote peer can receive.
+     *
+     * @return message class names indexed by their ID on the peer side, null if the peer
+     *         uses the legacy message headers.
+     */
+    public String[] getPeerMessageTypes() {
+        return this.peerMessageTypes;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the frame options of this connection. Called during the connection
+     *  handshake. See useCompactHeaders().
+     *
+     * @param frameOptions frame options accepted by the peer (see NetFrameWriter).
+     */
+    public void setFrameOptions(byte frameOptions) {
+        this.frameOptions = frameOptions;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the frame options of this connection.
+     *
+     * @return frame options (see NetFrameWriter).
+     */
+    public byte getFrameOptions() {
+        return this.frameOptions;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Switches this connection to compact message headers (a message type ID instead of
+     *  the message class name), and to the framed wire format if the frame options
+     *  contain OPTION_FRAMES. Messages queued after this call are sent in the new format,
+     *  and messages received after this call are expected to be in this format.
+     *
+     *  Both peers must switch at the same point of the handshake : the NetServer does it
+     *  in acceptClient(), just after queuing the ServerWelcomeMessage, and the NetClient
+     *  when it processes this ServerWelcomeMessage. This method does nothing if the peer
+     *  message types are not known.
+     */
+    public void useCompactHeaders() {
+        if (this.peerMessageTypes == null || this.myNetsender == null || this.myNetreceiver == null)
+            return;
+
+        this.myNetsender.setWireFormat(new NetMessageTypeTable(this.peerMessageTypes), this.frameOptions);
+        this.myNetreceiver.setCompactHeaders(true);
+        this.myNetreceiver.setFramed((this.frameOptions & NetFrameWriter.OPTION_FRAMES) != 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** Waits for a message to arrive. Useful in some cases when the NetReceiver
      *  is synchronous. This method does nothing if the NetReceiver is asynchronous.
      *
@@ -315,10 +414,15 @@ public abstract class NetConnection {
             this.myNetsender.notify(); // we don't forget to wake up the thread !
         } // (the NetSender is locked when there are no msgs )
 
-        if (this.pingLock != null)
-            synchronized (this.pingLock) {
-                this.pingThread.stopThread();
+        synchronized (this.pingLock) {
+            if (this.pingTask != null)
+                this.pingTask.stop();
+
+            if (this.idleCheck != null) {
+                this.idleCheck.timeout.cancel();
+                this.idleCheck = null;
             }
+        }
 
         for (int i = 0; i < this.listeners.length; i++)
             this.listeners[i].connectionClosed(this);
@@ -332,7 +436,8 @@ public abstract class NetConnection {
 
     /** To set a ping listener for this network connection. Ping messages will be added to
      *  this network connection and if the remote peer supports it, Ping info will be sent
-     *  regularly to this listener.
+     *  regularly to this listener. Pings are sent every PING_PERIOD by the shared
+     *  NetTimerWheel : no thread is created.
      * @param pListener the object that will receive ping information.
      */
     public void setPingListener(NetPingListener pListener) {
@@ -340,34 +445,35 @@ public abstract class NetConnection {
         if (pListener == null)
             return;
 
-        if (this.pingLock != null)
-            synchronized (this.pingLock) {
-                if (this.pingThread == null)
+        synchronized (this.pingLock) {
+            if (this.pingTask != null) {
+                if (this.pingTask.stopped)
                     return; // No longer living net connnection
 
                 // just swap the listener
-                this.pingThread.pListener = pListener;
+                this.pingTask.pListener = pListener;
                 return;
             }
 
-        // Ping Thread Creation
-        this.pingLock = new Object();
-        this.pingThread = new PingThread(pListener);
-        this.pingThread.start();
+            if (!isConnected())
+                return;
+
+            // Ping Task Creation
+            this.pingTask = new PingTask(pListener);
+            this.pingTask.timeout = NetTimerWheel.getDefaultWheel().schedule(this.pingTask, 0);
+        }
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** To remove the current ping listener (if any) for this network connection.
+     *  Pings are still sent and measured.
      */
     public void removePingListener() {
-        if (this.pingLock != null)
-            synchronized (this.pingLock) {
-                if (this.pingThread == null)
-                    return; // No longer living net connnection
-
-                this.pingThread.pListener = null;
-            }
+        synchronized (this.pingLock) {
+            if (this.pingTask != null)
+                this.pingTask.pListener = null;
+        }
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -377,18 +483,65 @@ public abstract class NetConnection {
      */
     protected void receivedPingMessage(int sequenceID) {
 
-        if (this.pingLock == null)
-            return;
-
         synchronized (this.pingLock) {
-            if (this.pingThread == null || this.pingThread.sequenceID != sequenceID)
+            if (this.pingTask == null || this.pingTask.stopped || this.pingTask.pingReceivedBack || this.pingTask.sequenceID != sequenceID)
                 return;
 
-            this.pingThread.lastPingValue = (int) (System.currentTimeMillis() - this.pingThread.lastPingT0);
-            this.pingThread.pingReceivedBack = true;
+            this.pingTask.lastPingValue = (int) (System.currentTimeMillis() - this.pingTask.lastPingT0);
+            this.pingTask.pingReceivedBack = true;
+            this.pingHistogram.addPing(this.pingTask.lastPingValue);
 
-            if (this.pingThread.pListener != null)
-                this.pingThread.pListener.pingComputed(this.pingThread.lastPingValue);
+            if (this.pingTask.pListener != null)
+                this.pingTask.pListener.pingComputed(this.pingTask.lastPingValue);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the histogram of the round trip times measured on this connection. It is
+     *  filled only if a ping listener has been set.
+     * @return our ping histogram
+     */
+    public NetPingHistogram getPingHistogram() {
+        return this.pingHistogram;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Called by the NetReceiver each time a message is received.
+     */
+    protected void messageReceived() {
+        this.lastReceivedTime = System.currentTimeMillis();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the last time a message was received on this connection.
+     * @return time in ms
+     */
+    public long getLastReceivedTime() {
+        return this.lastReceivedTime;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To close this connection if no message is received during the given time. Note
+     *  that a peer with a ping listener sends a PingMessage every PING_PERIOD, so an
+     *  idle timeout well above this period only closes dead or frozen connections.
+     * @param idleTimeout max time without received message (ms), 0 to disable it.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        synchronized (this.pingLock) {
+            if (this.idleCheck != null)
+                this.idleCheck.timeout.cancel();
+
+            this.idleTimeout = idleTimeout;
+            this.idleCheck = null;
+
+            if (idleTimeout > 0 && isConnected()) {
+                this.idleCheck = new IdleCheck();
+                this.idleCheck.timeout = NetTimerWheel.getDefaultWheel().schedule(this.idleCheck, idleTimeout);
+            }
         }
     }
 
@@ -401,8 +554,8 @@ public abstract class NetConnection {
      */
     public synchronized void sendBackPingMessages(boolean sendBack) {
 
-        if (this.pingLock != null && sendBack) {
-            Debug.signal(Debug.ERROR, this, "Conflict detected: ping thread exists ! Can't send back ping messages");
+        if (this.pingTask != null && sendBack) {
+            Debug.signal(Debug.ERROR, this, "Conflict detected: ping task exists ! Can't send back ping messages");
         }
 
         if (this.myNetreceiver != null)
@@ -411,16 +564,19 @@ public abstract class NetConnection {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** A Thread that send PingMessages and manages the ping info.
-     *  It is created when a NetPingListener is first set and lives as long as the network
-     *  connection does.
+    /** A task that sends PingMessages and manages the ping info. It is created when a
+     *  NetPingListener is first set and lives as long as the network connection does.
+     *  It is executed by the NetTimerWheel : each run either sends a new PingMessage or
+     *  checks if the last one has been received back.
      */
-    private class PingThread extends Thread {
+    private class PingTask implements Runnable {
 
         /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
         protected byte sequenceID; // current ping sequence ID
 
+        protected boolean pingSent; // has a ping been sent for this sequence ID ?
+
         protected boolean pingReceivedBack; // has the last ping been received ?
 
         protected int lastPingValue; // last ping value
@@ -429,87 +585,129 @@ public abstract class NetConnection {
 
         protected NetPingListener pListener; // our ping listener
 
-        protected boolean shouldStopPingThread;
+        protected NetTimerWheel.Timeout timeout; // our next execution
+
+        protected boolean stopped;
 
         /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
         /** Constructor with ping listener.
          */
-        public PingThread(NetPingListener pListener) {
+        public PingTask(NetPingListener pListener) {
             this.sequenceID = 0;
+            this.pingSent = false;
             this.pingReceivedBack = false;
-            this.shouldStopPingThread = false;
+            this.stopped = false;
             this.pListener = pListener;
         }
 
         /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-        /** Our Ping Loop
+        /** One step of our ping loop. Called by the NetTimerWheel.
          */
-        @Override
         public void run() {
+            PingMessage ping = null;
 
-            while (!this.shouldStopPingThread) {
-
-                // 1 - We send a PingMessage to the other side
-                queueMessage(new PingMessage(this.sequenceID));
-                this.lastPingT0 = System.currentTimeMillis();
-
-                // 2 - We wait 2 seconds between two Ping.
-                synchronized (this) {
-                    try {
-                        this.wait(2000);
-                    } catch (Exception e) {
-                    }
+            synchronized (NetConnection.this.pingLock) {
+                if (this.stopped)
+                    return;
 
-                    if (this.shouldStopPingThread)
-                        break;
-                }
+                long now = System.currentTimeMillis();
 
-                // 3 - Have we received the answer ?
-                synchronized (NetConnection.this.pingLock) {
+                // 1 - Have we received the answer of the last ping ?
+                if (this.pingSent) {
                     if (!this.pingReceivedBack) {
-                        // we wait two more seconds
-                        try {
-                            this.wait(2000);
-                        } catch (Exception e) {
+                        if (now - this.lastPingT0 < NetConnection.PING_TIMEOUT) {
+                            // we wait a little more
+                            this.timeout = NetTimerWheel.getDefaultWheel().schedule(this, this.lastPingT0 + NetConnection.PING_TIMEOUT - now);
+                            return;
                         }
 
-                        // if there is still no answer we declare the message lost
-                        if (!this.pingReceivedBack) {
-                            this.lastPingValue = NetPingListener.PING_FAILED;
-                            if (this.pListener != null)
-                                this.pListener.pingComputed(this.lastPingValue);
-                        }
+                        // no answer : we declare the message lost
+                        this.lastPingValue = NetPingListener.PING_FAILED;
+                        NetConnection.this.pingHistogram.addPing(this.lastPingValue);
+
+                        if (this.pListener != null)
+                            this.pListener.pingComputed(this.lastPingValue);
                     }
 
                     this.sequenceID = (byte) ((this.sequenceID + 1) % 120);
-                    this.pingReceivedBack = false;
-                }
-            }
-
-            // Advertise the end of this connection
-            synchronized (NetConnection.this.pingLock) {
-                if (this.pListener != null) {
-                    this.pListener.pingComputed(NetPingListener.PING_CONNECTION_CLOSED);
-                    this.pListener = null;
                 }
 
-                NetConnection.this.pingThread = null;
+                // 2 - We send a new PingMessage to the other side
+                ping = new PingMessage(this.sequenceID);
+                this.pingSent = true;
+                this.pingReceivedBack = false;
+                this.lastPingT0 = now;
+                this.timeout = NetTimerWheel.getDefaultWheel().schedule(this, NetConnection.PING_PERIOD);
             }
+
+            queueMessage(ping);
         }
 
         /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-        public synchronized void stopThread() {
-            this.shouldStopPingThread = true;
-            this.notify();
+        /** To stop the pings and advertise the end of this connection. Called with the
+         *  ping lock.
+         */
+        protected void stop() {
+            if (this.stopped)
+                return;
+
+            this.stopped = true;
+
+            if (this.timeout != null)
+                this.timeout.cancel();
+
+            if (this.pListener != null) {
+                this.pListener.pingComputed(NetPingListener.PING_CONNECTION_CLOSED);
+                this.pListener = null;
+            }
         }
 
         /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     };
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A task that closes the connection when no message has been received for idleTimeout
+     *  ms. Executed by the NetTimerWheel.
+     */
+    private class IdleCheck implements Runnable {
+
+        protected NetTimerWheel.Timeout timeout; // our next execution
+
+        /** Checks the last received time. Called by the NetTimerWheel.
+         */
+        public void run() {
+            synchronized (NetConnection.this.pingLock) {
+                if (NetConnection.this.idleCheck != this || !isConnected())
+                    return; // replaced or connection closed
+
+                long idleTime = System.currentTimeMillis() - NetConnection.this.lastReceivedTime;
+
+                if (idleTime < NetConnection.this.idleTimeout) {
+                    this.timeout = NetTimerWheel.getDefaultWheel().schedule(this, NetConnection.this.idleTimeout - idleTime);
+                    return;
+                }
+
+                NetConnection.this.idleCheck = null;
+            }
+
+            Debug.signal(Debug.NOTICE, NetConnection.this, "No message received for " + NetConnection.this.idleTimeout + "ms, closing connection...");
+
+            // close() can wait for the last messages to be sent : we don't block the wheel
+            new Thread("IdleConnectionClose") {
+                @Override
+                public void run() {
+                    close();
+                }
+            }.start();
+        }
+    };
+
+
     /*------------------------------------------------------------------------------------*/
 
 }
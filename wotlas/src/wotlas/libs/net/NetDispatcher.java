@@ -0,0 +1,299 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import wotlas.utils.Debug;
+
+/** A NetDispatcher executes the behaviours of received messages on a small set of worker
+ *  threads, so that the threads reading the sockets are not stalled by slow behaviours.
+ *<br>
+ *  The executor is striped : each connection is given to one worker (by the hash of its
+ *  key), so the messages of a connection are still executed one after the other, in the
+ *  order they were received. Each worker has a bounded queue : when it is full a
+ *  reading thread waits (see dispatch()), which slows down the clients that send too
+ *  many messages. A thread that reads many connections must not wait : it uses offer()
+ *  and stops reading the connection until the worker has caught up (see
+ *  notifyWhenReady()).
+ *<br>
+ *  A behaviour that blocks (a network connection to another server for example) delays
+ *  the other connections of its worker.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetReceiver#setDispatcher(NetDispatcher)
+ */
+
+public class NetDispatcher {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default size of a worker's queue.
+     */
+    public static final int DEFAULT_QUEUE_SIZE = 1000;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our default dispatcher.
+     */
+    private static NetDispatcher defaultDispatcher;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our workers.
+     */
+    private Worker workers[];
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the default dispatcher. It's created on the first call, with one thread
+     *  per available processor. It's used by the receivers that must not execute the
+     *  behaviours of their messages themselves (see NioNetReceiver).
+     *
+     * @return the default NetDispatcher
+     */
+    public static synchronized NetDispatcher getDefaultDispatcher() {
+        if (NetDispatcher.defaultDispatcher == null)
+            NetDispatcher.defaultDispatcher = new NetDispatcher("NetDispatcher", 0, NetDispatcher.DEFAULT_QUEUE_SIZE);
+
+        return NetDispatcher.defaultDispatcher;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. Creates and starts the worker threads.
+     *
+     * @param name name prefix of our threads
+     * @param nbThreads number of worker threads, 0 for one per available processor.
+     * @param queueSize max number of tasks waiting in a worker's queue
+     */
+    public NetDispatcher(String name, int nbThreads, int queueSize) {
+        if (nbThreads <= 0)
+            nbThreads = Runtime.getRuntime().availableProcessors();
+
+        if (queueSize <= 0)
+            queueSize = NetDispatcher.DEFAULT_QUEUE_SIZE;
+
+        this.workers = new Worker[nbThreads];
+
+        for (int i = 0; i < nbThreads; i++) {
+            this.workers[i] = new Worker(name + "-" + i, queueSize);
+            this.workers[i].start();
+        }
+
+        Debug.signal(Debug.NOTICE, null, "Started " + nbThreads + " message dispatch threads...");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To execute a task on the worker of the given key. Tasks with the same key are
+     *  executed in the order they were given. Waits if the queue of the worker is full.
+     *
+     * @param key key of the task (a connection for example)
+     * @param task task to execute
+     */
+    public void dispatch(Object key, Runnable task) {
+        Worker worker = getWorker(key);
+
+        if (Thread.currentThread() == worker) {
+            task.run(); // we would wait for ourselves...
+            return;
+        }
+
+        boolean interrupted = false;
+
+        while (true) {
+            try {
+                worker.tasks.put(task);
+                break;
+            } catch (InterruptedException e) {
+                interrupted = true; // the task must not be lost, we retry
+            }
+        }
+
+        if (interrupted)
+            Thread.currentThread().interrupt(); // we restore the interrupt status
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To execute a task on the worker of the given key if its queue is not full. This
+     *  method never waits. Tasks with the same key are executed in the order they were
+     *  given : if we return false the caller must keep this task (and the next ones of
+     *  the same key) and offer them again later.
+     *
+     * @param key key of the task (a connection for example)
+     * @param task task to execute
+     * @return true if the task was queued (or executed), false if the queue is full
+     */
+    public boolean offer(Object key, Runnable task) {
+        Worker worker = getWorker(key);
+
+        if (Thread.currentThread() == worker) {
+            task.run(); // we would wait for ourselves...
+            return true;
+        }
+
+        return worker.tasks.offer(task);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To be told when the worker of the given key can accept tasks again, i.e. when
+     *  its queue is half empty. The listener is called once, by the worker thread (or by
+     *  the calling thread if the queue is already half empty) : it must not wait.
+     *
+     * @param key key of the tasks that could not be offered
+     * @param listener task to run when the worker can accept tasks
+     */
+    public void notifyWhenReady(Object key, Runnable listener) {
+        Worker worker = getWorker(key);
+        worker.listeners.add(listener);
+
+        if (worker.isReady())
+            worker.notifyListeners(); // the worker caught up meanwhile
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the worker of a key.
+     *
+     * @param key task key
+     * @return worker executing the tasks of this key
+     */
+    private Worker getWorker(Object key) {
+        int hash = System.identityHashCode(key);
+        hash ^= (hash >>> 16);
+        return this.workers[(hash & 0x7fffffff) % this.workers.length];
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of tasks waiting to be executed.
+     *
+     * @return number of queued tasks
+     */
+    public int getQueuedTasks() {
+        int nb = 0;
+
+        for (int i = 0; i < this.workers.length; i++)
+            nb += this.workers[i].tasks.size();
+
+        return nb;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To stop the worker threads once their queued tasks have been executed.
+     */
+    public void shutdown() {
+        for (int i = 0; i < this.workers.length; i++)
+            this.workers[i].stopThread();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A worker thread with its queue of tasks.
+     */
+    private static class Worker extends Thread {
+
+        /** Tasks to execute.
+         */
+        protected BlockingQueue tasks;
+
+        /** Listeners waiting for room in our queue (see notifyWhenReady()).
+         */
+        protected ConcurrentLinkedQueue listeners;
+
+        /** Number of queued tasks under which we call our listeners.
+         */
+        private int readyThreshold;
+
+        /** Do we have to stop ?
+         */
+        private volatile boolean stopThread;
+
+        /** Constructor.
+         */
+        protected Worker(String name, int queueSize) {
+            super(name);
+            this.tasks = new ArrayBlockingQueue(queueSize);
+            this.listeners = new ConcurrentLinkedQueue();
+            this.readyThreshold = queueSize / 2;
+            this.stopThread = false;
+            setDaemon(true);
+        }
+
+        /** Worker loop.
+         */
+        @Override
+        public void run() {
+            while (!this.stopThread || !this.tasks.isEmpty()) {
+                Runnable task = null;
+
+                try {
+                    task = (Runnable) this.tasks.take();
+                } catch (InterruptedException e) {
+                    continue;
+                }
+
+                if (!this.listeners.isEmpty() && isReady())
+                    notifyListeners();
+
+                try {
+                    task.run();
+                } catch (Exception e) {
+                    Debug.signal(Debug.ERROR, this, e);
+                }
+            }
+        }
+
+        /** Can we accept tasks again ?
+         */
+        protected boolean isReady() {
+            return this.tasks.size() <= this.readyThreshold;
+        }
+
+        /** Calls and removes our listeners.
+         */
+        protected void notifyListeners() {
+            Runnable listener;
+
+            while ((listener = (Runnable) this.listeners.poll()) != null) {
+                try {
+                    listener.run();
+                } catch (Exception e) {
+                    Debug.signal(Debug.ERROR, this, e);
+                }
+            }
+        }
+
+        /** To stop this worker.
+         */
+        protected void stopThread() {
+            this.stopThread = true;
+            interrupt();
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -19,16 +19,20 @@
 
 package wotlas.libs.net;
 
-/** This interface contains only one variable that indicates the version of
- *  the Network Engine. When the client send a ClientRegisterMessage the message
- *  contains his local version number. We check the number is the same in the
- *  ClientRegisterMsgBehaviour.
+/** This interface contains the version of the Network Engine. When the client send a
+ *  ClientRegisterMessage the message contains his local version number. We check the
+ *  number is the same in the ClientRegisterMsgBehaviour.
+ *<br>
+ *  Clients with the LEGACY_VERSION are still accepted : they don't exchange their message
+ *  types during the handshake and keep using message class names as message headers.
  * 
  * @author Aldiss
  */
 
 public interface NetEngineVersion {
 
-    public final static float VERSION = 1.3f;
+    public final static float VERSION = 1.4f;
+
+    public final static float LEGACY_VERSION = 1.3f;
 
 }
@@ -0,0 +1,319 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.BufferOverflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.Deflater;
+
+/** Builds the frames of a connection that uses the framed wire format. A frame carries
+ *  a batch of messages, usually all the messages sent by one flush of the NetSender :
+ *<pre>
+ *   frame   := int length, byte flags, body           (length counts flags + body)
+ *   body    := message*                               (if flags has no FRAME_COMPRESSED bit)
+ *              int rawLength, deflated message*       (if flags has the FRAME_COMPRESSED bit)
+ *   message := header, int dataLength, data
+ *</pre>
+ *  The header is the same as in the unframed format (see NetSender.writeHeader()). As
+ *  every message is length-prefixed, the receiver can skip the messages it doesn't know.
+ *  NetBufferCodec messages are encoded in place in the frame, the others through a
+ *  DataOutputStream.
+ *<br>
+ *  Large batches (room entry data for example) are compressed with a Deflater if the
+ *  peer accepts it. The framed format and the compression are negotiated during the
+ *  connection handshake (ClientRegisterMessage, ServerWelcomeMessage).
+ *<br>
+ *  A NetFrameWriter is not thread-safe : it must be used by the thread that writes on
+ *  the socket.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetSender
+ * @see wotlas.libs.net.NetReceiver
+ */
+
+public class NetFrameWriter {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Handshake option : the peer can receive frames.
+     */
+    public static final byte OPTION_FRAMES = 1;
+
+    /** Handshake option : the peer can receive compressed frames.
+     */
+    public static final byte OPTION_COMPRESSION = 2;
+
+    /** Frame flag : the body of the frame is compressed.
+     */
+    public static final byte FRAME_COMPRESSED = 1;
+
+    /** Maximum size of a frame. Larger frames are considered as corrupted.
+     */
+    public static final int MAX_FRAME_SIZE = 8 * 1024 * 1024;
+
+    /** Size of a batch after which we close the current frame.
+     */
+    public static final int MAX_BATCH_SIZE = 32 * 1024;
+
+    /** Minimum size of a batch to try to compress it.
+     */
+    public static final int COMPRESSION_THRESHOLD = 512;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Messages of the current frame.
+     */
+    private FrameBuffer batchBytes;
+
+    /** Stream on batchBytes.
+     */
+    private DataOutputStream batchStream;
+
+    /** Data of the message being added.
+     */
+    private FrameBuffer messageBytes;
+
+    /** Stream on messageBytes.
+     */
+    private DataOutputStream messageStream;
+
+    /** Compressed data of the current frame.
+     */
+    private FrameBuffer compressedBytes;
+
+    /** Our compressor, null if the compression is disabled or ended.
+     */
+    private Deflater deflater;
+
+    /** Buffer for the compressor.
+     */
+    private byte deflateBuffer[];
+
+    /** Number of messages in the current frame.
+     */
+    private int nbMessages;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param compression do we compress large frames ?
+     */
+    public NetFrameWriter(boolean compression) {
+        this.batchBytes = new FrameBuffer(1024);
+        this.batchStream = new DataOutputStream(this.batchBytes);
+        this.messageBytes = new FrameBuffer(256);
+        this.messageStream = new DataOutputStream(this.messageBytes);
+
+        if (compression) {
+            this.deflater = new Deflater(Deflater.DEFAULT_COMPRESSION);
+            this.deflateBuffer = new byte[4096];
+            this.compressedBytes = new FrameBuffer(1024);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Adds a message to the current frame.
+     *
+     * @param message message to add
+     * @param peerTable message types of the peer, null for a class name header
+     * @exception IOException if the message failed to encode its data.
+     */
+    public void addMessage(NetMessage message, NetMessageTypeTable peerTable) throws IOException {
+        if (message instanceof NetBufferCodec) {
+            int start = this.batchBytes.size();
+
+            try {
+                NetSender.writeHeader(this.batchStream, message, peerTable);
+
+                int lengthIndex = this.batchBytes.size();
+                this.batchStream.writeInt(0); // data length, set once the data is encoded
+                this.batchBytes.encode((NetBufferCodec) message);
+                this.batchBytes.setInt(lengthIndex, this.batchBytes.size() - lengthIndex - 4);
+            } catch (IOException e) {
+                this.batchBytes.truncate(start); // we remove the incomplete message
+                throw e;
+            }
+
+            this.nbMessages++;
+            return;
+        }
+
+        this.messageBytes.reset();
+        message.encode(this.messageStream);
+        this.messageStream.flush();
+
+        NetSender.writeHeader(this.batchStream, message, peerTable);
+        this.batchStream.writeInt(this.messageBytes.size());
+        this.messageBytes.writeTo(this.batchStream);
+        this.nbMessages++;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Is the current frame empty ?
+     *
+     * @return true if no message was added since the last frame.
+     */
+    public boolean isEmpty() {
+        return this.nbMessages == 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Is the current frame full ? If so it should be written before adding new messages.
+     *
+     * @return true if the current frame has reached MAX_BATCH_SIZE.
+     */
+    public boolean isFull() {
+        return this.batchBytes.size() >= NetFrameWriter.MAX_BATCH_SIZE;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes the current frame on the given stream and starts a new one. Does nothing
+     *  if the frame is empty.
+     *
+     * @param ostream data stream where to put the frame.
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    synchronized public void writeFrame(DataOutputStream ostream) throws IOException {
+        if (this.nbMessages == 0)
+            return;
+
+        this.batchStream.flush();
+        int rawLength = this.batchBytes.size();
+
+        if (this.deflater != null && rawLength >= NetFrameWriter.COMPRESSION_THRESHOLD && compress()) {
+            ostream.writeInt(1 + 4 + this.compressedBytes.size());
+            ostream.writeByte(NetFrameWriter.FRAME_COMPRESSED);
+            ostream.writeInt(rawLength);
+            this.compressedBytes.writeTo(ostream);
+        } else {
+            ostream.writeInt(1 + rawLength);
+            ostream.writeByte(0);
+            this.batchBytes.writeTo(ostream);
+        }
+
+        this.batchBytes.reset();
+        this.nbMessages = 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Releases the native memory of our compressor. Should be called when the
+     *  connection is closed : the frames written after this call are not compressed.
+     */
+    synchronized public void end() {
+        if (this.deflater != null) {
+            this.deflater.end();
+            this.deflater = null;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Compresses the current batch in compressedBytes.
+     *
+     * @return true if the compressed data is smaller than the batch, false otherwise.
+     */
+    private boolean compress() {
+        this.compressedBytes.reset();
+        this.deflater.reset();
+        this.deflater.setInput(this.batchBytes.getBuffer(), 0, this.batchBytes.size());
+        this.deflater.finish();
+
+        while (!this.deflater.finished()) {
+            int nb = this.deflater.deflate(this.deflateBuffer);
+            this.compressedBytes.write(this.deflateBuffer, 0, nb);
+
+            if (this.compressedBytes.size() + 4 >= this.batchBytes.size())
+                return false; // not worth it
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A ByteArrayOutputStream that gives access to its buffer.
+     */
+    private static class FrameBuffer extends ByteArrayOutputStream {
+
+        /** A ByteBuffer on our buffer, to encode NetBufferCodec messages in place.
+         */
+        private ByteBuffer view;
+
+        protected FrameBuffer(int size) {
+            super(size);
+        }
+
+        protected byte[] getBuffer() {
+            return this.buf;
+        }
+
+        /** Encodes a message at the end of our data, growing our buffer if needed.
+         */
+        protected void encode(NetBufferCodec codec) throws IOException {
+            while (true) {
+                if (this.view == null || this.view.array() != this.buf)
+                    this.view = ByteBuffer.wrap(this.buf);
+
+                this.view.clear();
+                this.view.position(this.count);
+
+                try {
+                    codec.encode(this.view);
+                    this.count = this.view.position();
+                    return;
+                } catch (BufferOverflowException e) {
+                    if (this.buf.length >= NetFrameWriter.MAX_FRAME_SIZE)
+                        throw new IOException("Message too large : " + codec.getClass().getName());
+
+                    byte tmp[] = new byte[this.buf.length * 2];
+                    System.arraycopy(this.buf, 0, tmp, 0, this.count);
+                    this.buf = tmp;
+                }
+            }
+        }
+
+        /** Sets an int previously written at the given index.
+         */
+        protected void setInt(int index, int value) {
+            this.buf[index] = (byte) (value >>> 24);
+            this.buf[index + 1] = (byte) (value >>> 16);
+            this.buf[index + 2] = (byte) (value >>> 8);
+            this.buf[index + 3] = (byte) value;
+        }
+
+        /** Removes the data written after the given size.
+         */
+        protected void truncate(int size) {
+            this.count = size;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -19,6 +19,8 @@
 
 package wotlas.libs.net;
 
+import java.lang.reflect.Constructor;
+import java.lang.reflect.InvocationTargetException;
 import java.util.Hashtable;
 import wotlas.libs.net.message.ClientRegisterMsgBehaviour;
 import wotlas.libs.net.message.EndOfConnectionMsgBehaviour;
@@ -32,6 +34,14 @@ import wotlas.utils.Tools;
  *  available on each side (local, remote). Therefore this Message Factory keeps in a table all the 
  *  message behaviour classes and their associated message data class name.
  *  We can then create message behaviour when they are wanted, given their super class name.
+ *<br>
+ *  Each message type also receives a local ID (its index in our message type list) when
+ *  it is added. IDs are never reused or changed, so that the list we give to a remote
+ *  peer during the connection handshake remains valid. The peer can then send compact
+ *  message headers (see NetMessageTypeTable) that we resolve with a simple array access.
+ *<br>
+ *  The empty constructor of each message behaviour class is resolved once, when the
+ *  class is added : creating a message then costs no class lookup and no access check.
  * 
  * @author Aldiss
  * @see wotlas.libs.net.NetMessage
@@ -48,9 +58,22 @@ public class NetMessageFactory {
 
     /*------------------------------------------------------------------------------------*/
 
-    /** MessageBehaviour Classes, ordered by their mother class ( NetMessage child )
+    /** MessageBehaviour constructors, ordered by their mother class ( NetMessage child )
      */
-    private Hashtable msgClasses;
+    private Hashtable msgConstructors;
+
+    /** MessageBehaviour constructors, indexed by their message type ID. This array is
+     *  replaced (never modified) when a new message type is added.
+     */
+    private volatile Constructor msgConstructorsByID[];
+
+    /** Message class names ( NetMessage child ), indexed by their message type ID.
+     */
+    private String msgTypes[];
+
+    /** Message type IDs, indexed by message class name (String -> Integer).
+     */
+    private Hashtable msgTypeIDs;
 
     /*------------------------------------------------------------------------------------*/
 
@@ -74,7 +97,10 @@ public class NetMessageFactory {
     /** Protected Empty Constructor. 
      */
     protected NetMessageFactory() {
-        this.msgClasses = new Hashtable(50);
+        this.msgConstructors = new Hashtable(50);
+        this.msgConstructorsByID = new Constructor[0];
+        this.msgTypes = new String[0];
+        this.msgTypeIDs = new Hashtable(50);
 
         // We add system messages.
         addMessage(ServerWelcomeMsgBehaviour.class);
@@ -136,13 +162,18 @@ public class NetMessageFactory {
      * @param packageName a package name where we can find NetMsgBehaviour Classes.
      * @return true if the message has been accepted
      */
-    protected boolean addMessage(Class classToAdd) {
+    protected synchronized boolean addMessage(Class classToAdd) {
 
         if (classToAdd == null || classToAdd.isInterface())
             return false;
 
+        Constructor constructor = null;
+
         try {
-            Object o = classToAdd.newInstance();
+            constructor = classToAdd.getConstructor(new Class[0]);
+            constructor.setAccessible(true); // no access check when we create messages
+
+            Object o = constructor.newInstance(new Object[0]);
 
             if (!(o instanceof NetMessage) || !(o instanceof NetMessageBehaviour)) {
                 Debug.signal(Debug.ERROR, this, "Provided class has a bad network message format ! " + classToAdd);
@@ -154,7 +185,29 @@ public class NetMessageFactory {
         }
 
         // Ok, we have a valid Message Behaviour Class.
-        this.msgClasses.put(classToAdd.getSuperclass().getName(), classToAdd);
+        String msgClassName = classToAdd.getSuperclass().getName();
+        this.msgConstructors.put(msgClassName, constructor);
+
+        // Message type ID : we keep the old one if the message type was already defined
+        Integer id = (Integer) this.msgTypeIDs.get(msgClassName);
+        Constructor byID[];
+
+        if (id == null) {
+            id = new Integer(this.msgTypes.length);
+            this.msgTypeIDs.put(msgClassName, id);
+
+            String typesTmp[] = new String[this.msgTypes.length + 1];
+            System.arraycopy(this.msgTypes, 0, typesTmp, 0, this.msgTypes.length);
+            typesTmp[id.intValue()] = msgClassName;
+            this.msgTypes = typesTmp;
+
+            byID = new Constructor[this.msgTypes.length];
+            System.arraycopy(this.msgConstructorsByID, 0, byID, 0, this.msgConstructorsByID.length);
+        } else
+            byID = (Constructor[]) this.msgConstructorsByID.clone();
+
+        byID[id.intValue()] = constructor;
+        this.msgConstructorsByID = byID;
 
         // Debug.signal(Debug.NOTICE, null, "Added Msg "+classToAdd);
         return true;
@@ -175,13 +228,64 @@ public class NetMessageFactory {
      */
     public NetMessageBehaviour getNewMessageInstance(String msgSuperClassName) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
 
-        Class searchedClass = (Class) this.msgClasses.get(msgSuperClassName);
+        Constructor constructor = (Constructor) this.msgConstructors.get(msgSuperClassName);
 
-        if (searchedClass == null) {
+        if (constructor == null) {
             throw new ClassNotFoundException(msgSuperClassName);
         }
 
-        return (NetMessageBehaviour) searchedClass.newInstance();
+        return newInstance(constructor);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get a new instance of a NetMessageBehaviour given its message type ID. This
+     *  method is used by the NetReceiver to reconstruct messages received with a compact
+     *  header.
+     *
+     * @param msgTypeID the message type ID (see getMessageTypes())
+     * @return a new instance of the wanted NetMessageBehaviour.
+     * @exception ClassNotFoundException if there is no associated class for the given ID.
+     * @exception InstantiationException should never occur since we instanciate the class in
+     *            the addMessagePackage(s) method.
+     * @exception IllegalAccessException if the class access has been secured.
+     */
+    public NetMessageBehaviour getNewMessageInstance(int msgTypeID) throws ClassNotFoundException, InstantiationException, IllegalAccessException {
+        Constructor byID[] = this.msgConstructorsByID;
+
+        if (msgTypeID < 0 || byID.length <= msgTypeID)
+            throw new ClassNotFoundException("Unknown message type ID : " + msgTypeID);
+
+        return newInstance(byID[msgTypeID]);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates a message with its pre-resolved constructor.
+     *
+     * @param constructor empty constructor of the message behaviour class
+     * @return a new instance of the message behaviour.
+     * @exception InstantiationException if the constructor failed.
+     * @exception IllegalAccessException if the class access has been secured.
+     */
+    private NetMessageBehaviour newInstance(Constructor constructor) throws InstantiationException, IllegalAccessException {
+        try {
+            return (NetMessageBehaviour) constructor.newInstance((Object[]) null);
+        } catch (InvocationTargetException e) {
+            throw new InstantiationException(constructor.getDeclaringClass().getName() + " : " + e.getTargetException());
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the list of message types we can receive. The index of a message class name
+     *  in this list is its message type ID. This list is sent to the remote peer during the
+     *  connection handshake.
+     *
+     * @return message class names ( NetMessage child ), indexed by their message type ID.
+     */
+    public synchronized String[] getMessageTypes() {
+        return (String[]) this.msgTypes.clone();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
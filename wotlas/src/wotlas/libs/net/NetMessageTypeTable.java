@@ -0,0 +1,134 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.Hashtable;
+
+/** The message types a remote peer can receive, as it sent them during the connection
+ *  handshake (ClientRegisterMessage, ServerWelcomeMessage). The index of a message class
+ *  name in this list is the ID the peer gave to this message type in its NetMessageFactory.
+ *<br>
+ *  Once the handshake is over, a NetSender uses this table to write compact message
+ *  headers : a short ID instead of the message class name. Message types that the peer
+ *  didn't know at handshake time are sent with the UNKNOWN_TYPE ID followed by their
+ *  class name.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetMessageFactory
+ */
+
+public class NetMessageTypeTable {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** ID written in a compact header when the message type is not in the peer's table.
+     *  The message class name follows.
+     */
+    public static final short UNKNOWN_TYPE = -1;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Message type IDs, indexed by message class name (String -> Short).
+     */
+    private Hashtable typeIDs;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor with the message types sent by the peer.
+     *
+     * @param messageTypes message class names, indexed by their ID on the peer side.
+     */
+    public NetMessageTypeTable(String messageTypes[]) {
+        this.typeIDs = new Hashtable(messageTypes.length * 2 + 1);
+
+        for (int i = 0; i < messageTypes.length; i++)
+            if (messageTypes[i] != null)
+                this.typeIDs.put(messageTypes[i], new Short((short) i));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the ID the peer gave to a message type.
+     *
+     * @param msgClassName the message's class name
+     * @return the message type ID, UNKNOWN_TYPE if the peer doesn't know it.
+     */
+    public short getTypeID(String msgClassName) {
+        Short id = (Short) this.typeIDs.get(msgClassName);
+
+        if (id == null)
+            return NetMessageTypeTable.UNKNOWN_TYPE;
+        return id.shortValue();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes the compact header of a message.
+     *
+     * @param ostream data stream where to put the header
+     * @param message message we are going to send
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    public void writeHeader(DataOutputStream ostream, NetMessage message) throws IOException {
+        short id = getTypeID(message.getMessageClassName());
+        ostream.writeShort(id);
+
+        if (id == NetMessageTypeTable.UNKNOWN_TYPE)
+            ostream.writeUTF(message.getMessageClassName());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes a list of message types (handshake messages).
+     *
+     * @param ostream data stream where to put the list
+     * @param messageTypes message class names, indexed by their ID.
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    public static void writeMessageTypes(DataOutputStream ostream, String messageTypes[]) throws IOException {
+        ostream.writeShort(messageTypes.length);
+
+        for (int i = 0; i < messageTypes.length; i++)
+            ostream.writeUTF(messageTypes[i]);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads a list of message types (handshake messages).
+     *
+     * @param istream data stream where to read the list
+     * @return message class names, indexed by their ID.
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    public static String[] readMessageTypes(DataInputStream istream) throws IOException {
+        String messageTypes[] = new String[istream.readShort()];
+
+        for (int i = 0; i < messageTypes.length; i++)
+            messageTypes[i] = istream.readUTF();
+
+        return messageTypes;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,198 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+/** A histogram of the round trip times (ping values) measured on a network connection.
+ *  Each ping value is counted in the first bucket whose upper limit it doesn't reach,
+ *  the last bucket holding the values above the greatest limit. Failed pings are counted
+ *  apart.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetConnection#getPingHistogram()
+ */
+
+public class NetPingHistogram {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Upper limits of our buckets (ms, excluded).
+     */
+    private static final int BUCKET_LIMITS[] = { 20, 50, 100, 200, 500, 1000, 2000 };
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Number of pings per bucket (one more bucket than limits).
+     */
+    private int counts[];
+
+    /** Number of failed pings.
+     */
+    private int failures;
+
+    /** Sum of the ping values.
+     */
+    private long total;
+
+    /** Greatest ping value.
+     */
+    private int maxPing;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     */
+    public NetPingHistogram() {
+        reset();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To add a ping value.
+     *
+     * @param ping if >=0 it's a valid ping value, if == NetPingListener.PING_FAILED it's
+     *        counted as a failure. Other values are ignored.
+     */
+    public synchronized void addPing(int ping) {
+        if (ping == NetPingListener.PING_FAILED) {
+            this.failures++;
+            return;
+        }
+
+        if (ping < 0)
+            return;
+
+        int i = 0;
+
+        while (i < NetPingHistogram.BUCKET_LIMITS.length && ping >= NetPingHistogram.BUCKET_LIMITS[i])
+            i++;
+
+        this.counts[i]++;
+        this.total += ping;
+
+        if (ping > this.maxPing)
+            this.maxPing = ping;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To reset this histogram.
+     */
+    public synchronized void reset() {
+        this.counts = new int[NetPingHistogram.BUCKET_LIMITS.length + 1];
+        this.failures = 0;
+        this.total = 0;
+        this.maxPing = 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the upper limits of the buckets.
+     *
+     * @return limits (ms, excluded). There is one more bucket than limits.
+     */
+    public static int[] getBucketLimits() {
+        return (int[]) NetPingHistogram.BUCKET_LIMITS.clone();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of pings per bucket.
+     *
+     * @return a copy of our counts
+     */
+    public synchronized int[] getBucketCounts() {
+        return (int[]) this.counts.clone();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of valid pings.
+     *
+     * @return number of pings that have been received back
+     */
+    public synchronized int getNbPings() {
+        int nb = 0;
+
+        for (int i = 0; i < this.counts.length; i++)
+            nb += this.counts[i];
+
+        return nb;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of failed pings.
+     *
+     * @return number of failures
+     */
+    public synchronized int getFailures() {
+        return this.failures;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the average ping value.
+     *
+     * @return average of the valid pings, 0 if there are none
+     */
+    public synchronized int getAveragePing() {
+        int nb = getNbPings();
+
+        if (nb == 0)
+            return 0;
+
+        return (int) (this.total / nb);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the greatest ping value.
+     *
+     * @return max valid ping
+     */
+    public synchronized int getMaxPing() {
+        return this.maxPing;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns a printable version of this histogram.
+     */
+    @Override
+    public synchronized String toString() {
+        StringBuffer buf = new StringBuffer("Ping histogram :");
+
+        for (int i = 0; i < this.counts.length; i++) {
+            if (i < NetPingHistogram.BUCKET_LIMITS.length)
+                buf.append(" <").append(NetPingHistogram.BUCKET_LIMITS[i]);
+            else
+                buf.append(" >=").append(NetPingHistogram.BUCKET_LIMITS[i - 1]);
+
+            buf.append("ms:").append(this.counts[i]);
+        }
+
+        buf.append(" failed:").append(this.failures);
+        buf.append(" avg:").append(getAveragePing()).append("ms max:").append(this.maxPing).append("ms");
+        return buf.toString();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
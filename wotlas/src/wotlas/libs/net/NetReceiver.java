@@ -19,12 +19,19 @@
 
 package wotlas.libs.net;
 
+import java.io.ByteArrayInputStream;
 import java.io.DataInputStream;
 import java.io.IOException;
 import java.net.Socket;
 import java.net.SocketException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import wotlas.libs.net.message.ClientRegisterMessage;
 import wotlas.libs.net.message.EndOfConnectionMessage;
 import wotlas.libs.net.message.PingMessage;
+import wotlas.libs.net.message.ServerWelcomeMessage;
 import wotlas.utils.Debug;
 
 /** A NetReceiver waits for NetMessage to arrive on an opened socket.
@@ -34,6 +41,9 @@ import wotlas.utils.Debug;
  * In the first case a thread is automatically started and will automatically process
  * received messages. In the second case, no thread is started. The user'll have to call
  * the receiveAllMessages() method regularly to allow the NetReceiver to process messages.
+ *<br>
+ * An asynchronous NetReceiver can also give the behaviours of its messages to a
+ * NetDispatcher (see setDispatcher()) : it then goes on reading while they are executed.
  *
  * @author Aldiss
  * @see wotlas.libs.net.NetMessageFactory
@@ -63,7 +73,7 @@ public class NetReceiver extends NetThread {
 
     /** Session Object to give to messages when they arrive.
      */
-    private Object sessionContext;
+    private volatile Object sessionContext;
 
     /** For the synchronous NetReceiver : 
      *  maximum number of messages to process per user call ( receiveAllMessages() ).
@@ -74,6 +84,32 @@ public class NetReceiver extends NetThread {
      */
     private boolean sendBackPingMessages;
 
+    /** Do messages have a compact header (message type ID) instead of their class name ?
+     */
+    private volatile boolean compactHeaders;
+
+    /** Do messages arrive in frames (see NetFrameWriter) ?
+     */
+    private volatile boolean framed;
+
+    /** To decompress the compressed frames. Ended when we stop.
+     */
+    private Inflater inflater;
+
+    /** Message instances we can reuse, indexed by their message type ID (see
+     *  ReusableMessageBehaviour). Used only by the thread that processes our messages.
+     */
+    private NetMessageBehaviour reusableMessages[];
+
+    /** Message type ID of the message being processed if it can be reused, -1 otherwise.
+     */
+    private int reusableTypeID;
+
+    /** Dispatcher executing our message behaviours (null if they are executed by the
+     *  thread that reads the messages).
+     */
+    private volatile NetDispatcher dispatcher;
+
     /*------------------------------------------------------------------------------------*/
 
     /**  Constructor. Should be called only by the NetServer & NetClient classes.
@@ -102,6 +138,30 @@ public class NetReceiver extends NetThread {
         // we retrieve & construct some useful handles
         this.inStream = new DataInputStream(getBufferedInputStream(bufferSize));
         this.factory = NetMessageFactory.getMessageFactory();
+        this.reusableMessages = new NetMessageBehaviour[0];
+        this.reusableTypeID = -1;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /**  Constructor for asynchronous NetReceivers that don't read their data from a
+     *   blocking socket stream (see wotlas.libs.net.nio). No input stream is created
+     *   and no thread is ever started : the subclass reads the data itself and gives
+     *   the decoded messages to processMessage().
+     *
+     * @param socket a previously created & connected socket.
+     * @param connection a NetConnection linked to the specified socket.
+     * @param sessionContext session object to give to messages when they arrive.
+     */
+    protected NetReceiver(Socket socket, NetConnection connection, Object sessionContext) {
+        super(socket);
+        this.sync = false;
+        this.sessionContext = sessionContext;
+        this.connection = connection;
+        this.sendBackPingMessages = false;
+        this.factory = NetMessageFactory.getMessageFactory();
+        this.reusableMessages = new NetMessageBehaviour[0];
+        this.reusableTypeID = -1;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -116,24 +176,20 @@ public class NetReceiver extends NetThread {
 
         try {
             do {
-                // we wait for message to arrive and read its message class name.
-                String msgSuperClassName = this.inStream.readUTF();
+                if (this.framed) {
+                    // we wait for a frame to arrive and process its messages
+                    if (!readFrame(this.inStream))
+                        break; // end of connection
+                    continue;
+                }
 
-                // we reconstruct the message and execute its associated code.
+                // we wait for message to arrive and reconstruct it from its header.
                 try {
-                    NetMessageBehaviour msg = this.factory.getNewMessageInstance(msgSuperClassName);
+                    NetMessageBehaviour msg = readHeader(this.inStream);
                     ((NetMessage) msg).decode(this.inStream); // decode data in the message behaviour class
 
-                    // what kind of message do we have here ?
-                    if (msg instanceof PingMessage) {
-                        if (this.sendBackPingMessages)
-                            this.connection.queueMessage((NetMessage) msg); // send back the PingMessage
-                        else
-                            this.connection.receivedPingMessage(((PingMessage) msg).getSeqID());
-                    } else if (msg instanceof EndOfConnectionMessage) {
+                    if (!processMessage(msg))
                         break; // end of connection
-                    } else
-                        msg.doBehaviour(this.sessionContext); // execute the message's behaviour code...
                 } catch (ClassNotFoundException e) {
                     e.printStackTrace();
                     Debug.signal(Debug.WARNING, this, e);
@@ -154,7 +210,7 @@ public class NetReceiver extends NetThread {
 
         // we ask the NetConnection to perform some cleanup
         // and signal that the connection was closed ( connectionListener )
-        this.connection.close();
+        closeConnection();
         this.inStream = null;
     }
 
@@ -173,25 +229,26 @@ public class NetReceiver extends NetThread {
 
         try {
             while (this.inStream.available() != 0 && msgCounter < this.maxMsg) {
-                // 1 - we wait for message to arrive and read its message class name.
-                String msgSuperClassName = this.inStream.readUTF();
+                if (this.framed) {
+                    // a frame counts as one message
+                    if (!readFrame(this.inStream)) {
+                        this.connection.close();
+                        break; // end of connection
+                    }
+
+                    msgCounter++;
+                    continue;
+                }
 
-                // 2 - we reconstruct the message and execute its associated code.
+                // 1 - we reconstruct the message from its header and execute its associated code.
                 try {
-                    NetMessageBehaviour msg = this.factory.getNewMessageInstance(msgSuperClassName);
+                    NetMessageBehaviour msg = readHeader(this.inStream);
                     ((NetMessage) msg).decode(this.inStream); // decode data in the message behaviour class
 
-                    // what kind of message do we have here ?
-                    if (msg instanceof PingMessage) {
-                        if (this.sendBackPingMessages)
-                            this.connection.queueMessage((NetMessage) msg); // send back the PingMessage
-                        else
-                            this.connection.receivedPingMessage(((PingMessage) msg).getSeqID());
-                    } else if (msg instanceof EndOfConnectionMessage) {
+                    if (!processMessage(msg)) {
                         this.connection.close();
                         break; // end of connection
-                    } else
-                        msg.doBehaviour(this.sessionContext); // execute the message's behaviour code...
+                    }
                 } catch (ClassNotFoundException e) {
                     e.printStackTrace();
                     Debug.signal(Debug.WARNING, this, e);
@@ -220,6 +277,397 @@ public class NetReceiver extends NetThread {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** Reads the header of a message and returns an instance of its behaviour class.
+     *  The header is the message class name or, if we use compact headers, the message
+     *  type ID (possibly followed by the class name, see NetMessageTypeTable). With a
+     *  compact header we return a previous instance if the message is a
+     *  ReusableMessageBehaviour.
+     *
+     * @param istream data stream where we read the header
+     * @return an instance of the message behaviour, not decoded yet.
+     * @exception IOException if the stream has been closed or is corrupted.
+     * @exception ClassNotFoundException if the message type is unknown
+     * @exception InstantiationException should never occur
+     * @exception IllegalAccessException if the class access has been secured.
+     */
+    protected NetMessageBehaviour readHeader(DataInputStream istream) throws IOException, ClassNotFoundException, InstantiationException, IllegalAccessException {
+        this.reusableTypeID = -1;
+
+        if (!this.compactHeaders)
+            return this.factory.getNewMessageInstance(istream.readUTF());
+
+        short msgTypeID = istream.readShort();
+
+        if (msgTypeID == NetMessageTypeTable.UNKNOWN_TYPE)
+            return this.factory.getNewMessageInstance(istream.readUTF());
+
+        NetMessageBehaviour msg = null;
+
+        if (msgTypeID >= 0 && msgTypeID < this.reusableMessages.length && this.reusableMessages[msgTypeID] != null) {
+            msg = this.reusableMessages[msgTypeID];
+            this.reusableMessages[msgTypeID] = null; // taken until it is processed
+        } else
+            msg = this.factory.getNewMessageInstance(msgTypeID);
+
+        if (msg instanceof ReusableMessageBehaviour)
+            this.reusableTypeID = msgTypeID;
+
+        return msg;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Keeps the message that has just been processed if it can be reused for the next
+     *  message of the same type.
+     *
+     * @param msg a processed message
+     */
+    private void recycleMessage(NetMessageBehaviour msg) {
+        if (this.reusableTypeID < 0 || !(msg instanceof ReusableMessageBehaviour))
+            return;
+
+        if (this.reusableMessages.length <= this.reusableTypeID) {
+            NetMessageBehaviour tmp[] = new NetMessageBehaviour[this.reusableTypeID + 1];
+            System.arraycopy(this.reusableMessages, 0, tmp, 0, this.reusableMessages.length);
+            this.reusableMessages = tmp;
+        }
+
+        this.reusableMessages[this.reusableTypeID] = msg;
+        this.reusableTypeID = -1;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads a frame on the given stream and processes its messages.
+     *
+     * @param istream data stream where we read the frame
+     * @return false if a message signaled the end of the connection, true otherwise.
+     * @exception IOException if the stream has been closed or is corrupted.
+     * @exception Exception if a message failed to be processed.
+     */
+    protected boolean readFrame(DataInputStream istream) throws Exception {
+        int length = istream.readInt();
+
+        if (length < 1 || length > NetFrameWriter.MAX_FRAME_SIZE)
+            throw new IOException("Corrupted frame, length is " + length);
+
+        byte frame[] = new byte[length];
+        istream.readFully(frame);
+        return processFrame(frame, 0, length);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Decodes and processes the messages of a frame. Messages of an unknown type are
+     *  skipped.
+     *
+     * @param frame buffer containing the frame
+     * @param offset offset of the frame's flags in the buffer (just after the frame length)
+     * @param length frame length (flags + body)
+     * @return false if a message signaled the end of the connection, true otherwise.
+     * @exception IOException if the frame is corrupted.
+     * @exception Exception if a message failed to be processed.
+     */
+    protected boolean processFrame(byte frame[], int offset, int length) throws Exception {
+        byte flags = frame[offset];
+        byte data[] = frame;
+        int start = offset + 1;
+        int end = offset + length;
+
+        if ((flags & NetFrameWriter.FRAME_COMPRESSED) != 0) {
+            // we decompress the frame
+            int rawLength = ((frame[start] & 0xff) << 24) | ((frame[start + 1] & 0xff) << 16) | ((frame[start + 2] & 0xff) << 8) | (frame[start + 3] & 0xff);
+
+            if (rawLength < 0 || rawLength > NetFrameWriter.MAX_FRAME_SIZE)
+                throw new IOException("Corrupted frame, raw length is " + rawLength);
+
+            data = inflate(frame, start + 4, end - start - 4, rawLength);
+            start = 0;
+            end = rawLength;
+        }
+
+        ByteArrayInputStream frameBytes = new ByteArrayInputStream(data, start, end - start);
+        DataInputStream frameStream = new DataInputStream(frameBytes);
+        ByteBuffer frameBuffer = null; // for the NetBufferCodec messages
+
+        while (frameBytes.available() > 0) {
+            NetMessageBehaviour msg = null;
+
+            try {
+                msg = readHeader(frameStream);
+            } catch (ClassNotFoundException e) {
+                Debug.signal(Debug.WARNING, this, "Unknown message skipped : " + e.getMessage());
+            }
+
+            int msgLength = frameStream.readInt();
+            int msgStart = end - frameBytes.available();
+
+            if (msgLength < 0 || msgStart + msgLength > end)
+                throw new IOException("Corrupted frame, message length is " + msgLength);
+
+            frameStream.skipBytes(msgLength);
+
+            if (msg == null)
+                continue; // unknown message type, skipped
+
+            if (msg instanceof NetBufferCodec) {
+                if (frameBuffer == null)
+                    frameBuffer = ByteBuffer.wrap(data);
+
+                frameBuffer.limit(msgStart + msgLength);
+                frameBuffer.position(msgStart);
+
+                try {
+                    ((NetBufferCodec) msg).decode(frameBuffer);
+                } catch (BufferUnderflowException e) {
+                    throw new IOException("Corrupted frame, truncated data for " + ((NetMessage) msg).getMessageClassName());
+                }
+            } else
+                ((NetMessage) msg).decode(new DataInputStream(new ByteArrayInputStream(data, msgStart, msgLength)));
+
+            if (!processMessage(msg))
+                return false; // end of connection
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set if messages arrive in frames (see NetConnection.useCompactHeaders()).
+     *  This must be called by the thread that processes our messages, between two messages.
+     *
+     * @param framed true if messages arrive in frames.
+     */
+    public void setFramed(boolean framed) {
+        this.framed = framed;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Do messages arrive in frames ?
+     *
+     * @return true if messages arrive in frames (see NetFrameWriter).
+     */
+    protected boolean isFramed() {
+        return this.framed;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set if messages have a compact header (see NetConnection.useCompactHeaders()).
+     *  This must be called by the thread that processes our messages, between two messages.
+     *
+     * @param compactHeaders true for message type ID headers, false for class name headers.
+     */
+    public void setCompactHeaders(boolean compactHeaders) {
+        this.compactHeaders = compactHeaders;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Decompresses the body of a compressed frame.
+     *
+     * @param frame buffer containing the compressed data
+     * @param offset offset of the compressed data in the buffer
+     * @param length length of the compressed data
+     * @param rawLength length of the decompressed data
+     * @return decompressed data
+     * @exception IOException if the data is corrupted or if we have been stopped.
+     */
+    synchronized private byte[] inflate(byte frame[], int offset, int length, int rawLength) throws IOException {
+        if (shouldStopThread())
+            throw new IOException("Receiver stopped");
+
+        if (this.inflater == null)
+            this.inflater = new Inflater();
+
+        byte data[] = new byte[rawLength];
+        this.inflater.reset();
+        this.inflater.setInput(frame, offset, length);
+
+        try {
+            if (this.inflater.inflate(data) != rawLength || !this.inflater.finished())
+                throw new IOException("Corrupted frame, bad compressed data");
+        } catch (DataFormatException e) {
+            throw new IOException("Corrupted frame : " + e.getMessage());
+        }
+
+        return data;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To stop this receiver. We also release the native memory of our Inflater.
+     */
+    @Override
+    synchronized public void stopThread() {
+        super.stopThread();
+
+        if (this.inflater != null) {
+            this.inflater.end();
+            this.inflater = null;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Processes a decoded message : ping messages are handled by the connection,
+     *  other messages have their behaviour executed with our session context.
+     *
+     * @param msg a received and decoded message
+     * @return false if the message signals the end of the connection, true otherwise
+     */
+    protected boolean processMessage(NetMessageBehaviour msg) {
+        this.connection.messageReceived();
+
+        // what kind of message do we have here ?
+        if (msg instanceof PingMessage) {
+            if (this.sendBackPingMessages)
+                this.connection.queueMessage((NetMessage) msg); // send back the PingMessage
+            else
+                this.connection.receivedPingMessage(((PingMessage) msg).getSeqID());
+        } else if (msg instanceof EndOfConnectionMessage) {
+            return false; // end of connection
+        } else if (msg instanceof ClientRegisterMessage || msg instanceof ServerWelcomeMessage) {
+            executeHandshake(msg); // changes our wire format
+        } else if (this.dispatcher != null) {
+            this.reusableTypeID = -1; // the message is now used by another thread
+            dispatchBehaviour(new DispatchedBehaviour(msg));
+        } else {
+            msg.doBehaviour(this.sessionContext); // execute the message's behaviour code...
+            recycleMessage(msg);
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Executes the behaviour of a handshake message (ClientRegisterMessage,
+     *  ServerWelcomeMessage). This behaviour changes our wire format : the data that
+     *  follows can't be decoded before it has been executed. We execute it with our
+     *  reading thread, which only reads this connection. Receivers that share their
+     *  reading thread with other connections (NioNetReceiver) override this method.
+     *
+     * @param msg a received and decoded handshake message
+     */
+    protected void executeHandshake(NetMessageBehaviour msg) {
+        msg.doBehaviour(this.sessionContext);
+        recycleMessage(msg);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Asks the NetConnection to perform some cleanup and signal that the connection was
+     *  closed ( connectionListener ). If we have a dispatcher this is done once the
+     *  behaviours of the messages we already received have been executed.
+     */
+    protected void closeConnection() {
+        if (this.dispatcher == null) {
+            this.connection.close();
+            return;
+        }
+
+        dispatchBehaviour(new Runnable() {
+            public void run() {
+                NetReceiver.this.connection.close();
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Gives a task to our dispatcher. We wait if its queue is full : our reading
+     *  thread then stops reading until the dispatcher has caught up.
+     *
+     * @param task a message behaviour or the closing of our connection
+     */
+    protected void dispatchBehaviour(Runnable task) {
+        this.dispatcher.dispatch(this, task);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To execute the behaviours of our messages with the given dispatcher instead of the
+     *  thread that reads them. The messages of this receiver are still executed in the
+     *  order they arrived. The handshake messages (ClientRegisterMessage,
+     *  ServerWelcomeMessage) are executed by executeHandshake(). Synchronous
+     *  NetReceivers don't use dispatchers.
+     *
+     * @param dispatcher dispatcher to use, null to execute the behaviours ourselves.
+     */
+    public void setDispatcher(NetDispatcher dispatcher) {
+        if (this.sync && dispatcher != null) {
+            Debug.signal(Debug.WARNING, this, "Synchronous NetReceivers don't use dispatchers.");
+            return;
+        }
+
+        this.dispatcher = dispatcher;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the dispatcher executing our message behaviours.
+     *
+     * @return our dispatcher, null if the behaviours are executed by the reading thread.
+     */
+    protected NetDispatcher getDispatcher() {
+        return this.dispatcher;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A message behaviour given to our dispatcher.
+     */
+    protected class DispatchedBehaviour implements Runnable {
+
+        /** Message to execute.
+         */
+        private NetMessageBehaviour msg;
+
+        /** Constructor.
+         */
+        public DispatchedBehaviour(NetMessageBehaviour msg) {
+            this.msg = msg;
+        }
+
+        /** Executes the message's behaviour with the current session context. A
+         *  runtime exception closes the connection, like in the reading thread.
+         */
+        public void run() {
+            if (shouldStopThread())
+                return; // connection closed meanwhile
+
+            try {
+                this.msg.doBehaviour(NetReceiver.this.sessionContext);
+            } catch (Exception e) {
+                Debug.signal(Debug.ERROR, NetReceiver.this, e);
+                NetReceiver.this.connection.close();
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the message factory we use to rebuild received messages.
+     * @return our message factory
+     */
+    protected NetMessageFactory getMessageFactory() {
+        return this.factory;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the NetConnection we are linked to.
+     * @return our NetConnection
+     */
+    protected NetConnection getConnection() {
+        return this.connection;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To set the maximum number of messages to process per user call.
      * @param maxMsg maximum number of messages
      */
@@ -21,6 +21,13 @@ package wotlas.libs.net;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicReference;
 import wotlas.utils.Debug;
 
 /** A NetSender sends NetMessages on an opened socket.
@@ -29,6 +36,13 @@ import wotlas.utils.Debug;
  *   (1) simply send messages as they arrive. <br>
  *   (2) aggregate messages with a timeout and max message limit and send them. <br>
  *   (3) wait for a user signal to send the messages (user aggregation of messages)<br>
+ *   (4) aggregate messages like (2), but a queued update message is replaced by a newer
+ *       update of the same state (see CoalescableMessage).<br>
+ *<p>
+ * Messages are queued in a lock-free queue : threads that queue messages never wait
+ * for the socket. The queue is bounded (see setQueueLimits()). When it's full we apply
+ * our overflow policy : drop the oldest queued update message (see CoalescableMessage),
+ * replace the queued update of the same state, or close the connection.</p>
  *
  * @author Aldiss
  * @see wotlas.libs.net.NetThread
@@ -48,6 +62,30 @@ public class NetSender extends NetThread {
      */
     public static final byte USER_AGGREGATION = 3;
 
+    /** Mode 4 : we aggregate messages and only send the last queued update of a state.
+     */
+    public static final byte COALESCE_MESSAGES = 4;
+
+    /*------------------------------------------------------------------------------------*/
+    /** Overflow policy : when the queue is full we drop the oldest queued update message.
+     *  If there is none we close the connection.
+     */
+    public static final byte DROP_OLDEST_UPDATE = 1;
+
+    /** Overflow policy : when the queue is full a new update message replaces the queued
+     *  update of the same state. If there is none we drop the oldest queued update
+     *  message, and if there is still none we close the connection.
+     */
+    public static final byte COALESCE_UPDATES = 2;
+
+    /** Overflow policy : when the queue is full we close the connection.
+     */
+    public static final byte DISCONNECT = 3;
+
+    /** Default maximum number of messages in our queue.
+     */
+    public static final int DEFAULT_MAX_QUEUE_SIZE = 2000;
+
     /*------------------------------------------------------------------------------------*/
     /** A link to our NetConnection
      */
@@ -57,7 +95,7 @@ public class NetSender extends NetThread {
      */
     private DataOutputStream outStream;
 
-    /** NetSender type ( SEND_IMMEDIATELY, AGGREGATE_MESSAGES or USER_AGGREGATION )
+    /** NetSender type ( SEND_IMMEDIATELY, AGGREGATE_MESSAGES, USER_AGGREGATION or COALESCE_MESSAGES )
      */
     private byte senderType;
 
@@ -78,33 +116,93 @@ public class NetSender extends NetThread {
      */
     private boolean locked;
 
+    /** Lock held while we write on the socket.
+     */
+    private Object writeLock;
+
     /*------------------------------------------------------------------------------------*/
-    /** NetMessages to send.
+    /** NetMessages to send (QueuedMessage objects).
+     */
+    private ConcurrentLinkedQueue queue;
+
+    /** Number of messages queued or being sent.
+     */
+    private AtomicInteger queueSize;
+
+    /** Number of messages dropped because of a queue overflow.
+     */
+    private AtomicLong droppedMessages;
+
+    /** Number of messages replaced by a newer update (COALESCE_MESSAGES type).
+     */
+    private AtomicLong coalescedMessages;
+
+    /** Last queued update for each coalescing key (COALESCE_MESSAGES type only).
+     */
+    private ConcurrentHashMap queuedUpdates;
+
+    /** Maximum number of messages in our queue.
+     */
+    private volatile int maxQueueSize;
+
+    /** What to do when the queue is full ( DROP_OLDEST_UPDATE, COALESCE_UPDATES or DISCONNECT )
+     */
+    private volatile byte overflowPolicy;
+
+    /** Has our queue overflowed with the DISCONNECT policy ?
+     */
+    private volatile boolean queueOverflowed;
+
+    /** Wire format to use for the messages we queue : message header type and framing.
+     */
+    private volatile WireFormat wireFormat;
+
+    /** Builds our frames, null if we don't use the framed wire format.
      */
-    private NetMessage messageList[];
+    private volatile NetFrameWriter frameWriter;
 
-    /** Current number of messages to send.
+    /** Buffer where we encode the NetBufferCodec messages of the unframed format (used
+     *  by the thread that writes the messages).
      */
-    private int nbMessages;
+    private ByteBuffer codecBuffer;
 
     /*------------------------------------------------------------------------------------*/
     /** Constructor. Should be called only by the NetConnection implementations.
      *  Default values :
      *<br>
      *      - aggregation_timeout = 20ms<br>
-     *      - aggregation_msg_limit = 10 messages
+     *      - aggregation_msg_limit = 10 messages<br>
+     *      - max_queue_size = 2000 messages, COALESCE_UPDATES policy
      *<p>
      * @param socket a previously created & connected socket.
      * @param connection a NetConnection linked to the specified socket.
-     * @param senderType NetSender type ( SEND_IMMEDIATELY, AGGREGATE_MESSAGES or USER_AGGREGATION )
+     * @param senderType NetSender type ( SEND_IMMEDIATELY, AGGREGATE_MESSAGES, USER_AGGREGATION
+     *        or COALESCE_MESSAGES )
      * @param bufferSize buffer size (in bytes) for the buffered output stream.
      * @exception IOException if the socket wasn't already connected.
      */
     public NetSender(Socket socket, NetConnection connection, byte senderType, int bufferSize) throws IOException {
+        this(socket, connection, senderType);
+        this.outStream = new DataOutputStream(getBufferedOutputStream(bufferSize));
+
+        start();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Constructor for NetSenders that don't write their data on a blocking socket
+     *  stream (see wotlas.libs.net.nio). No output stream is created and the thread
+     *  is not started : the subclass is in charge of sending the queued messages.
+     *
+     * @param socket a previously created & connected socket.
+     * @param connection a NetConnection linked to the specified socket.
+     * @param senderType NetSender type ( SEND_IMMEDIATELY, AGGREGATE_MESSAGES, USER_AGGREGATION
+     *        or COALESCE_MESSAGES )
+     */
+    protected NetSender(Socket socket, NetConnection connection, byte senderType) {
         super(socket);
         this.connection = connection;
 
-        if (senderType < 1 || 3 < senderType) {
+        if (senderType < 1 || 4 < senderType) {
             this.senderType = NetSender.SEND_IMMEDIATELY;
         } else {
             this.senderType = senderType;
@@ -114,12 +212,21 @@ public class NetSender extends NetThread {
         this.aggregationTimeout = 20; // 20 ms
         this.aggregationMsgLimit = 10; // 10 messages max per aggregation
         this.stopAggregation = false;
+        this.maxQueueSize = NetSender.DEFAULT_MAX_QUEUE_SIZE;
+        this.overflowPolicy = NetSender.COALESCE_UPDATES;
 
         // other inits
-        this.messageList = new NetMessage[this.aggregationMsgLimit];
-        this.outStream = new DataOutputStream(getBufferedOutputStream(bufferSize));
-
-        start();
+        this.writeLock = new Object();
+        this.codecBuffer = ByteBuffer.allocate(256);
+        this.queue = new ConcurrentLinkedQueue();
+        this.queueSize = new AtomicInteger(0);
+        this.droppedMessages = new AtomicLong(0);
+        this.coalescedMessages = new AtomicLong(0);
+        this.wireFormat = new WireFormat(null, false);
+
+        if (this.senderType == NetSender.COALESCE_MESSAGES) {
+            this.queuedUpdates = new ConcurrentHashMap();
+        }
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -136,7 +243,7 @@ public class NetSender extends NetThread {
             do {
                 synchronized (this) {
                     // 1 - we wait for some action...
-                    while (this.nbMessages == 0 && !shouldStopThread()) {
+                    while (this.queueSize.get() == 0 && !shouldStopThread() && !this.queueOverflowed) {
                         try {
                             wait();
                         } catch (InterruptedException e) {
@@ -144,31 +251,36 @@ public class NetSender extends NetThread {
                     }
 
                     // 2 - ok, we have at least one message... what do we do ?
-                    if (this.senderType == NetSender.AGGREGATE_MESSAGES) {
+                    if (this.senderType == NetSender.AGGREGATE_MESSAGES || this.senderType == NetSender.COALESCE_MESSAGES) {
                         if (!this.stopAggregation) {
                             // aggregation start
                             long t0 = System.currentTimeMillis();
                             long tr = this.aggregationTimeout;
 
-                            while (this.nbMessages < this.aggregationMsgLimit && !shouldStopThread()) {
+                            while (this.queueSize.get() < this.aggregationMsgLimit && !shouldStopThread() && !this.stopAggregation) {
                                 try {
                                     wait(tr);
                                 } catch (InterruptedException e) {
                                 }
 
-                                tr = this.aggregationTimeout - System.currentTimeMillis() - t0;
+                                tr = this.aggregationTimeout - (System.currentTimeMillis() - t0);
                                 if (tr < 3) {
                                     break; // aggregation end, we are not going to loop again for 3ms
                                 } 
                             }
-                        } else {
-                            this.stopAggregation = false;
                         }
+
+                        this.stopAggregation = false;
                     }
+                }
 
-                    // we send all the messages
-                    sendQueuedMessages();
+                if (this.queueOverflowed) {
+                    break; // we close the connection
                 }
+
+                // we send all the messages, without holding our lock : other threads
+                // can still queue messages while we write on the socket.
+                sendQueuedMessages();
             } while (!shouldStopThread());
         } catch (IOException ioe) {
             // Socket error, connection was probably closed a little roughly...
@@ -185,22 +297,167 @@ public class NetSender extends NetThread {
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
-    /** To queue a message. With the SEND_IMMEDIATELY & AGGREGATE_MESSAGES NetSender
-     *  we signal the new message to the thread. For the USER_AGGREGATION NetSender
+    /** To queue a message. With the SEND_IMMEDIATELY, AGGREGATE_MESSAGES & COALESCE_MESSAGES
+     *  NetSender we signal the new message to the thread. For the USER_AGGREGATION NetSender
      *  use the pleaseSendMessagesNow() after your queueMessage() calls.
      *
+     *  This method never waits for the socket.
+     *
      * @param message message to queue.
      */
-    synchronized public void queueMessage(NetMessage message) {
-        if (this.nbMessages == this.aggregationMsgLimit) {
-            // the user has not tunned his aggregation limit very well...
-            setAggregationMessageLimit((short) (this.aggregationMsgLimit + 10));
+    public void queueMessage(NetMessage message) {
+        if (!offerMessage(message)) {
+            return;
         }
 
-        this.messageList[this.nbMessages] = message;
-        this.nbMessages++;
-
         if (this.senderType != NetSender.USER_AGGREGATION) {
+            synchronized (this) {
+                notify();
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Adds a message to our queue and applies our overflow policy if the queue is full.
+     *  The wire format of the message (header type, framing) is decided now. With the COALESCE_MESSAGES type
+     *  an update message replaces the queued update of the same state.
+     *
+     * @param message message to queue.
+     * @return true if the message was queued, false if it was not (null message or
+     *         queue overflow with the DISCONNECT policy).
+     */
+    protected boolean offerMessage(NetMessage message) {
+        if (message == null || this.queueOverflowed) {
+            return false; // nothing to send or connection being closed
+        }
+
+        QueuedMessage entry = new QueuedMessage(message, this.wireFormat);
+
+        if (this.queuedUpdates != null) {
+            entry.key = getCoalescingKey(message);
+        }
+
+        this.queue.add(entry);
+        this.queueSize.incrementAndGet();
+
+        if (entry.key != null) {
+            QueuedMessage previous = (QueuedMessage) this.queuedUpdates.put(entry.key, entry);
+
+            if (previous != null && previous.getAndSet(null) != null) {
+                this.queueSize.decrementAndGet(); // previous update will not be sent
+                this.coalescedMessages.incrementAndGet();
+            }
+        }
+
+        if (this.queueSize.get() <= this.maxQueueSize) {
+            return true;
+        }
+
+        // Queue overflow. We first try to drop an update that is now useless.
+        if (this.overflowPolicy == NetSender.COALESCE_UPDATES) {
+            String key = getCoalescingKey(message);
+
+            if (key != null && dropQueuedUpdate(key, entry)) {
+                return true;
+            }
+        }
+
+        if (this.overflowPolicy != NetSender.DISCONNECT && dropQueuedUpdate(null, null)) {
+            return true;
+        }
+
+        // The peer doesn't read its data fast enough, we give up.
+        synchronized (this) {
+            if (this.queueOverflowed) {
+                return false;
+            }
+
+            this.queueOverflowed = true;
+        }
+
+        Debug.signal(Debug.WARNING, this, "Send queue overflow (" + this.maxQueueSize + " messages), closing connection.");
+
+        QueuedMessage dropped;
+
+        while ((dropped = (QueuedMessage) this.queue.poll()) != null) {
+            if (dropped.getAndSet(null) != null) {
+                this.queueSize.decrementAndGet();
+                this.droppedMessages.incrementAndGet();
+            }
+        }
+
+        queueOverflowed();
+        return false;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Drops the oldest queued update message.
+     *
+     * @param key coalescing key of the update to drop, null to drop any update.
+     * @param except entry not to drop, can be null.
+     * @return true if a message was dropped, false if none was found.
+     */
+    private boolean dropQueuedUpdate(String key, QueuedMessage except) {
+        Iterator it = this.queue.iterator();
+
+        while (it.hasNext()) {
+            QueuedMessage entry = (QueuedMessage) it.next();
+
+            if (entry == except) {
+                continue;
+            }
+
+            NetMessage message = (NetMessage) entry.get();
+
+            if (message == null) {
+                continue; // already sent or dropped
+            }
+
+            String entryKey = getCoalescingKey(message);
+
+            if (entryKey == null || (key != null && !key.equals(entryKey))) {
+                continue;
+            }
+
+            if (entry.compareAndSet(message, null)) {
+                this.queueSize.decrementAndGet();
+                this.droppedMessages.incrementAndGet();
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the key identifying the state a message updates : its class name and
+     *  coalescing key.
+     *
+     * @param message message
+     * @return the key, null if the message is not an update we can drop.
+     */
+    protected static String getCoalescingKey(NetMessage message) {
+        if (!(message instanceof CoalescableMessage)) {
+            return null;
+        }
+
+        String key = ((CoalescableMessage) message).getCoalescingKey();
+
+        if (key == null) {
+            return null;
+        }
+
+        return message.getMessageClassName() + ':' + key;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Called when our queue has overflowed with the DISCONNECT policy (or when no update
+     *  could be dropped). The queue has been emptied. We wake up our thread so that it
+     *  closes the connection. As this method is called by the thread that queued the
+     *  message, it must not wait for anything.
+     */
+    protected void queueOverflowed() {
+        synchronized (this) {
             notify();
         }
     }
@@ -211,44 +468,43 @@ public class NetSender extends NetThread {
      *  send of the queued messages. For the SEND_IMMEDIATELY type we do nothing but
      *  make sure that the message has been sent.
      */
-    synchronized public void sendAllMessages() {
+    public void sendAllMessages() {
         // Different behaviours depending on the sender's type
-        if (this.senderType == NetSender.USER_AGGREGATION) {
+        if (this.senderType == NetSender.USER_AGGREGATION || Thread.currentThread() == this) {
             try {
                 sendQueuedMessages();
                 return;
             } catch (IOException ioe) {
                 // Socket error, connection was probably closed a little roughly...
                 Debug.signal(Debug.WARNING, this, ioe);
-
-                // we ask the NetConnection to perform some cleanup
-                // and signal that the connection was closed ( connectionListener )
-                this.connection.close();
-                this.outStream = null;
-                return;
             } catch (Exception e) {
                 // serious error occured
                 Debug.signal(Debug.ERROR, this, e);
+            }
 
-                // we ask the NetConnection to perform some cleanup
-                // and signal that the connection was closed ( connectionListener )
-                this.connection.close();
-                this.outStream = null;
-                return;
+            // we ask the NetConnection to perform some cleanup
+            // and signal that the connection was closed ( connectionListener )
+            this.outStream = null;
+            this.connection.close();
+            return;
+        }
+
+        synchronized (this) {
+            if (this.senderType == NetSender.AGGREGATE_MESSAGES || this.senderType == NetSender.COALESCE_MESSAGES) {
+                this.stopAggregation = true;
             }
-        } else if (this.senderType == NetSender.AGGREGATE_MESSAGES) {
-            this.stopAggregation = true;
+
             notify();
-        }
 
-        // we wait until the last message is sent. The sendQueuedMessages() will notify us.
-        // (max 10s to avoid a deadlock if an Exception has been thrown in sendQueuedMessages)
-        if (this.nbMessages != 0) {
-            this.locked = true;
+            // we wait until the last message is sent. The sendQueuedMessages() will notify us.
+            // (max 10s to avoid a deadlock if an Exception has been thrown in sendQueuedMessages)
+            if (this.queueSize.get() != 0) {
+                this.locked = true;
 
-            try {
-                wait(10000);
-            } catch (InterruptedException e) {
+                try {
+                    wait(10000);
+                } catch (InterruptedException e) {
+                }
             }
         }
     }
@@ -257,61 +513,248 @@ public class NetSender extends NetThread {
     /** Sends all queued messages.
      * @exception IOException if something goes wrong while sending this message
      */
-    synchronized private void sendQueuedMessages() throws IOException {
+    private void sendQueuedMessages() throws IOException {
         if (shouldStopThread()) {
             return;
         }
 
-        for (short i = 0; i < this.nbMessages; i++) {
-            if (this.messageList[i] == null) {
+        synchronized (this.writeLock) {
+            DataOutputStream ostream = this.outStream;
+
+            if (ostream == null) {
+                return; // connection closed
+            }
+
+            int nbSent = writeQueuedMessages(ostream);
+
+            ostream.flush(); // send the whole
+            messagesSent(nbSent);
+        }
+
+        // We throw a "notifyAll" signal if there are threads locked on sendAllMessages()
+        synchronized (this) {
+            if (this.locked) {
+                this.locked = false;
+                notifyAll();
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Writes the messages of our queue on a stream, with their header, in frames if
+     *  they were queued after the switch to the framed wire format. The caller
+     *  must call messagesSent() once the messages have really been sent.
+     *
+     * @param ostream data stream where to put the messages
+     * @return number of messages written
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    protected int writeQueuedMessages(DataOutputStream ostream) throws IOException {
+        QueuedMessage entry;
+        int nbSent = 0;
+
+        while ((entry = (QueuedMessage) this.queue.poll()) != null) {
+            if (entry.key != null) {
+                this.queuedUpdates.remove(entry.key, entry);
+            }
+
+            NetMessage message = (NetMessage) entry.getAndSet(null);
+
+            if (message == null) {
+                continue; // dropped or replaced by a newer update
+            }
+
+            nbSent++;
+
+            if (entry.format.framed) {
+                // Framed format : the message is added to the current frame
+                this.frameWriter.addMessage(message, entry.format.peerTable);
+
+                if (this.frameWriter.isFull()) {
+                    this.frameWriter.writeFrame(ostream);
+                }
+
                 continue;
             }
 
-            // TODO remove system.err (debug mode)
-            if (this.messageList[i].getMessageClassName().indexOf("Ping") == -1) {
-                System.out.println("NetSender => " + this.messageList[i].getMessageClassName());
+            if (this.frameWriter != null) {
+                this.frameWriter.writeFrame(ostream); // messages stay in order
             }
 
-            // 1 - We first write the header of the message : the message class name.
-            this.outStream.writeUTF(this.messageList[i].getMessageClassName());
+            // 1 - We first write the header of the message : the message class name or type ID.
+            writeHeader(ostream, message, entry.format.peerTable);
 
             // 2 - We write the user data
-            this.messageList[i].encode(this.outStream);
-            this.messageList[i] = null;
+            if (message instanceof NetBufferCodec) {
+                this.codecBuffer.clear();
+                this.codecBuffer = NetBuffers.encode((NetBufferCodec) message, this.codecBuffer);
+                ostream.write(this.codecBuffer.array(), 0, this.codecBuffer.position());
+            } else
+                message.encode(ostream);
         }
 
-        this.outStream.flush(); // send the whole
-        this.nbMessages = 0;
-
-        // We throw a "notifyAll" signal if there are threads locked on sendAllMessages()
-        if (this.locked) {
-            this.locked = false;
-            notifyAll();
+        if (this.frameWriter != null) {
+            this.frameWriter.writeFrame(ostream);
         }
+
+        return nbSent;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
-    /** To change the aggregation message limit. 
+    /** To signal that messages returned by writeQueuedMessages() have been sent. They
+     *  are removed from our queue size.
      *
-     *  IMPORTANT: your change can be refused if you want to reduce the
-     *  aggregation message limit and if there are M messages to send
-     *  with M superior to your new value.
+     * @param nbMessages number of messages sent
+     */
+    protected void messagesSent(int nbMessages) {
+        this.queueSize.addAndGet(-nbMessages);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Writes the header of a message : its class name, or its type ID on the peer side
+     *  if we have the peer's message type table.
+     *
+     * @param ostream data stream where to put the header
+     * @param message message we are going to send
+     * @param peerTable message types of the peer, null for a class name header
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    protected static void writeHeader(DataOutputStream ostream, NetMessage message, NetMessageTypeTable peerTable) throws IOException {
+        if (peerTable == null)
+            ostream.writeUTF(message.getMessageClassName());
+        else
+            peerTable.writeHeader(ostream, message);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To set the message types the remote peer can receive. Messages queued after this
+     *  call will be sent with a compact header (see NetConnection.useCompactHeaders()).
      *
-     *  Note also that this method is synchronised and takes a little time...
-     *  Use it only to initialize this NetSender.
+     * @param peerMessageTypes message types of the peer
+     */
+    public void setPeerMessageTypes(NetMessageTypeTable peerMessageTypes) {
+        setWireFormat(peerMessageTypes, (byte) 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To set the wire format to use for the messages queued after this call : compact
+     *  headers with the message types of the peer, and framed format if the peer accepts
+     *  it (see NetFrameWriter). The switch to the framed format can't be undone.
      *
-     * @param newMsgLimit the new value for the aggregationMsgLimit
+     * @param peerMessageTypes message types of the peer, null for class name headers
+     * @param frameOptions frame options accepted by the peer : 0, or OPTION_FRAMES with
+     *        an eventual OPTION_COMPRESSION (see NetFrameWriter).
      */
-    synchronized public void setAggregationMessageLimit(short newMsgLimit) {
-        if (newMsgLimit < this.nbMessages) {
-            Debug.signal(Debug.NOTICE, this, "setAggregationMessageLimit refused: " + this.nbMessages);
+    synchronized public void setWireFormat(NetMessageTypeTable peerMessageTypes, byte frameOptions) {
+        boolean framed = (frameOptions & NetFrameWriter.OPTION_FRAMES) != 0;
+
+        if (framed && this.frameWriter == null) {
+            this.frameWriter = new NetFrameWriter((frameOptions & NetFrameWriter.OPTION_COMPRESSION) != 0);
+        }
+
+        this.wireFormat = new WireFormat(peerMessageTypes, framed || this.wireFormat.framed);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To close the socket connection. We also release the compressor of our frames.
+     */
+    @Override
+    public void closeSocket() {
+        super.closeSocket();
+        endFrameWriter();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Releases the native memory of our frame compressor (see NetFrameWriter.end()).
+     *  Called once our socket is closed.
+     */
+    protected void endFrameWriter() {
+        NetFrameWriter writer = this.frameWriter;
+
+        if (writer != null) {
+            writer.end();
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the message types the remote peer can receive.
+     *
+     * @return message types of the peer, null if we send message class names as headers.
+     */
+    protected NetMessageTypeTable getPeerMessageTypes() {
+        return this.wireFormat.peerTable;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To set the limits of our queue.
+     *
+     * @param maxQueueSize maximum number of messages waiting to be sent.
+     * @param overflowPolicy what to do when the queue is full : DROP_OLDEST_UPDATE,
+     *        COALESCE_UPDATES or DISCONNECT.
+     */
+    public void setQueueLimits(int maxQueueSize, byte overflowPolicy) {
+        if (maxQueueSize < 1 || overflowPolicy < 1 || 3 < overflowPolicy) {
+            Debug.signal(Debug.ERROR, this, "Invalid queue limits : " + maxQueueSize + ", policy " + overflowPolicy);
             return;
         }
 
-        NetMessage listTmp[] = new NetMessage[newMsgLimit];
-        System.arraycopy(this.messageList, 0, listTmp, 0, this.nbMessages);
+        this.maxQueueSize = maxQueueSize;
+        this.overflowPolicy = overflowPolicy;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the maximum number of messages in our queue.
+     *
+     * @return max queue size
+     */
+    public int getMaxQueueSize() {
+        return this.maxQueueSize;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get our overflow policy.
+     *
+     * @return DROP_OLDEST_UPDATE, COALESCE_UPDATES or DISCONNECT
+     */
+    public byte getOverflowPolicy() {
+        return this.overflowPolicy;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the number of messages waiting to be sent.
+     *
+     * @return queue depth
+     */
+    public int getQueueSize() {
+        return this.queueSize.get();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the number of messages we dropped because our queue was full.
+     *
+     * @return number of dropped messages since the creation of this NetSender.
+     */
+    public long getDroppedMessages() {
+        return this.droppedMessages.get();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the number of queued update messages that were replaced by a newer update
+     *  before being sent (COALESCE_MESSAGES type).
+     *
+     * @return number of coalesced messages since the creation of this NetSender.
+     */
+    public long getCoalescedMessages() {
+        return this.coalescedMessages.get();
+    }
 
-        this.messageList = listTmp;
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To change the aggregation message limit : when this number of messages is
+     *  queued the AGGREGATE_MESSAGES & COALESCE_MESSAGES NetSenders stop its aggregation and sends them.
+     *
+     * @param newMsgLimit the new value for the aggregationMsgLimit
+     */
+    synchronized public void setAggregationMessageLimit(short newMsgLimit) {
         this.aggregationMsgLimit = newMsgLimit;
     }
 
@@ -343,5 +786,55 @@ public class NetSender extends NetThread {
         return this.aggregationMsgLimit;
     }
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the type of this NetSender.
+     *
+     * @return SEND_IMMEDIATELY, AGGREGATE_MESSAGES, USER_AGGREGATION or COALESCE_MESSAGES
+     */
+    public byte getSenderType() {
+        return this.senderType;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the NetConnection we are linked to.
+     *
+     * @return our NetConnection
+     */
+    protected NetConnection getConnection() {
+        return this.connection;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** A queued message with the wire format decided when it was queued. The message is
+     *  taken atomically : by the thread that sends it, or by a thread that drops it.
+     */
+    private static class QueuedMessage extends AtomicReference {
+
+        protected WireFormat format;
+
+        protected String key;
+
+        protected QueuedMessage(NetMessage message, WireFormat format) {
+            super(message);
+            this.format = format;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** A wire format : the header type and framing are changed together, so that a
+     *  message is never queued with half of a new format.
+     */
+    private static class WireFormat {
+
+        protected NetMessageTypeTable peerTable;
+
+        protected boolean framed;
+
+        protected WireFormat(NetMessageTypeTable peerTable, boolean framed) {
+            this.peerTable = peerTable;
+            this.framed = framed;
+        }
+    }
+
     /*------------------------------------------------------------------------------------*/
 }
@@ -24,8 +24,11 @@ import java.io.InterruptedIOException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.net.InetSocketAddress;
 import java.net.UnknownHostException;
+import java.nio.channels.ServerSocketChannel;
 import wotlas.libs.net.connection.AsynchronousNetConnection;
+import wotlas.libs.net.connection.SelectorNetConnection;
 import wotlas.libs.net.message.ServerErrorMessage;
 import wotlas.libs.net.message.ServerWelcomeMessage;
 import wotlas.libs.net.utils.NetInterface;
@@ -41,8 +44,9 @@ import wotlas.utils.Debug;
  *      extend this class and override the accessControl() method.
  *<br>
  *<p>
- * This server creates and uses AsynchronousNetConnection. If you want to use another
- * connection type, override the getNewConnection() method. Note also that when we create
+ * This server creates and uses AsynchronousNetConnection, or SelectorNetConnection if
+ * setSelectorConnections(true) has been called before the server's start. If you want to
+ * use another connection type, override the getNewConnection() method. Note also that when we create
  * our new connection we don't assign any "context" object. To assign one do it in
  * the accessControl() method with the "connection.setContext()" call.
  *</p>
@@ -100,6 +104,31 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
      */
     private boolean serverLock;
 
+    /** Do we create selector-based connections (no threads per connection) ?
+     */
+    private boolean selectorConnections;
+
+    /** Maximum number of messages in the send queue of our connections.
+     */
+    private int sendQueueSize;
+
+    /** Send queue overflow policy of our connections (see NetSender).
+     */
+    private byte sendQueuePolicy;
+
+    /** Frame options we accept (see NetFrameWriter).
+     */
+    private byte frameOptions;
+
+    /** Idle timeout of our connections (ms, 0 if none).
+     */
+    private long idleTimeout;
+
+    /** Dispatcher executing the message behaviours of our connections (null if they are
+     *  executed by the threads that read the messages).
+     */
+    private NetDispatcher dispatcher;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Constructs a NetServer on the specified host/port, but does not starts it.
@@ -126,6 +155,11 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
         this.serverPort = serverPort;
         this.stopServer = false;
         this.serverLock = false;
+        this.selectorConnections = false;
+        this.sendQueueSize = NetSender.DEFAULT_MAX_QUEUE_SIZE;
+        this.sendQueuePolicy = NetSender.COALESCE_UPDATES;
+        this.frameOptions = NetFrameWriter.OPTION_FRAMES | NetFrameWriter.OPTION_COMPRESSION;
+        this.idleTimeout = 0;
         this.maxOpenedSockets = 200; // default maximum number of opened sockets
 
         this.listeners = new NetServerListener[0];
@@ -242,7 +276,14 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
             }
 
         try {
-            this.server = new ServerSocket(this.serverPort, 50, hostIP); // new server socket
+            if (this.selectorConnections) {
+                // the sockets we accept must have a channel
+                ServerSocketChannel serverChannel = ServerSocketChannel.open();
+                serverChannel.socket().bind(new InetSocketAddress(hostIP, this.serverPort), 50);
+                this.server = serverChannel.socket();
+            } else
+                this.server = new ServerSocket(this.serverPort, 50, hostIP); // new server socket
+
             this.server.setSoTimeout(5000);
         } catch (Exception e) {
             Debug.signal(Debug.FAILURE, this, "Could not create server socket ! " + e); // FATAL !
@@ -292,11 +333,16 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** Creates a connection object for this new connection.
-     *  Override this method if you don't want to use the AsynchronousNetConnection.
+     *  Override this method if you don't want to use the AsynchronousNetConnection
+     *  or the SelectorNetConnection.
      *
-     * @return a new AsynchronousNetConnection associated to this socket.
+     * @return a new AsynchronousNetConnection associated to this socket, or a
+     *         SelectorNetConnection if the selector connections are enabled.
      */
     protected NetConnection getNewConnection(Socket socket) throws IOException {
+        if (this.selectorConnections && socket.getChannel() != null)
+            return new SelectorNetConnection(socket);
+
         return new AsynchronousNetConnection(socket);
     }
 
@@ -308,7 +354,17 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
      * @param connection a previously created connection for this connection.
      */
     protected void acceptClient(NetConnection connection) {
-        connection.queueMessage(new ServerWelcomeMessage());
+        if (connection.getPeerMessageTypes() == null) {
+            // legacy client : it keeps the message class names as headers
+            connection.queueMessage(new ServerWelcomeMessage());
+        } else {
+            // we send our message types & the frame options we both accept, then switch
+            // to compact headers and eventually to frames
+            connection.setFrameOptions((byte) (connection.getFrameOptions() & this.frameOptions));
+            connection.queueMessage(new ServerWelcomeMessage(NetMessageFactory.getMessageFactory().getMessageTypes(), connection.getFrameOptions()));
+            connection.useCompactHeaders();
+        }
+
         connection.sendAllMessages();
     }
 
@@ -371,6 +427,9 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
             try {
                 // We creates a connection object to take care of him...
                 connection = getNewConnection(clientSocket);
+                connection.getNetSender().setQueueLimits(this.sendQueueSize, this.sendQueuePolicy);
+                connection.setIdleTimeout(this.idleTimeout);
+                connection.getNetReceiver().setDispatcher(this.dispatcher);
 
                 // we inspect our server state... can we really accept him ?
                 if (!registerConnection(connection)) {
@@ -415,6 +474,68 @@ public class NetServer extends Thread implements NetConnectionListener, NetError
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To use selector-based connections for our clients : their I/O is then performed
+     *  by the shared NetSelectorPool instead of two threads per connection. Their
+     *  message behaviours are then always executed by a NetDispatcher (the default one
+     *  if setDispatcher() was not called). Must be called before the server's start.
+     *  @param selectorConnections true to create SelectorNetConnections
+     */
+    public void setSelectorConnections(boolean selectorConnections) {
+        if (this.server != null) {
+            Debug.signal(Debug.ERROR, this, "setSelectorConnections() must be called before the server's start !");
+            return;
+        }
+
+        this.selectorConnections = selectorConnections;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the send queue limits of the connections we'll create (see
+     *  NetSender.setQueueLimits()).
+     *  @param maxQueueSize maximum number of messages waiting to be sent to a client.
+     *  @param overflowPolicy NetSender.DROP_OLDEST_UPDATE, COALESCE_UPDATES or DISCONNECT
+     */
+    public void setSendQueueLimits(int maxQueueSize, byte overflowPolicy) {
+        this.sendQueueSize = maxQueueSize;
+        this.sendQueuePolicy = overflowPolicy;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the frame options we accept for the connections (see NetFrameWriter).
+     *  The options used by a connection are the ones accepted by both the client and
+     *  the server. By default we accept frames and compression.
+     *  @param frameOptions 0, or OPTION_FRAMES with an eventual OPTION_COMPRESSION
+     */
+    public void setFrameOptions(byte frameOptions) {
+        this.frameOptions = frameOptions;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the idle timeout of the connections we'll create (see
+     *  NetConnection.setIdleTimeout()). By default there is no idle timeout.
+     *  @param idleTimeout max time without received message (ms), 0 to disable it.
+     */
+    public void setIdleTimeout(long idleTimeout) {
+        this.idleTimeout = idleTimeout;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the dispatcher that will execute the message behaviours of the connections
+     *  we'll create (see NetReceiver.setDispatcher()). A dispatcher can be shared by
+     *  several servers. By default there is no dispatcher.
+     *  @param dispatcher dispatcher to use, null to execute the behaviours in the threads
+     *         that read the messages.
+     */
+    public void setDispatcher(NetDispatcher dispatcher) {
+        this.dispatcher = dispatcher;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To stop this server
      */
     synchronized public void stopServer() {
@@ -0,0 +1,292 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.util.concurrent.ConcurrentLinkedQueue;
+import wotlas.utils.Debug;
+
+/** A hashed timer wheel shared by the network connections. A single thread executes
+ *  the tasks scheduled by all the connections (ping emission, ping timeouts, idle
+ *  connection checks) instead of one sleeping thread per connection.
+ *<br>
+ *  Time is divided in ticks. A task is placed in the slot of the wheel that matches its
+ *  deadline, with the number of wheel rounds it must wait. At each tick the thread
+ *  expires the tasks of the current slot. Scheduling and cancelling a task never
+ *  blocks and costs O(1) whatever the number of tasks.
+ *<br>
+ *  Tasks are executed by the wheel thread : they must be short and never block (no
+ *  socket I/O, no wait()). The precision of a deadline is one tick.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetConnection
+ */
+
+public class NetTimerWheel extends Thread {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default tick duration (ms).
+     */
+    public static final long DEFAULT_TICK_DURATION = 100;
+
+    /** Number of slots of our wheel (a power of two). With the default tick a round of
+     *  the wheel lasts 51.2s.
+     */
+    private static final int WHEEL_SIZE = 512;
+
+    /** Our default wheel.
+     */
+    private static NetTimerWheel defaultWheel;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Duration of a tick (ms).
+     */
+    private long tickDuration;
+
+    /** Our wheel : for each slot, the first timeout of its linked list. Used only by
+     *  the wheel thread.
+     */
+    private Timeout wheel[];
+
+    /** Timeouts scheduled by other threads, waiting to be placed in the wheel.
+     */
+    private ConcurrentLinkedQueue newTimeouts;
+
+    /** Start time of the wheel.
+     */
+    private long startTime;
+
+    /** Current tick, since the start time.
+     */
+    private long tick;
+
+    /** Do we have to stop ?
+     */
+    private volatile boolean stopThread;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the default wheel. It's created and started on the first call.
+     *
+     * @return the default NetTimerWheel
+     */
+    public static synchronized NetTimerWheel getDefaultWheel() {
+        if (NetTimerWheel.defaultWheel == null) {
+            NetTimerWheel.defaultWheel = new NetTimerWheel("NetTimerWheel", NetTimerWheel.DEFAULT_TICK_DURATION);
+            NetTimerWheel.defaultWheel.start();
+        }
+
+        return NetTimerWheel.defaultWheel;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. The wheel starts with the thread.
+     *
+     * @param name thread name
+     * @param tickDuration duration of a tick (ms)
+     */
+    public NetTimerWheel(String name, long tickDuration) {
+        super(name);
+
+        if (tickDuration <= 0)
+            tickDuration = NetTimerWheel.DEFAULT_TICK_DURATION;
+
+        this.tickDuration = tickDuration;
+        this.wheel = new Timeout[NetTimerWheel.WHEEL_SIZE];
+        this.newTimeouts = new ConcurrentLinkedQueue();
+        this.startTime = System.currentTimeMillis();
+        this.tick = 0;
+        this.stopThread = false;
+        setDaemon(true);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To schedule a task. This method never blocks.
+     *
+     * @param task task to execute by the wheel thread
+     * @param delay delay before the execution (ms)
+     * @return the timeout of the task, to cancel it
+     */
+    public Timeout schedule(Runnable task, long delay) {
+        Timeout timeout = new Timeout(task, System.currentTimeMillis() + Math.max(delay, 0));
+        this.newTimeouts.add(timeout);
+        return timeout;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Wheel loop. Never call this method it's done automatically.
+     */
+    @Override
+    public void run() {
+        this.startTime = System.currentTimeMillis();
+
+        while (!this.stopThread) {
+
+            // 1 - we wait for the end of the current tick
+            long tickEnd = this.startTime + (this.tick + 1) * this.tickDuration;
+            long now = System.currentTimeMillis();
+
+            if (now < tickEnd) {
+                try {
+                    Thread.sleep(tickEnd - now);
+                } catch (InterruptedException e) {
+                }
+                continue;
+            }
+
+            // 2 - we place the new timeouts in the wheel
+            transferNewTimeouts();
+
+            // 3 - we expire the timeouts of the current slot
+            expireTimeouts((int) (this.tick & (NetTimerWheel.WHEEL_SIZE - 1)));
+            this.tick++;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Places the timeouts scheduled by other threads in the wheel.
+     */
+    private void transferNewTimeouts() {
+        Timeout timeout;
+
+        while ((timeout = (Timeout) this.newTimeouts.poll()) != null) {
+            if (timeout.cancelled)
+                continue;
+
+            long deadlineTick = (timeout.deadline - this.startTime) / this.tickDuration;
+
+            if (deadlineTick < this.tick)
+                deadlineTick = this.tick; // already late, we expire it now
+
+            timeout.remainingRounds = (deadlineTick - this.tick) / NetTimerWheel.WHEEL_SIZE;
+
+            int slot = (int) (deadlineTick & (NetTimerWheel.WHEEL_SIZE - 1));
+            timeout.next = this.wheel[slot];
+            this.wheel[slot] = timeout;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Executes the expired tasks of a slot and removes the cancelled ones.
+     *
+     * @param slot slot index
+     */
+    private void expireTimeouts(int slot) {
+        Timeout previous = null;
+        Timeout timeout = this.wheel[slot];
+
+        while (timeout != null) {
+            Timeout next = timeout.next;
+
+            if (!timeout.cancelled && timeout.remainingRounds > 0) {
+                timeout.remainingRounds--;
+                previous = timeout;
+                timeout = next;
+                continue;
+            }
+
+            // we remove the timeout from the slot
+            if (previous == null)
+                this.wheel[slot] = next;
+            else
+                previous.next = next;
+
+            timeout.next = null;
+
+            if (!timeout.cancelled) {
+                timeout.cancelled = true; // executed only once
+
+                try {
+                    timeout.task.run();
+                } catch (Exception e) {
+                    Debug.signal(Debug.ERROR, this, e);
+                }
+            }
+
+            timeout = next;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To stop this thread. Remaining tasks are not executed.
+     */
+    public void stopThread() {
+        this.stopThread = true;
+        interrupt();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A scheduled task.
+     */
+    public static class Timeout {
+
+        /** Task to execute.
+         */
+        private Runnable task;
+
+        /** Deadline of the task.
+         */
+        private long deadline;
+
+        /** Number of wheel rounds before the task expires (wheel thread only).
+         */
+        private long remainingRounds;
+
+        /** Next timeout of the slot (wheel thread only).
+         */
+        private Timeout next;
+
+        /** Has this timeout been cancelled or executed ?
+         */
+        private volatile boolean cancelled;
+
+        /** Constructor.
+         */
+        private Timeout(Runnable task, long deadline) {
+            this.task = task;
+            this.deadline = deadline;
+            this.cancelled = false;
+        }
+
+        /** To cancel this task. Has no effect if the task has already been executed.
+         */
+        public void cancel() {
+            this.cancelled = true;
+        }
+
+        /** Has this task been cancelled or executed ?
+         * @return true if the task will not be executed
+         */
+        public boolean isCancelled() {
+            return this.cancelled;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,204 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import wotlas.utils.Debug;
+
+/** A NetMessage that has already been encoded. Use it when the same message is
+ *  sent to many connections : the message data is encoded only once, in an
+ *  immutable byte array that every NetSender writes as it is.
+ *<br>
+ *  The message is encoded when this object is created, so later changes of the
+ *  original message's state are not sent. The header of the message is still
+ *  written by each NetSender, as it depends on the connection : the message's
+ *  class name is the one of the original message.
+ *<br>
+ *  A PreEncodedMessage is only sent, it's never received. It keeps the coalescing
+ *  key of the original message if it's a CoalescableMessage.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetSender
+ */
+
+public class PreEncodedMessage extends NetMessage implements CoalescableMessage, NetBufferCodec {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Class name of the original message.
+     */
+    private String messageClassName;
+
+    /** Encoded data of the original message.
+     */
+    private byte data[];
+
+    /** Coalescing key of the original message (null if none).
+     */
+    private String coalescingKey;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. Encodes the given message.
+     *
+     * @param message message to encode.
+     * @exception IOException if the message failed to encode its data.
+     */
+    public PreEncodedMessage(NetMessage message) throws IOException {
+        super();
+        this.messageClassName = message.getMessageClassName();
+
+        if (message instanceof CoalescableMessage)
+            this.coalescingKey = ((CoalescableMessage) message).getCoalescingKey();
+
+        if (message instanceof NetBufferCodec) {
+            ByteBuffer buffer = NetBuffers.encode((NetBufferCodec) message, ByteBuffer.allocate(64));
+            this.data = new byte[buffer.position()];
+            System.arraycopy(buffer.array(), 0, this.data, 0, this.data.length);
+            return;
+        }
+
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(64);
+        DataOutputStream ostream = new DataOutputStream(bytes);
+        message.encode(ostream);
+        ostream.flush();
+        this.data = bytes.toByteArray();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To pre-encode a message before sending it to many connections. If the message
+     *  fails to encode we return the original message : it will be encoded by each
+     *  NetSender.
+     *
+     * @param message message to encode.
+     * @return the pre-encoded message, or the message itself if it is already
+     *         pre-encoded or failed to encode.
+     */
+    public static NetMessage preEncode(NetMessage message) {
+        if (message == null || message instanceof PreEncodedMessage)
+            return message;
+
+        try {
+            return new PreEncodedMessage(message);
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, null, "Failed to pre-encode " + message.getMessageClassName() + " : " + e);
+            return message;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To pre-encode a list of messages before sending them to many connections.
+     *  Messages that are already pre-encoded are kept. If a message fails to encode
+     *  we keep the original message : it will be encoded by each NetSender.
+     *
+     * @param messages messages to encode.
+     * @return a new list with the pre-encoded messages.
+     */
+    public static NetMessage[] preEncode(NetMessage messages[]) {
+        NetMessage encoded[] = new NetMessage[messages.length];
+
+        for (int i = 0; i < messages.length; i++)
+            encoded[i] = preEncode(messages[i]);
+
+        return encoded;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the class name of the original message.
+     * @return the original message's class name.
+     */
+    @Override
+    public String getMessageClassName() {
+        return this.messageClassName;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the coalescing key of the original message.
+     * @return the coalescing key, null if the original message is not a CoalescableMessage.
+     */
+    public String getCoalescingKey() {
+        return this.coalescingKey;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the size of the encoded data.
+     * @return data size in bytes.
+     */
+    public int getDataSize() {
+        return this.data.length;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes the encoded data of the original message.
+     *
+     * @param ostream data stream where to put the data
+     * @exception IOException if the stream has been closed or is corrupted.
+     */
+    @Override
+    public void encode(DataOutputStream ostream) throws IOException {
+        ostream.write(this.data, 0, this.data.length);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Puts the encoded data of the original message in the buffer.
+     *
+     * @param buffer buffer where to put the data
+     */
+    public void encode(ByteBuffer buffer) {
+        buffer.put(this.data, 0, this.data.length);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A PreEncodedMessage is never received : the original message is.
+     *
+     * @param istream data stream
+     * @exception IOException always.
+     */
+    @Override
+    public void decode(DataInputStream istream) throws IOException {
+        throw new IOException("A PreEncodedMessage can't be decoded.");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A PreEncodedMessage is never received : the original message is.
+     *
+     * @param buffer data buffer
+     * @exception IOException always.
+     */
+    public void decode(ByteBuffer buffer) throws IOException {
+        throw new IOException("A PreEncodedMessage can't be decoded.");
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
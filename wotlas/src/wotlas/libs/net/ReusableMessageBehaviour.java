@@ -0,0 +1,41 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+/** 
+ * A NetMessageBehaviour whose instances can be reused by the NetReceiver for the next
+ * messages of the same type, instead of creating a new instance for each received message.
+ * Use it for frequent messages.
+ *<br>
+ * A behaviour can implement this interface only if :<br>
+ *   - nothing keeps a reference to the message once its doBehaviour() has returned (the
+ *     message is not queued, routed to other players or stored),<br>
+ *   - its decode() method sets all the fields used by doBehaviour(). It can then reuse
+ *     the objects it created during a previous decode() (Points for example).
+ *<br>
+ * Instances are reused only by the NetReceiver that created them, and only for messages
+ * received with a compact header (see NetMessageTypeTable).
+ * 
+ * @author Aldiss
+ * @see wotlas.libs.net.NetReceiver
+ */
+
+public interface ReusableMessageBehaviour extends NetMessageBehaviour {
+}
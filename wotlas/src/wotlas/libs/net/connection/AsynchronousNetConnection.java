@@ -73,7 +73,8 @@ public class AsynchronousNetConnection extends NetConnection {
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** In this method we create our own NetSender and NetReceiver :
-     *  a AGGREGATE_MESSAGES NetSender and asynchronous NetReceiver.
+     *  a COALESCE_MESSAGES NetSender and asynchronous NetReceiver. The NetSender
+     *  aggregates messages and only sends the last queued movement of a player.
      *
      * @param socket an already opened socket
      * @param sessionContext an object to give to messages as they arrive.
@@ -90,7 +91,7 @@ public class AsynchronousNetConnection extends NetConnection {
         }
 
         // NetSender with default aggregation limit & timeout.
-        this.myNetsender = new NetSender(socket, this, NetSender.AGGREGATE_MESSAGES, 128 * 1024);
+        this.myNetsender = new NetSender(socket, this, NetSender.COALESCE_MESSAGES, 128 * 1024);
 
         // NetReceiver, asynchronous. It processes messages as they arrive.
         this.myNetreceiver = new NetReceiver(socket, this, false, sessionContext, 128 * 1024);
@@ -0,0 +1,116 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net.connection;
+
+import java.io.IOException;
+import java.net.Socket;
+import java.net.SocketException;
+import java.nio.channels.SocketChannel;
+import wotlas.libs.net.NetConnection;
+import wotlas.libs.net.NetSender;
+import wotlas.libs.net.nio.NetSelectorPool;
+import wotlas.libs.net.nio.NetSelectorThread;
+import wotlas.libs.net.nio.NioNetReceiver;
+import wotlas.libs.net.nio.NioNetSender;
+import wotlas.utils.Debug;
+
+/**
+ * This is an asynchronous NetConnection that has no thread of its own. Its socket
+ * channel is multiplexed with many others by a thread of the default NetSelectorPool
+ * that sends the queued messages and processes the received ones.
+ *<br>
+ * Methods to use with this connection type :
+ *<br>
+ *   - queueMessage() to queue a message
+ *<br>
+ * It behaves like the AsynchronousNetConnection but the socket MUST have been created
+ * by a java.nio SocketChannel (see the NetServer's setSelectorConnections() method).
+ * It's what you want for a server that deals with thousands of clients.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.NetConnection
+ * @see wotlas.libs.net.nio.NioNetSender
+ * @see wotlas.libs.net.nio.NioNetReceiver
+ */
+
+public class SelectorNetConnection extends NetConnection {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor with an already opened socket.
+     *
+     * @param socket an already opened socket created by a SocketChannel
+     * @exception IOException if the socket wasn't already connected.
+     */
+    public SelectorNetConnection(Socket socket) throws IOException {
+        super(socket, null);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor with an already opened socket and a context object.
+     *
+     * @param socket an already opened socket created by a SocketChannel
+     * @param sessionContext an object to give to messages as they arrive.
+     * @exception IOException if the socket wasn't already connected.
+     */
+    public SelectorNetConnection(Socket socket, Object sessionContext) throws IOException {
+        super(socket, sessionContext);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** In this method we create our own NetSender and NetReceiver :
+     *  a COALESCE_MESSAGES NioNetSender and a NioNetReceiver, both registered
+     *  on the same selector thread.
+     *
+     * @param socket an already opened socket created by a SocketChannel
+     * @param sessionContext an object to give to messages as they arrive.
+     * @exception IOException if the socket wasn't already connected.
+     */
+    @Override
+    protected void init(Socket socket, Object sessionContext) throws IOException {
+        SocketChannel channel = socket.getChannel();
+
+        if (channel == null)
+            throw new IOException("SelectorNetConnection needs a socket created by a SocketChannel !");
+
+        // We change both buffer size to 64k for this socket (default is normally 64k)
+        try {
+            socket.setReceiveBufferSize(64 * 1024);
+            socket.setSendBufferSize(64 * 1024);
+        } catch (SocketException e) {
+            Debug.signal(Debug.NOTICE, this, e);
+        }
+
+        channel.configureBlocking(false);
+
+        NetSelectorThread selectorThread = NetSelectorPool.getDefaultPool().getSelectorThread();
+
+        NioNetSender sender = new NioNetSender(socket, this, NetSender.COALESCE_MESSAGES, selectorThread);
+        NioNetReceiver receiver = new NioNetReceiver(socket, this, sessionContext, 8 * 1024, selectorThread);
+        selectorThread.register(channel, receiver, sender);
+
+        this.myNetsender = sender;
+        this.myNetreceiver = receiver;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+}
@@ -24,6 +24,7 @@ import java.io.DataOutputStream;
 import java.io.IOException;
 import wotlas.libs.net.NetEngineVersion;
 import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.NetMessageTypeTable;
 
 /** 
  * A NetMessage that is send by a client to a server to register itself with
@@ -44,6 +45,14 @@ public class ClientRegisterMessage extends NetMessage {
      */
     protected float netEngineVersion;
 
+    /** The message types the client can receive (null for a LEGACY_VERSION client).
+     */
+    protected String messageTypes[];
+
+    /** The frame options the client accepts (see NetFrameWriter).
+     */
+    protected byte frameOptions;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Constructor. Just initializes the message category and type.
@@ -62,6 +71,35 @@ public class ClientRegisterMessage extends NetMessage {
         super();
         this.key = key;
         this.netEngineVersion = NetEngineVersion.VERSION;
+        this.messageTypes = new String[0];
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor with the client's key and the message types it can receive.
+     *
+     * @param key client key for access control.
+     * @param messageTypes message class names, indexed by their ID in the client's NetMessageFactory.
+     */
+    public ClientRegisterMessage(String key, String messageTypes[]) {
+        this(key, messageTypes, (byte) 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor with the client's key, the message types it can receive and the
+     *  frame options it accepts.
+     *
+     * @param key client key for access control.
+     * @param messageTypes message class names, indexed by their ID in the client's NetMessageFactory.
+     * @param frameOptions frame options accepted by the client (see NetFrameWriter).
+     */
+    public ClientRegisterMessage(String key, String messageTypes[], byte frameOptions) {
+        super();
+        this.key = key;
+        this.netEngineVersion = NetEngineVersion.VERSION;
+        this.messageTypes = messageTypes;
+        this.frameOptions = frameOptions;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -76,6 +114,8 @@ public class ClientRegisterMessage extends NetMessage {
     public void encode(DataOutputStream ostream) throws IOException {
         ostream.writeUTF(this.key);
         ostream.writeFloat(this.netEngineVersion);
+        NetMessageTypeTable.writeMessageTypes(ostream, this.messageTypes);
+        ostream.writeByte(this.frameOptions);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -90,6 +130,15 @@ public class ClientRegisterMessage extends NetMessage {
     public void decode(DataInputStream istream) throws IOException {
         this.key = istream.readUTF();
         this.netEngineVersion = istream.readFloat();
+
+        // older clients don't send their message types & frame options
+        if (this.netEngineVersion < NetEngineVersion.VERSION) {
+            this.messageTypes = null;
+            this.frameOptions = 0;
+        } else {
+            this.messageTypes = NetMessageTypeTable.readMessageTypes(istream);
+            this.frameOptions = istream.readByte();
+        }
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
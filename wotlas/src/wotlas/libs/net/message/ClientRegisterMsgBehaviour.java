@@ -56,8 +56,8 @@ public class ClientRegisterMsgBehaviour extends ClientRegisterMessage implements
 
         // this message is the first one sent by a client 
         // when he establishes a new connection. Arrived on the server
-        // we check that we have the same NetEngineVersion.
-        if (this.netEngineVersion != NetEngineVersion.VERSION) {
+        // we check that we have the same NetEngineVersion (or a legacy one).
+        if (this.netEngineVersion != NetEngineVersion.VERSION && this.netEngineVersion != NetEngineVersion.LEGACY_VERSION) {
             if (this.netEngineVersion > NetEngineVersion.VERSION) {
                 entry.getConnection().queueMessage(new ServerErrorMessage(NetErrorCodeList.ERR_BAD_LIB_VERSION, "The Server Network Engine Version is old : " + NetEngineVersion.VERSION + ". Please Signal it ! You have version " + this.netEngineVersion));
 
@@ -75,6 +75,10 @@ public class ClientRegisterMsgBehaviour extends ClientRegisterMessage implements
             return;
         }
 
+        // the message types the client can receive & its frame options, used by acceptClient()
+        entry.getConnection().setPeerMessageTypes(this.messageTypes);
+        entry.getConnection().setFrameOptions(this.frameOptions);
+
         // if the version are the same, we call the server's accessControl method.
         entry.getServer().accessControl(entry.getConnection(), this.key);
     }
@@ -22,6 +22,8 @@ package wotlas.libs.net.message;
 import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
+import java.nio.ByteBuffer;
+import wotlas.libs.net.NetBufferCodec;
 import wotlas.libs.net.NetMessage;
 
 /** 
@@ -31,7 +33,7 @@ import wotlas.libs.net.NetMessage;
  * @see wotlas.libs.net.NetMessage
  */
 
-public class PingMessage extends NetMessage {
+public class PingMessage extends NetMessage implements NetBufferCodec {
     /*------------------------------------------------------------------------------------*/
 
     /** Ping sequence ID
@@ -91,4 +93,24 @@ public class PingMessage extends NetMessage {
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of encode(DataOutputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to put the data
+     */
+    public void encode(ByteBuffer buffer) {
+        buffer.put(this.sequenceID);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Buffer codec version of decode(DataInputStream), see NetBufferCodec.
+     *
+     * @param buffer buffer where to get the data
+     */
+    public void decode(ByteBuffer buffer) {
+        this.sequenceID = buffer.get();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 }
@@ -23,10 +23,12 @@ import java.io.DataInputStream;
 import java.io.DataOutputStream;
 import java.io.IOException;
 import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.NetMessageTypeTable;
 
 /** 
  * A NetMessage that is send to a client to signal that he is welcome
- * on this server. This message contains no particular data.
+ * on this server. It contains the message types the server can receive, except
+ * for LEGACY_VERSION clients to which we send no data.
  *
  * @author Aldiss
  * @see wotlas.libs.net.NetMessage
@@ -35,6 +37,16 @@ import wotlas.libs.net.NetMessage;
 public class ServerWelcomeMessage extends NetMessage {
     /*------------------------------------------------------------------------------------*/
 
+    /** The message types the server can receive (null for LEGACY_VERSION clients).
+     */
+    protected String messageTypes[];
+
+    /** The frame options chosen by the server (see NetFrameWriter).
+     */
+    protected byte frameOptions;
+
+    /*------------------------------------------------------------------------------------*/
+
     /** Constructor. Just initializes the message category and type.
      */
     public ServerWelcomeMessage() {
@@ -43,6 +55,30 @@ public class ServerWelcomeMessage extends NetMessage {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** Constructor with the message types the server can receive.
+     *
+     * @param messageTypes message class names, indexed by their ID in the server's NetMessageFactory.
+     */
+    public ServerWelcomeMessage(String messageTypes[]) {
+        this(messageTypes, (byte) 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor with the message types the server can receive and the frame options
+     *  to use on this connection.
+     *
+     * @param messageTypes message class names, indexed by their ID in the server's NetMessageFactory.
+     * @param frameOptions frame options accepted by both sides (see NetFrameWriter).
+     */
+    public ServerWelcomeMessage(String messageTypes[], byte frameOptions) {
+        super();
+        this.messageTypes = messageTypes;
+        this.frameOptions = frameOptions;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** This is where we put your message data on the stream. You don't need
      * to invoke this method yourself, it's done automatically.
      *
@@ -51,6 +87,10 @@ public class ServerWelcomeMessage extends NetMessage {
      */
     @Override
     public void encode(DataOutputStream ostream) throws IOException {
+        if (this.messageTypes != null) {
+            NetMessageTypeTable.writeMessageTypes(ostream, this.messageTypes);
+            ostream.writeByte(this.frameOptions);
+        }
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -63,6 +103,9 @@ public class ServerWelcomeMessage extends NetMessage {
      */
     @Override
     public void decode(DataInputStream istream) throws IOException {
+        // we are not a legacy client : the server sent its message types
+        this.messageTypes = NetMessageTypeTable.readMessageTypes(istream);
+        this.frameOptions = istream.readByte();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -40,8 +40,8 @@ public class ServerWelcomeMsgBehaviour extends ServerWelcomeMessage implements N
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** Associated code to the ServerWelcomeMessage... well, we do nothing special...
-     *  the messages IDs were the only data...
+    /** Associated code to the ServerWelcomeMessage... we validate the connection, which
+     *  switches it to compact message headers.
      *
      * @param sessionContext an object giving specific access to other objects needed to process
      *        this message.
@@ -52,7 +52,7 @@ public class ServerWelcomeMsgBehaviour extends ServerWelcomeMessage implements N
 
         // we awake our client with no error message
         synchronized (client) {
-            client.validateConnection();
+            client.validateConnection(this.messageTypes, this.frameOptions);
             client.notify();
         }
     }
@@ -0,0 +1,132 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net.nio;
+
+import java.io.IOException;
+import wotlas.utils.Debug;
+
+/** A small pool of NetSelectorThreads shared by all the selector-based connections
+ *  of a JVM. New connections are given to the selector thread that has the fewest
+ *  channels.
+ *<br>
+ *  The default pool is created on its first use. Its size can be set before with
+ *  setDefaultPoolSize() (by default : one thread per available processor).
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.nio.NetSelectorThread
+ */
+
+public class NetSelectorPool {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Size of the default pool (0 means one thread per available processor).
+     */
+    private static int defaultPoolSize = 0;
+
+    /** Our default pool.
+     */
+    private static NetSelectorPool defaultPool;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our selector threads.
+     */
+    private NetSelectorThread selectorThreads[];
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the default pool. It's created on the first call.
+     *
+     * @return the default NetSelectorPool
+     * @exception IOException if the selectors could not be opened
+     */
+    public static synchronized NetSelectorPool getDefaultPool() throws IOException {
+        if (NetSelectorPool.defaultPool == null)
+            NetSelectorPool.defaultPool = new NetSelectorPool(NetSelectorPool.defaultPoolSize);
+
+        return NetSelectorPool.defaultPool;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the size of the default pool. Has no effect if the default pool has
+     *  already been created.
+     *
+     * @param nbThreads number of selector threads, 0 for one per available processor.
+     */
+    public static synchronized void setDefaultPoolSize(int nbThreads) {
+        if (NetSelectorPool.defaultPool != null) {
+            Debug.signal(Debug.WARNING, null, "NetSelectorPool already created, new size ignored.");
+            return;
+        }
+
+        NetSelectorPool.defaultPoolSize = nbThreads;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. Creates and starts the selector threads.
+     *
+     * @param nbThreads number of selector threads, 0 for one per available processor.
+     * @exception IOException if the selectors could not be opened
+     */
+    public NetSelectorPool(int nbThreads) throws IOException {
+        if (nbThreads <= 0)
+            nbThreads = Runtime.getRuntime().availableProcessors();
+
+        this.selectorThreads = new NetSelectorThread[nbThreads];
+
+        for (int i = 0; i < nbThreads; i++) {
+            this.selectorThreads[i] = new NetSelectorThread("NetSelector-" + i);
+            this.selectorThreads[i].start();
+        }
+
+        Debug.signal(Debug.NOTICE, null, "Started " + nbThreads + " network selector threads...");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the selector thread a new connection should use.
+     *
+     * @return the selector thread with the fewest channels
+     */
+    public synchronized NetSelectorThread getSelectorThread() {
+        NetSelectorThread best = this.selectorThreads[0];
+
+        for (int i = 1; i < this.selectorThreads.length; i++)
+            if (this.selectorThreads[i].getNbChannels() < best.getNbChannels())
+                best = this.selectorThreads[i];
+
+        return best;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To stop all the selector threads. Their channels are closed.
+     */
+    public synchronized void shutdown() {
+        for (int i = 0; i < this.selectorThreads.length; i++)
+            this.selectorThreads[i].stopThread();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
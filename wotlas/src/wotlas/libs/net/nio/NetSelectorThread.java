@@ -0,0 +1,416 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net.nio;
+
+import java.io.IOException;
+import java.nio.channels.CancelledKeyException;
+import java.nio.channels.ClosedChannelException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.util.Iterator;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicInteger;
+import wotlas.utils.Debug;
+
+/** A NetSelectorThread multiplexes the I/O of many socket channels with a single
+ *  java.nio Selector. It reads incoming data for the NioNetReceivers and writes
+ *  the queued data of the NioNetSenders, so that a connection doesn't need its
+ *  own threads anymore.
+ *<br>
+ *  Every operation on a channel (registration, read, write, close) is performed
+ *  by this thread. Other threads just post tasks and wake up the selector.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.nio.NetSelectorPool
+ */
+
+public class NetSelectorThread extends Thread {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Maximum time we wait in a select() call (ms). We check closing connections
+     *  at least once per period.
+     */
+    private static final long SELECT_TIMEOUT = 1000;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our selector.
+     */
+    private Selector selector;
+
+    /** Tasks posted by other threads, executed by this thread between two select().
+     */
+    private ConcurrentLinkedQueue pendingTasks;
+
+    /** Number of channels registered (or waiting to be registered) on this selector.
+     */
+    private AtomicInteger nbChannels;
+
+    /** Do we have to stop ?
+     */
+    private boolean stopThread;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param name thread name
+     * @exception IOException if the selector could not be opened
+     */
+    public NetSelectorThread(String name) throws IOException {
+        super(name);
+        this.selector = Selector.open();
+        this.pendingTasks = new ConcurrentLinkedQueue();
+        this.nbChannels = new AtomicInteger(0);
+        this.stopThread = false;
+        setDaemon(true);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Selector loop. Never call this method it's done automatically.
+     */
+    @Override
+    public void run() {
+        long lastCheck = System.currentTimeMillis();
+
+        while (!shouldStopThread()) {
+            try {
+                this.selector.select(NetSelectorThread.SELECT_TIMEOUT);
+            } catch (IOException e) {
+                Debug.signal(Debug.ERROR, this, e);
+                continue;
+            }
+
+            // 1 - tasks posted by other threads
+            runPendingTasks();
+
+            // 2 - channels ready for I/O
+            Iterator it = this.selector.selectedKeys().iterator();
+
+            while (it.hasNext()) {
+                SelectionKey key = (SelectionKey) it.next();
+                it.remove();
+
+                ChannelEntry entry = (ChannelEntry) key.attachment();
+
+                try {
+                    if (key.isValid() && key.isWritable())
+                        writeChannel(entry);
+
+                    if (key.isValid() && key.isReadable() && !entry.receiver.readChannel())
+                        closeConnection(entry);
+                } catch (CancelledKeyException e) {
+                    // channel closed meanwhile
+                } catch (IOException e) {
+                    // Socket error, connection was probably closed a little roughly...
+                    Debug.signal(Debug.WARNING, this, "Connection closed : " + e.toString());
+                    closeConnection(entry);
+                } catch (Exception e) {
+                    // serious error while processing message
+                    Debug.signal(Debug.ERROR, this, e);
+                    closeConnection(entry);
+                }
+            }
+
+            // 3 - we check the connections that wait to be closed
+            long now = System.currentTimeMillis();
+
+            if (now - lastCheck >= NetSelectorThread.SELECT_TIMEOUT) {
+                lastCheck = now;
+                checkClosingChannels(now);
+            }
+        }
+
+        // we close all the remaining channels
+        Iterator it = this.selector.keys().iterator();
+
+        while (it.hasNext())
+            closeChannel((ChannelEntry) ((SelectionKey) it.next()).attachment());
+
+        try {
+            this.selector.close();
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, this, e);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To register a new connection on this selector. The channel must be in
+     *  non-blocking mode. It is registered with no interest ops : reading starts
+     *  with a call to enableReading().
+     *
+     * @param channel channel of the connection
+     * @param receiver NioNetReceiver of the connection
+     * @param sender NioNetSender of the connection
+     */
+    public void register(final SocketChannel channel, final NioNetReceiver receiver, final NioNetSender sender) {
+        this.nbChannels.incrementAndGet();
+
+        postTask(new Runnable() {
+            public void run() {
+                ChannelEntry entry = new ChannelEntry(receiver, sender);
+
+                try {
+                    entry.key = channel.register(NetSelectorThread.this.selector, 0, entry);
+                } catch (ClosedChannelException e) {
+                    NetSelectorThread.this.nbChannels.decrementAndGet();
+                    Debug.signal(Debug.WARNING, NetSelectorThread.this, "Channel closed before its registration");
+                    return;
+                }
+
+                receiver.setSelectionKey(entry.key);
+                sender.setSelectionKey(entry.key);
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To start reading data for the given receiver.
+     *
+     * @param receiver a registered receiver
+     */
+    protected void enableReading(final NioNetReceiver receiver) {
+        postTask(new Runnable() {
+            public void run() {
+                SelectionKey key = receiver.getSelectionKey();
+
+                if (key != null && key.isValid())
+                    key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To resume the reading of a receiver that was waiting for its dispatcher (see
+     *  NioNetReceiver.resumeReading()).
+     *
+     * @param receiver a receiver whose dispatcher can accept tasks again
+     */
+    protected void resumeReading(final NioNetReceiver receiver) {
+        postTask(new Runnable() {
+            public void run() {
+                SelectionKey key = receiver.getSelectionKey();
+
+                try {
+                    if (!receiver.resumeReading() && key.isValid())
+                        closeConnection((ChannelEntry) key.attachment());
+                } catch (IOException e) {
+                    Debug.signal(Debug.WARNING, NetSelectorThread.this, "Connection closed : " + e.toString());
+
+                    if (key.isValid())
+                        closeConnection((ChannelEntry) key.attachment());
+                } catch (Exception e) {
+                    // serious error while processing message
+                    Debug.signal(Debug.ERROR, NetSelectorThread.this, e);
+
+                    if (key.isValid())
+                        closeConnection((ChannelEntry) key.attachment());
+                }
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To post a task that will be executed by this thread. The selector is
+     *  woken up if it was waiting.
+     *
+     * @param task task to run
+     */
+    protected void postTask(Runnable task) {
+        this.pendingTasks.add(task);
+        this.selector.wakeup();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Runs the tasks posted by other threads.
+     */
+    private void runPendingTasks() {
+        Runnable task;
+
+        while ((task = (Runnable) this.pendingTasks.poll()) != null) {
+            try {
+                task.run();
+            } catch (CancelledKeyException e) {
+                // channel closed meanwhile
+            } catch (Exception e) {
+                Debug.signal(Debug.ERROR, this, e);
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes the pending data of a sender and updates the interest ops of its key.
+     *  Called by this thread only.
+     *
+     * @param sender sender to flush
+     */
+    protected void flushSender(NioNetSender sender) {
+        SelectionKey key = sender.getSelectionKey();
+
+        if (key == null || !key.isValid())
+            return; // not registered yet or already closed
+
+        try {
+            writeChannel((ChannelEntry) key.attachment());
+        } catch (CancelledKeyException e) {
+            // channel closed meanwhile
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, this, "Connection closed : " + e.toString());
+            closeConnection((ChannelEntry) key.attachment());
+        } catch (Exception e) {
+            // a message failed to encode
+            Debug.signal(Debug.ERROR, this, e);
+            closeConnection((ChannelEntry) key.attachment());
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes what we can of a connection's pending data.
+     *
+     * @param entry connection entry
+     * @exception IOException if the socket has been closed
+     */
+    private void writeChannel(ChannelEntry entry) throws IOException {
+        boolean remaining = entry.sender.writeChannel();
+
+        if (entry.sender.isClosing() && !remaining) {
+            closeChannel(entry); // everything has been sent
+            return;
+        }
+
+        if (remaining)
+            entry.key.interestOps(entry.key.interestOps() | SelectionKey.OP_WRITE);
+        else
+            entry.key.interestOps(entry.key.interestOps() & ~SelectionKey.OP_WRITE);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Closes the channels of the connections that failed to send their last
+     *  messages before the closing delay.
+     *
+     * @param now current time
+     */
+    private void checkClosingChannels(long now) {
+        Iterator it = this.selector.keys().iterator();
+
+        while (it.hasNext()) {
+            ChannelEntry entry = (ChannelEntry) ((SelectionKey) it.next()).attachment();
+
+            if (entry.sender.isClosing() && entry.sender.getClosingDeadline() < now)
+                closeChannel(entry);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Closes the channel and asks the NetConnection to perform some cleanup
+     *  ( signals that the connection was closed to the connectionListeners ).
+     *
+     * @param entry connection entry
+     */
+    private void closeConnection(ChannelEntry entry) {
+        closeChannel(entry);
+        entry.receiver.connectionFailed();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Cancels the key of the entry, closes its channel and releases the compressor
+     *  of its sender.
+     *
+     * @param entry connection entry
+     */
+    private void closeChannel(ChannelEntry entry) {
+        if (!entry.key.isValid())
+            return;
+
+        entry.key.cancel();
+        this.nbChannels.decrementAndGet();
+
+        try {
+            entry.key.channel().close();
+        } catch (IOException e) {
+            // channel probably already closed...
+        }
+
+        entry.sender.channelClosed();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of channels registered on this selector.
+     *
+     * @return number of channels
+     */
+    public int getNbChannels() {
+        return this.nbChannels.get();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To stop this thread. All the remaining channels are closed.
+     */
+    public synchronized void stopThread() {
+        this.stopThread = true;
+        this.selector.wakeup();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Should this thread stop ?
+     *
+     * @return true if the thread should stop.
+     */
+    private synchronized boolean shouldStopThread() {
+        return this.stopThread;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A registered connection : attachment of its selection key.
+     */
+    private static class ChannelEntry {
+
+        protected NioNetReceiver receiver;
+
+        protected NioNetSender sender;
+
+        protected SelectionKey key;
+
+        protected ChannelEntry(NioNetReceiver receiver, NioNetSender sender) {
+            this.receiver = receiver;
+            this.sender = sender;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
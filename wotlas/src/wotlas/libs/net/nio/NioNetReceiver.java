@@ -0,0 +1,426 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net.nio;
+
+import java.io.DataInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.net.Socket;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import java.util.LinkedList;
+import wotlas.libs.net.NetBufferCodec;
+import wotlas.libs.net.NetConnection;
+import wotlas.libs.net.NetDispatcher;
+import wotlas.libs.net.NetFrameWriter;
+import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.NetMessageBehaviour;
+import wotlas.libs.net.NetReceiver;
+
+/** An asynchronous NetReceiver that has no thread of its own. A NetSelectorThread
+ *  reads the incoming data of the non-blocking socket channel in our buffer, then
+ *  we decode the complete messages it contains and execute their behaviour.
+ *<br>
+ *  In the framed wire format (see NetFrameWriter) we wait for a complete frame. In
+ *  the unframed format messages are not length-prefixed : a message is complete when
+ *  its decode() succeeds. If we reach the end of our buffer during a decode() we just
+ *  wait for more data. NetBufferCodec messages are decoded directly from our buffer.
+ *<br>
+ *  The behaviours of our messages are always executed by a NetDispatcher : a slow
+ *  behaviour must not stall the other connections of our selector thread. If no
+ *  dispatcher is set we use the default one. The selector thread never waits for the
+ *  dispatcher : if its queue is full we keep the decoded messages and stop reading our
+ *  channel until the dispatcher has caught up. Only this connection waits.
+ *<br>
+ *  The handshake messages are given to the dispatcher too. As they change our wire
+ *  format we stop decoding and reading our channel until their behaviour has been
+ *  executed, then the selector thread decodes what follows in the new format. They
+ *  arrive before any frame, so we never have to stop in the middle of a frame.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.nio.NetSelectorThread
+ */
+
+public class NioNetReceiver extends NetReceiver {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our socket channel (non-blocking).
+     */
+    private SocketChannel channel;
+
+    /** The selector thread that performs our I/O.
+     */
+    private NetSelectorThread selectorThread;
+
+    /** Our selection key, set by the selector thread on registration.
+     */
+    private SelectionKey key;
+
+    /** Received data not decoded yet.
+     */
+    private ByteBuffer readBuffer;
+
+    /** Stream used to decode messages from the readBuffer.
+     */
+    private DataInputStream inStream;
+
+    /** Tasks our dispatcher could not queue yet, null if there is none. While we have
+     *  some we don't read our channel. Used by the selector thread only.
+     */
+    private LinkedList waitingTasks;
+
+    /** True while the behaviour of a handshake message has not been executed. We then
+     *  don't decode nor read our channel : we don't know its wire format yet.
+     */
+    private volatile boolean handshaking;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /**  Constructor. Should be called only by the NetConnection implementations.
+     *
+     * @param socket a previously created & connected socket with a non-blocking channel.
+     * @param connection a NetConnection linked to the specified socket.
+     * @param sessionContext session object to give to messages when they arrive.
+     * @param bufferSize initial size (in bytes) of our read buffer.
+     * @param selectorThread the selector thread that will read our data.
+     */
+    public NioNetReceiver(Socket socket, NetConnection connection, Object sessionContext, int bufferSize, NetSelectorThread selectorThread) {
+        super(socket, connection, sessionContext);
+        this.channel = socket.getChannel();
+        this.selectorThread = selectorThread;
+        this.readBuffer = ByteBuffer.allocate(bufferSize);
+        this.inStream = new DataInputStream(new BufferInputStream());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** We don't start any thread : we just ask our selector thread to read our data.
+     */
+    @Override
+    public void start() {
+        if (getDispatcher() == null)
+            setDispatcher(null); // the default dispatcher
+
+        this.selectorThread.enableReading(this);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the dispatcher executing our message behaviours. Our selector thread
+     *  must never execute them : if the given dispatcher is null we use the default
+     *  one (see NetDispatcher.getDefaultDispatcher()).
+     *
+     * @param dispatcher dispatcher to use, null for the default dispatcher.
+     */
+    @Override
+    public void setDispatcher(NetDispatcher dispatcher) {
+        if (dispatcher == null)
+            dispatcher = NetDispatcher.getDefaultDispatcher();
+
+        super.setDispatcher(dispatcher);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** No thread here : the selector thread does the work.
+     */
+    @Override
+    public void run() {
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads the available data of our channel and processes the complete messages.
+     *  Called by the selector thread only.
+     *
+     * @return false if the connection has ended, true otherwise.
+     * @exception IOException if the socket has been closed or the stream is corrupted.
+     * @exception Exception if a message failed to be decoded or processed.
+     */
+    protected boolean readChannel() throws Exception {
+        if (this.waitingTasks != null || this.handshaking)
+            return true; // we wait for our dispatcher
+
+        if (!this.readBuffer.hasRemaining()) {
+            // a message is bigger than our buffer
+            ByteBuffer tmp = ByteBuffer.allocate(this.readBuffer.capacity() * 2);
+            this.readBuffer.flip();
+            tmp.put(this.readBuffer);
+            this.readBuffer = tmp;
+        }
+
+        if (this.channel.read(this.readBuffer) < 0)
+            return false; // end of stream
+
+        this.readBuffer.flip();
+
+        try {
+            return decodeMessages();
+        } finally {
+            this.readBuffer.compact();
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Decodes and processes the complete messages of our buffer.
+     *
+     * @return false if the connection has ended, true otherwise.
+     * @exception IOException if the stream is corrupted or has an unknown message.
+     * @exception Exception if a message failed to be decoded or processed.
+     */
+    private boolean decodeMessages() throws Exception {
+        while (this.readBuffer.hasRemaining() && this.waitingTasks == null && !this.handshaking && !shouldStopThread()) {
+            if (isFramed()) {
+                if (this.readBuffer.remaining() < 4)
+                    return true; // we wait for the frame length
+
+                int start = this.readBuffer.position();
+                int length = this.readBuffer.getInt(start);
+
+                if (length < 1 || length > NetFrameWriter.MAX_FRAME_SIZE)
+                    throw new IOException("Corrupted frame, length is " + length);
+
+                if (this.readBuffer.remaining() < 4 + length)
+                    return true; // incomplete frame, we wait for more data
+
+                this.readBuffer.position(start + 4 + length);
+
+                if (!processFrame(this.readBuffer.array(), this.readBuffer.arrayOffset() + start + 4, length))
+                    return false; // end of connection
+                continue;
+            }
+
+            int start = this.readBuffer.position();
+            NetMessageBehaviour msg = null;
+
+            try {
+                // we reconstruct the message from its header
+                msg = readHeader(this.inStream);
+
+                // decode data in the message behaviour class
+                if (msg instanceof NetBufferCodec)
+                    ((NetBufferCodec) msg).decode(this.readBuffer);
+                else
+                    ((NetMessage) msg).decode(this.inStream);
+            } catch (EOFException e) {
+                this.readBuffer.position(start);
+                return true; // incomplete message, we wait for more data
+            } catch (BufferUnderflowException e) {
+                this.readBuffer.position(start);
+                return true; // incomplete message, we wait for more data
+            } catch (ClassNotFoundException e) {
+                // messages are not length-prefixed : we can't find the next one
+                throw new IOException("Unknown message, stream lost : " + e.getMessage());
+            }
+
+            if (!processMessage(msg))
+                return false; // end of connection
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Gives a task to our dispatcher without waiting. If its queue is full we keep the
+     *  task, stop reading our channel and ask the dispatcher to tell us when it can
+     *  accept tasks again. Called by the selector thread only.
+     *
+     * @param task a message behaviour or the closing of our connection
+     */
+    @Override
+    protected void dispatchBehaviour(Runnable task) {
+        if (this.waitingTasks == null) {
+            if (getDispatcher().offer(this, task))
+                return;
+
+            this.waitingTasks = new LinkedList();
+
+            SelectionKey key = getSelectionKey();
+
+            if (key != null && key.isValid())
+                key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+
+            waitForDispatcher();
+        }
+
+        this.waitingTasks.add(task); // after the tasks already waiting
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Gives a handshake message to our dispatcher. We stop reading our channel until
+     *  its behaviour has switched our wire format, then our selector thread resumes
+     *  reading. Called by the selector thread only.
+     *
+     * @param msg a received and decoded handshake message
+     */
+    @Override
+    protected void executeHandshake(NetMessageBehaviour msg) {
+        this.handshaking = true;
+
+        SelectionKey key = getSelectionKey();
+
+        if (key != null && key.isValid())
+            key.interestOps(key.interestOps() & ~SelectionKey.OP_READ);
+
+        final Runnable behaviour = new DispatchedBehaviour(msg);
+
+        dispatchBehaviour(new Runnable() {
+            public void run() {
+                behaviour.run(); // closes the connection if it fails
+                NioNetReceiver.this.handshaking = false;
+                NioNetReceiver.this.selectorThread.resumeReading(NioNetReceiver.this);
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Asks our dispatcher to tell our selector thread when it can accept tasks again.
+     */
+    private void waitForDispatcher() {
+        getDispatcher().notifyWhenReady(this, new Runnable() {
+            public void run() {
+                NioNetReceiver.this.selectorThread.resumeReading(NioNetReceiver.this);
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Called by the selector thread when our dispatcher can accept tasks again or when
+     *  a handshake behaviour has been executed. We give the dispatcher our waiting tasks,
+     *  then we process the messages left in our buffer and start reading our channel
+     *  again.
+     *
+     * @return false if the connection has ended, true otherwise.
+     * @exception IOException if the stream is corrupted.
+     * @exception Exception if a message failed to be decoded or processed.
+     */
+    protected boolean resumeReading() throws Exception {
+        if (this.waitingTasks != null) {
+            while (!this.waitingTasks.isEmpty()) {
+                if (!getDispatcher().offer(this, (Runnable) this.waitingTasks.getFirst())) {
+                    waitForDispatcher(); // full again
+                    return true;
+                }
+
+                this.waitingTasks.removeFirst();
+            }
+
+            this.waitingTasks = null;
+        }
+
+        if (this.handshaking)
+            return true; // the handshake behaviour will call us again
+
+        SelectionKey key = getSelectionKey();
+
+        if (key == null || !key.isValid())
+            return true; // connection closed meanwhile
+
+        this.readBuffer.flip();
+
+        try {
+            if (!decodeMessages())
+                return false; // end of connection
+        } finally {
+            this.readBuffer.compact();
+        }
+
+        if (this.waitingTasks == null && !this.handshaking)
+            key.interestOps(key.interestOps() | SelectionKey.OP_READ);
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Called by the selector thread when our channel has failed or reached its end.
+     *  We ask the NetConnection to perform some cleanup and signal that the connection
+     *  was closed ( connectionListener ).
+     */
+    protected void connectionFailed() {
+        closeConnection();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set our selection key. Called by the selector thread on registration.
+     *
+     * @param key our selection key
+     */
+    protected synchronized void setSelectionKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get our selection key.
+     *
+     * @return our selection key, null if we are not registered yet
+     */
+    protected synchronized SelectionKey getSelectionKey() {
+        return this.key;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** An input stream on the current content of our read buffer. It signals the
+     *  end of the buffered data as an end of stream.
+     */
+    private class BufferInputStream extends InputStream {
+
+        @Override
+        public int read() {
+            if (!NioNetReceiver.this.readBuffer.hasRemaining())
+                return -1;
+            return NioNetReceiver.this.readBuffer.get() & 0xff;
+        }
+
+        @Override
+        public int read(byte b[], int off, int len) {
+            if (len == 0)
+                return 0;
+
+            int nb = Math.min(len, NioNetReceiver.this.readBuffer.remaining());
+
+            if (nb == 0)
+                return -1;
+
+            NioNetReceiver.this.readBuffer.get(b, off, nb);
+            return nb;
+        }
+
+        @Override
+        public int available() {
+            return NioNetReceiver.this.readBuffer.remaining();
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,321 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net.nio;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.net.Socket;
+import java.nio.ByteBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.SocketChannel;
+import wotlas.libs.net.NetConnection;
+import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.NetSender;
+
+/** A NetSender that has no thread of its own. Messages are queued like in the
+ *  NetSender, and a NetSelectorThread encodes them in a pending buffer that it writes
+ *  on the non-blocking socket channel. The wire format is the same as the NetSender's.
+ *  Messages are encoded only when the previous data has been written, so the queue
+ *  limits of the NetSender also apply when the peer doesn't read fast enough. The
+ *  encoded data is written from a direct buffer that we reuse.
+ *<br>
+ *  For the SEND_IMMEDIATELY, AGGREGATE_MESSAGES and COALESCE_MESSAGES types we ask the
+ *  selector thread for a flush when the first message is queued : messages queued before
+ *  the flush occurs are naturally aggregated (and coalesced for the COALESCE_MESSAGES
+ *  type, as long as they wait in the queue). For the USER_AGGREGATION type the flush is
+ *  requested by sendAllMessages().
+ *
+ * @author Aldiss
+ * @see wotlas.libs.net.nio.NetSelectorThread
+ */
+
+public class NioNetSender extends NetSender {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Delay we give to the remaining messages to be sent once the socket has been
+     *  closed (ms).
+     */
+    private static final long CLOSING_DELAY = 10000;
+
+    /** Size of our direct write buffer. Larger batches are written from a heap buffer.
+     */
+    private static final int DIRECT_BUFFER_SIZE = 8 * 1024;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our socket channel (non-blocking).
+     */
+    private SocketChannel channel;
+
+    /** The selector thread that performs our I/O.
+     */
+    private NetSelectorThread selectorThread;
+
+    /** Our selection key, set by the selector thread on registration.
+     */
+    private SelectionKey key;
+
+    /** Encoded messages waiting to be written (used only by the selector thread).
+     */
+    private PendingBuffer pendingBytes;
+
+    /** Stream on pendingBytes to encode our messages.
+     */
+    private DataOutputStream pendingStream;
+
+    /** Data currently being written on the channel (used only by the selector thread).
+     */
+    private ByteBuffer writeBuffer;
+
+    /** Our reusable direct buffer, created on the first write.
+     */
+    private ByteBuffer directBuffer;
+
+    /** Has a flush already been requested to the selector thread ?
+     */
+    private boolean flushRequested;
+
+    /** Task we post to the selector thread to flush our data.
+     */
+    private Runnable flushTask;
+
+    /** Time after which the channel is closed even if some data remains (0 if
+     *  closeSocket() has not been called).
+     */
+    private volatile long closingDeadline;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. Should be called only by the NetConnection implementations.
+     *
+     * @param socket a previously created & connected socket with a non-blocking channel.
+     * @param connection a NetConnection linked to the specified socket.
+     * @param senderType NetSender type ( SEND_IMMEDIATELY, AGGREGATE_MESSAGES, USER_AGGREGATION
+     *        or COALESCE_MESSAGES )
+     * @param selectorThread the selector thread that will write our data.
+     */
+    public NioNetSender(Socket socket, NetConnection connection, byte senderType, NetSelectorThread selectorThread) {
+        super(socket, connection, senderType);
+        this.channel = socket.getChannel();
+        this.selectorThread = selectorThread;
+        this.pendingBytes = new PendingBuffer(1024);
+        this.pendingStream = new DataOutputStream(this.pendingBytes);
+        this.flushRequested = false;
+        this.closingDeadline = 0;
+
+        this.flushTask = new Runnable() {
+            public void run() {
+                NioNetSender.this.selectorThread.flushSender(NioNetSender.this);
+            }
+        };
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** No thread here : the selector thread does the work.
+     */
+    @Override
+    public void run() {
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To queue a message. This method never blocks.
+     *
+     * @param message message to queue.
+     */
+    @Override
+    public void queueMessage(NetMessage message) {
+        if (isClosing() || !offerMessage(message))
+            return; // socket closed or queue overflow
+
+        if (getSenderType() != NetSender.USER_AGGREGATION)
+            requestFlush();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Our queue has overflowed : we ask the selector thread to close the connection.
+     */
+    @Override
+    protected void queueOverflowed() {
+        this.selectorThread.postTask(new Runnable() {
+            public void run() {
+                NioNetSender.this.getConnection().close();
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Asks the selector thread to send the queued messages now. This method never
+     *  blocks on I/O.
+     */
+    @Override
+    public void sendAllMessages() {
+        requestFlush();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Posts our flush task to the selector thread if it's not already done.
+     */
+    private void requestFlush() {
+        synchronized (this) {
+            if (this.flushRequested)
+                return;
+            this.flushRequested = true;
+        }
+
+        this.selectorThread.postTask(this.flushTask);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Encodes our queued messages and writes what we can of them on the channel.
+     *  Called by the selector thread only. Never blocks.
+     *
+     * @return true if some data remains to be written.
+     * @exception IOException if the socket has been closed or a message failed to encode.
+     */
+    protected boolean writeChannel() throws IOException {
+        synchronized (this) {
+            this.flushRequested = false;
+        }
+
+        while (true) {
+            if (this.writeBuffer == null || !this.writeBuffer.hasRemaining()) {
+                int nbMessages = writeQueuedMessages(this.pendingStream);
+
+                if (this.pendingBytes.size() == 0) {
+                    this.writeBuffer = null;
+                    return false; // everything has been sent
+                }
+
+                this.writeBuffer = this.pendingBytes.toWriteBuffer();
+                this.pendingBytes.reset();
+                messagesSent(nbMessages);
+            }
+
+            this.channel.write(this.writeBuffer);
+
+            if (this.writeBuffer.hasRemaining())
+                return true; // socket buffer full, we'll wait for OP_WRITE
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Closes the socket once the remaining messages have been sent. This method
+     *  returns immediately.
+     */
+    @Override
+    public void closeSocket() {
+        synchronized (this) {
+            if (this.closingDeadline != 0)
+                return;
+            this.closingDeadline = System.currentTimeMillis() + NioNetSender.CLOSING_DELAY;
+            this.flushRequested = false; // we want a last flush
+        }
+
+        requestFlush();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Called by the selector thread when our channel has been closed. We release the
+     *  compressor of our frames.
+     */
+    protected void channelClosed() {
+        endFrameWriter();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Are we waiting to close the socket ?
+     *
+     * @return true if closeSocket() has been called
+     */
+    protected boolean isClosing() {
+        return this.closingDeadline != 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the time after which the socket is closed even if data remains.
+     *
+     * @return closing deadline
+     */
+    protected long getClosingDeadline() {
+        return this.closingDeadline;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set our selection key. Called by the selector thread on registration.
+     *
+     * @param key our selection key
+     */
+    protected synchronized void setSelectionKey(SelectionKey key) {
+        this.key = key;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get our selection key.
+     *
+     * @return our selection key, null if we are not registered yet
+     */
+    protected synchronized SelectionKey getSelectionKey() {
+        return this.key;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A ByteArrayOutputStream that copies its data in the buffer we write on the channel.
+     */
+    private class PendingBuffer extends ByteArrayOutputStream {
+
+        protected PendingBuffer(int size) {
+            super(size);
+        }
+
+        /** Returns a buffer ready to be written, with a copy of our data : our direct
+         *  buffer if the data fits in it.
+         */
+        protected ByteBuffer toWriteBuffer() {
+            if (this.count > NioNetSender.DIRECT_BUFFER_SIZE)
+                return ByteBuffer.wrap(toByteArray());
+
+            if (NioNetSender.this.directBuffer == null)
+                NioNetSender.this.directBuffer = ByteBuffer.allocateDirect(NioNetSender.DIRECT_BUFFER_SIZE);
+
+            ByteBuffer buffer = NioNetSender.this.directBuffer;
+            buffer.clear();
+            buffer.put(this.buf, 0, this.count);
+            buffer.flip();
+            return buffer;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
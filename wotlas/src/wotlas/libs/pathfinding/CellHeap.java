@@ -0,0 +1,206 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+/** An indexed binary heap of cells, used as the open list of our grid searches.
+ *  Cells are int indexes ( y*width + x ) and are sorted on their f cost, then on
+ *  their g cost (the higher g first).
+ *<br>
+ *  A cell is in the heap at most once : when a shorter path is found for it we
+ *  just move it up with decrease(). The heap position of each cell is kept in an
+ *  array so that we never search the heap. Nothing is allocated after construction.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.pathfinding.GridAStar
+ */
+
+public class CellHeap {
+    /*------------------------------------------------------------------------------------*/
+
+    /** Cells of the heap, heap[0] is the best one.
+     */
+    private int heap[];
+
+    /** f cost of the cells, in heap order.
+     */
+    private float heapF[];
+
+    /** g cost of the cells, in heap order.
+     */
+    private float heapG[];
+
+    /** Position of each cell in the heap. Only valid for cells that are in the heap.
+     */
+    private int position[];
+
+    /** Number of cells in the heap.
+     */
+    private int size;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param nbCells number of cells of the grid.
+     */
+    public CellHeap(int nbCells) {
+        this.heap = new int[nbCells];
+        this.heapF = new float[nbCells];
+        this.heapG = new float[nbCells];
+        this.position = new int[nbCells];
+        this.size = 0;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To empty the heap.
+     */
+    public void clear() {
+        this.size = 0;
+    }
+
+    /** Is the heap empty ?
+     */
+    public boolean isEmpty() {
+        return this.size == 0;
+    }
+
+    /** To get the number of cells in the heap.
+     */
+    public int size() {
+        return this.size;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To add a cell. The cell must not already be in the heap.
+     *
+     * @param cell cell index
+     * @param f total cost of the cell
+     * @param g cost from the start to the cell
+     */
+    public void add(int cell, float f, float g) {
+        int i = this.size++;
+        this.heap[i] = cell;
+        this.heapF[i] = f;
+        this.heapG[i] = g;
+        this.position[cell] = i;
+        siftUp(i);
+    }
+
+    /** To lower the cost of a cell that is in the heap.
+     *
+     * @param cell cell index
+     * @param f new total cost of the cell
+     * @param g new cost from the start to the cell
+     */
+    public void decrease(int cell, float f, float g) {
+        int i = this.position[cell];
+        this.heapF[i] = f;
+        this.heapG[i] = g;
+        siftUp(i);
+    }
+
+    /** To remove the best cell of the heap. The heap must not be empty.
+     *
+     * @return the cell with the lowest f cost
+     */
+    public int poll() {
+        int best = this.heap[0];
+        this.size--;
+
+        if (this.size > 0) {
+            move(this.size, 0);
+            siftDown(0);
+        }
+
+        return best;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Returns true if the entry at position i must be before the entry at position j.
+     */
+    private boolean before(int i, int j) {
+        if (this.heapF[i] != this.heapF[j])
+            return this.heapF[i] < this.heapF[j];
+        return this.heapG[i] > this.heapG[j];
+    }
+
+    /** Moves the entry at position "from" to position "to".
+     */
+    private void move(int from, int to) {
+        this.heap[to] = this.heap[from];
+        this.heapF[to] = this.heapF[from];
+        this.heapG[to] = this.heapG[from];
+        this.position[this.heap[to]] = to;
+    }
+
+    /** Swaps the entries at positions i and j.
+     */
+    private void swap(int i, int j) {
+        int cell = this.heap[i];
+        float f = this.heapF[i];
+        float g = this.heapG[i];
+
+        move(j, i);
+
+        this.heap[j] = cell;
+        this.heapF[j] = f;
+        this.heapG[j] = g;
+        this.position[cell] = j;
+    }
+
+    /** Moves up the entry at position i.
+     */
+    private void siftUp(int i) {
+        while (i > 0) {
+            int parent = (i - 1) >> 1;
+
+            if (!before(i, parent))
+                return;
+
+            swap(i, parent);
+            i = parent;
+        }
+    }
+
+    /** Moves down the entry at position i.
+     */
+    private void siftDown(int i) {
+        while (true) {
+            int child = 2 * i + 1;
+
+            if (child >= this.size)
+                return;
+
+            if (child + 1 < this.size && before(child + 1, child))
+                child++;
+
+            if (!before(child, i))
+                return;
+
+            swap(i, child);
+            i = child;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
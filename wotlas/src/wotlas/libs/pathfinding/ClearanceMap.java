@@ -0,0 +1,363 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.util.concurrent.Callable;
+import wotlas.utils.ParallelLoader;
+
+/** The clearance of each cell of a mask : the size of the largest free square whose
+ *  top-left corner is the cell (0 if the cell is blocked). A sprite of size s fits
+ *  on a cell if the clearance of the cell is at least s, so a single byte read tells
+ *  if a cell is valid, and the same map serves all the sprite sizes.
+ *<br>
+ *  Clearances are computed once, from the bottom-right corner of the mask :
+ *  clearance(x,y) = min( free cells on the right, free cells below,
+ *  clearance(x+1,y+1) + 1 ). The runs of free cells of each row and column are
+ *  independent, and so are the diagonals of the last pass : on large masks they are
+ *  computed by a ParallelLoader.
+ *<br>
+ *  A ClearanceMap is immutable. Clearances are limited to 127 cells : when a rectangle
+ *  of cells changes (a door opens or closes) only the clearances of the cells less than
+ *  127 cells above and on the left of the rectangle can change. getChangedMap() only
+ *  recomputes them, sequentially.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.pathfinding.PathfindingContext
+ */
+
+public class ClearanceMap {
+    /*------------------------------------------------------------------------------------*/
+
+    /** Masks with more cells than this are computed in parallel.
+     */
+    private final static int PARALLEL_THRESHOLD = 256 * 256;
+
+    /** Number of tasks we create for each pass of a parallel computation.
+     */
+    private final static int PARALLEL_TASKS = 16;
+
+    /** Largest clearance we store.
+     */
+    private final static int MAX_CLEARANCE = Byte.MAX_VALUE;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** width of the mask (in CELL units)
+     */
+    private final int width;
+
+    /** height of the mask (in CELL units)
+     */
+    private final int height;
+
+    /** clearance of each cell, clearance[y*width+x] for cell (x,y)
+     */
+    private final byte clearance[];
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. The mask is not kept.
+     *
+     * @param mask mask[i][j] is true if cell(i,j) is not blocked
+     */
+    public ClearanceMap(boolean mask[][]) {
+        this.width = mask.length;
+        this.height = mask[0].length;
+        this.clearance = new byte[this.width * this.height];
+
+        for (int x = 0; x < this.width; x++)
+            for (int y = 0; y < this.height; y++)
+                if (mask[x][y])
+                    this.clearance[y * this.width + x] = 1;
+
+        compute();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor for a changed copy of a map.
+     *
+     * @param clearance clearances of the new map, this array becomes our clearance array.
+     */
+    private ClearanceMap(int width, int height, byte clearance[]) {
+        this.width = width;
+        this.height = height;
+        this.clearance = clearance;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the mask width (in CELL units).
+     */
+    public int getWidth() {
+        return this.width;
+    }
+
+    /** To get the mask height (in CELL units).
+     */
+    public int getHeight() {
+        return this.height;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the clearance of a cell.
+     *
+     * @param x the x coordinate (in CELL units)
+     * @param y the y coordinate (in CELL units)
+     * @return size of the largest free square at this cell, 0 if the cell is blocked
+     *         or out of the mask.
+     */
+    public int getClearance(int x, int y) {
+        if ((x < 0) || (x >= this.width) || (y < 0) || (y >= this.height))
+            return 0;
+
+        return this.clearance[y * this.width + x];
+    }
+
+    /** Is a cell free ?
+     *
+     * @param x the x coordinate (in CELL units)
+     * @param y the y coordinate (in CELL units)
+     * @return true if the cell is in the mask and not blocked
+     */
+    public boolean isFree(int x, int y) {
+        return getClearance(x, y) > 0;
+    }
+
+    /** Does a sprite fit on a cell ?
+     *
+     * @param x the x coordinate (in CELL units) of the sprite's top-left cell
+     * @param y the y coordinate (in CELL units) of the sprite's top-left cell
+     * @param spriteSize size of the sprite (in CELL units)
+     * @return true if all the cells under the sprite are free
+     */
+    public boolean fits(int x, int y, int spriteSize) {
+        if ((x < 0) || (x >= this.width) || (y < 0) || (y >= this.height))
+            return false;
+
+        return this.clearance[y * this.width + x] >= spriteSize;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get a copy of this map where all the cells of a rectangle are set free or
+     *  blocked. This map is not modified.
+     *
+     * @param x x of the rectangle's top-left cell
+     * @param y y of the rectangle's top-left cell
+     * @param w width of the rectangle (in CELL units)
+     * @param h height of the rectangle (in CELL units)
+     * @param value new value of the cells ( false : blocked )
+     * @return the new map
+     */
+    public ClearanceMap getChangedMap(int x, int y, int w, int h, boolean value) {
+        byte changed[] = (byte[]) this.clearance.clone();
+
+        // the cells whose clearance can change : [x0,x1[ x [y0,y1[
+        int x0 = Math.max(x - ClearanceMap.MAX_CLEARANCE, 0);
+        int y0 = Math.max(y - ClearanceMap.MAX_CLEARANCE, 0);
+        int x1 = Math.min(x + w, this.width);
+        int y1 = Math.min(y + h, this.height);
+
+        if (x1 <= Math.max(x, 0) || y1 <= Math.max(y, 0))
+            return new ClearanceMap(this.width, this.height, changed); // nothing changes
+
+        int regionWidth = x1 - x0;
+        byte right[] = new byte[regionWidth * (y1 - y0)];
+        byte down[] = new byte[right.length];
+
+        // 1 - free cells on the right, starting with the cells after the region
+        for (int j = y0; j < y1; j++) {
+            int run = getRun(x1, j, 1, 0);
+
+            for (int i = x1 - 1; i >= x0; i--) {
+                run = isFree(i, j, x, y, w, h, value) ? Math.min(run + 1, ClearanceMap.MAX_CLEARANCE) : 0;
+                right[(j - y0) * regionWidth + i - x0] = (byte) run;
+            }
+        }
+
+        // 2 - free cells below, starting with the cells after the region
+        for (int i = x0; i < x1; i++) {
+            int run = getRun(i, y1, 0, 1);
+
+            for (int j = y1 - 1; j >= y0; j--) {
+                run = isFree(i, j, x, y, w, h, value) ? Math.min(run + 1, ClearanceMap.MAX_CLEARANCE) : 0;
+                down[(j - y0) * regionWidth + i - x0] = (byte) run;
+            }
+        }
+
+        // 3 - clearances, from the bottom-right corner of the region
+        for (int j = y1 - 1; j >= y0; j--) {
+            for (int i = x1 - 1; i >= x0; i--) {
+                int local = (j - y0) * regionWidth + i - x0;
+                int previous = (i + 1 < this.width && j + 1 < this.height) ? changed[(j + 1) * this.width + i + 1] : 0;
+                changed[j * this.width + i] = (byte) Math.min(Math.min(right[local], down[local]), previous + 1);
+            }
+        }
+
+        return new ClearanceMap(this.width, this.height, changed);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Counts the free cells of this map from a cell, in a direction, up to the largest
+     *  clearance.
+     *
+     * @param x x of the first cell
+     * @param y y of the first cell
+     * @param dx x step
+     * @param dy y step
+     * @return number of free cells before a blocked cell or the end of the mask
+     */
+    private int getRun(int x, int y, int dx, int dy) {
+        int run = 0;
+
+        while (run < ClearanceMap.MAX_CLEARANCE && isFree(x, y)) {
+            run++;
+            x += dx;
+            y += dy;
+        }
+
+        return run;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Is a cell free once the cells of a rectangle have been changed ?
+     */
+    private boolean isFree(int i, int j, int x, int y, int w, int h, boolean value) {
+        if (i >= x && i < x + w && j >= y && j < y + h)
+            return value;
+
+        return this.clearance[j * this.width + i] > 0;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Computes the clearances. Our array must contain 1 for the free cells and 0
+     *  for the blocked ones.
+     */
+    private void compute() {
+        final byte right[] = new byte[this.clearance.length];
+        final byte down[] = new byte[this.clearance.length];
+        final int nbDiagonals = this.width + this.height - 1;
+
+        if (this.clearance.length <= ClearanceMap.PARALLEL_THRESHOLD) {
+            computeRows(right, 0, this.height);
+            computeColumns(down, 0, this.width);
+            computeDiagonals(right, down, 0, nbDiagonals);
+            return;
+        }
+
+        ParallelLoader loader = new ParallelLoader("ClearanceMap");
+
+        // 1 - free cells on the right & below
+        for (int t = 0; t < ClearanceMap.PARALLEL_TASKS; t++) {
+            final int rowFrom = this.height * t / ClearanceMap.PARALLEL_TASKS;
+            final int rowTo = this.height * (t + 1) / ClearanceMap.PARALLEL_TASKS;
+            final int colFrom = this.width * t / ClearanceMap.PARALLEL_TASKS;
+            final int colTo = this.width * (t + 1) / ClearanceMap.PARALLEL_TASKS;
+
+            loader.submit(new Callable() {
+                public Object call() {
+                    computeRows(right, rowFrom, rowTo);
+                    computeColumns(down, colFrom, colTo);
+                    return null;
+                }
+            });
+        }
+
+        loader.getResults();
+
+        // 2 - clearances
+        for (int t = 0; t < ClearanceMap.PARALLEL_TASKS; t++) {
+            final int from = nbDiagonals * t / ClearanceMap.PARALLEL_TASKS;
+            final int to = nbDiagonals * (t + 1) / ClearanceMap.PARALLEL_TASKS;
+
+            loader.submit(new Callable() {
+                public Object call() {
+                    computeDiagonals(right, down, from, to);
+                    return null;
+                }
+            });
+        }
+
+        loader.getResults();
+        loader.shutdown();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Computes the number of free cells on the right of each cell (the cell
+     *  included) for some rows.
+     */
+    private void computeRows(byte right[], int rowFrom, int rowTo) {
+        for (int y = rowFrom; y < rowTo; y++) {
+            int run = 0;
+
+            for (int x = this.width - 1; x >= 0; x--) {
+                int cell = y * this.width + x;
+                run = (this.clearance[cell] == 0) ? 0 : Math.min(run + 1, ClearanceMap.MAX_CLEARANCE);
+                right[cell] = (byte) run;
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Computes the number of free cells below each cell (the cell included) for
+     *  some columns.
+     */
+    private void computeColumns(byte down[], int colFrom, int colTo) {
+        for (int x = colFrom; x < colTo; x++) {
+            int run = 0;
+
+            for (int y = this.height - 1; y >= 0; y--) {
+                int cell = y * this.width + x;
+                run = (this.clearance[cell] == 0) ? 0 : Math.min(run + 1, ClearanceMap.MAX_CLEARANCE);
+                down[cell] = (byte) run;
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Computes the clearances of some diagonals. Diagonal d ends at the cell
+     *  (width-1, d) if d < height, at (d-height, height-1) otherwise. We walk it from
+     *  this end, up-left.
+     */
+    private void computeDiagonals(byte right[], byte down[], int from, int to) {
+        for (int d = from; d < to; d++) {
+            int x = (d < this.height) ? this.width - 1 : d - this.height;
+            int y = (d < this.height) ? d : this.height - 1;
+            int previous = 0; // clearance of the cell below-right
+
+            for (; x >= 0 && y >= 0; x--, y--) {
+                int cell = y * this.width + x;
+                int value = Math.min(Math.min(right[cell], down[cell]), previous + 1);
+                this.clearance[cell] = (byte) value;
+                previous = value;
+            }
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
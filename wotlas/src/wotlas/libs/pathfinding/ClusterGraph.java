@@ -0,0 +1,861 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.awt.Point;
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import wotlas.utils.Debug;
+import wotlas.utils.List;
+
+/** A hierarchical view of a mask for long distance searches (HPA*). The mask is cut
+ *  in square clusters. Where two neighbour clusters have a free border we create
+ *  entrance nodes, one on each side, linked by a step of cost 1. Inside a cluster
+ *  the distances between the entrance nodes are precomputed.
+ *<br>
+ *  A search then connects the start and the goal to the nodes of their cluster, runs
+ *  an A* on this small abstract graph and refines each abstract step with a search
+ *  limited to one cluster. Paths are close to the optimal ones (they only cross
+ *  cluster borders at entrance nodes) and the cost of a search hardly depends on
+ *  the distance.
+ *<br>
+ *  A ClusterGraph is immutable, it can be used by many threads at the same time. It
+ *  is only valid for the mask and sprite size it was built for : it must be rebuilt
+ *  when the mask changes. As building it takes some time on large masks, it can be
+ *  saved in a file and loaded back (see getClusterGraph()).
+ *
+ * @author Aldiss
+ * @see wotlas.libs.pathfinding.PathfindingContext
+ */
+
+public class ClusterGraph {
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default size of a cluster (in CELL units).
+     */
+    public final static int DEFAULT_CLUSTER_SIZE = 16;
+
+    /** Extension we add to the mask file name to get the name of the graph's file.
+     */
+    public final static String FILE_EXT = ".hpa";
+
+    /** Beginning of our files.
+     */
+    private final static int FILE_MAGIC = 0x57485041; // WHPA
+
+    /** Version of our file format.
+     */
+    private final static int FILE_VERSION = 1;
+
+    /** Entrances shorter than this length get one node in their middle, the others
+     *  get one node at each end.
+     */
+    private final static int ENTRANCE_SPLIT = 6;
+
+    /** x offsets of the 8 neighbours.
+     */
+    private final static int NEIGHBOUR_DX[] = { 0, 1, 0, -1, -1, -1, 1, 1 };
+
+    /** y offsets of the 8 neighbours.
+     */
+    private final static int NEIGHBOUR_DY[] = { -1, 0, 1, 0, -1, 1, 1, -1 };
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** width of the mask (in CELL units)
+     */
+    private final int mapWidth;
+
+    /** height of the mask (in CELL units)
+     */
+    private final int mapHeight;
+
+    /** size of the sprite (in CELL units)
+     */
+    private final int spriteSize;
+
+    /** size of a cluster (in CELL units)
+     */
+    private final int clusterSize;
+
+    /** number of clusters on a row
+     */
+    private final int clustersPerRow;
+
+    /** free[y*mapWidth+x] is true if the sprite fits on cell (x,y), see isNotBlock()
+     */
+    private final boolean free[];
+
+    /** checksum of the free cells, to validate our saved files
+     */
+    private final long checksum;
+
+    /** cell index of each node
+     */
+    private final int nodeCell[];
+
+    /** node of each cell, -1 if the cell is not a node
+     */
+    private final int cellNode[];
+
+    /** first nodes of each cluster in the nodes of clusterNodes, the nodes of cluster
+     *  c are clusterNodes[clusterStart[c]] to clusterNodes[clusterStart[c+1]-1]
+     */
+    private final int clusterStart[];
+
+    /** nodes sorted by cluster
+     */
+    private final int clusterNodes[];
+
+    /** first edge of each node, the edges of node n are edgeStart[n] to edgeStart[n+1]-1
+     */
+    private final int edgeStart[];
+
+    /** target node of each edge
+     */
+    private final int edgeTarget[];
+
+    /** cost of each edge
+     */
+    private final int edgeCost[];
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the graph of a context. If a file is given we first try to load the
+     *  graph from it. If the file doesn't exist or was saved for another mask we
+     *  build the graph and save it in the file.
+     *
+     * @param context context of the mask
+     * @param fileName file where the graph is saved, null if we don't want a file.
+     * @return the graph of the context
+     */
+    public static ClusterGraph getClusterGraph(PathfindingContext context, String fileName) {
+        ClusterGraph graph = null;
+
+        if (fileName != null && new File(fileName).exists())
+            graph = ClusterGraph.load(context, ClusterGraph.DEFAULT_CLUSTER_SIZE, fileName);
+
+        if (graph != null)
+            return graph;
+
+        graph = new ClusterGraph(context, ClusterGraph.DEFAULT_CLUSTER_SIZE);
+
+        if (fileName != null)
+            graph.save(fileName);
+
+        return graph;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. Builds the graph of a context.
+     *
+     * @param context context of the mask
+     * @param clusterSize size of a cluster (in CELL units)
+     */
+    public ClusterGraph(PathfindingContext context, int clusterSize) {
+        this.mapWidth = context.getMaskWidth();
+        this.mapHeight = context.getMaskHeight();
+        this.spriteSize = context.getSpriteSize();
+        this.clusterSize = clusterSize;
+        this.clustersPerRow = (this.mapWidth + clusterSize - 1) / clusterSize;
+        this.free = ClusterGraph.getFreeCells(context);
+        this.checksum = ClusterGraph.getChecksum(this.free);
+        this.cellNode = new int[this.free.length];
+
+        // 1 - entrance nodes and the steps between clusters
+        IntList nodes = new IntList();
+        IntList interEdges = new IntList(); // pairs of nodes
+        Arrays.fill(this.cellNode, -1);
+
+        int clustersPerColumn = (this.mapHeight + clusterSize - 1) / clusterSize;
+
+        for (int cy = 0; cy < clustersPerColumn; cy++)
+            for (int cx = 0; cx < this.clustersPerRow; cx++) {
+                int x0 = cx * clusterSize;
+                int y0 = cy * clusterSize;
+
+                if (x0 + clusterSize < this.mapWidth) // border with the right cluster
+                    addEntrances(x0 + clusterSize - 1, y0, 0, 1, Math.min(clusterSize, this.mapHeight - y0), 1, 0, nodes, interEdges);
+
+                if (y0 + clusterSize < this.mapHeight) // border with the bottom cluster
+                    addEntrances(x0, y0 + clusterSize - 1, 1, 0, Math.min(clusterSize, this.mapWidth - x0), 0, 1, nodes, interEdges);
+            }
+
+        this.nodeCell = nodes.toArray();
+
+        // 2 - nodes sorted by cluster
+        int nbClusters = this.clustersPerRow * clustersPerColumn;
+        this.clusterStart = new int[nbClusters + 1];
+
+        for (int n = 0; n < this.nodeCell.length; n++)
+            this.clusterStart[getCluster(this.nodeCell[n]) + 1]++;
+
+        for (int c = 0; c < nbClusters; c++)
+            this.clusterStart[c + 1] += this.clusterStart[c];
+
+        this.clusterNodes = new int[this.nodeCell.length];
+        int fill[] = (int[]) this.clusterStart.clone();
+
+        for (int n = 0; n < this.nodeCell.length; n++)
+            this.clusterNodes[fill[getCluster(this.nodeCell[n])]++] = n;
+
+        // 3 - edges : steps between clusters and distances inside the clusters
+        IntList edges[] = new IntList[this.nodeCell.length]; // pairs of target & cost
+
+        for (int n = 0; n < edges.length; n++)
+            edges[n] = new IntList();
+
+        for (int i = 0; i < interEdges.size(); i += 2) {
+            edges[interEdges.get(i)].add(interEdges.get(i + 1));
+            edges[interEdges.get(i)].add(1);
+            edges[interEdges.get(i + 1)].add(interEdges.get(i));
+            edges[interEdges.get(i + 1)].add(1);
+        }
+
+        LocalSearch local = new LocalSearch();
+
+        for (int n = 0; n < this.nodeCell.length; n++) {
+            int cluster = getCluster(this.nodeCell[n]);
+            local.search(cluster, this.nodeCell[n], -1);
+
+            for (int i = this.clusterStart[cluster]; i < this.clusterStart[cluster + 1]; i++) {
+                int other = this.clusterNodes[i];
+                int d = local.getDistance(this.nodeCell[other]);
+
+                if (other != n && d >= 0) {
+                    edges[n].add(other);
+                    edges[n].add(d);
+                }
+            }
+        }
+
+        // 4 - compact edge arrays
+        this.edgeStart = new int[this.nodeCell.length + 1];
+
+        for (int n = 0; n < edges.length; n++)
+            this.edgeStart[n + 1] = this.edgeStart[n] + edges[n].size() / 2;
+
+        this.edgeTarget = new int[this.edgeStart[edges.length]];
+        this.edgeCost = new int[this.edgeTarget.length];
+
+        for (int n = 0; n < edges.length; n++)
+            for (int i = 0; i < edges[n].size(); i += 2) {
+                int e = this.edgeStart[n] + i / 2;
+                this.edgeTarget[e] = edges[n].get(i);
+                this.edgeCost[e] = edges[n].get(i + 1);
+            }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor for a graph loaded from a file.
+     */
+    private ClusterGraph(PathfindingContext context, int clusterSize, boolean free[], long checksum, int nodeCell[], int edgeStart[], int edgeTarget[], int edgeCost[]) {
+        this.mapWidth = context.getMaskWidth();
+        this.mapHeight = context.getMaskHeight();
+        this.spriteSize = context.getSpriteSize();
+        this.clusterSize = clusterSize;
+        this.clustersPerRow = (this.mapWidth + clusterSize - 1) / clusterSize;
+        this.free = free;
+        this.checksum = checksum;
+        this.nodeCell = nodeCell;
+        this.edgeStart = edgeStart;
+        this.edgeTarget = edgeTarget;
+        this.edgeCost = edgeCost;
+
+        this.cellNode = new int[free.length];
+        Arrays.fill(this.cellNode, -1);
+
+        for (int n = 0; n < nodeCell.length; n++)
+            this.cellNode[nodeCell[n]] = n;
+
+        int nbClusters = this.clustersPerRow * ((this.mapHeight + clusterSize - 1) / clusterSize);
+        this.clusterStart = new int[nbClusters + 1];
+
+        for (int n = 0; n < nodeCell.length; n++)
+            this.clusterStart[getCluster(nodeCell[n]) + 1]++;
+
+        for (int c = 0; c < nbClusters; c++)
+            this.clusterStart[c + 1] += this.clusterStart[c];
+
+        this.clusterNodes = new int[nodeCell.length];
+        int fill[] = (int[]) this.clusterStart.clone();
+
+        for (int n = 0; n < nodeCell.length; n++)
+            this.clusterNodes[fill[getCluster(nodeCell[n])]++] = n;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Returns the free cells of a context (see isNotBlock()).
+     */
+    private static boolean[] getFreeCells(PathfindingContext context) {
+        int width = context.getMaskWidth();
+        int height = context.getMaskHeight();
+        boolean free[] = new boolean[width * height];
+
+        for (int y = 0; y < height; y++)
+            for (int x = 0; x < width; x++)
+                free[y * width + x] = context.isNotBlock(x, y);
+
+        return free;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns the checksum of free cells.
+     */
+    private static long getChecksum(boolean free[]) {
+        byte bytes[] = new byte[free.length];
+
+        for (int i = 0; i < free.length; i++)
+            bytes[i] = (byte) (free[i] ? 1 : 0);
+
+        CRC32 crc = new CRC32();
+        crc.update(bytes);
+        return crc.getValue();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Adds the entrances of a cluster border. We walk along the border and create
+     *  entrance nodes for each run of cells that are free on both sides.
+     *
+     * @param x first cell of the border, on the first cluster's side
+     * @param y first cell of the border, on the first cluster's side
+     * @param stepX direction of the border
+     * @param stepY direction of the border
+     * @param length length of the border
+     * @param crossX offset from a cell to its neighbour in the other cluster
+     * @param crossY offset from a cell to its neighbour in the other cluster
+     * @param nodes list of node cells to update
+     * @param interEdges list of node pairs to update
+     */
+    private void addEntrances(int x, int y, int stepX, int stepY, int length, int crossX, int crossY, IntList nodes, IntList interEdges) {
+        int runStart = -1;
+
+        for (int i = 0; i <= length; i++) {
+            int cx = x + i * stepX;
+            int cy = y + i * stepY;
+            boolean open = i < length && isFree(cx, cy) && isFree(cx + crossX, cy + crossY);
+
+            if (open && runStart < 0)
+                runStart = i;
+
+            if (open || runStart < 0)
+                continue;
+
+            // end of a run
+            int runLength = i - runStart;
+
+            if (runLength < ClusterGraph.ENTRANCE_SPLIT) {
+                addEntrance(x, y, stepX, stepY, runStart + runLength / 2, crossX, crossY, nodes, interEdges);
+            } else {
+                addEntrance(x, y, stepX, stepY, runStart, crossX, crossY, nodes, interEdges);
+                addEntrance(x, y, stepX, stepY, i - 1, crossX, crossY, nodes, interEdges);
+            }
+
+            runStart = -1;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Adds an entrance : the nodes on both sides of the border and their step.
+     */
+    private void addEntrance(int x, int y, int stepX, int stepY, int i, int crossX, int crossY, IntList nodes, IntList interEdges) {
+        int cell = (y + i * stepY) * this.mapWidth + (x + i * stepX);
+        int other = cell + crossY * this.mapWidth + crossX;
+
+        interEdges.add(getNode(cell, nodes));
+        interEdges.add(getNode(other, nodes));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns the node of a cell, creating it if needed.
+     */
+    private int getNode(int cell, IntList nodes) {
+        if (this.cellNode[cell] < 0) {
+            this.cellNode[cell] = nodes.size();
+            nodes.add(cell);
+        }
+
+        return this.cellNode[cell];
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the number of nodes of the abstract graph.
+     */
+    public int getNbNodes() {
+        return this.nodeCell.length;
+    }
+
+    /** To get the size of a cluster (in CELL units).
+     */
+    public int getClusterSize() {
+        return this.clusterSize;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Is the cell (x,y) valid for the path regarding the sprite size ?
+     */
+    private boolean isFree(int x, int y) {
+        if (x < 0 || y < 0 || x >= this.mapWidth || y >= this.mapHeight)
+            return false;
+
+        return this.free[y * this.mapWidth + x];
+    }
+
+    /** Returns the cluster of a cell.
+     */
+    private int getCluster(int cell) {
+        int x = cell % this.mapWidth;
+        int y = cell / this.mapWidth;
+        return (y / this.clusterSize) * this.clustersPerRow + (x / this.clusterSize);
+    }
+
+    /** Estimates the distance between two cells (exact if there is no obstacle).
+     */
+    private int estimate(int cellA, int cellB) {
+        int dx = Math.abs(cellA % this.mapWidth - cellB % this.mapWidth);
+        int dy = Math.abs(cellA / this.mapWidth - cellB / this.mapWidth);
+        return Math.max(dx, dy);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Finds a path between 2 points. The goal should be a valid cell (see
+     *  PathfindingContext.isValidGoal()).
+     *
+     * @param pointStart beginning of the path (in CELL units)
+     * @param pointGoal end of the path (in CELL units)
+     * @return the list of the path's Points, from the start to the goal. The list is
+     *         empty if there is no path. We return null if the start or the goal is
+     *         not a valid cell : a GridAStar should then be used.
+     */
+    public List findPath(Point pointStart, Point pointGoal) {
+        if (!isFree(pointStart.x, pointStart.y) || !isFree(pointGoal.x, pointGoal.y))
+            return null;
+
+        int start = pointStart.y * this.mapWidth + pointStart.x;
+        int goal = pointGoal.y * this.mapWidth + pointGoal.x;
+        int startCluster = getCluster(start);
+        int goalCluster = getCluster(goal);
+
+        LocalSearch local = new LocalSearch();
+        List path = new List();
+
+        // 1 - start & goal in the same cluster
+        if (startCluster == goalCluster && local.search(startCluster, start, goal)) {
+            local.addPath(path, goal);
+            return path;
+        }
+
+        // 2 - distances from the start & the goal to the nodes of their cluster
+        int nbNodes = this.nodeCell.length;
+        int startDist[] = new int[nbNodes];
+        int goalDist[] = new int[nbNodes];
+        Arrays.fill(startDist, -1);
+        Arrays.fill(goalDist, -1);
+
+        local.search(startCluster, start, -1);
+
+        for (int i = this.clusterStart[startCluster]; i < this.clusterStart[startCluster + 1]; i++)
+            startDist[this.clusterNodes[i]] = local.getDistance(this.nodeCell[this.clusterNodes[i]]);
+
+        local.search(goalCluster, goal, -1);
+
+        for (int i = this.clusterStart[goalCluster]; i < this.clusterStart[goalCluster + 1]; i++)
+            goalDist[this.clusterNodes[i]] = local.getDistance(this.nodeCell[this.clusterNodes[i]]);
+
+        // 3 - abstract search
+        int nodes[] = searchNodes(start, goal, startDist, goalDist);
+
+        if (nodes == null)
+            return path; // no path
+
+        // 4 - refinement : start -> first node -> ... -> last node -> goal
+        int from = start;
+        path.addElement(new Point(pointStart.x, pointStart.y));
+
+        for (int i = 0; i <= nodes.length; i++) {
+            int to = (i < nodes.length) ? this.nodeCell[nodes[i]] : goal;
+
+            if (to == from)
+                continue;
+
+            if (getCluster(from) == getCluster(to)) {
+                local.search(getCluster(from), from, to);
+                local.addPath(path, to);
+            } else {
+                path.addElement(new Point(to % this.mapWidth, to / this.mapWidth)); // step between clusters
+            }
+
+            from = to;
+        }
+
+        return path;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A* search on the abstract graph. The start and the goal are virtual nodes
+     *  linked to the nodes of their cluster.
+     *
+     * @return the nodes of the path (start & goal excluded), null if there is no path
+     */
+    private int[] searchNodes(int start, int goal, int startDist[], int goalDist[]) {
+        int nbNodes = this.nodeCell.length;
+        int goalNode = nbNodes; // virtual node index
+
+        int g[] = new int[nbNodes + 1];
+        int parent[] = new int[nbNodes + 1];
+        boolean closed[] = new boolean[nbNodes + 1];
+        CellHeap open = new CellHeap(nbNodes + 1);
+
+        Arrays.fill(g, Integer.MAX_VALUE);
+
+        for (int n = 0; n < nbNodes; n++)
+            if (startDist[n] >= 0) {
+                g[n] = startDist[n];
+                parent[n] = -1;
+                open.add(n, g[n] + estimate(this.nodeCell[n], goal), g[n]);
+            }
+
+        while (!open.isEmpty()) {
+            int best = open.poll();
+
+            if (best == goalNode)
+                break;
+
+            closed[best] = true;
+
+            if (goalDist[best] >= 0)
+                relax(open, g, parent, closed, best, goalNode, g[best] + goalDist[best], 0);
+
+            for (int e = this.edgeStart[best]; e < this.edgeStart[best + 1]; e++) {
+                int child = this.edgeTarget[e];
+                relax(open, g, parent, closed, best, child, g[best] + this.edgeCost[e], estimate(this.nodeCell[child], goal));
+            }
+        }
+
+        if (g[goalNode] == Integer.MAX_VALUE)
+            return null;
+
+        int length = 0;
+
+        for (int n = parent[goalNode]; n >= 0; n = parent[n])
+            length++;
+
+        int nodes[] = new int[length];
+
+        for (int n = parent[goalNode]; n >= 0; n = parent[n])
+            nodes[--length] = n;
+
+        return nodes;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Updates a node of the abstract search if we found a shorter path to it.
+     */
+    private void relax(CellHeap open, int g[], int parent[], boolean closed[], int from, int node, int cost, int h) {
+        if (closed[node] || cost >= g[node])
+            return;
+
+        boolean isOpen = g[node] != Integer.MAX_VALUE;
+        g[node] = cost;
+        parent[node] = from;
+
+        if (isOpen)
+            open.decrease(node, cost + h, cost);
+        else
+            open.add(node, cost + h, cost);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To save the graph in a file.
+     *
+     * @param fileName file to create
+     * @return true if the file has been saved
+     */
+    public boolean save(String fileName) {
+        DataOutputStream out = null;
+
+        try {
+            out = new DataOutputStream(new BufferedOutputStream(new FileOutputStream(fileName)));
+
+            out.writeInt(ClusterGraph.FILE_MAGIC);
+            out.writeInt(ClusterGraph.FILE_VERSION);
+            out.writeInt(this.mapWidth);
+            out.writeInt(this.mapHeight);
+            out.writeInt(this.spriteSize);
+            out.writeInt(this.clusterSize);
+            out.writeLong(this.checksum);
+
+            out.writeInt(this.nodeCell.length);
+            for (int n = 0; n < this.nodeCell.length; n++)
+                out.writeInt(this.nodeCell[n]);
+
+            for (int n = 0; n <= this.nodeCell.length; n++)
+                out.writeInt(this.edgeStart[n]);
+
+            for (int e = 0; e < this.edgeTarget.length; e++) {
+                out.writeInt(this.edgeTarget[e]);
+                out.writeInt(this.edgeCost[e]);
+            }
+
+            return true;
+        } catch (IOException e) {
+            Debug.signal(Debug.NOTICE, this, "Failed to save pathfinding graph " + fileName + " : " + e);
+            return false;
+        } finally {
+            try {
+                if (out != null)
+                    out.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To load a graph from a file.
+     *
+     * @param context context of the mask the graph must be valid for
+     * @param clusterSize size of a cluster (in CELL units)
+     * @param fileName file to load
+     * @return the graph, null if the file could not be read or was saved for another
+     *         mask, sprite size or cluster size.
+     */
+    public static ClusterGraph load(PathfindingContext context, int clusterSize, String fileName) {
+        DataInputStream in = null;
+
+        try {
+            in = new DataInputStream(new BufferedInputStream(new FileInputStream(fileName)));
+
+            if (in.readInt() != ClusterGraph.FILE_MAGIC || in.readInt() != ClusterGraph.FILE_VERSION)
+                return null;
+
+            if (in.readInt() != context.getMaskWidth() || in.readInt() != context.getMaskHeight() || in.readInt() != context.getSpriteSize() || in.readInt() != clusterSize)
+                return null;
+
+            boolean free[] = ClusterGraph.getFreeCells(context);
+            long checksum = ClusterGraph.getChecksum(free);
+
+            if (in.readLong() != checksum)
+                return null; // the mask has changed
+
+            int nodeCell[] = new int[in.readInt()];
+            for (int n = 0; n < nodeCell.length; n++) {
+                nodeCell[n] = in.readInt();
+                if (nodeCell[n] < 0 || nodeCell[n] >= free.length)
+                    return null;
+            }
+
+            int edgeStart[] = new int[nodeCell.length + 1];
+            for (int n = 0; n <= nodeCell.length; n++)
+                edgeStart[n] = in.readInt();
+
+            int edgeTarget[] = new int[edgeStart[nodeCell.length]];
+            int edgeCost[] = new int[edgeTarget.length];
+
+            for (int e = 0; e < edgeTarget.length; e++) {
+                edgeTarget[e] = in.readInt();
+                edgeCost[e] = in.readInt();
+                if (edgeTarget[e] < 0 || edgeTarget[e] >= nodeCell.length)
+                    return null;
+            }
+
+            return new ClusterGraph(context, clusterSize, free, checksum, nodeCell, edgeStart, edgeTarget, edgeCost);
+        } catch (Exception e) {
+            Debug.signal(Debug.NOTICE, null, "Failed to load pathfinding graph " + fileName + " : " + e);
+            return null;
+        } finally {
+            try {
+                if (in != null)
+                    in.close();
+            } catch (IOException e) {
+            }
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A breadth first search limited to one cluster. As all the steps cost 1 it
+     *  gives the shortest paths inside the cluster.
+     */
+    private class LocalSearch {
+
+        /** bounds of the current cluster */
+        private int x0, y0, width, height;
+
+        /** distance of each cell of the cluster from the start, -1 if not reached */
+        private int distance[];
+
+        /** parent of each cell of the cluster (cluster index) */
+        private int parent[];
+
+        /** cells to visit (cluster index) */
+        private int queue[];
+
+        protected LocalSearch() {
+            int size = ClusterGraph.this.clusterSize * ClusterGraph.this.clusterSize;
+            this.distance = new int[size];
+            this.parent = new int[size];
+            this.queue = new int[size];
+        }
+
+        /** Search from the start cell. If goal is -1 we visit the whole cluster.
+         *  Returns true if the goal was reached.
+         */
+        protected boolean search(int cluster, int start, int goal) {
+            int mapWidth = ClusterGraph.this.mapWidth;
+            int size = ClusterGraph.this.clusterSize;
+
+            this.x0 = (cluster % ClusterGraph.this.clustersPerRow) * size;
+            this.y0 = (cluster / ClusterGraph.this.clustersPerRow) * size;
+            this.width = Math.min(size, mapWidth - this.x0);
+            this.height = Math.min(size, ClusterGraph.this.mapHeight - this.y0);
+
+            Arrays.fill(this.distance, -1);
+
+            int first = toLocal(start);
+            this.distance[first] = 0;
+            this.parent[first] = -1;
+            this.queue[0] = first;
+
+            int head = 0;
+            int tail = 1;
+            int localGoal = (goal < 0) ? -1 : toLocal(goal);
+
+            while (head < tail) {
+                int cell = this.queue[head++];
+
+                if (cell == localGoal)
+                    return true;
+
+                int x = cell % this.width;
+                int y = cell / this.width;
+
+                for (int i = 0; i < 8; i++) {
+                    int cx = x + ClusterGraph.NEIGHBOUR_DX[i];
+                    int cy = y + ClusterGraph.NEIGHBOUR_DY[i];
+
+                    if (cx < 0 || cy < 0 || cx >= this.width || cy >= this.height)
+                        continue;
+
+                    int child = cy * this.width + cx;
+
+                    if (this.distance[child] >= 0 || !ClusterGraph.this.free[(this.y0 + cy) * mapWidth + this.x0 + cx])
+                        continue;
+
+                    this.distance[child] = this.distance[cell] + 1;
+                    this.parent[child] = cell;
+                    this.queue[tail++] = child;
+                }
+            }
+
+            return false;
+        }
+
+        /** Returns the distance of a cell from the last search's start, -1 if the
+         *  cell was not reached.
+         */
+        protected int getDistance(int cell) {
+            return this.distance[toLocal(cell)];
+        }
+
+        /** Adds to a path the points of the last search, from the start (excluded)
+         *  to the given cell (included).
+         */
+        protected void addPath(List path, int cell) {
+            int local = toLocal(cell);
+            int length = this.distance[local];
+
+            if (length < 0)
+                return;
+
+            Point points[] = new Point[length + 1];
+
+            for (int c = local; c >= 0; c = this.parent[c])
+                points[length--] = new Point(this.x0 + c % this.width, this.y0 + c / this.width);
+
+            for (int i = (path.size() == 0) ? 0 : 1; i < points.length; i++)
+                path.addElement(points[i]);
+        }
+
+        /** Returns the cluster index of a cell.
+         */
+        private int toLocal(int cell) {
+            return (cell / ClusterGraph.this.mapWidth - this.y0) * this.width + (cell % ClusterGraph.this.mapWidth - this.x0);
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A growable array of ints.
+     */
+    private static class IntList {
+
+        private int values[] = new int[16];
+
+        private int size = 0;
+
+        protected void add(int value) {
+            if (this.size == this.values.length) {
+                int tmp[] = new int[this.size * 2];
+                System.arraycopy(this.values, 0, tmp, 0, this.size);
+                this.values = tmp;
+            }
+
+            this.values[this.size++] = value;
+        }
+
+        protected int get(int index) {
+            return this.values[index];
+        }
+
+        protected int size() {
+            return this.size;
+        }
+
+        protected int[] toArray() {
+            int tmp[] = new int[this.size];
+            System.arraycopy(this.values, 0, tmp, 0, this.size);
+            return tmp;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
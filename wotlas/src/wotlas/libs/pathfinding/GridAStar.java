@@ -0,0 +1,431 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.awt.Point;
+import java.util.Arrays;
+import wotlas.utils.List;
+
+/** An A* search on a flat cell index. A cell (x,y) of the mask is the int
+ *  y*width+x, and the search state is kept in arrays of the size of the mask : g
+ *  costs, heuristics, parents and a generation stamp. A new search just increments
+ *  the generation, so the arrays never have to be cleared, and the open list is a
+ *  CellHeap. Apart from the returned path, a search allocates nothing.
+ *<br>
+ *  Search rules : 8 neighbours, each step costs 1, the heuristic is the euclidian
+ *  distance and a cell is valid if the sprite fits on the mask, which we read in
+ *  the ClearanceMap of the mask (see isNotBlock()).
+ *<br>
+ *  A GridAStar is not thread-safe, use one per thread (see PathfindingContext).
+ *<br>
+ *  Sub-classes can change the search by overriding searchCell() and getPath() (see
+ *  JumpPointSearch).
+ *
+ * @author Petrus, Aldiss
+ * @see wotlas.libs.pathfinding.PathfindingContext
+ * @see wotlas.libs.pathfinding.CellHeap
+ * @see wotlas.libs.pathfinding.ClearanceMap
+ * @see wotlas.libs.pathfinding.JumpPointSearch
+ */
+
+public class GridAStar {
+    /*------------------------------------------------------------------------------------*/
+
+    /** x offsets of the 8 neighbours.
+     */
+    private final static int NEIGHBOUR_DX[] = { 0, 1, 0, -1, -1, -1, 1, 1 };
+
+    /** y offsets of the 8 neighbours.
+     */
+    private final static int NEIGHBOUR_DY[] = { -1, 0, 1, 0, -1, 1, 1, -1 };
+
+    /** Cell state in the current generation : in the open list.
+     */
+    protected final static byte OPEN = 1;
+
+    /** Cell state in the current generation : expanded.
+     */
+    protected final static byte CLOSED = 2;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** clearance of the mask's cells
+     */
+    private ClearanceMap clearance;
+
+    /** width of the map
+     */
+    protected int mapWidth;
+
+    /** height of the map
+     */
+    protected int mapHeight;
+
+    /** size of the sprite (in CELL units)
+     */
+    private int spriteSize;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Current search generation. A cell has been reached by the current search if
+     *  its stamp equals this generation.
+     */
+    protected int generation;
+
+    /** Generation in which each cell was last reached.
+     */
+    protected int stamp[];
+
+    /** State of each cell (OPEN or CLOSED), valid if the cell's stamp is current.
+     */
+    protected byte state[];
+
+    /** Cost from the start to each cell.
+     */
+    protected int g[];
+
+    /** Estimated distance from each cell to the goal.
+     */
+    protected float h[];
+
+    /** Parent of each cell on its best known path, -1 for the start.
+     */
+    protected int parent[];
+
+    /** Open cells sorted on their f cost.
+     */
+    protected CellHeap open;
+
+    /** Number of cells expanded by the last search.
+     */
+    protected int nbExpanded;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. The mask must be set with setMask() before any search.
+     */
+    public GridAStar() {
+        this.generation = 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor. The search arrays are created on the first search.
+     *
+     * @param mask mask[i][j] is true if cell(i,j) is not blocked
+     * @param spriteSize size of the sprite (in CELL units)
+     */
+    public GridAStar(boolean mask[][], int spriteSize) {
+        this(new ClearanceMap(mask), spriteSize);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor. The search arrays are created on the first search.
+     *
+     * @param clearance clearance of the mask's cells
+     * @param spriteSize size of the sprite (in CELL units)
+     */
+    public GridAStar(ClearanceMap clearance, int spriteSize) {
+        this();
+        setMask(clearance, spriteSize);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the mask we search. The search arrays are kept if they are large enough,
+     *  so a GridAStar can be used on different masks without new allocations.
+     *
+     * @param clearance clearance of the mask's cells
+     * @param spriteSize size of the sprite (in CELL units)
+     */
+    public void setMask(ClearanceMap clearance, int spriteSize) {
+        this.clearance = clearance;
+        this.mapWidth = clearance.getWidth();
+        this.mapHeight = clearance.getHeight();
+        this.spriteSize = spriteSize;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the clearance of the mask we use.
+     */
+    public ClearanceMap getClearanceMap() {
+        return this.clearance;
+    }
+
+    /** To get the sprite size (in CELL units).
+     */
+    public int getSpriteSize() {
+        return this.spriteSize;
+    }
+
+    /** To get the number of cells expanded by the last search.
+     */
+    public int getNbExpanded() {
+        return this.nbExpanded;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Test if a cell is valid for the path regarding the sprite size.
+     *
+     * @param x the x coordinate (in CELL units)
+     * @param y the y coordinate (in CELL units)
+     * @return true if the cell is not blocked
+     */
+    public boolean isNotBlock(int x, int y) {
+        return this.clearance.fits(x, y, this.spriteSize);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Finds a path between 2 points. The goal is not corrected : it should be a
+     *  valid cell (see PathfindingContext.isValidGoal()).
+     *
+     * @param pointStart beginning of the path (in CELL units)
+     * @param pointGoal end of the path (in CELL units)
+     * @return the list of the path's Points, from the start to the goal. The list is
+     *         empty if there is no path.
+     */
+    public List findPath(Point pointStart, Point pointGoal) {
+        int goal = searchCell(pointStart.x, pointStart.y, pointGoal.x, pointGoal.y);
+
+        if (goal < 0)
+            return new List();
+
+        return getPath(goal);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates the search arrays if needed (first search or larger mask) and starts
+     *  a new generation.
+     */
+    protected void newSearch() {
+        int nbCells = this.mapWidth * this.mapHeight;
+
+        if (this.stamp == null || this.stamp.length < nbCells) {
+            this.stamp = new int[nbCells];
+            this.state = new byte[nbCells];
+            this.g = new int[nbCells];
+            this.h = new float[nbCells];
+            this.parent = new int[nbCells];
+            this.open = new CellHeap(nbCells);
+        }
+
+        this.generation++;
+
+        if (this.generation == Integer.MAX_VALUE) {
+            // stamps would overflow, we reset them once
+            Arrays.fill(this.stamp, 0);
+            this.generation = 1;
+        }
+
+        this.open.clear();
+        this.nbExpanded = 0;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Estimates the distance between a cell and the goal.
+     */
+    protected float estimate(int x, int y, int goalX, int goalY) {
+        int dx = goalX - x;
+        int dy = goalY - y;
+        return (float) Math.sqrt(dx * dx + dy * dy);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A* search from the start cell to the goal cell. As our heuristic is not
+     *  consistent with unit diagonal steps, a closed cell is opened again if we find
+     *  a shorter path to it.
+     *
+     * @return the goal cell index, -1 if there is no path.
+     */
+    protected int searchCell(int startX, int startY, int goalX, int goalY) {
+        newSearch();
+
+        if (startX < 0 || startY < 0 || startX >= this.mapWidth || startY >= this.mapHeight)
+            return -1;
+        if (goalX < 0 || goalY < 0 || goalX >= this.mapWidth || goalY >= this.mapHeight)
+            return -1;
+
+        int width = this.mapWidth;
+        int gen = this.generation;
+        int goal = goalY * width + goalX;
+
+        int start = startY * width + startX;
+        this.stamp[start] = gen;
+        this.state[start] = GridAStar.OPEN;
+        this.g[start] = 0;
+        this.h[start] = estimate(startX, startY, goalX, goalY);
+        this.parent[start] = -1;
+        this.open.add(start, this.h[start], 0);
+
+        while (!this.open.isEmpty()) {
+            int best = this.open.poll();
+
+            if (best == goal)
+                return goal;
+
+            this.state[best] = GridAStar.CLOSED;
+            this.nbExpanded++;
+
+            int x = best % width;
+            int y = best / width;
+            int childCost = this.g[best] + 1;
+
+            for (int i = 0; i < 8; i++) {
+                int cx = x + GridAStar.NEIGHBOUR_DX[i];
+                int cy = y + GridAStar.NEIGHBOUR_DY[i];
+
+                if (!isNotBlock(cx, cy))
+                    continue;
+
+                int child = cy * width + cx;
+
+                if (this.stamp[child] != gen) {
+                    // new cell
+                    this.stamp[child] = gen;
+                    this.state[child] = GridAStar.OPEN;
+                    this.g[child] = childCost;
+                    this.h[child] = estimate(cx, cy, goalX, goalY);
+                    this.parent[child] = best;
+                    this.open.add(child, childCost + this.h[child], childCost);
+                } else if (childCost < this.g[child]) {
+                    // we have found a more economic path
+                    this.g[child] = childCost;
+                    this.parent[child] = best;
+
+                    if (this.state[child] == GridAStar.OPEN) {
+                        this.open.decrease(child, childCost + this.h[child], childCost);
+                    } else {
+                        this.state[child] = GridAStar.OPEN;
+                        this.open.add(child, childCost + this.h[child], childCost);
+                    }
+                }
+            }
+        }
+
+        return -1; // no solution
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructs the path from the start cell to the given cell.
+     */
+    protected List getPath(int cell) {
+        int length = 0;
+
+        for (int c = cell; c >= 0; c = this.parent[c])
+            length++;
+
+        Point points[] = new Point[length];
+
+        for (int c = cell; c >= 0; c = this.parent[c])
+            points[--length] = new Point(c % this.mapWidth, c / this.mapWidth);
+
+        List result = new List(points.length);
+
+        for (int i = 0; i < points.length; i++)
+            result.addElement(points[i]);
+
+        return result;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To smooth a path (smooth path algo from Gamasutra). We remove the points we can
+     *  skip by walking in straight line.
+     *
+     * @param path a previously created path via findPath()
+     * @return smoothed path...
+     */
+    public List smoothPath(List path) {
+        if ((path == null) || (path.size() < 3))
+            return path;
+
+        List smoothedPath = new List(path.size());
+
+        Point checkPoint = (Point) path.elementAt(0);
+        int index = 1;
+
+        smoothedPath.addElement(path.elementAt(0)); // first point
+
+        while (index + 1 < path.size()) {
+            if (walkable(checkPoint, (Point) path.elementAt(index + 1))) {
+                index++; // no need for this point, we check the next one
+            } else {
+                checkPoint = (Point) path.elementAt(index);
+                smoothedPath.addElement(checkPoint); // point needed
+                index++;
+            }
+        }
+
+        smoothedPath.addElement(path.elementAt(index)); // end point
+        return smoothedPath;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns true if we can walk directly from point A to point B.
+     */
+    public boolean walkable(Point a, Point b) {
+        float cosinus = 0;
+        float sinus = 0;
+
+        if ((a.x == b.x) && (a.y == b.y))
+            return true;
+
+        // 1 - compute angle between the two points...
+        if (b.x == a.x) {
+            if (b.y > a.y) {
+                cosinus = 0;
+                sinus = 1;
+            } else {
+                cosinus = 0;
+                sinus = -1;
+            }
+        } else {
+            double angle = Math.atan((double) (b.y - a.y) / (b.x - a.x));
+
+            if (b.x < a.x) {
+                cosinus = (float) -Math.cos(angle);
+                sinus = (float) -Math.sin(angle);
+            } else {
+                cosinus = (float) Math.cos(angle);
+                sinus = (float) Math.sin(angle);
+            }
+        }
+
+        // 2 - check points along the path every 0.25 cells...
+        float rfin = (float) Math.sqrt((b.y - a.y) * (b.y - a.y) + (b.x - a.x) * (b.x - a.x));
+
+        for (float r = 0.25f; r < rfin; r += 0.25f)
+            if (!isNotBlock((int) (a.x + r * cosinus), (int) (a.y + r * sinus)))
+                return false;
+
+        return true; // success ! found valid path between these two points!
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
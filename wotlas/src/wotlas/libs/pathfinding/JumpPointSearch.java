@@ -0,0 +1,289 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.awt.Point;
+import wotlas.utils.List;
+
+/** A Jump Point Search on a flat cell index. Our masks are uniform-cost grids : many
+ *  paths of the same length link two cells and the classic A* expands all of them.
+ *  From each expanded cell we rather move in straight lines (or diagonals) as long as
+ *  nothing forces us to turn, and we only add to the open list the cells where the
+ *  path may change of direction (the jump points). Far fewer cells are expanded.
+ *<br>
+ *  The search rules are the ones of GridAStar : 8 neighbours, each step costs 1, a
+ *  diagonal step is allowed between two blocked cells and a cell is valid if the
+ *  sprite fits on the mask (see isNotBlock()). The heuristic is the exact distance
+ *  on an empty grid ( max(dx,dy) ), so the paths are optimal. The returned paths
+ *  contain all their cells, like the ones of GridAStar.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.pathfinding.GridAStar
+ * @see wotlas.libs.pathfinding.PathfindingContext
+ */
+
+public class JumpPointSearch extends GridAStar {
+    /*------------------------------------------------------------------------------------*/
+
+    /** Goal of the current search.
+     */
+    private int goalX, goalY;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. The mask must be set with setMask() before any search.
+     */
+    public JumpPointSearch() {
+        super();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor. The search arrays are created on the first search.
+     *
+     * @param mask mask[i][j] is true if cell(i,j) is not blocked
+     * @param spriteSize size of the sprite (in CELL units)
+     */
+    public JumpPointSearch(boolean mask[][], int spriteSize) {
+        super(mask, spriteSize);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor. The search arrays are created on the first search.
+     *
+     * @param clearance clearance of the mask's cells
+     * @param spriteSize size of the sprite (in CELL units)
+     */
+    public JumpPointSearch(ClearanceMap clearance, int spriteSize) {
+        super(clearance, spriteSize);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Exact distance between two cells on an empty grid.
+     */
+    private static int distance(int x1, int y1, int x2, int y2) {
+        return Math.max(Math.abs(x2 - x1), Math.abs(y2 - y1));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Jump Point Search from the start cell to the goal cell.
+     *
+     * @return the goal cell index, -1 if there is no path.
+     */
+    @Override
+    protected int searchCell(int startX, int startY, int goalX, int goalY) {
+        newSearch();
+
+        if (startX < 0 || startY < 0 || startX >= this.mapWidth || startY >= this.mapHeight)
+            return -1;
+        if (goalX < 0 || goalY < 0 || goalX >= this.mapWidth || goalY >= this.mapHeight)
+            return -1;
+
+        this.goalX = goalX;
+        this.goalY = goalY;
+
+        int width = this.mapWidth;
+        int goal = goalY * width + goalX;
+
+        int start = startY * width + startX;
+        this.stamp[start] = this.generation;
+        this.state[start] = GridAStar.OPEN;
+        this.g[start] = 0;
+        this.h[start] = JumpPointSearch.distance(startX, startY, goalX, goalY);
+        this.parent[start] = -1;
+        this.open.add(start, this.h[start], 0);
+
+        while (!this.open.isEmpty()) {
+            int best = this.open.poll();
+
+            if (best == goal)
+                return goal;
+
+            this.state[best] = GridAStar.CLOSED;
+            this.nbExpanded++;
+
+            int x = best % width;
+            int y = best / width;
+
+            if (this.parent[best] < 0) {
+                // start cell : we look in all the directions
+                for (int dx = -1; dx <= 1; dx++)
+                    for (int dy = -1; dy <= 1; dy++)
+                        if (dx != 0 || dy != 0)
+                            addSuccessor(best, x, y, dx, dy);
+                continue;
+            }
+
+            int dx = Integer.signum(x - this.parent[best] % width);
+            int dy = Integer.signum(y - this.parent[best] / width);
+
+            if (dx != 0 && dy != 0) {
+                // diagonal move : natural neighbours, then forced ones
+                addSuccessor(best, x, y, dx, 0);
+                addSuccessor(best, x, y, 0, dy);
+                addSuccessor(best, x, y, dx, dy);
+
+                if (!isNotBlock(x - dx, y))
+                    addSuccessor(best, x, y, -dx, dy);
+                if (!isNotBlock(x, y - dy))
+                    addSuccessor(best, x, y, dx, -dy);
+            } else if (dx != 0) {
+                // horizontal move
+                addSuccessor(best, x, y, dx, 0);
+
+                if (!isNotBlock(x, y + 1))
+                    addSuccessor(best, x, y, dx, 1);
+                if (!isNotBlock(x, y - 1))
+                    addSuccessor(best, x, y, dx, -1);
+            } else {
+                // vertical move
+                addSuccessor(best, x, y, 0, dy);
+
+                if (!isNotBlock(x + 1, y))
+                    addSuccessor(best, x, y, 1, dy);
+                if (!isNotBlock(x - 1, y))
+                    addSuccessor(best, x, y, -1, dy);
+            }
+        }
+
+        return -1; // no solution
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Jumps from a cell in a direction and adds the jump point we find to the open
+     *  list.
+     */
+    private void addSuccessor(int cell, int x, int y, int dx, int dy) {
+        int jump = jump(x, y, dx, dy);
+
+        if (jump < 0)
+            return;
+
+        int jx = jump % this.mapWidth;
+        int jy = jump / this.mapWidth;
+        int cost = this.g[cell] + JumpPointSearch.distance(x, y, jx, jy);
+
+        if (this.stamp[jump] != this.generation) {
+            // new cell
+            this.stamp[jump] = this.generation;
+            this.state[jump] = GridAStar.OPEN;
+            this.g[jump] = cost;
+            this.h[jump] = JumpPointSearch.distance(jx, jy, this.goalX, this.goalY);
+            this.parent[jump] = cell;
+            this.open.add(jump, cost + this.h[jump], cost);
+        } else if (cost < this.g[jump]) {
+            // we have found a more economic path
+            this.g[jump] = cost;
+            this.parent[jump] = cell;
+
+            if (this.state[jump] == GridAStar.OPEN) {
+                this.open.decrease(jump, cost + this.h[jump], cost);
+            } else {
+                this.state[jump] = GridAStar.OPEN;
+                this.open.add(jump, cost + this.h[jump], cost);
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Moves from a cell in a direction until we find a jump point : the goal, a
+     *  cell with a forced neighbour or, for diagonal moves, a cell aligned with the
+     *  goal or from which a straight move finds a jump point.
+     *
+     * @return the jump point cell index, -1 if we reached an obstacle.
+     */
+    private int jump(int x, int y, int dx, int dy) {
+        while (true) {
+            x += dx;
+            y += dy;
+
+            if (!isNotBlock(x, y))
+                return -1;
+
+            if (x == this.goalX && y == this.goalY)
+                return y * this.mapWidth + x;
+
+            if (dx != 0 && dy != 0) {
+                if (x == this.goalX || y == this.goalY)
+                    return y * this.mapWidth + x; // aligned with the goal
+
+                if ((!isNotBlock(x - dx, y) && isNotBlock(x - dx, y + dy)) || (!isNotBlock(x, y - dy) && isNotBlock(x + dx, y - dy)))
+                    return y * this.mapWidth + x;
+
+                if (jump(x, y, dx, 0) >= 0 || jump(x, y, 0, dy) >= 0)
+                    return y * this.mapWidth + x;
+            } else if (dx != 0) {
+                if ((!isNotBlock(x, y + 1) && isNotBlock(x + dx, y + 1)) || (!isNotBlock(x, y - 1) && isNotBlock(x + dx, y - 1)))
+                    return y * this.mapWidth + x;
+            } else {
+                if ((!isNotBlock(x + 1, y) && isNotBlock(x + 1, y + dy)) || (!isNotBlock(x - 1, y) && isNotBlock(x - 1, y + dy)))
+                    return y * this.mapWidth + x;
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructs the path from the start cell to the given cell. The cells between
+     *  two jump points are on a straight line or a diagonal : we add them all.
+     */
+    @Override
+    protected List getPath(int cell) {
+        int length = 1;
+
+        for (int c = cell; this.parent[c] >= 0; c = this.parent[c])
+            length += this.g[c] - this.g[this.parent[c]];
+
+        Point points[] = new Point[length];
+        int width = this.mapWidth;
+
+        for (int c = cell; c >= 0; c = this.parent[c]) {
+            int x = c % width;
+            int y = c / width;
+            points[--length] = new Point(x, y);
+
+            if (this.parent[c] < 0)
+                break;
+
+            int dx = Integer.signum(this.parent[c] % width - x);
+            int dy = Integer.signum(this.parent[c] / width - y);
+
+            for (int i = this.g[c] - this.g[this.parent[c]] - 1; i > 0; i--) {
+                x += dx;
+                y += dy;
+                points[--length] = new Point(x, y);
+            }
+        }
+
+        List result = new List(points.length);
+
+        for (int i = 0; i < points.length; i++)
+            result.addElement(points[i]);
+
+        return result;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
@@ -0,0 +1,487 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.awt.Point;
+import java.awt.Rectangle;
+import wotlas.utils.Debug;
+import wotlas.utils.List;
+
+/** The pathfinding data of a map : the clearance of its mask, the size of a mask
+ *  cell and the size of the sprites that walk on it. Contexts with different sprite
+ *  sizes can share the same ClearanceMap.
+ *<br>
+ *  A PathfindingContext is immutable, and so is its ClearanceMap. Many threads can
+ *  therefore search paths at the same time, each thread using its own GridAStar (or
+ *  JumpPointSearch, see the search modes). To change a part of the mask (a door that
+ *  opens or closes) use getChangedContext() that returns a modified copy.
+ *<br>
+ *  On large masks long searches can use a ClusterGraph (see getHierarchicalContext()).
+ *<br>
+ *  usage:
+ *  <pre>
+ *   PathfindingContext context = new PathfindingContext( mask, maskTileSize, spriteSize, searchMode );
+ *   List path = context.findPath( startCell, goalCell );
+ *   path = context.smoothPath( path );
+ *  </pre>
+ *
+ * @author Petrus, Aldiss
+ * @see wotlas.libs.pathfinding.GridAStar
+ * @see wotlas.libs.pathfinding.ClearanceMap
+ */
+
+public class PathfindingContext {
+    /*------------------------------------------------------------------------------------*/
+
+    /** True if we show debug informations
+     */
+    public static boolean SHOW_DEBUG = false;
+
+    /** Search mode : classic A* (see GridAStar).
+     */
+    public final static byte A_STAR = 0;
+
+    /** Search mode : Jump Point Search (see JumpPointSearch).
+     */
+    public final static byte JUMP_POINT_SEARCH = 1;
+
+    /** The search engine of each thread. It is shared by all the contexts the thread
+     *  uses : its arrays grow to the size of the largest mask.
+     */
+    private final static ThreadLocal<GridAStar> searches = new ThreadLocal<GridAStar>() {
+        @Override
+        protected GridAStar initialValue() {
+            return new GridAStar();
+        }
+    };
+
+    /** The Jump Point Search engine of each thread.
+     */
+    private final static ThreadLocal<GridAStar> jumpSearches = new ThreadLocal<GridAStar>() {
+        @Override
+        protected GridAStar initialValue() {
+            return new JumpPointSearch();
+        }
+    };
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** clearance of the mask's cells
+     */
+    private final ClearanceMap clearance;
+
+    /** width of the map
+     */
+    private final int mapWidth;
+
+    /** height of the map
+     */
+    private final int mapHeight;
+
+    /** size of a mask's cell (in pixels)
+     */
+    private final int tileSize;
+
+    /** size of the sprite (in CELL units)
+     */
+    private final int spriteSize;
+
+    /** search mode on the mask ( A_STAR or JUMP_POINT_SEARCH )
+     */
+    private final byte searchMode;
+
+    /** hierarchical graph of the mask, null if we always search on the mask
+     */
+    private final ClusterGraph graph;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. The mask is not kept. Searches use the classic A*.
+     *
+     * @param mask mask[i][j] is true if cell(i,j) is not blocked
+     * @param tileSize size of a mask's cell (in pixels)
+     * @param spriteSize size of the sprite (in CELL units)
+     */
+    public PathfindingContext(boolean mask[][], int tileSize, int spriteSize) {
+        this(mask, tileSize, spriteSize, PathfindingContext.A_STAR);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor. The mask is not kept.
+     *
+     * @param mask mask[i][j] is true if cell(i,j) is not blocked
+     * @param tileSize size of a mask's cell (in pixels)
+     * @param spriteSize size of the sprite (in CELL units)
+     * @param searchMode search mode on the mask ( A_STAR or JUMP_POINT_SEARCH )
+     */
+    public PathfindingContext(boolean mask[][], int tileSize, int spriteSize, byte searchMode) {
+        this(new ClearanceMap(mask), tileSize, spriteSize, searchMode);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor.
+     *
+     * @param clearance clearance of the mask's cells, it can be shared with contexts
+     *        of other sprite sizes.
+     * @param tileSize size of a mask's cell (in pixels)
+     * @param spriteSize size of the sprite (in CELL units)
+     * @param searchMode search mode on the mask ( A_STAR or JUMP_POINT_SEARCH )
+     */
+    public PathfindingContext(ClearanceMap clearance, int tileSize, int spriteSize, byte searchMode) {
+        this.clearance = clearance;
+        this.mapWidth = clearance.getWidth();
+        this.mapHeight = clearance.getHeight();
+        this.tileSize = tileSize;
+        this.spriteSize = spriteSize;
+        this.searchMode = searchMode;
+        this.graph = null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor for a modified copy of a context.
+     */
+    private PathfindingContext(PathfindingContext source, ClearanceMap clearance, ClusterGraph graph) {
+        this.clearance = clearance;
+        this.mapWidth = source.mapWidth;
+        this.mapHeight = source.mapHeight;
+        this.tileSize = source.tileSize;
+        this.spriteSize = source.spriteSize;
+        this.searchMode = source.searchMode;
+        this.graph = graph;
+    }
+
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the tile size (size of a mask's cell in pixels).
+     */
+    public int getTileSize() {
+        return this.tileSize;
+    }
+
+    /** To get the sprite size (in CELL units).
+     */
+    public int getSpriteSize() {
+        return this.spriteSize;
+    }
+
+    /** To get the mask width (in CELL units).
+     */
+    public int getMaskWidth() {
+        return this.mapWidth;
+    }
+
+    /** To get the mask height (in CELL units).
+     */
+    public int getMaskHeight() {
+        return this.mapHeight;
+    }
+
+    /** To get the clearance of the mask's cells.
+     */
+    public ClearanceMap getClearanceMap() {
+        return this.clearance;
+    }
+
+    /** To get the search mode on the mask ( A_STAR or JUMP_POINT_SEARCH ).
+     */
+    public byte getSearchMode() {
+        return this.searchMode;
+    }
+
+    /** To get the hierarchical graph we use, null if we have none.
+     */
+    public ClusterGraph getClusterGraph() {
+        return this.graph;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get a copy of this context that uses a hierarchical graph for its searches.
+     *  This context is not modified.
+     *
+     * @param graph graph built for this context (see ClusterGraph.getClusterGraph())
+     * @return the new context
+     */
+    public PathfindingContext getHierarchicalContext(ClusterGraph graph) {
+        return new PathfindingContext(this, this.clearance, graph);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get a copy of this context where all the cells of a rectangle are set to
+     *  a value. This context is not modified. The hierarchical graph is not valid
+     *  for the new mask : the copy doesn't have one.
+     *
+     * @param r the rectangle to change (in screen pixels coordinate)
+     * @param value new value of the cells ( false : blocked )
+     * @return the new context
+     */
+    public PathfindingContext getChangedContext(Rectangle r, boolean value) {
+        int cx = (r.x / this.tileSize);
+        int cy = (r.y / this.tileSize);
+
+        int cWidth = (int) (r.getWidth() / this.tileSize);
+        if (cWidth == 0)
+            cWidth = 1;
+
+        int cHeight = (int) (r.getHeight() / this.tileSize);
+        if (cHeight == 0)
+            cHeight = 1;
+
+        return new PathfindingContext(this, this.clearance.getChangedMap(cx, cy, cWidth, cHeight, value), null);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Test if a point is valid for the path regarding the sprite size : all the
+     *  cells under the sprite must be free.
+     *
+     * @param x the x coordinate (in CELL units)
+     * @param y the y coordinate (in CELL units)
+     * @return true if point is valid (not blocked) in the mask
+     */
+    public boolean isNotBlock(int x, int y) {
+        return this.clearance.fits(x, y, this.spriteSize);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Test if a point (in CELL units) is a valid goal, and correct the position
+     *  regarding the sprite size.
+     *
+     * @param pointGoal the point (in CELL units), corrected if needed
+     * @return true if point is valid or has been corrected, false otherwise
+     */
+    public boolean isValidGoal(Point pointGoal) {
+        int x = pointGoal.x;
+        int y = pointGoal.y;
+        int s = this.spriteSize - 1;
+
+        if (isNotBlock(x, y))
+            return true;
+
+        if (PathfindingContext.SHOW_DEBUG)
+            System.out.println("PathfindingContext \t (" + x + "," + y + ") is not a valid point -> search a valid point");
+
+        Debug.signal(Debug.NOTICE, null, "not a valid goal point -> search a valid point");
+
+        if (x < 0)
+            pointGoal.x = 0;
+        if (y < 0)
+            pointGoal.y = 0;
+
+        // test if player is near border
+        if (x + s >= this.mapWidth)
+            pointGoal.x = this.mapWidth - s - 1;
+        if (y + s >= this.mapHeight)
+            pointGoal.y = this.mapHeight - s - 1;
+
+        // Correct the position
+        if (x + s < this.mapWidth && isNotBlock(x + s, y)) {
+            pointGoal.x += s;
+            return true;
+        }
+        if ((x + s < this.mapWidth) && (y + s < this.mapHeight) && isNotBlock(x + s, y + s)) {
+            pointGoal.x += s;
+            pointGoal.y += s;
+            return true;
+        }
+        if (y + s < this.mapHeight && isNotBlock(x, y + s)) {
+            pointGoal.y += s;
+            return true;
+        }
+        if ((x > s) && (y + s < this.mapHeight) && isNotBlock(x - s, y + s)) {
+            pointGoal.x -= s;
+            pointGoal.y += s;
+            return true;
+        }
+        if (x > s && isNotBlock(x - s, y)) {
+            pointGoal.x -= s;
+            return true;
+        }
+        if ((x > s) && (y > s) && isNotBlock(x - s, y - s)) {
+            pointGoal.x -= s;
+            pointGoal.y -= s;
+            return true;
+        }
+        if (y > s && isNotBlock(x, y - s)) {
+            pointGoal.y -= s;
+            return true;
+        }
+        if ((x + s < this.mapWidth) && (y > s) && isNotBlock(x + s, y - s)) {
+            pointGoal.x += s;
+            pointGoal.y -= s;
+            return true;
+        }
+
+        return false;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Test if a point (in pixels coordinate) is a valid start. If it's an invalid
+     *  point, search a valid point near it (up to 2 cells around the original point),
+     *  and correct the position regarding the sprite size.
+     *
+     * @param pointStart the point (in pixels), corrected if needed
+     * @return true if point is valid or has been corrected, false otherwise
+     */
+    public boolean isValidStart(Point pointStart) {
+        int x = pointStart.x / this.tileSize;
+        int y = pointStart.y / this.tileSize;
+        int s = this.spriteSize - 1;
+
+        if (isNotBlock(x, y))
+            return true;
+
+        Debug.signal(Debug.NOTICE, null, "not a valid start point -> search a valid point");
+
+        // test if player is near border
+        if (x + s > this.mapWidth && this.clearance.isFree(x - s - 1, y)) {
+            pointStart.x = this.mapWidth - s - 1;
+            return true;
+        }
+        if (y + s > this.mapHeight && this.clearance.isFree(x, this.mapHeight - s - 1)) {
+            pointStart.y = this.mapHeight - s - 1;
+            return true;
+        }
+
+        // We search a valid point around the original point
+        if (isNotBlock(x, y - 1)) {
+            pointStart.y -= this.tileSize;
+            return true;
+        }
+        if (isNotBlock(x, y + 1)) {
+            pointStart.y += this.tileSize;
+            return true;
+        }
+        if (isNotBlock(x - 1, y - 1)) {
+            pointStart.x -= this.tileSize;
+            pointStart.y -= this.tileSize;
+            return true;
+        }
+        if (isNotBlock(x - 1, y + 1)) {
+            pointStart.x -= this.tileSize;
+            pointStart.y += this.tileSize;
+            return true;
+        }
+        if (isNotBlock(x + 1, y - 1)) {
+            pointStart.x += this.tileSize;
+            pointStart.y -= this.tileSize;
+            return true;
+        }
+        if (isNotBlock(x + 1, y + 1)) {
+            pointStart.x += this.tileSize;
+            pointStart.y += this.tileSize;
+            return true;
+        }
+
+        for (int step = -2; step < 3; step++)
+            if (isNotBlock(x - 2, y + step)) {
+                pointStart.x -= 2 * this.tileSize;
+                pointStart.y += step * this.tileSize;
+                return true;
+            }
+
+        for (int step = -1; step < 2; step++) {
+            if (isNotBlock(x + step, y - 2)) {
+                pointStart.x += step * this.tileSize;
+                pointStart.y -= 2 * this.tileSize;
+                return true;
+            }
+            if (isNotBlock(x + step, y + 2)) {
+                pointStart.x += step * this.tileSize;
+                pointStart.y += 2 * this.tileSize;
+                return true;
+            }
+        }
+
+        for (int step = -2; step < 3; step++)
+            if (isNotBlock(x + 2, y + step)) {
+                pointStart.x += 2 * this.tileSize;
+                pointStart.y += step * this.tileSize;
+                return true;
+            }
+
+        return false;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the search engine of the current thread for our search mode, set on
+     *  our mask.
+     */
+    private GridAStar getSearch() {
+        GridAStar search;
+
+        if (this.searchMode == PathfindingContext.JUMP_POINT_SEARCH)
+            search = PathfindingContext.jumpSearches.get();
+        else
+            search = PathfindingContext.searches.get();
+
+        search.setMask(this.clearance, this.spriteSize);
+        return search;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Finds a path between 2 points. The goal is corrected if needed (see
+     *  isValidGoal()). If we have a hierarchical graph the path is found on it and
+     *  is close to the optimal one, otherwise we return the optimal path.
+     *
+     * @param pointStart beginning of the path (in CELL units)
+     * @param pointGoal end of the path (in CELL units)
+     * @return the list of the path's Points, empty if there is no path, null if the goal
+     *         is not valid.
+     */
+    public List findPath(Point pointStart, Point pointGoal) {
+        if (!isValidGoal(pointGoal)) {
+            if (PathfindingContext.SHOW_DEBUG)
+                System.err.println("error : invalid point");
+            return null;
+        }
+
+        if (this.graph != null) {
+            List path = this.graph.findPath(pointStart, pointGoal);
+
+            if (path != null)
+                return path;
+        }
+
+        return getSearch().findPath(pointStart, pointGoal);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To smooth a path.
+     *
+     * @param path a previously created path via findPath()
+     * @return smoothed path...
+     */
+    public List smoothPath(List path) {
+        return getSearch().smoothPath(path);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
@@ -0,0 +1,289 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.persistence;
+
+import java.io.UnsupportedEncodingException;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.nio.BufferUnderflowException;
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.HashMap;
+import wotlas.utils.Debug;
+
+/** Reads the objects written by a BinaryObjectWriter from a ByteBuffer, for example a
+ *  memory-mapped file. Objects are decoded in one pass : there is no text to parse and
+ *  the accessors of each class are resolved once.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.persistence.BinaryObjectWriter
+ */
+
+public class BinaryObjectReader {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Primitive classes by name, Class.forName() doesn't find them.
+     */
+    private final static HashMap primitiveClasses = new HashMap();
+
+    static {
+        BinaryObjectReader.primitiveClasses.put("boolean", Boolean.TYPE);
+        BinaryObjectReader.primitiveClasses.put("char", Character.TYPE);
+        BinaryObjectReader.primitiveClasses.put("byte", Byte.TYPE);
+        BinaryObjectReader.primitiveClasses.put("short", Short.TYPE);
+        BinaryObjectReader.primitiveClasses.put("int", Integer.TYPE);
+        BinaryObjectReader.primitiveClasses.put("long", Long.TYPE);
+        BinaryObjectReader.primitiveClasses.put("float", Float.TYPE);
+        BinaryObjectReader.primitiveClasses.put("double", Double.TYPE);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Buffer we read from.
+     */
+    private ByteBuffer buffer;
+
+    /** Classes described in the buffer, by index.
+     */
+    private ArrayList classes;
+
+    /** For each class, the properties that were saved, by index ( null for the properties
+     *  that don't exist anymore ).
+     */
+    private ArrayList classPlans;
+
+    /** Buffer for the strings we read.
+     */
+    private byte stringBytes[];
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param buffer buffer positioned at the beginning of the data to read.
+     */
+    public BinaryObjectReader(ByteBuffer buffer) {
+        this.buffer = buffer;
+        this.classes = new ArrayList();
+        this.classPlans = new ArrayList();
+        this.stringBytes = new byte[256];
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To read an object.
+     *
+     * @return the object read, can be null.
+     * @exception PersistenceException if the data is corrupted or a class is not found.
+     */
+    public Object readObject() throws PersistenceException {
+        try {
+            return readValue();
+        } catch (BufferUnderflowException e) {
+            throw new PersistenceException("Unexpected end of data");
+        } catch (IllegalArgumentException e) {
+            throw new PersistenceException("Corrupted data : " + e.getMessage()); // bad array value
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To read a byte written with BinaryObjectWriter.writeByte().
+     *
+     * @return byte read
+     * @exception PersistenceException if there is no more data.
+     */
+    public byte readByte() throws PersistenceException {
+        try {
+            return this.buffer.get();
+        } catch (BufferUnderflowException e) {
+            throw new PersistenceException("Unexpected end of data");
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Reads a tagged value.
+     */
+    private Object readValue() throws PersistenceException {
+        byte tag = this.buffer.get();
+
+        switch (tag) {
+            case BinaryObjectWriter.NULL:
+                return null;
+            case BinaryObjectWriter.BOOLEAN:
+                return Boolean.valueOf(this.buffer.get() != 0);
+            case BinaryObjectWriter.CHARACTER:
+                return new Character(this.buffer.getChar());
+            case BinaryObjectWriter.BYTE:
+                return new Byte(this.buffer.get());
+            case BinaryObjectWriter.SHORT:
+                return new Short(this.buffer.getShort());
+            case BinaryObjectWriter.INTEGER:
+                return new Integer(this.buffer.getInt());
+            case BinaryObjectWriter.LONG:
+                return new Long(this.buffer.getLong());
+            case BinaryObjectWriter.FLOAT:
+                return new Float(this.buffer.getFloat());
+            case BinaryObjectWriter.DOUBLE:
+                return new Double(this.buffer.getDouble());
+            case BinaryObjectWriter.STRING:
+                return readString();
+            case BinaryObjectWriter.STRING_BUFFER:
+                return new StringBuffer(readString());
+            case BinaryObjectWriter.ARRAY:
+                return readArray();
+            case BinaryObjectWriter.OBJECT:
+                return readBean();
+            default:
+                throw new PersistenceException("Unknown tag " + tag + " at offset " + (this.buffer.position() - 1));
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads an array : its component class, its length and its values.
+     */
+    private Object readArray() throws PersistenceException {
+        Class componentClass = (Class) this.classes.get(readClass());
+        int length = this.buffer.getInt();
+
+        if (length < 0 || length > this.buffer.remaining())
+            throw new PersistenceException("Bad array length " + length);
+
+        Object array = Array.newInstance(componentClass, length);
+
+        for (int i = 0; i < length; i++) {
+            Object value = readValue();
+
+            if (value != null)
+                Array.set(array, i, value);
+        }
+
+        return array;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads an object : we create it and set its properties with their setters, in the
+     *  order the PropertiesConverter uses.
+     */
+    private Object readBean() throws PersistenceException {
+        int index = readClass();
+        Class objectClass = (Class) this.classes.get(index);
+        PropertiesConverter.PropertyPlan plans[] = (PropertiesConverter.PropertyPlan[]) this.classPlans.get(index);
+        Object object;
+
+        try {
+            object = objectClass.newInstance();
+        } catch (Exception ex) {
+            Debug.signal(Debug.ERROR, objectClass, ex);
+            throw new PersistenceException(ex);
+        }
+
+        Object arg[] = new Object[1];
+
+        for (int i = 0; i < plans.length; i++) {
+            arg[0] = readValue();
+
+            if (arg[0] == null || plans[i] == null)
+                continue; // null values are not set, removed properties are skipped
+
+            try {
+                plans[i].writeMethod.invoke(object, arg);
+            } catch (InvocationTargetException ex) {
+                Debug.signal(Debug.WARNING, object, ex);
+            } catch (IllegalAccessException ex) {
+                Debug.signal(Debug.WARNING, object, ex);
+            } catch (IllegalArgumentException ex) {
+                Debug.signal(Debug.WARNING, object, plans[i].descriptor.getName() + " : " + ex);
+            }
+        }
+
+        return object;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads a class index. If the class is described here we resolve it, and match the
+     *  saved property names with the properties of our version of the class.
+     *
+     * @return the class index
+     */
+    private int readClass() throws PersistenceException {
+        int index = this.buffer.getInt();
+
+        if (index < this.classes.size())
+            return index;
+
+        if (index != this.classes.size())
+            throw new PersistenceException("Bad class index " + index);
+
+        String className = readString();
+        Class clazz = (Class) BinaryObjectReader.primitiveClasses.get(className);
+
+        if (clazz == null)
+            clazz = PropertiesConverter.getClass(className);
+
+        int nbProperties = this.buffer.getInt();
+        PropertiesConverter.PropertyPlan ourPlans[] = BinaryObjectWriter.getPlans(clazz);
+        PropertiesConverter.PropertyPlan plans[] = new PropertiesConverter.PropertyPlan[nbProperties];
+
+        for (int i = 0; i < nbProperties; i++) {
+            String name = readString();
+
+            for (int j = 0; j < ourPlans.length; j++)
+                if (ourPlans[j].descriptor.getName().equals(name)) {
+                    plans[i] = ourPlans[j];
+                    break;
+                }
+        }
+
+        this.classes.add(clazz);
+        this.classPlans.add(plans);
+        return index;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads a string : its length in bytes and its UTF-8 bytes.
+     */
+    private String readString() throws PersistenceException {
+        int length = this.buffer.getInt();
+
+        if (length < 0 || length > this.buffer.remaining())
+            throw new PersistenceException("Bad string length " + length);
+
+        if (this.stringBytes.length < length)
+            this.stringBytes = new byte[Math.max(length, this.stringBytes.length * 2)];
+
+        this.buffer.get(this.stringBytes, 0, length);
+
+        try {
+            return new String(this.stringBytes, 0, length, "UTF-8");
+        } catch (UnsupportedEncodingException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,271 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.persistence;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Array;
+import java.lang.reflect.InvocationTargetException;
+import java.util.HashMap;
+import wotlas.utils.Debug;
+
+/** Writes objects in a compact binary format that a BinaryObjectReader decodes in one
+ *  pass. We save the same properties as the PropertiesConverter : the properties that
+ *  have a public getter and setter and that are not transient.
+ *<br>
+ *  Each value is preceded by a tag byte. A class is described the first time it is
+ *  written ( name and property names ), then referenced by its index. Because property
+ *  names are saved, a reader can skip the properties that no longer exist in its
+ *  version of a class.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.persistence.BinaryObjectReader
+ */
+
+public class BinaryObjectWriter {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Value tags.
+     */
+    final static byte NULL = 0;
+    final static byte BOOLEAN = 1;
+    final static byte CHARACTER = 2;
+    final static byte BYTE = 3;
+    final static byte SHORT = 4;
+    final static byte INTEGER = 5;
+    final static byte LONG = 6;
+    final static byte FLOAT = 7;
+    final static byte DOUBLE = 8;
+    final static byte STRING = 9;
+    final static byte STRING_BUFFER = 10;
+    final static byte OBJECT = 11;
+    final static byte ARRAY = 12;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our output stream.
+     */
+    private DataOutputStream out;
+
+    /** Index of the classes we already described ( Class -> Integer ).
+     */
+    private HashMap classIndexes;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param os stream to write to.
+     */
+    public BinaryObjectWriter(OutputStream os) {
+        this.out = new DataOutputStream(os);
+        this.classIndexes = new HashMap();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To write an object.
+     *
+     * @param object object to write, can be null.
+     * @exception PersistenceException if the object could not be written
+     */
+    public void writeObject(Object object) throws PersistenceException {
+        try {
+            writeValue(object);
+        } catch (IOException e) {
+            Debug.signal(Debug.ERROR, this, e);
+            throw new PersistenceException(e);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To write a byte, for example to separate the objects we write.
+     *
+     * @param b byte to write
+     * @exception PersistenceException if the byte could not be written
+     */
+    public void writeByte(int b) throws PersistenceException {
+        try {
+            this.out.writeByte(b);
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To flush the data written.
+     *
+     * @exception PersistenceException if the data could not be written
+     */
+    public void flush() throws PersistenceException {
+        try {
+            this.out.flush();
+        } catch (IOException e) {
+            throw new PersistenceException(e);
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Writes a value with its tag.
+     */
+    private void writeValue(Object value) throws IOException, PersistenceException {
+        if (value == null) {
+            this.out.writeByte(BinaryObjectWriter.NULL);
+        } else if (value instanceof Boolean) {
+            this.out.writeByte(BinaryObjectWriter.BOOLEAN);
+            this.out.writeBoolean(((Boolean) value).booleanValue());
+        } else if (value instanceof Character) {
+            this.out.writeByte(BinaryObjectWriter.CHARACTER);
+            this.out.writeChar(((Character) value).charValue());
+        } else if (value instanceof Byte) {
+            this.out.writeByte(BinaryObjectWriter.BYTE);
+            this.out.writeByte(((Byte) value).byteValue());
+        } else if (value instanceof Short) {
+            this.out.writeByte(BinaryObjectWriter.SHORT);
+            this.out.writeShort(((Short) value).shortValue());
+        } else if (value instanceof Integer) {
+            this.out.writeByte(BinaryObjectWriter.INTEGER);
+            this.out.writeInt(((Integer) value).intValue());
+        } else if (value instanceof Long) {
+            this.out.writeByte(BinaryObjectWriter.LONG);
+            this.out.writeLong(((Long) value).longValue());
+        } else if (value instanceof Float) {
+            this.out.writeByte(BinaryObjectWriter.FLOAT);
+            this.out.writeFloat(((Float) value).floatValue());
+        } else if (value instanceof Double) {
+            this.out.writeByte(BinaryObjectWriter.DOUBLE);
+            this.out.writeDouble(((Double) value).doubleValue());
+        } else if (value instanceof String) {
+            this.out.writeByte(BinaryObjectWriter.STRING);
+            writeString((String) value);
+        } else if (value instanceof StringBuffer) {
+            this.out.writeByte(BinaryObjectWriter.STRING_BUFFER);
+            writeString(value.toString());
+        } else if (value.getClass().isArray()) {
+            int length = Array.getLength(value);
+
+            this.out.writeByte(BinaryObjectWriter.ARRAY);
+            writeClass(value.getClass().getComponentType());
+            this.out.writeInt(length);
+
+            for (int i = 0; i < length; i++)
+                writeValue(Array.get(value, i));
+        } else {
+            this.out.writeByte(BinaryObjectWriter.OBJECT);
+            PropertiesConverter.PropertyPlan plans[] = writeClass(value.getClass());
+
+            for (int i = 0; i < plans.length; i++)
+                writeValue(readProperty(value, plans[i]));
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes a class index. The class is described the first time.
+     *
+     * @return the properties we save for this class.
+     */
+    private PropertiesConverter.PropertyPlan[] writeClass(Class clazz) throws IOException {
+        Integer index = (Integer) this.classIndexes.get(clazz);
+        PropertiesConverter.PropertyPlan plans[] = BinaryObjectWriter.getPlans(clazz);
+
+        if (index != null) {
+            this.out.writeInt(index.intValue());
+            return plans;
+        }
+
+        index = new Integer(this.classIndexes.size());
+        this.classIndexes.put(clazz, index);
+
+        this.out.writeInt(index.intValue());
+        writeString(clazz.getName());
+        this.out.writeInt(plans.length);
+
+        for (int i = 0; i < plans.length; i++)
+            writeString(plans[i].descriptor.getName());
+
+        return plans;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes a string : its length in bytes and its UTF-8 bytes.
+     */
+    private void writeString(String s) throws IOException {
+        byte bytes[] = s.getBytes("UTF-8");
+        this.out.writeInt(bytes.length);
+        this.out.write(bytes);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads the value of a property. Problems are signaled like the PropertiesConverter
+     *  does, the property is then saved as null.
+     */
+    private Object readProperty(Object object, PropertiesConverter.PropertyPlan plan) {
+        try {
+            return plan.readMethod.invoke(object, (Object[]) null);
+        } catch (InvocationTargetException ex) {
+            Debug.signal(Debug.WARNING, object, ex);
+        } catch (IllegalAccessException ex) {
+            Debug.signal(Debug.WARNING, object, ex);
+        } catch (IllegalArgumentException ex) {
+            Debug.signal(Debug.WARNING, object, ex);
+        }
+        return null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns the properties we save for a class : the PropertiesConverter ones, except
+     *  the indexed properties ( the PropertiesConverter saves no cells for them ).
+     *  Arrays, primitives & classes saved as a single value have no properties.
+     */
+    static PropertiesConverter.PropertyPlan[] getPlans(Class clazz) {
+        if (clazz.isArray() || clazz.isPrimitive() || clazz.getName().startsWith("java.lang."))
+            return new PropertiesConverter.PropertyPlan[0];
+
+        PropertiesConverter.PropertyPlan plans[] = PropertiesConverter.getPropertyPlans(clazz);
+        int nbPlans = 0;
+
+        for (int i = 0; i < plans.length; i++)
+            if (!plans[i].indexed)
+                nbPlans++;
+
+        if (nbPlans == plans.length)
+            return plans;
+
+        PropertiesConverter.PropertyPlan result[] = new PropertiesConverter.PropertyPlan[nbPlans];
+
+        for (int i = 0, j = 0; i < plans.length; i++)
+            if (!plans[i].indexed)
+                result[j++] = plans[i];
+
+        return result;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,107 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.persistence;
+
+import java.io.File;
+import wotlas.utils.FileTools;
+
+/** The default ObjectStore : one "dot-properties" file per object. An object is first
+ *  saved in a temporary file that then replaces the previous file, so that a crash
+ *  during a save never leaves a truncated object.
+ *
+ * @author Aldiss
+ */
+
+public class FileObjectStore implements ObjectStore {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Suffix of our temporary files.
+     */
+    private final static String TMP_SUFFIX = ".tmp";
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To load an object from its file.
+     *
+     * @param path file path
+     * @return the loaded object
+     * @exception PersistenceException if the file was not found or failed to load
+     */
+    public Object load(String path) throws PersistenceException {
+        return PropertiesConverter.load(path);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To save an object in its file.
+     *
+     * @param o object to save
+     * @param path file path
+     * @exception PersistenceException if the object failed to be saved
+     */
+    public void save(Object o, String path) throws PersistenceException {
+        File tmpFile = new File(path + FileObjectStore.TMP_SUFFIX);
+        File file = new File(path);
+
+        PropertiesConverter.save(o, tmpFile.getPath());
+
+        if (file.exists() && !file.delete()) {
+            tmpFile.delete();
+            throw new PersistenceException("Failed to replace " + path);
+        }
+
+        if (!tmpFile.renameTo(file))
+            throw new PersistenceException("Failed to rename " + tmpFile.getPath());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To delete the file of an object.
+     *
+     * @param path file path
+     * @return true if the file has been deleted
+     */
+    public boolean delete(String path) {
+        return new File(path).delete();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To list the files of a directory ( on one level only ).
+     *
+     * @param dirName directory name
+     * @param ext extension of the files to list, "" to get all the files
+     * @return the files found
+     */
+    public String[] list(String dirName, String ext) {
+        return FileTools.listFiles(dirName, ext);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Nothing to close.
+     */
+    public void close() {
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,765 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.persistence;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.zip.CRC32;
+import wotlas.utils.Debug;
+import wotlas.utils.FileTools;
+
+/** An append-only ObjectStore. Each save appends a record with the new version of the
+ *  object at the end of a log, a delete appends a tombstone. The log is split in
+ *  segment files ("segment-00000001.log", ...) stored in a journal directory. An
+ *  in-memory index gives the location of the latest version of each object : it is
+ *  rebuilt at startup by a single sequential scan of the segments.
+ *<br>
+ *  Record format : [int length][byte type][UTF key][object data][int crc32 of
+ *  type+key+data]. Keys are the object paths, relative to the parent directory of the
+ *  journal directory. A torn record at the end of the last segment (crash during an
+ *  append) is truncated at startup.
+ *<br>
+ *  When old versions take more room than the live objects, the store is compacted :
+ *  live records are copied in a new segment and the old segments are deleted. The
+ *  new segment is written in a temporary file and renamed once complete, so a crash
+ *  during a compaction loses nothing.
+ *<br>
+ *  Objects that are not in the journal are loaded from their file, if any, so that
+ *  an existing file tree is migrated as its objects are saved again.
+ *
+ * @author Aldiss
+ */
+
+public class JournalObjectStore implements ObjectStore {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default maximum size of a segment (bytes).
+     */
+    public final static long DEFAULT_SEGMENT_SIZE = 16 * 1024 * 1024;
+
+    /** Segment files prefix & suffix.
+     */
+    private final static String SEGMENT_PREFIX = "segment-";
+    private final static String SEGMENT_SUFFIX = ".log";
+
+    /** Suffix of the segment file written during a compaction.
+     */
+    private final static String TMP_SUFFIX = ".tmp";
+
+    /** Record types.
+     */
+    private final static byte PUT = 1;
+    private final static byte DELETE = 2;
+
+    /** Maximum size of a record payload, to detect corrupted lengths.
+     */
+    private final static int MAX_RECORD_SIZE = 16 * 1024 * 1024;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our journal directory.
+     */
+    private File journalDir;
+
+    /** Root directory of our keys (absolute path, ending with a separator).
+     */
+    private String rootDir;
+
+    /** Maximum size of a segment.
+     */
+    private long maxSegmentSize;
+
+    /** Segments, by number ( Integer -> Segment ).
+     */
+    private TreeMap segments;
+
+    /** Segment where we append records.
+     */
+    private Segment activeSegment;
+
+    /** Location of the latest version of each object ( key -> Record ).
+     */
+    private HashMap index;
+
+    /** Names of the objects of each directory ( directory key -> HashSet of names ).
+     */
+    private HashMap directories;
+
+    /** Bytes used by the live records, and by old versions and tombstones.
+     */
+    private long liveBytes;
+    private long garbageBytes;
+
+    /** Should we force our appends to the disk ?
+     */
+    private boolean syncWrites;
+
+    /** Checksum used for our records.
+     */
+    private CRC32 crc;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor with the default segment size. We scan the existing segments.
+     *
+     * @param journalDir journal directory, created if needed. Keys are relative to its
+     *        parent directory.
+     * @exception PersistenceException if the journal could not be opened
+     */
+    public JournalObjectStore(String journalDir) throws PersistenceException {
+        this(journalDir, JournalObjectStore.DEFAULT_SEGMENT_SIZE, true);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor. We scan the existing segments.
+     *
+     * @param journalDir journal directory, created if needed. Keys are relative to its
+     *        parent directory.
+     * @param maxSegmentSize maximum size of a segment, also the minimum garbage size
+     *        that triggers a compaction.
+     * @param syncWrites true to force each append to the disk.
+     * @exception PersistenceException if the journal could not be opened
+     */
+    public JournalObjectStore(String journalDir, long maxSegmentSize, boolean syncWrites) throws PersistenceException {
+        this.journalDir = new File(journalDir).getAbsoluteFile();
+        this.rootDir = this.journalDir.getParent() + File.separator;
+        this.maxSegmentSize = maxSegmentSize;
+        this.syncWrites = syncWrites;
+        this.segments = new TreeMap();
+        this.index = new HashMap();
+        this.directories = new HashMap();
+        this.crc = new CRC32();
+
+        if (!this.journalDir.isDirectory() && !this.journalDir.mkdirs())
+            throw new PersistenceException("Failed to create journal directory " + this.journalDir);
+
+        try {
+            open();
+        } catch (IOException e) {
+            close();
+            throw new PersistenceException(e);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Scans the segments of the journal directory and rebuilds our index.
+     */
+    private void open() throws IOException {
+        long startTime = System.currentTimeMillis();
+        File list[] = this.journalDir.listFiles();
+
+        for (int i = 0; i < list.length; i++) {
+            String name = list[i].getName();
+
+            if (name.endsWith(JournalObjectStore.SEGMENT_SUFFIX + JournalObjectStore.TMP_SUFFIX)) {
+                list[i].delete(); // unfinished compaction
+                continue;
+            }
+
+            int number = getSegmentNumber(name);
+
+            if (number > 0)
+                this.segments.put(new Integer(number), new Segment(number, list[i]));
+        }
+
+        Iterator it = this.segments.values().iterator();
+        int nbRecords = 0;
+
+        while (it.hasNext()) {
+            Segment segment = (Segment) it.next();
+            nbRecords += scanSegment(segment, !it.hasNext());
+        }
+
+        if (this.segments.isEmpty())
+            this.activeSegment = createSegment(1);
+        else
+            this.activeSegment = (Segment) this.segments.get(this.segments.lastKey());
+
+        Debug.signal(Debug.NOTICE, this, "Journal opened : " + this.index.size() + " objects, " + nbRecords + " records in " + this.segments.size() + " segments, scanned in " + (System.currentTimeMillis() - startTime) + " ms.");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads the records of a segment sequentially and applies them to our index.
+     *
+     * @param segment segment to scan
+     * @param isLast true if it's the last segment : a torn record at its end is removed.
+     * @return number of records read
+     */
+    private int scanSegment(Segment segment, boolean isLast) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(segment.file), 64 * 1024));
+        long fileSize = segment.file.length();
+        long position = 0;
+        int nbRecords = 0;
+
+        try {
+            while (position < fileSize) {
+                if (fileSize - position < 8)
+                    break; // torn record
+
+                int length = in.readInt();
+
+                if (length < 3 || length > JournalObjectStore.MAX_RECORD_SIZE || fileSize - position < 8 + length)
+                    break; // corrupted or torn record
+
+                byte payload[] = new byte[length];
+                in.readFully(payload);
+
+                this.crc.reset();
+                this.crc.update(payload);
+
+                if (in.readInt() != (int) this.crc.getValue())
+                    break; // corrupted record
+
+                DataInputStream recordIn = new DataInputStream(new ByteArrayInputStream(payload));
+                byte type = recordIn.readByte();
+                String key = recordIn.readUTF();
+                int dataOffset = length - recordIn.available();
+
+                applyRecord(type, key, new Record(segment, position, length + 8, position + 4 + dataOffset, length - dataOffset));
+
+                position += length + 8;
+                nbRecords++;
+            }
+        } catch (EOFException e) {
+            // torn record
+        } finally {
+            in.close();
+        }
+
+        segment.size = position;
+
+        if (position < fileSize) {
+            if (!isLast) {
+                Debug.signal(Debug.ERROR, this, "Journal segment " + segment.file + " is corrupted after offset " + position + ", its remaining records are ignored.");
+            } else {
+                Debug.signal(Debug.WARNING, this, "Journal segment " + segment.file + " ends with an incomplete record, truncated to " + position + " bytes.");
+                segment.getFile().setLength(position);
+            }
+        }
+
+        return nbRecords;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To load an object. Objects that are not in the journal are loaded from their file.
+     *
+     * @param path path of the object
+     * @return the loaded object
+     * @exception PersistenceException if the object was not found or failed to load
+     */
+    public Object load(String path) throws PersistenceException {
+        byte data[];
+
+        synchronized (this) {
+            Record record = (Record) this.index.get(getKey(path));
+
+            if (record == null)
+                return PropertiesConverter.load(path);
+
+            try {
+                data = new byte[record.dataLength];
+                RandomAccessFile file = record.segment.getFile();
+                file.seek(record.dataOffset);
+                file.readFully(data);
+            } catch (IOException e) {
+                Debug.signal(Debug.ERROR, this, "Failed to read " + path + " : " + e);
+                throw new PersistenceException(e);
+            }
+        }
+
+        return PropertiesConverter.load(new ByteArrayInputStream(data));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To save an object : we append its new version to the journal.
+     *
+     * @param o object to save
+     * @param path path of the object
+     * @exception PersistenceException if the object failed to be saved
+     */
+    public void save(Object o, String path) throws PersistenceException {
+        ByteArrayOutputStream data = new ByteArrayOutputStream(1024);
+        PropertiesConverter.save(o, data);
+
+        append(JournalObjectStore.PUT, getKey(path), data.toByteArray());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To delete an object : we append a tombstone to the journal. The file of the object,
+     *  if any, is also deleted.
+     *
+     * @param path path of the object
+     * @return true if the object has been deleted
+     */
+    public boolean delete(String path) {
+        String key = getKey(path);
+        boolean deleted = false;
+
+        synchronized (this) {
+            if (this.index.containsKey(key)) {
+                try {
+                    append(JournalObjectStore.DELETE, key, new byte[0]);
+                    deleted = true;
+                } catch (PersistenceException e) {
+                    Debug.signal(Debug.ERROR, this, "Failed to delete " + path + " : " + e.getMessage());
+                    return false;
+                }
+            }
+        }
+
+        File file = new File(path);
+
+        if (file.exists())
+            return file.delete();
+
+        return deleted;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To list the objects of a directory ( on one level only ) : the objects of the journal
+     *  and the files of the directory.
+     *
+     * @param dirName directory name
+     * @param ext extension of the objects to list, "" to get all the objects
+     * @return the paths of the objects found
+     */
+    public String[] list(String dirName, String ext) {
+        String files[] = FileTools.listFiles(dirName, ext);
+        ArrayList list = new ArrayList(files.length + 10);
+        HashSet names = new HashSet();
+
+        for (int i = 0; i < files.length; i++) {
+            list.add(files[i]);
+            names.add(new File(files[i]).getName());
+        }
+
+        synchronized (this) {
+            HashSet dirNames = (HashSet) this.directories.get(getKey(dirName));
+
+            if (dirNames != null) {
+                Iterator it = dirNames.iterator();
+
+                while (it.hasNext()) {
+                    String name = (String) it.next();
+
+                    if (name.endsWith(ext) && names.add(name))
+                        list.add(new File(dirName, name).getPath());
+                }
+            }
+        }
+
+        return (String[]) list.toArray(new String[list.size()]);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To close the journal.
+     */
+    public synchronized void close() {
+        Iterator it = this.segments.values().iterator();
+
+        while (it.hasNext())
+            ((Segment) it.next()).close();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To compact the journal : the live records are copied in a new segment and all the
+     *  previous segments are deleted.
+     *
+     * @exception PersistenceException if the compaction failed. The journal is unchanged.
+     */
+    public synchronized void compact() throws PersistenceException {
+        long startTime = System.currentTimeMillis();
+        long previousSize = this.liveBytes + this.garbageBytes;
+        int number = this.activeSegment.number + 1;
+
+        File tmpFile = new File(this.journalDir, getSegmentName(number) + JournalObjectStore.TMP_SUFFIX);
+        Segment compacted = new Segment(number, new File(this.journalDir, getSegmentName(number)));
+        HashMap newIndex = new HashMap(this.index.size() * 2);
+
+        try {
+            RandomAccessFile out = new RandomAccessFile(tmpFile, "rw");
+
+            try {
+                out.setLength(0);
+                Iterator it = this.index.entrySet().iterator();
+                long position = 0;
+
+                while (it.hasNext()) {
+                    Map.Entry e = (Map.Entry) it.next();
+                    Record record = (Record) e.getValue();
+
+                    byte buffer[] = new byte[record.size];
+                    RandomAccessFile in = record.segment.getFile();
+                    in.seek(record.offset);
+                    in.readFully(buffer);
+                    out.write(buffer);
+
+                    newIndex.put(e.getKey(), new Record(compacted, position, record.size, position + (record.dataOffset - record.offset), record.dataLength));
+                    position += record.size;
+                }
+
+                out.getFD().sync();
+                compacted.size = position;
+            } finally {
+                out.close();
+            }
+        } catch (IOException e) {
+            tmpFile.delete();
+            Debug.signal(Debug.ERROR, this, "Journal compaction failed : " + e);
+            throw new PersistenceException(e);
+        }
+
+        if (!tmpFile.renameTo(compacted.file)) {
+            tmpFile.delete();
+            throw new PersistenceException("Failed to rename " + tmpFile);
+        }
+
+        // the compacted segment is safe, we can delete the old ones
+        Iterator it = this.segments.values().iterator();
+
+        while (it.hasNext()) {
+            Segment segment = (Segment) it.next();
+            segment.close();
+
+            if (!segment.file.delete())
+                Debug.signal(Debug.WARNING, this, "Failed to delete old journal segment " + segment.file);
+        }
+
+        this.segments.clear();
+        this.segments.put(new Integer(compacted.number), compacted);
+        this.index = newIndex;
+        this.liveBytes = compacted.size;
+        this.garbageBytes = 0;
+
+        try {
+            this.activeSegment = createSegment(number + 1);
+        } catch (IOException e) {
+            this.activeSegment = compacted; // we'll append to the compacted segment
+            Debug.signal(Debug.WARNING, this, "Failed to create a new journal segment : " + e);
+        }
+
+        Debug.signal(Debug.NOTICE, this, "Journal compacted from " + previousSize + " to " + compacted.size + " bytes in " + (System.currentTimeMillis() - startTime) + " ms.");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the size of the live records.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getLiveBytes() {
+        return this.liveBytes;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the size of the records that a compaction would remove.
+     *
+     * @return size in bytes
+     */
+    public synchronized long getGarbageBytes() {
+        return this.garbageBytes;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Appends a record to the active segment and updates our index.
+     *
+     * @param type PUT or DELETE
+     * @param key object key
+     * @param data object data
+     * @exception PersistenceException if the record could not be written
+     */
+    private synchronized void append(byte type, String key, byte data[]) throws PersistenceException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(data.length + key.length() + 16);
+        DataOutputStream out = new DataOutputStream(bytes);
+        Record record;
+
+        try {
+            if (this.activeSegment.size >= this.maxSegmentSize)
+                this.activeSegment = createSegment(this.activeSegment.number + 1);
+
+            out.writeInt(0); // payload length, set below
+            out.writeByte(type);
+            out.writeUTF(key);
+            int dataOffset = out.size();
+            out.write(data);
+            out.writeInt(0); // checksum, set below
+
+            byte buffer[] = bytes.toByteArray();
+            int length = buffer.length - 8;
+
+            this.crc.reset();
+            this.crc.update(buffer, 4, length);
+            JournalObjectStore.putInt(buffer, 0, length);
+            JournalObjectStore.putInt(buffer, buffer.length - 4, (int) this.crc.getValue());
+
+            Segment segment = this.activeSegment;
+            RandomAccessFile file = segment.getFile();
+            file.seek(segment.size);
+            file.write(buffer);
+
+            if (this.syncWrites)
+                file.getFD().sync();
+
+            record = new Record(segment, segment.size, buffer.length, segment.size + dataOffset, data.length);
+            segment.size += buffer.length;
+        } catch (IOException e) {
+            // we remove what we may have written
+            try {
+                this.activeSegment.getFile().setLength(this.activeSegment.size);
+            } catch (IOException ioe) {
+                Debug.signal(Debug.ERROR, this, "Failed to truncate journal segment : " + ioe);
+            }
+
+            Debug.signal(Debug.ERROR, this, "Failed to write " + key + " in the journal : " + e);
+            throw new PersistenceException(e);
+        }
+
+        applyRecord(type, key, record);
+
+        if (this.garbageBytes > this.maxSegmentSize && this.garbageBytes > this.liveBytes) {
+            try {
+                compact();
+            } catch (PersistenceException e) {
+                // the record is saved, we'll try again on the next append
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Updates our index with a record.
+     *
+     * @param type PUT or DELETE
+     * @param key object key
+     * @param record record location
+     */
+    private void applyRecord(byte type, String key, Record record) {
+        Record previous = (Record) this.index.remove(key);
+
+        if (previous != null) {
+            this.liveBytes -= previous.size;
+            this.garbageBytes += previous.size;
+        }
+
+        int separator = key.lastIndexOf('/');
+        String dirKey = (separator < 0) ? "" : key.substring(0, separator);
+        String name = key.substring(separator + 1);
+
+        if (type == JournalObjectStore.PUT) {
+            this.index.put(key, record);
+            this.liveBytes += record.size;
+
+            HashSet names = (HashSet) this.directories.get(dirKey);
+
+            if (names == null) {
+                names = new HashSet();
+                this.directories.put(dirKey, names);
+            }
+
+            names.add(name);
+        } else {
+            this.garbageBytes += record.size; // tombstones are not kept by a compaction
+
+            HashSet names = (HashSet) this.directories.get(dirKey);
+
+            if (names != null) {
+                names.remove(name);
+
+                if (names.isEmpty())
+                    this.directories.remove(dirKey);
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates a new empty segment.
+     *
+     * @param number segment number
+     * @return the new segment
+     */
+    private Segment createSegment(int number) throws IOException {
+        Segment segment = new Segment(number, new File(this.journalDir, getSegmentName(number)));
+        segment.getFile().setLength(0);
+        this.segments.put(new Integer(number), segment);
+        return segment;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns the key of an object : its path relative to our root directory, with '/'
+     *  separators.
+     *
+     * @param path object path
+     * @return object key
+     */
+    private String getKey(String path) {
+        String key = new File(path).getAbsolutePath();
+
+        if (key.startsWith(this.rootDir))
+            key = key.substring(this.rootDir.length());
+
+        return key.replace(File.separatorChar, '/');
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes an int in a buffer, in the DataOutput byte order.
+     *
+     * @param buffer buffer to write in
+     * @param offset where to write
+     * @param value int to write
+     */
+    private static void putInt(byte buffer[], int offset, int value) {
+        buffer[offset] = (byte) (value >>> 24);
+        buffer[offset + 1] = (byte) (value >>> 16);
+        buffer[offset + 2] = (byte) (value >>> 8);
+        buffer[offset + 3] = (byte) value;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns the file name of a segment.
+     *
+     * @param number segment number
+     * @return file name
+     */
+    private static String getSegmentName(int number) {
+        String digits = "0000000" + number;
+        return JournalObjectStore.SEGMENT_PREFIX + digits.substring(digits.length() - 8) + JournalObjectStore.SEGMENT_SUFFIX;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Returns the number of a segment from its file name.
+     *
+     * @param name file name
+     * @return segment number, -1 if it's not a segment file
+     */
+    private static int getSegmentNumber(String name) {
+        if (!name.startsWith(JournalObjectStore.SEGMENT_PREFIX) || !name.endsWith(JournalObjectStore.SEGMENT_SUFFIX))
+            return -1;
+
+        try {
+            return Integer.parseInt(name.substring(JournalObjectStore.SEGMENT_PREFIX.length(), name.length() - JournalObjectStore.SEGMENT_SUFFIX.length()));
+        } catch (NumberFormatException e) {
+            return -1;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A segment file of the journal.
+     */
+    private static class Segment {
+
+        protected int number;
+
+        protected File file;
+
+        /** Size of the valid records of the segment.
+         */
+        protected long size;
+
+        /** Opened on the first access.
+         */
+        private RandomAccessFile raf;
+
+        protected Segment(int number, File file) {
+            this.number = number;
+            this.file = file;
+        }
+
+        protected RandomAccessFile getFile() throws IOException {
+            if (this.raf == null)
+                this.raf = new RandomAccessFile(this.file, "rw");
+            return this.raf;
+        }
+
+        protected void close() {
+            if (this.raf == null)
+                return;
+
+            try {
+                this.raf.close();
+            } catch (IOException e) {
+                Debug.signal(Debug.WARNING, this, "Failed to close " + this.file + " : " + e);
+            }
+
+            this.raf = null;
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Location of a record in a segment.
+     */
+    private static class Record {
+
+        protected Segment segment;
+
+        /** Offset and size of the whole record.
+         */
+        protected long offset;
+        protected int size;
+
+        /** Offset and size of the object data.
+         */
+        protected long dataOffset;
+        protected int dataLength;
+
+        protected Record(Segment segment, long offset, int size, long dataOffset, int dataLength) {
+            this.segment = segment;
+            this.offset = offset;
+            this.size = size;
+            this.dataOffset = dataOffset;
+            this.dataLength = dataLength;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
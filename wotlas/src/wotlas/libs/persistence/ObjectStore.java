@@ -0,0 +1,72 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.persistence;
+
+/** A storage backend for the objects we save with the PropertiesConverter. Objects
+ *  are identified by a path that looks like a file path (directory + name), so that
+ *  the ResourceManager can use the same paths whatever the backend is.
+ *
+ * @author Aldiss
+ * @see wotlas.libs.persistence.FileObjectStore
+ * @see wotlas.libs.persistence.JournalObjectStore
+ */
+
+public interface ObjectStore {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To load an object.
+     *
+     * @param path path of the object
+     * @return the loaded object
+     * @exception PersistenceException if the object was not found or failed to load
+     */
+    public Object load(String path) throws PersistenceException;
+
+    /** To save an object. It replaces the previous version of the object, if any.
+     *
+     * @param o object to save
+     * @param path path of the object
+     * @exception PersistenceException if the object failed to be saved
+     */
+    public void save(Object o, String path) throws PersistenceException;
+
+    /** To delete an object.
+     *
+     * @param path path of the object
+     * @return true if the object has been deleted
+     */
+    public boolean delete(String path);
+
+    /** To list the objects of a directory ( on one level only ).
+     *
+     * @param dirName directory name
+     * @param ext extension of the objects to list, "" to get all the objects
+     * @return the paths of the objects found, like FileTools.listFiles() returns them.
+     */
+    public String[] list(String dirName, String ext);
+
+    /** To close the store. Pending data is written.
+     */
+    public void close();
+
+    /*------------------------------------------------------------------------------------*/
+
+}
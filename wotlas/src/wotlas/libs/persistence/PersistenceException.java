@@ -32,4 +32,12 @@ public class PersistenceException extends Exception {
         super(exception.getMessage());
     }
 
+    /**
+    * Construct a persistence exception with a message.
+    * @param message    the detail message.
+    **/
+    protected PersistenceException(String message) {
+        super(message);
+    }
+
 }
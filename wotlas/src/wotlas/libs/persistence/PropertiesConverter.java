@@ -42,6 +42,7 @@ import java.util.ArrayList;
 import java.util.Collections;
 import java.util.Date;
 import java.util.Enumeration;
+import java.util.HashMap;
 import java.util.Properties;
 import wotlas.utils.Debug;
 
@@ -74,6 +75,57 @@ public class PropertiesConverter {
     **/
     private static final boolean DEBUG = false;
 
+    /**
+    * Storable properties of the classes we saved or loaded ( Class -> PropertyPlan[] ).
+    * Introspection & transient checks are done only once per class.
+    **/
+    private static final HashMap propertyPlans = new HashMap();
+
+    /**
+    * Classes of the objects we loaded ( class name -> Class ).
+    **/
+    private static final HashMap classes = new HashMap();
+
+    /**
+    * Kinds of the values we save as a single string.
+    **/
+    private static final int BOOLEAN = 0;
+    private static final int CHARACTER = 1;
+    private static final int BYTE = 2;
+    private static final int INTEGER = 3;
+    private static final int SHORT = 4;
+    private static final int LONG = 5;
+    private static final int FLOAT = 6;
+    private static final int DOUBLE = 7;
+    private static final int STRING_BUFFER = 8;
+    private static final int STRING = 9;
+
+    /**
+    * Kind of each class we save as a single string ( Class -> Integer ).
+    **/
+    private static final HashMap valueKinds = new HashMap();
+
+    static {
+        PropertiesConverter.valueKinds.put(Boolean.class, new Integer(PropertiesConverter.BOOLEAN));
+        PropertiesConverter.valueKinds.put(Boolean.TYPE, new Integer(PropertiesConverter.BOOLEAN));
+        PropertiesConverter.valueKinds.put(Character.class, new Integer(PropertiesConverter.CHARACTER));
+        PropertiesConverter.valueKinds.put(Character.TYPE, new Integer(PropertiesConverter.CHARACTER));
+        PropertiesConverter.valueKinds.put(Byte.class, new Integer(PropertiesConverter.BYTE));
+        PropertiesConverter.valueKinds.put(Byte.TYPE, new Integer(PropertiesConverter.BYTE));
+        PropertiesConverter.valueKinds.put(Integer.class, new Integer(PropertiesConverter.INTEGER));
+        PropertiesConverter.valueKinds.put(Integer.TYPE, new Integer(PropertiesConverter.INTEGER));
+        PropertiesConverter.valueKinds.put(Short.class, new Integer(PropertiesConverter.SHORT));
+        PropertiesConverter.valueKinds.put(Short.TYPE, new Integer(PropertiesConverter.SHORT));
+        PropertiesConverter.valueKinds.put(Long.class, new Integer(PropertiesConverter.LONG));
+        PropertiesConverter.valueKinds.put(Long.TYPE, new Integer(PropertiesConverter.LONG));
+        PropertiesConverter.valueKinds.put(Float.class, new Integer(PropertiesConverter.FLOAT));
+        PropertiesConverter.valueKinds.put(Float.TYPE, new Integer(PropertiesConverter.FLOAT));
+        PropertiesConverter.valueKinds.put(Double.class, new Integer(PropertiesConverter.DOUBLE));
+        PropertiesConverter.valueKinds.put(Double.TYPE, new Integer(PropertiesConverter.DOUBLE));
+        PropertiesConverter.valueKinds.put(StringBuffer.class, new Integer(PropertiesConverter.STRING_BUFFER));
+        PropertiesConverter.valueKinds.put(String.class, new Integer(PropertiesConverter.STRING));
+    }
+
     /**
     * Save an object into a "dot-properties" format file.
     * @param object the object to save.
@@ -255,42 +307,18 @@ public class PropertiesConverter {
     * @return the number of saved properties.
     **/
     private static int toProperties(Object object, Class objectClass, Properties properties, String prefix) {
-        PropertyDescriptor[] descriptors; // Properties of the object to save
+        PropertyPlan[] plans; // Storable properties of the object to save
         int nbSaved; // Number of saved properties
 
-        // Get all the getters of the object.
-        descriptors = PropertiesConverter.getProperties(objectClass);
+        // Get all the storable properties of the object.
+        plans = PropertiesConverter.getPropertyPlans(objectClass);
         nbSaved = 0;
         // Save the class of the object
         properties.setProperty(prefix + "class", objectClass.getName());
-        if (descriptors != null) {
-            // Among the descriptors, get the one which have a read method
-            // and a write method (it is useless to save if we will not be able
-            // to restore).
-            Method readMethod;
-
-            for (int i = 0; i < descriptors.length; i++) {
-                if (PropertiesConverter.DEBUG)
-                    System.out.println("Candidate property:" + prefix + descriptors[i].getName() + " in class " + objectClass.getName());
-                if (((readMethod = descriptors[i].getReadMethod()) != null) && (descriptors[i].getWriteMethod() != null)) {
-                    // Class property or 
-                    // Getter and setter are present: check that the property is
-                    // not transient
-                    if (!PropertiesConverter.isTransient(objectClass, descriptors[i].getName())) {
-                        // Not transient: save it
-                        if (PropertiesConverter.DEBUG)
-                            System.out.println("Storable property:" + prefix + descriptors[i].getName());
-                        nbSaved += PropertiesConverter.saveProperty(object, properties, prefix, descriptors[i], readMethod);
-                    } else if (PropertiesConverter.DEBUG) {
-                        System.out.println("Property:" + prefix + descriptors[i].getName() + " is transient");
-                    }
-                } else if (PropertiesConverter.DEBUG) {
-                    if (readMethod == null)
-                        System.out.println("Property:" + prefix + descriptors[i].getName() + " has no read method");
-                    else
-                        System.out.println("Property:" + prefix + descriptors[i].getName() + " has no write method");
-                }
-            }
+        for (int i = 0; i < plans.length; i++) {
+            if (PropertiesConverter.DEBUG)
+                System.out.println("Storable property:" + prefix + plans[i].descriptor.getName());
+            nbSaved += PropertiesConverter.saveProperty(object, properties, prefix, plans[i].descriptor, plans[i].readMethod);
         }
         return nbSaved;
     }
@@ -465,7 +493,7 @@ public class PropertiesConverter {
     * @exception PersistenceException when a problem occurs during loading.
     **/
     private static Object fromProperties(Properties properties, String prefix) throws PersistenceException {
-        PropertyDescriptor[] descriptors; // Properties of the object to restore
+        PropertyPlan[] plans; // Storable properties of the object to restore
         String className; // Object class
         Class objectClass; // Class of object
         Object object; // Restored object
@@ -474,47 +502,18 @@ public class PropertiesConverter {
         className = properties.getProperty(prefix + "class");
         if (className == null)
             return null;
-        try {
-            objectClass = Class.forName(className);
-        } catch (ClassNotFoundException ex) {
-            Debug.signal(Debug.ERROR, className, ex);
-            throw new PersistenceException(ex);
-        }
+        objectClass = PropertiesConverter.getClass(className);
         try {
             object = objectClass.newInstance();
         } catch (Exception ex) {
             Debug.signal(Debug.ERROR, objectClass, ex);
             throw new PersistenceException(ex);
         }
-        descriptors = PropertiesConverter.getProperties(objectClass);
-        if (descriptors != null) {
-            // Among the descriptors, get the one which have a read method
-            // and a write method.
-            Method writeMethod;
-
-            for (int i = 0; i < descriptors.length; i++) {
-                if (PropertiesConverter.DEBUG)
-                    System.out.println("Candidate property:" + prefix + descriptors[i].getName());
-                writeMethod = null;
-                if ((descriptors[i].getReadMethod() != null) && ((writeMethod = descriptors[i].getWriteMethod()) != null)) {
-                    // Class property or 
-                    // Getter and setter are present: check that the property is
-                    // not transient
-                    if (!PropertiesConverter.isTransient(objectClass, descriptors[i].getName())) {
-                        // Not transient: save it
-                        if (PropertiesConverter.DEBUG)
-                            System.out.println("Loadable property:" + prefix + descriptors[i].getName());
-                        PropertiesConverter.loadProperty(object, properties, prefix + descriptors[i].getName(), writeMethod, descriptors[i].getPropertyType(), (descriptors[i] instanceof IndexedPropertyDescriptor));
-                    } else if (PropertiesConverter.DEBUG) {
-                        System.out.println("Property:" + prefix + descriptors[i].getName() + " is transient");
-                    }
-                } else if (PropertiesConverter.DEBUG) {
-                    if (writeMethod == null)
-                        System.out.println("Property:" + prefix + descriptors[i].getName() + " has no write method");
-                    else
-                        System.out.println("Property:" + prefix + descriptors[i].getName() + " has no read method");
-                }
-            }
+        plans = PropertiesConverter.getPropertyPlans(objectClass);
+        for (int i = 0; i < plans.length; i++) {
+            if (PropertiesConverter.DEBUG)
+                System.out.println("Loadable property:" + prefix + plans[i].descriptor.getName());
+            PropertiesConverter.loadProperty(object, properties, prefix + plans[i].descriptor.getName(), plans[i].writeMethod, plans[i].descriptor.getPropertyType(), plans[i].indexed);
         }
         return object;
     }
@@ -607,30 +606,43 @@ public class PropertiesConverter {
             System.out.println("Loaded:" + propertyName + " = " + value + "/" + propertyClass);
         result = null;
         if (value != null) {
-            if ((propertyClass.getName().equals("java.lang.Boolean")) || (propertyClass.equals(Boolean.TYPE)))
-                result = new Boolean(value);
-            else if ((propertyClass.getName().equals("java.lang.Character")) || (propertyClass.equals(Character.TYPE)))
-                result = new Character(value.charAt(0));
-            else if ((propertyClass.getName().equals("java.lang.Byte")) || (propertyClass.equals(Byte.TYPE)))
-                result = new Byte(value);
-            else if ((propertyClass.getName().equals("java.lang.Integer")) || (propertyClass.equals(Integer.TYPE)))
-                result = new Integer(value);
-            else if ((propertyClass.getName().equals("java.lang.Short")) || (propertyClass.equals(Short.TYPE)))
-                result = new Short(value);
-            else if ((propertyClass.getName().equals("java.lang.Long")) || (propertyClass.equals(Long.TYPE)))
-                result = new Long(value);
-            else if ((propertyClass.getName().equals("java.lang.Float")) || (propertyClass.equals(Float.TYPE)))
-                result = new Float(value);
-            else if ((propertyClass.getName().equals("java.lang.Double")) || (propertyClass.equals(Double.TYPE)))
-                result = new Double(value);
-            else if (propertyClass.getName().equals("java.lang.StringBuffer"))
-                result = new StringBuffer(value);
-            else if (propertyClass.getName().equals("java.lang.String"))
-                result = value;
-            else {
-                // Abnormal: should not occur
-                Debug.signal(Debug.WARNING, propertyName, "IGNORED");
-                return null;
+            Integer kind = (Integer) PropertiesConverter.valueKinds.get(propertyClass);
+
+            switch ((kind == null) ? -1 : kind.intValue()) {
+                case BOOLEAN:
+                    result = new Boolean(value);
+                    break;
+                case CHARACTER:
+                    result = new Character(value.charAt(0));
+                    break;
+                case BYTE:
+                    result = new Byte(value);
+                    break;
+                case INTEGER:
+                    result = new Integer(value);
+                    break;
+                case SHORT:
+                    result = new Short(value);
+                    break;
+                case LONG:
+                    result = new Long(value);
+                    break;
+                case FLOAT:
+                    result = new Float(value);
+                    break;
+                case DOUBLE:
+                    result = new Double(value);
+                    break;
+                case STRING_BUFFER:
+                    result = new StringBuffer(value);
+                    break;
+                case STRING:
+                    result = value;
+                    break;
+                default:
+                    // Abnormal: should not occur
+                    Debug.signal(Debug.WARNING, propertyName, "IGNORED");
+                    return null;
             }
         } else
             // Complex object: recursively add its properties
@@ -656,6 +668,103 @@ public class PropertiesConverter {
         return null;
     }
 
+    /**
+    * Provide the storable properties of a class : the properties that have a read
+    * method and a write method (it is useless to save if we will not be able to
+    * restore) and that are not transient. They are computed once per class.
+    * @param objectClass the class of object to save or to load.
+    * @return an array of property plans, empty if the introspection failed.
+    **/
+    static PropertyPlan[] getPropertyPlans(Class objectClass) {
+        PropertyPlan[] plans;
+
+        synchronized (PropertiesConverter.propertyPlans) {
+            plans = (PropertyPlan[]) PropertiesConverter.propertyPlans.get(objectClass);
+        }
+        if (plans != null)
+            return plans;
+
+        PropertyDescriptor[] descriptors = PropertiesConverter.getProperties(objectClass);
+        ArrayList list = new ArrayList();
+
+        if (descriptors != null) {
+            Method readMethod;
+            Method writeMethod;
+
+            for (int i = 0; i < descriptors.length; i++) {
+                if (PropertiesConverter.DEBUG)
+                    System.out.println("Candidate property:" + descriptors[i].getName() + " in class " + objectClass.getName());
+                readMethod = descriptors[i].getReadMethod();
+                writeMethod = descriptors[i].getWriteMethod();
+                if ((readMethod != null) && (writeMethod != null)) {
+                    // Getter and setter are present: check that the property is
+                    // not transient
+                    if (!PropertiesConverter.isTransient(objectClass, descriptors[i].getName()))
+                        list.add(new PropertyPlan(descriptors[i], readMethod, writeMethod));
+                    else if (PropertiesConverter.DEBUG)
+                        System.out.println("Property:" + descriptors[i].getName() + " is transient");
+                } else if (PropertiesConverter.DEBUG) {
+                    if (readMethod == null)
+                        System.out.println("Property:" + descriptors[i].getName() + " has no read method");
+                    else
+                        System.out.println("Property:" + descriptors[i].getName() + " has no write method");
+                }
+            }
+        }
+
+        plans = (PropertyPlan[]) list.toArray(new PropertyPlan[list.size()]);
+
+        synchronized (PropertiesConverter.propertyPlans) {
+            PropertiesConverter.propertyPlans.put(objectClass, plans);
+        }
+        return plans;
+    }
+
+    /**
+    * Provide the class of a saved object. Classes are cached by name.
+    * @param className the name of the class.
+    * @return the class.
+    * @exception PersistenceException when the class is not found.
+    **/
+    static Class getClass(String className) throws PersistenceException {
+        Class objectClass;
+
+        synchronized (PropertiesConverter.classes) {
+            objectClass = (Class) PropertiesConverter.classes.get(className);
+        }
+        if (objectClass != null)
+            return objectClass;
+
+        try {
+            objectClass = Class.forName(className);
+        } catch (ClassNotFoundException ex) {
+            Debug.signal(Debug.ERROR, className, ex);
+            throw new PersistenceException(ex);
+        }
+
+        synchronized (PropertiesConverter.classes) {
+            PropertiesConverter.classes.put(className, objectClass);
+        }
+        return objectClass;
+    }
+
+    /**
+    * A storable property of a class, with its accessors.
+    **/
+    static class PropertyPlan {
+        protected PropertyDescriptor descriptor;
+        protected Method readMethod;
+        protected Method writeMethod;
+        protected boolean indexed;
+
+        protected PropertyPlan(PropertyDescriptor descriptor, Method readMethod, Method writeMethod) {
+            this.descriptor = descriptor;
+            this.readMethod = readMethod;
+            this.writeMethod = writeMethod;
+            this.indexed = (descriptor instanceof IndexedPropertyDescriptor);
+        }
+    }
+
     /*------------------------------------------------------------------------
     *                         Sorted properties
     ------------------------------------------------------------------------*/
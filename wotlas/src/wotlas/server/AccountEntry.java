@@ -0,0 +1,403 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server;
+
+import java.io.IOException;
+import wotlas.common.universe.WotlasLocation;
+import wotlas.server.bots.BotPlayer;
+import wotlas.utils.Debug;
+
+/** An AccountEntry is what the AccountManager knows of an account when its GameAccount
+ *  is not loaded : the account name, the player's name, the latest save files, the
+ *  player's last location and his public data. Entries are saved in the account index
+ *  file so that we don't have to parse every account at start-up.
+ *<br>
+ *  When the account is loaded (login, chat commands, ...) the entry also holds the
+ *  GameAccount. The AccountManager drops it when the account has been idle too long :
+ *  the entry then holds the StubPlayer that replaces the player in the universe.
+ *
+ * @author Aldiss
+ * @see wotlas.server.AccountManager
+ */
+
+public class AccountEntry {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Field separator in the index file lines.
+     */
+    private final static char SEPARATOR = '\t';
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Account name ( equals to the client's directory name )
+     */
+    private String accountName;
+
+    /** Player full name.
+     */
+    private String fullPlayerName;
+
+    /** Name of the latest player save file.
+     */
+    private String playerSave;
+
+    /** Name of the latest inventory save file.
+     */
+    private String inventorySave;
+
+    /** Last known location of the player.
+     */
+    private WotlasLocation location;
+
+    /** Is the account dead ?
+     */
+    private boolean isDeadAccount;
+
+    /** Is the player a bot ?
+     */
+    private boolean isBot;
+
+    /** Public data of the player, from which a StubPlayer is created. Null if unknown.
+     */
+    private byte publicData[];
+
+    /** The stub of the player in the universe, null if there is none.
+     */
+    private StubPlayer stubPlayer;
+
+    /** The loaded account, null if it's not in memory.
+     */
+    private GameAccount account;
+
+    /** Last time the loaded account was used.
+     */
+    private long lastUseTime;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor for an account that is not loaded yet.
+     *
+     * @param accountName account name
+     */
+    protected AccountEntry(String accountName) {
+        this.accountName = accountName;
+        this.playerSave = "";
+        this.inventorySave = "";
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor for a loaded account.
+     *
+     * @param account a game account with its player
+     */
+    public AccountEntry(GameAccount account) {
+        this(account.getAccountName());
+        setAccount(account);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the account name.
+     *
+     * @return account name
+     */
+    public String getAccountName() {
+        return this.accountName;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the player's full name.
+     *
+     * @return player full name
+     */
+    public String getFullPlayerName() {
+        return this.fullPlayerName;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the player's last known location.
+     *
+     * @return location
+     */
+    public WotlasLocation getLocation() {
+        return this.location;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Is the account dead ?
+     *
+     * @return true if the player has been killed
+     */
+    public boolean getIsDeadAccount() {
+        return this.isDeadAccount;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Is the player a bot ?
+     *
+     * @return true if the player is a BotPlayer
+     */
+    public boolean isBot() {
+        return this.isBot;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the public data of the player.
+     *
+     * @return public data ( see StubPlayer.getPublicData() ), null if unknown
+     */
+    public byte[] getPublicData() {
+        return this.publicData;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the stub of the player in the universe.
+     *
+     * @return the stub, null if the player is not represented by a stub
+     */
+    public StubPlayer getStubPlayer() {
+        return this.stubPlayer;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the stub of the player in the universe.
+     *
+     * @param stubPlayer the stub, null if there is none
+     */
+    public void setStubPlayer(StubPlayer stubPlayer) {
+        this.stubPlayer = stubPlayer;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the loaded account.
+     *
+     * @return the game account, null if it's not in memory
+     */
+    public GameAccount getAccount() {
+        return this.account;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the loaded account (null to drop it). The entry is updated with the
+     *  account's data.
+     *
+     * @param account game account
+     */
+    public void setAccount(GameAccount account) {
+        if (account != null)
+            update(account);
+
+        this.account = account;
+        this.lastUseTime = System.currentTimeMillis();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To update the entry with the current data of an account.
+     *
+     * @param account game account
+     */
+    public void update(GameAccount account) {
+        PlayerImpl player = account.getPlayer();
+
+        this.fullPlayerName = clean(player.getFullPlayerName());
+
+        if (player.getLocation() != null)
+            this.location = new WotlasLocation(player.getLocation());
+        else if (this.location == null)
+            this.location = new WotlasLocation(0);
+
+        this.isDeadAccount = account.getIsDeadAccount();
+        this.isBot = player instanceof BotPlayer;
+
+        if (this.isBot || player.getWotCharacter() == null)
+            return; // no stub for them
+
+        try {
+            this.publicData = StubPlayer.getPublicData(player);
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, this, "Failed to encode public data of " + this.accountName + " : " + e);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To set the names of the latest save files.
+     *
+     * @param playerSave player save file name
+     * @param inventorySave inventory save file name
+     */
+    public void setSaveFiles(String playerSave, String inventorySave) {
+        this.playerSave = playerSave;
+        this.inventorySave = inventorySave;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the last time the loaded account was used.
+     *
+     * @return time in ms
+     */
+    public long getLastUseTime() {
+        return this.lastUseTime;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To tell that the loaded account has just been used.
+     */
+    public void touch() {
+        this.lastUseTime = System.currentTimeMillis();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the index file line of this entry.
+     *
+     * @return a line with tab separated fields (without end of line)
+     */
+    public String toIndexLine() {
+        StringBuffer line = new StringBuffer(128);
+
+        line.append(this.accountName).append(AccountEntry.SEPARATOR);
+        line.append(this.fullPlayerName).append(AccountEntry.SEPARATOR);
+        line.append(this.playerSave).append(AccountEntry.SEPARATOR);
+        line.append(this.inventorySave).append(AccountEntry.SEPARATOR);
+        line.append(this.location.getWorldMapID()).append(',');
+        line.append(this.location.getTownMapID()).append(',');
+        line.append(this.location.getBuildingID()).append(',');
+        line.append(this.location.getInteriorMapID()).append(',');
+        line.append(this.location.getRoomID()).append(AccountEntry.SEPARATOR);
+        line.append(this.isDeadAccount ? '1' : '0').append(AccountEntry.SEPARATOR);
+        line.append(this.isBot ? '1' : '0').append(AccountEntry.SEPARATOR);
+
+        if (this.publicData != null)
+            line.append(AccountEntry.toHex(this.publicData));
+
+        return line.toString();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To create an entry from an index file line. Lines without public data ( saved by
+     *  previous versions ) are accepted.
+     *
+     * @param line a line created by toIndexLine()
+     * @return the entry, null if the line is not valid
+     */
+    public static AccountEntry fromIndexLine(String line) {
+        String fields[] = line.split("" + AccountEntry.SEPARATOR, -1);
+
+        if ((fields.length != 7 && fields.length != 8) || fields[0].length() == 0)
+            return null;
+
+        String ids[] = fields[4].split(",");
+
+        if (ids.length != 5)
+            return null;
+
+        AccountEntry entry = new AccountEntry(fields[0]);
+
+        try {
+            entry.location = new WotlasLocation(Integer.parseInt(ids[0]), Integer.parseInt(ids[1]), Integer.parseInt(ids[2]), Integer.parseInt(ids[3]), Integer.parseInt(ids[4]));
+        } catch (NumberFormatException e) {
+            return null;
+        }
+
+        entry.fullPlayerName = fields[1];
+        entry.playerSave = fields[2];
+        entry.inventorySave = fields[3];
+        entry.isDeadAccount = fields[5].equals("1");
+        entry.isBot = fields[6].equals("1");
+
+        if (fields.length == 8 && fields[7].length() > 0) {
+            entry.publicData = AccountEntry.fromHex(fields[7]);
+
+            if (entry.publicData == null)
+                return null;
+        }
+
+        return entry;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To encode bytes in hexadecimal.
+     */
+    private static String toHex(byte data[]) {
+        StringBuffer hex = new StringBuffer(2 * data.length);
+
+        for (int i = 0; i < data.length; i++) {
+            hex.append(Character.forDigit((data[i] >> 4) & 0x0f, 16));
+            hex.append(Character.forDigit(data[i] & 0x0f, 16));
+        }
+
+        return hex.toString();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To decode hexadecimal bytes.
+     *
+     * @return the bytes, null if the text is not valid
+     */
+    private static byte[] fromHex(String hex) {
+        if (hex.length() % 2 != 0)
+            return null;
+
+        byte data[] = new byte[hex.length() / 2];
+
+        for (int i = 0; i < data.length; i++) {
+            int high = Character.digit(hex.charAt(2 * i), 16);
+            int low = Character.digit(hex.charAt(2 * i + 1), 16);
+
+            if (high < 0 || low < 0)
+                return null;
+
+            data[i] = (byte) ((high << 4) | low);
+        }
+
+        return data;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Replaces the characters that would break an index line.
+     */
+    private static String clean(String text) {
+        if (text == null)
+            return "";
+        return text.replace(AccountEntry.SEPARATOR, ' ').replace('\n', ' ').replace('\r', ' ');
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
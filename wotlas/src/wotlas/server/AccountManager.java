@@ -20,22 +20,38 @@
 package wotlas.server;
 
 import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
 import java.util.HashMap;
 import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.concurrent.Callable;
 import wotlas.common.ResourceManager;
 import wotlas.common.WorldManager;
 import wotlas.common.objects.inventories.Inventory;
 import wotlas.utils.Debug;
 import wotlas.utils.FileTools;
+import wotlas.utils.ParallelLoader;
 import wotlas.utils.Tools;
 
 /** The AccountManager posseses all the client's game accounts. Note that all the
  *  methods of the AccountManager are not synchronized... so use the AccountManager with
  *  care ! It should only be used as server start-up or for daily persistence save in
  *  maintenance mode.
+ *<br>
+ *  Accounts are not all loaded in memory : at start-up we only read the account index
+ *  file that gives an AccountEntry per account ( player name, latest saves, last
+ *  location, public data ). Each player that is not loaded is represented in the
+ *  universe by a StubPlayer created from its entry : the other players still see him in
+ *  his room and the routers still find him. A GameAccount is loaded when someone asks
+ *  for it (login, chat commands, ...) and its player then takes the place of the stub.
+ *  Offline accounts that have not been used for a while ( or that exceed the maximum
+ *  number of resident accounts ) are saved and evicted : their player is replaced by a
+ *  new stub and only the entry remains in memory. Bot accounts always stay in memory.
  *
  * @author Aldiss
  * @see wotlas.server.GameServer
+ * @see wotlas.server.AccountEntry
  */
 
 public class AccountManager {
@@ -53,16 +69,47 @@ public class AccountManager {
     public final static String INVENTORY_PREFIX = "inventory-save-";
     public final static String INVENTORY_SUFFIX = ".ifg";
 
+    /** Name of the account index file, in the players home.
+     */
+    public final static String ACCOUNT_INDEX = "accounts.idx";
+
     /** Maximum number of save in a client account. If this number is reached we delete
      *  the oldest entry.
      */
     public final static int MAX_NUMBER_OF_SAVE = 3;
 
+    /** Default maximum number of accounts loaded in memory.
+     */
+    public final static int DEFAULT_MAX_RESIDENT_ACCOUNTS = 1000;
+
+    /** Default time after which an offline account is evicted from memory (minutes).
+     */
+    public final static int DEFAULT_ACCOUNT_IDLE_TIMEOUT = 30;
+
+    /** Time during which an account that has just been used is never evicted (ms). It
+     *  covers the login : the account is taken with getAccount() before the player's
+     *  connection is attached, and is not seen as connected meanwhile.
+     */
+    public final static long LOGIN_GRACE_PERIOD = 60 * 1000L;
+
     /*------------------------------------------------------------------------------------*/
 
-    /** Client Login ( equals to the client's directory name )
+    /** Account entries ( key is the account name, equals to the client's directory name )
+     */
+    private HashMap entries;
+
+    /** Entries of the accounts loaded in memory, least recently used first.
+     */
+    private LinkedHashMap residentEntries;
+
+    /** Maximum number of accounts loaded in memory. Online players and bots are never
+     *  evicted, so this number can be exceeded.
+     */
+    private int maxResidentAccounts;
+
+    /** Time after which an offline account is evicted from memory (ms).
      */
-    private HashMap accounts;
+    private long accountIdleTimeout;
 
     /** Our resource Manager
      */
@@ -70,63 +117,160 @@ public class AccountManager {
 
     /*------------------------------------------------------------------------------------*/
 
-    /** Constructor. Attempts to load the client accounts.
+    /** Constructor. The accounts are indexed when init() is called.
+     *
+     * @param rManager our resource manager
+     * @param maxResidentAccounts maximum number of accounts loaded in memory.
+     * @param accountIdleTimeout time after which an offline account is evicted from
+     *        memory (minutes).
      */
-    public AccountManager(ResourceManager rManager) {
+    public AccountManager(ResourceManager rManager, int maxResidentAccounts, int accountIdleTimeout) {
         this.rManager = rManager;
+        this.maxResidentAccounts = maxResidentAccounts;
+        this.accountIdleTimeout = accountIdleTimeout * 60 * 1000L;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** To init & load the client Accounts.
+    /** To init the account entries. We read the account index file. Accounts that are
+     *  missing from the index ( or that have no public data ) are loaded once to create
+     *  their entry. Bot accounts are loaded and their players added to the universe, the
+     *  other players are added as stubs. Accounts are loaded in parallel, then their
+     *  entries are added in the order of the directory listing.
      */
-    public void init() {
-        int nbAccounts = 0, nbAccountsLoaded = 0;
+    public synchronized void init() {
+        long startTime = System.currentTimeMillis();
+        HashMap indexedEntries = loadIndex();
+        long indexTime = System.currentTimeMillis();
+        boolean indexChanged = false;
+        int nbLoaded = 0;
+        int nbStubs = 0;
 
-        // Call to the PersistenceManager to load the accounts from the dataBase.
-        GameAccount account_list[] = loadAccounts();
+        this.entries = new HashMap((int) (1.5 * indexedEntries.size() + 10));
+        this.residentEntries = new LinkedHashMap(16, 0.75f, true);
 
-        if (account_list != null)
-            nbAccounts = account_list.length;
+        String accountHome = this.rManager.getExternalPlayersHomeDir();
+        String accountList[] = this.rManager.listDirectories(accountHome);
 
-        // HashMap init. ( initial size is 1.5*Nb Accounts +10 )
-        // The HashMap Load Factor is 75%. The size doubles after that.
-        this.accounts = new HashMap((int) (1.5 * nbAccounts + 10));
+        // no accounts ?
+        if (accountList == null || accountList.length == 0) {
+            Debug.signal(Debug.WARNING, this, "No player accounts found in: " + accountHome);
+            accountList = new String[0];
+        }
 
-        // we fill the hash-map...
-        for (int i = 0; i < nbAccounts; i++)
-            if (account_list[i] != null) {
+        // 1 - we find the entries and the accounts we have to load
+        ParallelLoader loader = new ParallelLoader("AccountLoader");
+        AccountEntry listedEntries[] = new AccountEntry[accountList.length];
+        int loadIndex[] = new int[accountList.length]; // index of the load result, -1 if none
+        int nbTasks = 0;
 
-                if (account_list[i].getPlayer() == null) {
-                    Debug.signal(Debug.ERROR, this, "Failed to load account " + account_list[i].getPrimaryKey() + "! No player data found !");
-                    continue;
+        for (int i = 0; i < accountList.length; i++) {
+            String accountName = new File(accountList[i]).getName();
+            loadIndex[i] = -1;
+
+            if (accountName.indexOf('-') < 0)
+                continue;
+
+            AccountEntry entry = (AccountEntry) indexedEntries.remove(accountName);
+
+            if (entry == null) {
+                // not indexed, we load the account to create its entry
+                entry = new AccountEntry(accountName);
+            } else if (!entry.isBot() && (entry.getPublicData() != null || entry.getIsDeadAccount())) {
+                listedEntries[i] = entry;
+                continue;
+            }
+
+            final AccountEntry toLoad = entry;
+
+            loader.submit(new Callable() {
+                public Object call() {
+                    return loadAccount(toLoad);
                 }
+            });
+
+            listedEntries[i] = entry;
+            loadIndex[i] = nbTasks++;
+        }
+
+        // 2 - we wait for the accounts
+        Object accounts[] = loader.getResults();
+        loader.shutdown();
+        long loadTime = System.currentTimeMillis();
+
+        // 3 - we add the entries, in the order of the listing
+        for (int i = 0; i < listedEntries.length; i++) {
+            AccountEntry entry = listedEntries[i];
+            GameAccount account = null;
+
+            if (entry == null)
+                continue;
+
+            if (loadIndex[i] >= 0) {
+                account = (GameAccount) accounts[loadIndex[i]];
+
+                if (account == null)
+                    continue;
+
+                entry.setAccount(account);
 
-                this.accounts.put(account_list[i].getAccountName(), account_list[i]);
-                nbAccountsLoaded++;
+                if (!entry.isBot())
+                    indexChanged = true; // new entry or new public data
             }
 
-        Debug.signal(Debug.NOTICE, null, "AccountManager loaded " + nbAccountsLoaded + " accounts.");
+            this.entries.put(entry.getAccountName(), entry);
+
+            if (entry.isBot()) {
+                this.residentEntries.put(entry.getAccountName(), entry);
+                enterUniverse(entry, account);
+                nbLoaded++;
+            } else {
+                if (account != null)
+                    entry.setAccount(null); // we don't keep it
+
+                if (addStub(entry))
+                    nbStubs++;
+            }
+        }
+
+        // accounts that have been removed since the index was saved
+        if (!indexedEntries.isEmpty())
+            indexChanged = true;
+
+        if (indexChanged)
+            saveIndex();
+
+        long endTime = System.currentTimeMillis();
+        Debug.signal(Debug.NOTICE, null, "AccountManager indexed " + this.entries.size() + " accounts (" + nbLoaded + " loaded, " + nbStubs + " stubs) in " + (endTime - startTime) + " ms ( index : " + (indexTime - startTime) + " ms, accounts : " + (loadTime - indexTime) + " ms, merge : " + (endTime - loadTime) + " ms ).");
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** Erases all the possessed data.
      */
-    public void clear() {
-        this.accounts.clear();
-        this.accounts = null;
+    public synchronized void clear() {
+        this.entries.clear();
+        this.entries = null;
+        this.residentEntries.clear();
+        this.residentEntries = null;
         this.rManager = null;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** To iterate over the game accounts.
+    /** To iterate over the game accounts that are loaded in memory. The iterator works on
+     *  a copy, so the accounts can be loaded or evicted meanwhile.
      *
-     * @return an iterator that review all the GameAccounts.
+     * @return an iterator that review all the loaded GameAccounts.
      */
-    public Iterator getIterator() {
-        return this.accounts.values().iterator();
+    public synchronized Iterator getIterator() {
+        ArrayList accounts = new ArrayList(this.residentEntries.size());
+        Iterator it = this.residentEntries.values().iterator();
+
+        while (it.hasNext())
+            accounts.add(((AccountEntry) it.next()).getAccount());
+
+        return accounts.iterator();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -143,7 +287,7 @@ public class AccountManager {
             return false;
 
         // we insert the account in our table
-        this.accounts.put(account.getAccountName(), account);
+        addAccount(account);
         return true;
     }
 
@@ -155,7 +299,7 @@ public class AccountManager {
      * @return true if the account exists, false otherwise.
      */
     public synchronized boolean checkAccountName(String accountName) {
-        return this.accounts.containsKey(accountName);
+        return this.entries.containsKey(accountName);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -165,7 +309,15 @@ public class AccountManager {
      * @param account account to add.
      */
     public synchronized void addAccount(GameAccount account) {
-        this.accounts.put(account.getAccountName(), account);
+        AccountEntry entry = (AccountEntry) this.entries.get(account.getAccountName());
+
+        if (entry == null) {
+            entry = new AccountEntry(account);
+            this.entries.put(account.getAccountName(), entry);
+        } else
+            entry.setAccount(account);
+
+        this.residentEntries.put(account.getAccountName(), entry);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -176,18 +328,70 @@ public class AccountManager {
      * @param accountName name of the account to remove
      */
     public synchronized void removeAccount(String accountName) {
-        this.accounts.remove(accountName);
+        this.entries.remove(accountName);
+        this.residentEntries.remove(accountName);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** To get an account from its name.
+    /** To get an account from its name. If the account is not in memory we load it and
+     *  its player takes the place of its stub in the universe.
      *
      * @param accountName the account name...
      * @return the wanted account, or null if the account doesnot exist...
      */
     public synchronized GameAccount getAccount(String accountName) {
-        return (GameAccount) this.accounts.get(accountName);
+        AccountEntry entry = (AccountEntry) this.entries.get(accountName);
+
+        if (entry == null)
+            return null;
+
+        if (entry.getAccount() != null) {
+            this.residentEntries.get(accountName); // most recently used
+            entry.touch();
+            return entry.getAccount();
+        }
+
+        // we make some room and load the account
+        evictAccounts(this.maxResidentAccounts - 1);
+
+        GameAccount account = loadAccount(entry);
+
+        if (account == null)
+            return null;
+
+        entry.setAccount(account);
+        this.residentEntries.put(accountName, entry);
+        enterUniverse(entry, account);
+        return account;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get an account only if it's loaded in memory.
+     *
+     * @param accountName the account name...
+     * @return the wanted account, or null if the account doesnot exist or is not loaded.
+     */
+    public synchronized GameAccount getResidentAccount(String accountName) {
+        AccountEntry entry = (AccountEntry) this.entries.get(accountName);
+
+        if (entry == null)
+            return null;
+
+        return entry.getAccount();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the entry of an account. The entry gives the player name and location even
+     *  if the account is not loaded.
+     *
+     * @param accountName the account name...
+     * @return the account entry, or null if the account doesnot exist...
+     */
+    public synchronized AccountEntry getAccountEntry(String accountName) {
+        return (AccountEntry) this.entries.get(accountName);
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -202,23 +406,30 @@ public class AccountManager {
         WorldManager wManager = ServerDirector.getDataManager().getWorldManager();
 
         // We get the account
-        GameAccount account = (GameAccount) this.accounts.get(accountName);
+        AccountEntry entry = (AccountEntry) this.entries.get(accountName);
 
-        if (account == null) {
+        if (entry == null) {
             Debug.signal(Debug.ERROR, this, "Account " + accountName + " not found");
             return false;
         }
 
         // we remove the account hashmap entry
-        this.accounts.remove(accountName);
+        removeAccount(accountName);
 
-        if (closeIfConnected && account.getPlayer().isConnectedToGame()) {
-            account.getPlayer().closeConnection();
-            Debug.signal(Debug.WARNING, this, "Client connection was closed during the delete request.");
-        }
+        GameAccount account = entry.getAccount();
 
-        // we remove the character from the game...
-        wManager.removePlayerFromUniverse(account.getPlayer());
+        if (account != null) {
+            if (closeIfConnected && account.getPlayer().isConnectedToGame()) {
+                account.getPlayer().closeConnection();
+                Debug.signal(Debug.WARNING, this, "Client connection was closed during the delete request.");
+            }
+
+            // we remove the character from the game...
+            wManager.removePlayerFromUniverse(account.getPlayer());
+        } else if (entry.getStubPlayer() != null) {
+            wManager.removePlayerFromUniverse(entry.getStubPlayer());
+            entry.setStubPlayer(null);
+        }
 
         // we delete the files
         if (!deleteAccountFiles(accountName)) {
@@ -250,25 +461,31 @@ public class AccountManager {
         // we remove the character from the game...
         account.setIsDeadAccount(true);
         wManager.removePlayerFromUniverse(account.getPlayer());
+
+        AccountEntry entry = (AccountEntry) this.entries.get(account.getAccountName());
+
+        if (entry != null)
+            entry.update(account);
+
         Debug.signal(Debug.WARNING, this, "Account " + account.getAccountName() + " is dead...");
         return true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** To get a list of online players.
+    /** To get a list of online players. Online players are always loaded in memory.
      *
      * @return a list of online players
      */
     public synchronized HashMap getOnlinePlayers() {
         // HashMap init. ( initial size is Nb Accounts/2 )
-        HashMap onlinePlayers = new HashMap(this.accounts.size() / 2);
+        HashMap onlinePlayers = new HashMap(this.residentEntries.size() / 2);
 
-        Iterator it = this.accounts.values().iterator();
+        Iterator it = this.residentEntries.values().iterator();
         PlayerImpl player;
 
         while (it.hasNext()) {
-            player = ((GameAccount) it.next()).getPlayer();
+            player = ((AccountEntry) it.next()).getAccount().getPlayer();
             if (player.isConnectedToGame()) {
                 onlinePlayers.put(player.getPrimaryKey(), player);
             }
@@ -277,95 +494,298 @@ public class AccountManager {
         return onlinePlayers;
     }
 
-    /*------------------------------------------------------------------------------------*/
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** To load all the client Accounts. Warning: the returned array can have null entries.
+    /** To evict the offline accounts that have not been used for a while or that exceed
+     *  the maximum number of resident accounts. Evicted accounts are saved and their
+     *  player is replaced by a stub in the universe. Called when the persistent data is
+     *  saved.
      *
-     * @return all the client accounts found in the databasePath+"/"+ACCOUNTS_HOME
+     * @return the number of accounts evicted
      */
-    public GameAccount[] loadAccounts() {
+    public synchronized int evictAccounts() {
+        return evictAccounts(this.maxResidentAccounts);
+    }
 
-        String accountHome = this.rManager.getExternalPlayersHomeDir();
-        String accountList[] = this.rManager.listDirectories(accountHome);
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-        // no accounts ?
-        if (accountList == null || accountList.length == 0) {
-            Debug.signal(Debug.WARNING, this, "No player accounts found in: " + accountHome);
-            return null;
-        }
+    /** To evict the idle offline accounts and, starting with the least recently used, the
+     *  offline accounts that exceed the given number of resident accounts. Accounts used
+     *  during the last LOGIN_GRACE_PERIOD are kept : their login may be in progress.
+     *
+     * @param maxResident number of resident accounts we want
+     * @return the number of accounts evicted
+     */
+    private int evictAccounts(int maxResident) {
+        long now = System.currentTimeMillis();
+        int nbEvicted = 0;
 
-        // We load the different accounts...
-        GameAccount accounts[] = new GameAccount[accountList.length];
+        Iterator it = this.residentEntries.values().iterator();
 
-        for (int i = 0; i < accountList.length; i++) {
+        while (it.hasNext()) {
+            AccountEntry entry = (AccountEntry) it.next();
+            GameAccount account = entry.getAccount();
 
-            if (accountList[i].indexOf('-') < 0)
+            if (entry.isBot())
                 continue;
 
-            // we load the client's profile
-            accounts[i] = (GameAccount) this.rManager.loadObject(accountList[i] + AccountManager.CLIENT_PROFILE);
-
-            if (accounts[i] == null) {
-                Debug.signal(Debug.ERROR, this, "Failed to load " + accountList[i]);
+            if (account.getPlayer().isConnectedToGame()) {
+                entry.touch(); // idle time starts when the player leaves
                 continue;
             }
 
-            // we now search for the latest saved player file.
-            String latest = FileTools.findSave(this.rManager.listFiles(accountList[i], AccountManager.PLAYER_SUFFIX), AccountManager.PLAYER_PREFIX, AccountManager.PLAYER_SUFFIX, true);
+            if (now - entry.getLastUseTime() < AccountManager.LOGIN_GRACE_PERIOD)
+                continue; // maybe a login in progress
 
-            // have we found the latest saved file ?
-            if (latest == null) {
-                // nope, then it's an invalid account, we ignore it...
-                Debug.signal(Debug.ERROR, this, "Failed to load account: " + accountList[i]);
-                accounts[i] = null;
+            if (this.residentEntries.size() <= maxResident && now - entry.getLastUseTime() < this.accountIdleTimeout)
                 continue;
-            }
 
-            PlayerImpl player = (PlayerImpl) this.rManager.loadObject(latest);
+            if (!saveAccount(account))
+                continue; // we keep it in memory, we'll retry later
 
-            if (player != null)
-                accounts[i].setPlayer(player);
-            else {
-                Debug.signal(Debug.ERROR, this, "Failed to load " + latest + " for player " + accounts[i].getPrimaryKey());
-                accounts[i] = null;
-            }
+            it.remove();
+            entry.setAccount(null);
+
+            if (!account.getIsDeadAccount())
+                leaveUniverse(entry, account.getPlayer());
+
+            nbEvicted++;
+        }
+
+        if (nbEvicted > 0)
+            Debug.signal(Debug.NOTICE, null, "AccountManager evicted " + nbEvicted + " idle accounts.");
+
+        return nbEvicted;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Adds the player of a freshly loaded account to the universe ( if it's not dead )
+     *  and initializes it. The player takes the place of its stub : no messages are sent
+     *  to the other players.
+     *
+     * @param entry entry of the account
+     * @param account a loaded account
+     */
+    private void enterUniverse(AccountEntry entry, GameAccount account) {
+        WorldManager wManager = ServerDirector.getDataManager().getWorldManager();
+        PlayerImpl player = account.getPlayer();
+        StubPlayer stub = entry.getStubPlayer();
+
+        entry.setStubPlayer(null);
+
+        if (account.getIsDeadAccount()) {
+            if (stub != null)
+                wManager.removePlayerFromUniverse(stub);
+        } else if (stub == null || !stub.getLocation().equals(player.getLocation()) || !wManager.replacePlayerInUniverse(stub, player)) {
+            if (stub != null)
+                wManager.removePlayerFromUniverse(stub);
+
+            wManager.addPlayerToUniverse(player);
+        }
+
+        player.init();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Replaces the player of an evicted account by a stub created from its entry. If we
+     *  can't create the stub the player leaves the universe.
+     *
+     * @param entry entry of the account, updated with the player's data
+     * @param player the player to replace
+     */
+    private void leaveUniverse(AccountEntry entry, PlayerImpl player) {
+        WorldManager wManager = ServerDirector.getDataManager().getWorldManager();
+        StubPlayer stub;
+
+        try {
+            stub = new StubPlayer(entry);
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, this, "Failed to create the stub of " + entry.getAccountName() + " : " + e);
+            wManager.removePlayerFromUniverse(player);
+            return;
+        }
 
-            // we now search for the latest saved inventory file.
-            latest = FileTools.findSave(this.rManager.listFiles(accountList[i], AccountManager.INVENTORY_SUFFIX), AccountManager.INVENTORY_PREFIX, AccountManager.INVENTORY_SUFFIX, true);
+        if (!wManager.replacePlayerInUniverse(player, stub)) {
+            wManager.removePlayerFromUniverse(player);
+            wManager.addPlayerToUniverse(stub);
+        }
+
+        entry.setStubPlayer(stub);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Adds the stub of an account that is not loaded to the universe ( if it's not dead
+     *  nor a bot ).
+     *
+     * @param entry entry of the account
+     * @return true if a stub was added
+     */
+    private boolean addStub(AccountEntry entry) {
+        if (entry.isBot() || entry.getIsDeadAccount())
+            return false;
+
+        try {
+            StubPlayer stub = new StubPlayer(entry);
+            ServerDirector.getDataManager().getWorldManager().addPlayerToUniverse(stub);
+            entry.setStubPlayer(stub);
+            return true;
+        } catch (IOException e) {
+            Debug.signal(Debug.WARNING, this, "Failed to create the stub of " + entry.getAccountName() + " : " + e);
+            return false;
+        }
+    }
 
-            // have we found the latest saved inventory file ?
-            if (latest == null) {
-                // nope, then it's an invalid account, we ignore it...
-                Debug.signal(Debug.ERROR, this, "Failed to load account's inventory: " + accountList[i]);
-                accounts[i] = null;
+    /*------------------------------------------------------------------------------------*/
+
+    /** To load the account index file.
+     *
+     * @return the indexed entries ( key is the account name ), empty if there is no index.
+     */
+    private HashMap loadIndex() {
+        String indexFile = this.rManager.getExternalPlayersHomeDir() + AccountManager.ACCOUNT_INDEX;
+        HashMap indexedEntries = new HashMap();
+
+        if (!new File(indexFile).exists()) {
+            Debug.signal(Debug.NOTICE, null, "No account index found, it will be created.");
+            return indexedEntries;
+        }
+
+        String text = this.rManager.loadText(indexFile);
+
+        if (text == null) {
+            Debug.signal(Debug.ERROR, this, "Failed to load account index " + indexFile);
+            return indexedEntries;
+        }
+
+        String lines[] = text.split("\n");
+
+        for (int i = 0; i < lines.length; i++) {
+            if (lines[i].length() == 0 || lines[i].charAt(0) == '#')
                 continue;
-            }
 
-            Inventory inventory = (Inventory) this.rManager.loadObject(latest);
+            AccountEntry entry = AccountEntry.fromIndexLine(lines[i]);
 
-            if (inventory != null) {
-                // Aldiss : we create a new ServerObjectManager and give it its inventory
-                ServerObjectManager objManager = new ServerObjectManager();
-                player.setObjectManager(objManager);
-                objManager.setInventory(inventory);
-            } else {
-                // FIXME - the inventory is saved empty !
-                // Debug.signal(Debug.ERROR, this, "Failed to load " + latest + " inventory for player " + accounts[i].getPrimaryKey());
-                Debug.signal(Debug.NOTICE, this, "Empty inventory from file (" + latest + ") for player " + accounts[i].getPrimaryKey());
-                //                accounts[i] = null;
-                // Petrus : if no inventory found : create a new one
-                ServerObjectManager objManager = new ServerObjectManager();
-                player.setObjectManager(objManager);
-                objManager.setInventory(new Inventory());
-            }
+            if (entry == null)
+                Debug.signal(Debug.WARNING, this, "Bad account index line : " + lines[i]);
+            else
+                indexedEntries.put(entry.getAccountName(), entry);
         }
 
-        return accounts;
+        return indexedEntries;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To save the account index file. The entries of the loaded accounts are updated
+     *  with their current data.
+     *
+     * @return true if the index has been saved succesfully.
+     */
+    public synchronized boolean saveIndex() {
+        StringBuffer text = new StringBuffer(64 * this.entries.size() + 64);
+        text.append("# Wotlas account index : name, player, player save, inventory save, location, dead, bot, public data\n");
+
+        Iterator it = this.entries.values().iterator();
+
+        while (it.hasNext()) {
+            AccountEntry entry = (AccountEntry) it.next();
+
+            if (entry.getAccount() != null)
+                entry.update(entry.getAccount());
+
+            text.append(entry.toIndexLine()).append('\n');
+        }
+
+        if (!this.rManager.saveText(this.rManager.getExternalPlayersHomeDir() + AccountManager.ACCOUNT_INDEX, text.toString())) {
+            Debug.signal(Debug.ERROR, this, "Failed to save the account index.");
+            return false;
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To load a client Account from its latest save files. The names of the files we load
+     *  are set in the given entry.
+     *
+     * @param entry the entry of the account to load
+     * @return the account with its player, null if it failed to load.
+     */
+    protected GameAccount loadAccount(AccountEntry entry) {
+
+        String accountDir = this.rManager.getExternalPlayersHomeDir() + entry.getAccountName() + File.separator;
+
+        // we load the client's profile
+        GameAccount account = (GameAccount) this.rManager.loadObject(accountDir + AccountManager.CLIENT_PROFILE);
+
+        if (account == null) {
+            Debug.signal(Debug.ERROR, this, "Failed to load " + accountDir);
+            return null;
+        }
+
+        // we now search for the latest saved player file.
+        String latest = FileTools.findSave(this.rManager.listObjects(accountDir, AccountManager.PLAYER_SUFFIX), AccountManager.PLAYER_PREFIX, AccountManager.PLAYER_SUFFIX, true);
+
+        // have we found the latest saved file ?
+        if (latest == null) {
+            // nope, then it's an invalid account, we ignore it...
+            Debug.signal(Debug.ERROR, this, "Failed to load account: " + accountDir);
+            return null;
+        }
+
+        PlayerImpl player = (PlayerImpl) this.rManager.loadObject(latest);
+
+        if (player == null) {
+            Debug.signal(Debug.ERROR, this, "Failed to load " + latest + " for player " + account.getPrimaryKey());
+            return null;
+        }
+
+        account.setPlayer(player);
+        String playerSave = new File(latest).getName();
+
+        // we now search for the latest saved inventory file.
+        latest = FileTools.findSave(this.rManager.listObjects(accountDir, AccountManager.INVENTORY_SUFFIX), AccountManager.INVENTORY_PREFIX, AccountManager.INVENTORY_SUFFIX, true);
+
+        // have we found the latest saved inventory file ?
+        if (latest == null) {
+            // nope, then it's an invalid account, we ignore it...
+            Debug.signal(Debug.ERROR, this, "Failed to load account's inventory: " + accountDir);
+            return null;
+        }
+
+        Inventory inventory = (Inventory) this.rManager.loadObject(latest);
+
+        if (inventory != null) {
+            // Aldiss : we create a new ServerObjectManager and give it its inventory
+            ServerObjectManager objManager = new ServerObjectManager();
+            player.setObjectManager(objManager);
+            objManager.setInventory(inventory);
+        } else {
+            // FIXME - the inventory is saved empty !
+            Debug.signal(Debug.NOTICE, this, "Empty inventory from file (" + latest + ") for player " + account.getPrimaryKey());
+            // Petrus : if no inventory found : create a new one
+            ServerObjectManager objManager = new ServerObjectManager();
+            player.setObjectManager(objManager);
+            objManager.setInventory(new Inventory());
+        }
+
+        // loading used the setters, nothing has changed yet
+        player.clearDirty();
+        player.getObjectManager().getInventory().clearDirty();
+
+        entry.setSaveFiles(playerSave, new File(latest).getName());
+        return account;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** To save a client Account. Deletes the oldest entry if the account has too many.
+     *  The dirty flags of the player and its inventory are cleared before the save, and
+     *  set again if the save fails.
      *
      * @param account client account
      * @return true if the account has been saved succesfully.
@@ -373,20 +793,35 @@ public class AccountManager {
     public boolean saveAccount(GameAccount account) {
 
         String accountHome = this.rManager.getExternalPlayersHomeDir();
+        PlayerImpl player = account.getPlayer();
+        Inventory inventory = player.getObjectManager().getInventory();
 
-        if (!this.rManager.saveObject(account.getPlayer(), accountHome + account.getAccountName() + File.separator + AccountManager.PLAYER_PREFIX + Tools.getLexicalDate() + AccountManager.PLAYER_SUFFIX)) {
+        player.clearDirty();
+        inventory.clearDirty();
+
+        if (!this.rManager.saveObject(player, accountHome + account.getAccountName() + File.separator + AccountManager.PLAYER_PREFIX + Tools.getLexicalDate() + AccountManager.PLAYER_SUFFIX)) {
             Debug.signal(Debug.ERROR, this, "Failed to save account: " + accountHome + account.getAccountName());
+            player.markDirty();
+            inventory.markDirty();
             return false;
         }
 
         // Aldiss : we save the player's inventory
-        if (!this.rManager.saveObject(account.getPlayer().getObjectManager().getInventory(), accountHome + account.getAccountName() + File.separator + AccountManager.INVENTORY_PREFIX + Tools.getLexicalDate() + AccountManager.INVENTORY_SUFFIX)) {
+        if (!this.rManager.saveObject(inventory, accountHome + account.getAccountName() + File.separator + AccountManager.INVENTORY_PREFIX + Tools.getLexicalDate() + AccountManager.INVENTORY_SUFFIX)) {
             Debug.signal(Debug.ERROR, this, "Failed to save account inventory: " + accountHome + account.getAccountName());
+            inventory.markDirty();
             return false;
         }
 
+        AccountEntry entry = getAccountEntry(account.getAccountName());
+
+        if (entry != null) {
+            entry.update(account);
+            entry.setSaveFiles(AccountManager.PLAYER_PREFIX + Tools.getLexicalDate() + AccountManager.PLAYER_SUFFIX, AccountManager.INVENTORY_PREFIX + Tools.getLexicalDate() + AccountManager.INVENTORY_SUFFIX);
+        }
+
         // ok, the save went ok... do we have to erase the oldest file ?
-        String accountFiles[] = this.rManager.listFiles(accountHome + account.getAccountName(), AccountManager.PLAYER_SUFFIX);
+        String accountFiles[] = this.rManager.listObjects(accountHome + account.getAccountName(), AccountManager.PLAYER_SUFFIX);
 
         if (accountFiles.length > AccountManager.MAX_NUMBER_OF_SAVE + 1) {
             // ok, let's delete the oldest save	
@@ -395,16 +830,16 @@ public class AccountManager {
             // have we found the latest saved file ?
             if (oldest != null) {
                 // is it the file we've just saved, (if so we won't delete it, otherwise we will)
-                if (oldest.endsWith(AccountManager.PLAYER_PREFIX + Tools.getLexicalDate() + AccountManager.PLAYER_SUFFIX) || new File(oldest).delete()) {
+                if (oldest.endsWith(AccountManager.PLAYER_PREFIX + Tools.getLexicalDate() + AccountManager.PLAYER_SUFFIX) || this.rManager.deleteObject(oldest)) {
 
-                    accountFiles = this.rManager.listFiles(accountHome + account.getAccountName(), AccountManager.INVENTORY_SUFFIX);
+                    accountFiles = this.rManager.listObjects(accountHome + account.getAccountName(), AccountManager.INVENTORY_SUFFIX);
 
                     oldest = FileTools.findSave(accountFiles, AccountManager.INVENTORY_PREFIX, AccountManager.INVENTORY_SUFFIX, false);
 
                     // have we found the latest saved inventory ?
                     if (oldest != null) {
                         // is it the file we've just saved, (if so we won't delete it, otherwise we will)
-                        if (oldest.endsWith(AccountManager.INVENTORY_PREFIX + Tools.getLexicalDate() + AccountManager.INVENTORY_SUFFIX) || new File(oldest).delete()) {
+                        if (oldest.endsWith(AccountManager.INVENTORY_PREFIX + Tools.getLexicalDate() + AccountManager.INVENTORY_SUFFIX) || this.rManager.deleteObject(oldest)) {
                             return true;
                         }
                     }
@@ -471,9 +906,15 @@ public class AccountManager {
         if (!accountDir.exists())
             return true;
 
+        // we delete the account's objects & files
+        String objects[] = this.rManager.listObjects(accountDir.getPath(), "");
+
+        for (int i = 0; i < objects.length; i++)
+            if (!this.rManager.deleteObject(objects[i]))
+                return false;
+
         File list[] = accountDir.listFiles();
 
-        // we delete the account's file
         if (list != null)
             for (int i = 0; i < list.length; i++)
                 if (!list[i].delete())
@@ -19,14 +19,17 @@
 
 package wotlas.server;
 
-import java.util.Iterator;
 import java.util.Properties;
 import wotlas.common.ResourceManager;
 import wotlas.common.WorldManager;
+import wotlas.libs.persistence.JournalObjectStore;
+import wotlas.libs.persistence.PersistenceException;
 import wotlas.server.bots.BotManager;
 import wotlas.server.chat.ChatCommandProcessor;
+import wotlas.server.router.InterestGridMessageRouter;
 import wotlas.server.router.ServerMessageRouterFactory;
 import wotlas.utils.Debug;
+import wotlas.utils.ParallelLoader;
 
 /** A DataManager manages Game Data. It possesses a WorldManager & AccountManager.
  *
@@ -54,21 +57,85 @@ public class DataManager {
      */
     private BotManager botManager;
 
+    /** Our PersistenceManager
+     */
+    private PersistenceManager persistenceManager;
+
+    /** Our ResourceManager, whose object store we close on shutdown.
+     */
+    private ResourceManager rManager;
+
+    /** Time we spent to load the universe (ms), for the startup report.
+     */
+    private long universeLoadTime;
+
     /*------------------------------------------------------------------------------------*/
 
     /** Constructor. Loads the world data and player accounts.
      */
     public DataManager(ResourceManager rManager) {
 
+        // 0 - We choose where our objects are saved
+        this.rManager = rManager;
+        String store = ServerDirector.getServerProperties().getProperty("init.persistenceStore", "files").trim();
+
+        if (store.equals("journal")) {
+            try {
+                rManager.setObjectStore(new JournalObjectStore(rManager.getExternalJournalDir()));
+            } catch (PersistenceException e) {
+                Debug.signal(Debug.CRITICAL, this, "Failed to open the journal : " + e.getMessage());
+                Debug.exit();
+            }
+        } else if (!store.equals("files")) {
+            Debug.signal(Debug.ERROR, this, "init.persistenceStore is not valid, saving objects in files.");
+        }
+
+        // 0 bis - Number of threads that load the universe & accounts files
+        int loaderThreads = 0;
+
+        try {
+            loaderThreads = Integer.parseInt(ServerDirector.getServerProperties().getProperty("init.loaderThreads", "" + loaderThreads).trim());
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.loaderThreads is not a valid integer, using default value.");
+        }
+
+        ParallelLoader.setDefaultNbThreads(loaderThreads);
+
         // 1 - We load all the WotlasObjects, Knowledges, etc...
         /** Not for wotlas release 1 **/
 
         // 2 - We create a WorldManager. Worlds data is automatically loaded.
+        long startTime = System.currentTimeMillis();
         this.worldManager = new WorldManager(rManager, false);
-        this.worldManager.initMessageRouting(new ServerMessageRouterFactory());
+        this.universeLoadTime = System.currentTimeMillis() - startTime;
+
+        int interestRadius = InterestGridMessageRouter.DEFAULT_INTEREST_RADIUS;
+
+        try {
+            interestRadius = Integer.parseInt(ServerDirector.getServerProperties().getProperty("init.interestRadius", "" + interestRadius).trim());
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.interestRadius is not a valid integer, using default value.");
+        }
+
+        this.worldManager.initMessageRouting(new ServerMessageRouterFactory(interestRadius));
 
         // 3 - We create an AccountManager. Player Accounts are not loaded yet.
-        this.accountManager = new AccountManager(rManager);
+        int maxResidentAccounts = AccountManager.DEFAULT_MAX_RESIDENT_ACCOUNTS;
+        int accountIdleTimeout = AccountManager.DEFAULT_ACCOUNT_IDLE_TIMEOUT;
+
+        try {
+            maxResidentAccounts = Integer.parseInt(ServerDirector.getServerProperties().getProperty("init.maxResidentAccounts", "" + maxResidentAccounts).trim());
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.maxResidentAccounts is not a valid integer, using default value.");
+        }
+
+        try {
+            accountIdleTimeout = Integer.parseInt(ServerDirector.getServerProperties().getProperty("init.accountIdleTimeout", "" + accountIdleTimeout).trim());
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.accountIdleTimeout is not a valid integer, using default value.");
+        }
+
+        this.accountManager = new AccountManager(rManager, maxResidentAccounts, accountIdleTimeout);
 
         // 4 - Creation of the Chat Command Processor.
         this.chatCommandProcessor = new ChatCommandProcessor();
@@ -79,37 +146,43 @@ public class DataManager {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** Final init. We add our players to the world when everything's ready.
+    /** Final init. We index our accounts when everything's ready.
      */
     public void init(Properties serverProperties) {
 
-        // 1 - Load accounts
+        // 1 - Index accounts. Only the bots are loaded now, other accounts are loaded
+        // on demand and their players are then added to the WorldManager.
+        long startTime = System.currentTimeMillis();
         this.accountManager.init();
+        long accountsTime = System.currentTimeMillis();
 
-        // 2 - We initialize the WorldManager with the Players ( Players are
-        // located on Maps, it's our game organization... ).
-        Iterator it = this.accountManager.getIterator();
-
-        while (it.hasNext()) {
-            GameAccount account = (GameAccount) it.next();
-            if (!account.getIsDeadAccount())
-                this.worldManager.addPlayerToUniverse(account.getPlayer());
-        }
-
-        // 3 - We initialize the player objects that we just placed in the world.
-        it = this.accountManager.getIterator();
-
-        while (it.hasNext())
-            ((GameAccount) it.next()).getPlayer().init();
-
-        // 4 - Init of the Chat Command Processor.
+        // 2 - Init of the Chat Command Processor.
         this.chatCommandProcessor.init();
 
-        // 5 - We initialize our bot manager
+        // 3 - We initialize our bot manager
         if (!this.botManager.init(serverProperties)) {
             Debug.signal(Debug.CRITICAL, this, "Failed to init Bot Manager...");
             Debug.exit();
         }
+
+        long botsTime = System.currentTimeMillis();
+        Debug.signal(Debug.NOTICE, null, "Startup data loaded : universe " + this.universeLoadTime + " ms, accounts " + (accountsTime - startTime) + " ms, bots " + (botsTime - accountsTime) + " ms.");
+
+        // 4 - We start the background writer of the data that changes
+        int writeRate = PersistenceManager.DEFAULT_WRITE_RATE;
+
+        try {
+            writeRate = Integer.parseInt(serverProperties.getProperty("init.persistenceWriteRate", "" + writeRate).trim());
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.persistenceWriteRate is not a valid integer, using default value.");
+        }
+
+        this.persistenceManager = new PersistenceManager(this.accountManager, this.worldManager, writeRate);
+
+        if (writeRate > 0)
+            this.persistenceManager.start();
+        else
+            Debug.signal(Debug.NOTICE, null, "No background persistence, data will be saved every persistence period.");
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -119,40 +192,42 @@ public class DataManager {
      */
     public synchronized void shutdown(boolean saveData) {
         // 1 - save data ?
+        this.persistenceManager.stopThread();
+
         if (saveData)
             save();
 
         // 2 - Clean - up
         this.botManager.shutdown();
         this.botManager = null;
+        this.persistenceManager = null;
         this.worldManager = null;
 
         this.accountManager.clear();
         this.accountManager = null;
 
         this.chatCommandProcessor = null;
+
+        this.rManager.getObjectStore().close();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
-    /** To save all the persistent data of this datamanager.
+    /** To save all the persistent data of this datamanager. Only the data that changed
+     *  since it was last saved is written.
      */
     public void save() {
-        // 1 - We save the accounts
+        // 1 - We evict idle accounts ( they are saved if they changed )
         synchronized (this.accountManager) {
-            Iterator it = this.accountManager.getIterator();
-
-            while (it.hasNext())
-                this.accountManager.saveAccount((GameAccount) it.next());
+            this.accountManager.evictAccounts();
         }
 
-        Debug.signal(Debug.NOTICE, null, "Saved player data...");
+        // 2 - We save the players & room inventories that changed
+        int nbWritten = this.persistenceManager.flushAll();
+        this.accountManager.saveIndex();
 
-        // 2 - We save the world data
-        if (!this.worldManager.saveUniverse(false))
-            Debug.signal(Debug.WARNING, null, "Failed to save world data...");
-        else
-            Debug.signal(Debug.NOTICE, null, "Saved world data...");
+        Debug.signal(Debug.NOTICE, null, "Saved " + nbWritten + " players & room inventories...");
+        Debug.signal(Debug.NOTICE, null, "Persistence " + this.persistenceManager.getMetrics());
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -187,6 +262,16 @@ public class DataManager {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the persistence manager.
+     *
+     * @return the persistence manager.
+     */
+    public PersistenceManager getPersistenceManager() {
+        return this.persistenceManager;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To get the bot manager.
      *
      * @return the bot manager.
@@ -32,8 +32,8 @@ import wotlas.common.message.description.PlayerDataMessage;
  * the game for the first time via the AccountServer.<p>
  *
  * GameAccounts are persistent : they are loaded from the "profile.cfg" file
- * found in the player account. They stay in memory as long as the GameServer
- * lives.<p><br>
+ * found in the player account. The AccountManager loads them when they are needed
+ * and unloads them when their player has been offline for a while.<p><br>
  *
  * A client is identified by two IDs :<p>
  *
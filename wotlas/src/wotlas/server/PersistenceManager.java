@@ -0,0 +1,378 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server;
+
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import wotlas.common.WorldManager;
+import wotlas.common.universe.Room;
+import wotlas.utils.Debug;
+
+/** The PersistenceManager is a write-behind writer : players, their inventories and room
+ *  inventories mark themselves dirty when they change, and this thread saves the dirty
+ *  ones continuously instead of saving everything once per persistence period.
+ *<br>
+ *  Every SCAN_PERIOD we look for the dirty entities and queue them ( an entity is queued
+ *  only once, in the order it became dirty ). Queued entities are then written one by one
+ *  at a bounded rate so that the disk is never flooded. The flushAll() method writes all
+ *  the dirty entities at once ( maintenance & shutdown ).
+ *<br>
+ *  Some metrics are available : number of writes, write duration, time an entity waited
+ *  in the queue and queue size ( backlog ).
+ *
+ * @author Aldiss
+ * @see wotlas.server.DataManager
+ */
+
+public class PersistenceManager extends Thread {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default maximum number of entities written per second.
+     */
+    public final static int DEFAULT_WRITE_RATE = 20;
+
+    /** Period between two searches of dirty entities (ms).
+     */
+    private final static long SCAN_PERIOD = 1000;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our account manager.
+     */
+    private AccountManager accountManager;
+
+    /** Our world manager.
+     */
+    private WorldManager worldManager;
+
+    /** Delay between two writes (ms).
+     */
+    private long writeDelay;
+
+    /** Dirty entities waiting to be written ( GameAccount or Room ) with the time they
+     *  were queued.
+     */
+    private LinkedHashMap pendingEntities;
+
+    /** Do we have to stop ?
+     */
+    private boolean stopThread;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Number of entities written.
+     */
+    private volatile long nbWrites;
+
+    /** Number of writes that failed.
+     */
+    private volatile long nbFailures;
+
+    /** Total time spent writing (ms).
+     */
+    private volatile long totalWriteTime;
+
+    /** Longest write (ms).
+     */
+    private volatile long maxWriteTime;
+
+    /** Longest time an entity waited in our queue before being written (ms).
+     */
+    private volatile long maxQueueTime;
+
+    /** Current number of queued entities.
+     */
+    private volatile int backlog;
+
+    /** Largest number of queued entities.
+     */
+    private volatile int maxBacklog;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. Call start() to launch the background writer.
+     *
+     * @param accountManager the account manager of the players to save.
+     * @param worldManager the world manager of the room inventories to save.
+     * @param writeRate maximum number of entities written per second by the background
+     *        writer.
+     */
+    public PersistenceManager(AccountManager accountManager, WorldManager worldManager, int writeRate) {
+        super("PersistenceManager");
+        this.accountManager = accountManager;
+        this.worldManager = worldManager;
+        this.writeDelay = 1000 / Math.max(writeRate, 1);
+        this.pendingEntities = new LinkedHashMap();
+        this.stopThread = false;
+        setDaemon(true);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Background writer loop. Never call this method it's done automatically.
+     */
+    @Override
+    public void run() {
+        long lastScan = 0;
+
+        while (!shouldStopThread()) {
+            synchronized (this) {
+                long now = System.currentTimeMillis();
+
+                if (now - lastScan >= PersistenceManager.SCAN_PERIOD) {
+                    collectDirtyEntities();
+                    lastScan = now;
+                }
+
+                boolean written = writeNextEntity();
+
+                // we wait before the next write ( or the next scan if we had nothing to do )
+                try {
+                    wait(written ? this.writeDelay : PersistenceManager.SCAN_PERIOD);
+                } catch (InterruptedException e) {
+                }
+            }
+        }
+
+        Debug.signal(Debug.NOTICE, null, "PersistenceManager stopped.");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To write all the dirty entities now, without rate limit.
+     *
+     * @return the number of entities written
+     */
+    public synchronized int flushAll() {
+        long before = this.nbWrites;
+
+        collectDirtyEntities();
+
+        while (writeNextEntity())
+            ;
+
+        return (int) (this.nbWrites - before);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Queues the entities that are dirty and not already queued.
+     */
+    private void collectDirtyEntities() {
+        Long now = Long.valueOf(System.currentTimeMillis());
+
+        // 1 - Players & their inventories
+        Iterator it = this.accountManager.getIterator();
+
+        while (it.hasNext()) {
+            GameAccount account = (GameAccount) it.next();
+
+            if (isDirty(account) && !this.pendingEntities.containsKey(account))
+                this.pendingEntities.put(account, now);
+        }
+
+        // 2 - Room inventories
+        Room rooms[] = this.worldManager.getDirtyInventoryRooms();
+
+        for (int i = 0; i < rooms.length; i++)
+            if (!this.pendingEntities.containsKey(rooms[i]))
+                this.pendingEntities.put(rooms[i], now);
+
+        updateBacklog();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Writes the oldest queued entity.
+     *
+     * @return false if there was nothing to write
+     */
+    private boolean writeNextEntity() {
+        if (this.pendingEntities.isEmpty())
+            return false;
+
+        Iterator it = this.pendingEntities.entrySet().iterator();
+        Map.Entry pending = (Map.Entry) it.next();
+        it.remove();
+        updateBacklog();
+
+        Object entity = pending.getKey();
+        long start = System.currentTimeMillis();
+        boolean success = true;
+
+        if (entity instanceof GameAccount) {
+            GameAccount account = (GameAccount) entity;
+
+            synchronized (this.accountManager) {
+                // evicted accounts have been saved by the AccountManager
+                if (this.accountManager.getResidentAccount(account.getAccountName()) != account || !isDirty(account))
+                    return true;
+
+                success = this.accountManager.saveAccount(account);
+            }
+        } else {
+            Room room = (Room) entity;
+
+            if (!room.getInventory().isDirty())
+                return true;
+
+            success = this.worldManager.saveRoomInventory(room);
+        }
+
+        long end = System.currentTimeMillis();
+
+        if (!success) {
+            this.nbFailures++;
+            return true; // the entity is still dirty, it will be queued again
+        }
+
+        this.nbWrites++;
+        this.totalWriteTime += end - start;
+        this.maxWriteTime = Math.max(this.maxWriteTime, end - start);
+        this.maxQueueTime = Math.max(this.maxQueueTime, end - ((Long) pending.getValue()).longValue());
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Is the player of an account or its inventory dirty ?
+     */
+    private static boolean isDirty(GameAccount account) {
+        PlayerImpl player = account.getPlayer();
+        return player.isDirty() || player.getObjectManager().getInventory().isDirty();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Updates the backlog metrics.
+     */
+    private void updateBacklog() {
+        this.backlog = this.pendingEntities.size();
+        this.maxBacklog = Math.max(this.maxBacklog, this.backlog);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the number of entities written.
+     *
+     * @return number of writes
+     */
+    public long getNbWrites() {
+        return this.nbWrites;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of writes that failed.
+     *
+     * @return number of failures
+     */
+    public long getNbFailures() {
+        return this.nbFailures;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the average time needed to write an entity.
+     *
+     * @return average write time (ms)
+     */
+    public long getAverageWriteTime() {
+        long writes = this.nbWrites;
+
+        if (writes == 0)
+            return 0;
+        return this.totalWriteTime / writes;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the longest time needed to write an entity.
+     *
+     * @return max write time (ms)
+     */
+    public long getMaxWriteTime() {
+        return this.maxWriteTime;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the longest time a dirty entity waited before being written.
+     *
+     * @return max queue time (ms)
+     */
+    public long getMaxQueueTime() {
+        return this.maxQueueTime;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of dirty entities waiting to be written.
+     *
+     * @return backlog
+     */
+    public int getBacklog() {
+        return this.backlog;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the largest number of dirty entities that waited to be written.
+     *
+     * @return max backlog
+     */
+    public int getMaxBacklog() {
+        return this.maxBacklog;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get a summary of our metrics.
+     *
+     * @return metrics, on one line
+     */
+    public String getMetrics() {
+        return "writes: " + this.nbWrites + " (" + this.nbFailures + " failed), write time: " + getAverageWriteTime() + "ms avg, " + this.maxWriteTime + "ms max, queue time: " + this.maxQueueTime + "ms max, backlog: " + this.backlog + " (" + this.maxBacklog + " max)";
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To stop this thread. Remaining dirty entities are not written : call flushAll().
+     */
+    public synchronized void stopThread() {
+        this.stopThread = true;
+        notifyAll();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Should this thread stop ?
+     *
+     * @return true if the thread should stop.
+     */
+    private synchronized boolean shouldStopThread() {
+        return this.stopThread;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
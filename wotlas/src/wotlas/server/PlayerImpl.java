@@ -19,6 +19,8 @@
 
 package wotlas.server;
 
+import java.util.HashMap;
+import java.util.Set;
 import wotlas.common.Player;
 import wotlas.common.PlayerState;
 import wotlas.common.ServerConfig;
@@ -28,6 +30,7 @@ import wotlas.common.chat.ChatList;
 import wotlas.common.chat.ChatRoom;
 import wotlas.common.message.chat.SendTextMessage;
 import wotlas.common.message.description.PlayerConnectedToGameMessage;
+import wotlas.common.message.description.PlayerDataBlob;
 import wotlas.common.movement.MovementComposer;
 import wotlas.common.movement.PathFollower;
 import wotlas.common.objects.ObjectManager;
@@ -36,6 +39,7 @@ import wotlas.common.universe.Room;
 import wotlas.common.universe.TownMap;
 import wotlas.common.universe.WorldMap;
 import wotlas.common.universe.WotlasLocation;
+import wotlas.common.universe.WotlasMap;
 import wotlas.libs.net.NetConnection;
 import wotlas.libs.net.NetConnectionListener;
 import wotlas.libs.net.NetMessage;
@@ -140,6 +144,19 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     transient protected long focusSoundTimeStamp;
 
+    /** Has the player changed since it was last saved ?
+     */
+    transient protected volatile boolean isDirty;
+
+    /** Cached encoding of our public data, sent to the players we meet.
+     */
+    transient protected PlayerDataBlob publicDataBlob = new PlayerDataBlob();
+
+    /** Versions of the other players' public data our client has received ( primary
+     *  key -> Integer ). When we change of room we only send what it lacks.
+     */
+    transient protected HashMap deliveredPlayerData = new HashMap();
+
     /*------------------------------------------------------------------------------------*/
 
     /** Connection Lock
@@ -299,6 +316,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setLocation(WotlasLocation myLocation) {
         this.location = myLocation;
+        this.isDirty = true;
 
         if (this.location.isRoom() && ServerDirector.getDataManager() != null)
             this.myRoom = ServerDirector.getDataManager().getWorldManager().getRoom(this.location);
@@ -388,6 +406,8 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setPlayerName(String playerName) {
         this.playerName = playerName;
+        this.isDirty = true;
+        this.publicDataBlob.invalidate();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -398,6 +418,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setPrimaryKey(String primaryKey) {
         this.primaryKey = primaryKey;
+        this.publicDataBlob.invalidate();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -408,6 +429,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setPlayerPast(String playerPast) {
         this.playerPast = playerPast;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -418,6 +440,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setFullPlayerName(String fullPlayerName) {
         this.lieManager.setFullPlayerName(fullPlayerName);
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -438,6 +461,88 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setWotCharacter(WotCharacter wotCharacter) {
         this.wotCharacter = wotCharacter;
+        this.isDirty = true;
+        this.publicDataBlob.invalidate();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the cached encoding of our public data.
+     *
+     *  @return public data blob
+     */
+    public PlayerDataBlob getPublicDataBlob() {
+        return this.publicDataBlob;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To signal that our public data has changed without a call to our setters ( the
+     *  character has been modified for example ). It will be encoded again the next
+     *  time we send it to other players.
+     */
+    public void publicDataChanged() {
+        this.publicDataBlob.invalidate();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To record that the public data of another player has been sent to our client.
+     *  Call this method before the message is sent.
+     *
+     *  @param otherPlayer player whose data is sent
+     */
+    public void playerDataDelivered(Player otherPlayer) {
+        PlayerDataBlob blob = otherPlayer.getPublicDataBlob();
+
+        if (blob == null)
+            return; // we can't tell when it changes
+
+        synchronized (this.deliveredPlayerData) {
+            this.deliveredPlayerData.put(otherPlayer.getPrimaryKey(), new Integer(blob.getVersion()));
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Has our client received the current public data of the given player ?
+     *
+     *  @param otherPlayer player to check
+     *  @return true if our client has its current data, false if we don't know.
+     */
+    public boolean isPlayerDataDelivered(Player otherPlayer) {
+        PlayerDataBlob blob = otherPlayer.getPublicDataBlob();
+
+        if (blob == null)
+            return false;
+
+        synchronized (this.deliveredPlayerData) {
+            Integer version = (Integer) this.deliveredPlayerData.get(otherPlayer.getPrimaryKey());
+            return version != null && version.intValue() == blob.getVersion();
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To forget the players our client no longer knows, as it does when it receives a
+     *  CleanGhostsMessage.
+     *
+     *  @param visibleKeys primary keys of the players our client still knows.
+     */
+    public void retainDeliveredPlayerData(Set visibleKeys) {
+        synchronized (this.deliveredPlayerData) {
+            this.deliveredPlayerData.keySet().retainAll(visibleKeys);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To forget all the players our client has received ( it has cleaned its list ).
+     */
+    public void clearDeliveredPlayerData() {
+        synchronized (this.deliveredPlayerData) {
+            this.deliveredPlayerData.clear();
+        }
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -476,6 +581,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setMovementComposer(MovementComposer movementComposer) {
         this.movementComposer = movementComposer;
+        this.publicDataBlob.invalidate();
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -502,6 +608,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setLastDisconnectedTime(long lastTime) {
         this.lastDisconnectedTime = lastTime;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -515,6 +622,61 @@ public class PlayerImpl implements Player, NetConnectionListener {
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** To get the map we are on : our Room, TownMap or WorldMap.
+     * @return current map, null if our location is not valid.
+     */
+    public WotlasMap getMyMap() {
+        if (this.myRoom != null)
+            return this.myRoom;
+
+        if (this.location == null)
+            return null;
+
+        WorldManager worldManager = ServerDirector.getDataManager().getWorldManager();
+
+        if (this.location.isWorld())
+            return worldManager.getWorldMap(this.location);
+        else if (this.location.isTown())
+            return worldManager.getTownMap(this.location);
+        else if (this.location.isRoom())
+            return worldManager.getRoom(this.location);
+
+        return null;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Has the player changed since it was last saved ?
+     *
+     * @return true if the player needs to be saved
+     */
+    public boolean isDirty() {
+        return this.isDirty;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To tell that the player has been saved (or that its changes don't need to be).
+     *
+     * @return true if the player was dirty
+     */
+    public boolean clearDirty() {
+        boolean wasDirty = this.isDirty;
+        this.isDirty = false;
+        return wasDirty;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To tell that the player needs to be saved. Call it when you change the player's
+     *  data without using its setters (movements for example).
+     */
+    public void markDirty() {
+        this.isDirty = true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** To get our Message router.
      */
     public MessageRouter getMessageRouter() {
@@ -557,6 +719,7 @@ public class PlayerImpl implements Player, NetConnectionListener {
      */
     public void setPlayerAwayMessage(String playerAwayMessage) {
         this.playerAwayMessage = playerAwayMessage;
+        this.isDirty = true;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
@@ -698,12 +861,16 @@ public class PlayerImpl implements Player, NetConnectionListener {
             this.connection = connection;
         }
 
+        clearDeliveredPlayerData(); // new client
+
         // We forget a little about players we met if we last connected 5 days ago
         if (this.lastDisconnectedTime - System.currentTimeMillis() > (5 * 86400000))
             this.lieManager.removeMeet(LieManager.FORGET_RECONNECT_LONG);
         else
             this.lieManager.removeMeet(LieManager.FORGET_RECONNECT);
 
+        this.isDirty = true;
+
         // We update our state
         this.playerState.value = PlayerState.CONNECTED;
 
@@ -739,7 +906,10 @@ public class PlayerImpl implements Player, NetConnectionListener {
         synchronized (this.connectionLock) {
             this.connection = null;
         }
+
+        clearDeliveredPlayerData();
         this.lastDisconnectedTime = System.currentTimeMillis();
+        this.isDirty = true; // lastDisconnectedTime, lie memories, position...
 
         // 0.1 - We update our state
         this.playerState.value = PlayerState.DISCONNECTED;
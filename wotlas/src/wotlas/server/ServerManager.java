@@ -22,7 +22,12 @@ package wotlas.server;
 import wotlas.common.ResourceManager;
 import wotlas.common.ServerConfig;
 import wotlas.common.ServerConfigManager;
+import java.util.Properties;
 import wotlas.common.message.account.WarningMessage;
+import wotlas.libs.net.NetDispatcher;
+import wotlas.libs.net.NetFrameWriter;
+import wotlas.libs.net.NetSender;
+import wotlas.libs.net.nio.NetSelectorPool;
 import wotlas.utils.Debug;
 
 /** A Server Manager manages three servers : A GameServer, a AccountServer and
@@ -98,6 +103,83 @@ public class ServerManager {
 
         this.gatewayServer = new GatewayServer(ServerDirector.getServerProperties().getProperty("init.serverItf"), this.ourConfig.getGatewayServerPort(), gateway_packages, this.ourConfig.getMaxNumberOfGatewayConnections(), this.serverConfigManager);
 
+        // 5 - Selector-based connections ?
+        Properties props = ServerDirector.getServerProperties();
+
+        if (props.getProperty("init.netSelectorConnections", "false").trim().equals("true")) {
+            try {
+                NetSelectorPool.setDefaultPoolSize(Integer.parseInt(props.getProperty("init.netSelectorThreads", "0").trim()));
+            } catch (NumberFormatException e) {
+                Debug.signal(Debug.ERROR, this, "init.netSelectorThreads is not a valid integer, using default value.");
+            }
+
+            this.accountServer.setSelectorConnections(true);
+            this.gameServer.setSelectorConnections(true);
+            this.gatewayServer.setSelectorConnections(true);
+            Debug.signal(Debug.NOTICE, null, "Servers will use selector-based connections...");
+        }
+
+        // 6 - Send queue limits of the client connections
+        String policy = props.getProperty("init.netSendQueuePolicy", "coalesce").trim();
+        byte overflowPolicy = NetSender.COALESCE_UPDATES;
+
+        if (policy.equals("drop"))
+            overflowPolicy = NetSender.DROP_OLDEST_UPDATE;
+        else if (policy.equals("disconnect"))
+            overflowPolicy = NetSender.DISCONNECT;
+        else if (!policy.equals("coalesce"))
+            Debug.signal(Debug.ERROR, this, "init.netSendQueuePolicy is not valid, using default value.");
+
+        try {
+            int queueSize = Integer.parseInt(props.getProperty("init.netSendQueueSize", "" + NetSender.DEFAULT_MAX_QUEUE_SIZE).trim());
+
+            this.accountServer.setSendQueueLimits(queueSize, overflowPolicy);
+            this.gameServer.setSendQueueLimits(queueSize, overflowPolicy);
+            this.gatewayServer.setSendQueueLimits(queueSize, overflowPolicy);
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.netSendQueueSize is not a valid integer, using default value.");
+        }
+
+        // 7 - Compression of large message batches
+        if (props.getProperty("init.netCompression", "true").trim().equals("false")) {
+            this.accountServer.setFrameOptions(NetFrameWriter.OPTION_FRAMES);
+            this.gameServer.setFrameOptions(NetFrameWriter.OPTION_FRAMES);
+            this.gatewayServer.setFrameOptions(NetFrameWriter.OPTION_FRAMES);
+        }
+
+        // 8 - Idle timeout of the client connections
+        try {
+            long idleTimeout = Long.parseLong(props.getProperty("init.netIdleTimeout", "0").trim()) * 1000;
+
+            this.accountServer.setIdleTimeout(idleTimeout);
+            this.gameServer.setIdleTimeout(idleTimeout);
+            this.gatewayServer.setIdleTimeout(idleTimeout);
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.netIdleTimeout is not a valid integer, using default value.");
+        }
+
+        // 9 - Dispatch threads for the message behaviours
+        try {
+            int nbThreads = Integer.parseInt(props.getProperty("init.netDispatchThreads", "-1").trim());
+            int queueSize = Integer.parseInt(props.getProperty("init.netDispatchQueueSize", "" + NetDispatcher.DEFAULT_QUEUE_SIZE).trim());
+
+            if (nbThreads < 0 && props.getProperty("init.netSelectorConnections", "false").trim().equals("true")) {
+                // selector threads must not execute the message behaviours
+                Debug.signal(Debug.NOTICE, null, "Selector-based connections need dispatch threads, using one per processor...");
+                nbThreads = 0;
+            }
+
+            if (nbThreads >= 0) {
+                NetDispatcher dispatcher = new NetDispatcher("NetDispatcher", nbThreads, queueSize);
+
+                this.accountServer.setDispatcher(dispatcher);
+                this.gameServer.setDispatcher(dispatcher);
+                this.gatewayServer.setDispatcher(dispatcher);
+            }
+        } catch (NumberFormatException e) {
+            Debug.signal(Debug.ERROR, this, "init.netDispatchThreads or init.netDispatchQueueSize is not a valid integer, no dispatch threads.");
+        }
+
         // Everything is ready on the network side...
     }
 
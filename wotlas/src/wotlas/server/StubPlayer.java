@@ -0,0 +1,159 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import wotlas.common.character.WotCharacter;
+import wotlas.common.movement.MovementComposer;
+import wotlas.common.universe.WotlasLocation;
+
+/** The player of an offline account whose GameAccount is not loaded in memory. A stub
+ *  only has what the other players can see of him : names, primary key, location,
+ *  position and the public data of his character. It stays in the MessageRouter of its
+ *  location so that the other players still see him and the routers and commands still
+ *  find him.
+ *<br>
+ *  Stubs are created by the AccountManager from the public data saved in the account's
+ *  AccountEntry ( see getPublicData() ). When the account is loaded the stub is replaced
+ *  by the real player. A stub has no connection, no inventory and is never saved.
+ *
+ * @author Aldiss
+ * @see wotlas.server.AccountEntry
+ * @see wotlas.server.AccountManager
+ */
+
+public class StubPlayer extends PlayerImpl {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Version of the public data format.
+     */
+    private final static byte DATA_VERSION = 1;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To get the public data of a player, from which a stub can be created.
+     *
+     * @param player a loaded player
+     * @return encoded public data
+     * @exception IOException if the character failed to encode
+     */
+    public static byte[] getPublicData(PlayerImpl player) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream(128);
+        DataOutputStream out = new DataOutputStream(bytes);
+        LieManager lieManager = player.getLieManager();
+        String fakeNames[] = lieManager.getFakeNames();
+        MovementComposer composer = player.getMovementComposer();
+
+        out.writeByte(StubPlayer.DATA_VERSION);
+        out.writeUTF(player.getPlayerName());
+
+        // Names
+        out.writeShort(lieManager.getCurrentFakeNameIndex());
+        out.writeByte(fakeNames.length);
+
+        for (int i = 0; i < fakeNames.length; i++) {
+            out.writeBoolean(fakeNames[i] != null);
+
+            if (fakeNames[i] != null)
+                out.writeUTF(fakeNames[i]);
+        }
+
+        // Position
+        out.writeUTF(composer.getClass().getName());
+        out.writeFloat(composer.getXPosition());
+        out.writeFloat(composer.getYPosition());
+        out.writeDouble(composer.getOrientationAngle());
+
+        // Wotlas Character Data
+        out.writeUTF(player.getWotCharacter().getClass().getName());
+        player.getWotCharacter().encode(out, true);
+
+        return bytes.toByteArray();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor. The stub is initialized, it can be added to the universe.
+     *
+     * @param entry entry of the account, with its public data.
+     * @exception IOException if the public data is missing or not valid.
+     */
+    public StubPlayer(AccountEntry entry) throws IOException {
+        super();
+
+        if (entry.getPublicData() == null || entry.getLocation() == null)
+            throw new IOException("No public data for account " + entry.getAccountName());
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(entry.getPublicData()));
+
+        if (in.readByte() != StubPlayer.DATA_VERSION)
+            throw new IOException("Bad public data version for account " + entry.getAccountName());
+
+        this.primaryKey = entry.getAccountName();
+        this.playerName = in.readUTF();
+
+        // Names
+        short currentFakeNameIndex = in.readShort();
+        String fakeNames[] = new String[in.readByte()];
+
+        for (int i = 0; i < fakeNames.length; i++)
+            if (in.readBoolean())
+                fakeNames[i] = in.readUTF();
+
+        this.lieManager.setFakeNames(fakeNames);
+        this.lieManager.setCurrentFakeNameIndex(currentFakeNameIndex);
+
+        try {
+            // Position
+            this.movementComposer = (MovementComposer) Class.forName(in.readUTF()).newInstance();
+            this.movementComposer.setXPosition(in.readFloat());
+            this.movementComposer.setYPosition(in.readFloat());
+            this.movementComposer.setOrientationAngle(in.readDouble());
+
+            // Wotlas Character Data
+            this.wotCharacter = (WotCharacter) Class.forName(in.readUTF()).newInstance();
+        } catch (Exception e) {
+            throw new IOException("Bad public data for account " + entry.getAccountName() + " : " + e);
+        }
+
+        this.wotCharacter.decode(in, true);
+
+        this.location = new WotlasLocation(entry.getLocation());
+        init();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A stub has nothing to save.
+     *
+     * @return false
+     */
+    @Override
+    public boolean isDirty() {
+        return false;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
@@ -89,8 +89,10 @@ public class BlackAjahChatCommand implements ChatCommand {
 
         WotCharacter wotC = player.getWotCharacter();
 
-        if (wotC instanceof AesSedai)
+        if (wotC instanceof AesSedai) {
             ((AesSedai) wotC).toggleBlackAjah();
+            player.publicDataChanged();
+        }
 
         return false; // continue message processing
     }
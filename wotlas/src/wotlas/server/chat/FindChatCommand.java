@@ -25,6 +25,8 @@ import wotlas.common.universe.Room;
 import wotlas.common.universe.TownMap;
 import wotlas.common.universe.WorldMap;
 import wotlas.common.universe.WotlasLocation;
+import wotlas.server.AccountEntry;
+import wotlas.server.AccountManager;
 import wotlas.server.GameAccount;
 import wotlas.server.PlayerImpl;
 import wotlas.server.ServerDirector;
@@ -102,16 +104,26 @@ public class FindChatCommand implements ChatCommand {
             return true;
         }
 
-        GameAccount account = ServerDirector.getDataManager().getAccountManager().getAccount(message);
+        AccountManager manager = ServerDirector.getDataManager().getAccountManager();
+        AccountEntry entry = manager.getAccountEntry(message);
 
-        if (account == null) {
+        if (entry == null) {
             response.setMessage("/cmd:/find command error:<font color='red'> unknown player</font>");
             player.sendMessage(response);
             return true;
         }
 
-        message = "/cmd:" + account.getPlayer().getFullPlayerName(player) + " found in ";
-        WotlasLocation flocation = account.getPlayer().getLocation();
+        // we don't load the account if it's not in memory : its entry is enough
+        GameAccount account = manager.getResidentAccount(message);
+        WotlasLocation flocation;
+
+        if (account != null) {
+            message = "/cmd:" + account.getPlayer().getFullPlayerName(player) + " found in ";
+            flocation = account.getPlayer().getLocation();
+        } else {
+            message = "/cmd:" + entry.getFullPlayerName() + " found in ";
+            flocation = entry.getLocation();
+        }
 
         if (flocation.isRoom()) {
             Room r = ServerDirector.getDataManager().getWorldManager().getRoom(flocation);
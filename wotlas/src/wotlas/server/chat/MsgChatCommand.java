@@ -21,6 +21,7 @@ package wotlas.server.chat;
 
 import wotlas.common.chat.ChatRoom;
 import wotlas.common.message.chat.SendTextMessage;
+import wotlas.server.AccountManager;
 import wotlas.server.GameAccount;
 import wotlas.server.PlayerImpl;
 import wotlas.server.ServerDirector;
@@ -102,16 +103,22 @@ public class MsgChatCommand implements ChatCommand {
         String key = message.substring(0, index);
         message = "/cmd:<i> " + player.getFullPlayerName() + " (far away) says: " + message.substring(index) + " </i>";
 
-        GameAccount account = ServerDirector.getDataManager().getAccountManager().getAccount(key);
+        AccountManager manager = ServerDirector.getDataManager().getAccountManager();
 
-        if (account == null) {
+        if (!manager.checkAccountName(key)) {
             response.setMessage("/cmd:/msg command error:<font color='red'> unknown player</font>");
             player.sendMessage(response);
             return true;
         }
 
         response.setMessage(message);
-        account.getPlayer().sendMessage(response);
+
+        // players that are not in memory are offline : no need to load them
+        GameAccount account = manager.getResidentAccount(key);
+
+        if (account != null)
+            account.getPlayer().sendMessage(response);
+
         player.sendMessage(response);
         return true;
     }
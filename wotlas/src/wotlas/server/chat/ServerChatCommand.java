@@ -97,6 +97,8 @@ public class ServerChatCommand implements ChatCommand {
             Debug.signal(Debug.NOTICE, null, "" + player.getFullPlayerName() + " is ringing this server...");
 
             response.setMessage("/cmd:You are ringing server <b> " + ourConfig.getServerSymbolicName() + " </b> (" + ourConfig.getServerID() + ") ...");
+        } else if (message.equals("/server persistence")) {
+            response.setMessage("/cmd:Persistence of server " + ourConfig.getServerSymbolicName() + " : " + ServerDirector.getDataManager().getPersistenceManager().getMetrics());
         } else {
             response.setMessage("/cmd:You are on server " + ourConfig.getServerSymbolicName() + " (" + ourConfig.getServerID() + ") located in " + ourConfig.getLocation() + "<br> <b>Admin e-mail:</b>" + ourConfig.getAdminEmail());
         }
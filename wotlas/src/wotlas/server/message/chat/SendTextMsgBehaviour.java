@@ -18,8 +18,8 @@
  */
 package wotlas.server.message.chat;
 
-import java.util.Hashtable;
 import java.util.Iterator;
+import java.util.Map;
 import wotlas.common.Player;
 import wotlas.common.chat.ChatRoom;
 import wotlas.common.message.account.WarningMessage;
@@ -62,7 +62,7 @@ public class SendTextMsgBehaviour extends SendTextMessage implements NetMessageB
             this.message = this.message.substring(0, ChatRoom.MAXIMUM_MESSAGE_SIZE - 4) + "...";
         }
 
-        Hashtable<String, Player> players = null;
+        Map<String, Player> players = null;
         WotlasLocation myLocation = player.getLocation();
 
         // 0.1 - test shortcut/commands...
@@ -18,8 +18,6 @@
  */
 package wotlas.server.message.movement;
 
-import java.util.Hashtable;
-import java.util.Iterator;
 import wotlas.common.Player;
 import wotlas.common.chat.ChatList;
 import wotlas.common.chat.ChatRoom;
@@ -30,6 +28,7 @@ import wotlas.common.router.MessageRouter;
 import wotlas.libs.net.NetMessageBehaviour;
 import wotlas.server.PlayerImpl;
 import wotlas.server.message.chat.RemPlayerFromChatRoomMsgBehaviour;
+import wotlas.server.router.InterestGridMessageRouter;
 import wotlas.utils.Debug;
 
 /**
@@ -70,14 +69,21 @@ public class PathUpdateMovementMsgBehaviour extends PathUpdateMovementMessage im
 
         // 1 - We update our player
         player.getMovementComposer().setUpdate(this);
+        player.markDirty();
 
         // 2 - We send the update to other players
-        // ... in the current Room & other rooms near me
+        // ... near me on worlds & towns
+        MessageRouter mRouter = player.getMessageRouter();
+
         if (!player.getLocation().isRoom()) {
+            if (mRouter instanceof InterestGridMessageRouter) {
+                ((InterestGridMessageRouter) mRouter).updatePlayer(player);
+                mRouter.sendMessage(this, player, MessageRouter.NEAR_GROUP);
+            }
             return;
-        } // nothing to do for worlds & towns...
+        }
 
-        MessageRouter mRouter = player.getMessageRouter();
+        // ... in the current Room & other rooms near me
         mRouter.sendMessage(this, player, MessageRouter.EXTENDED_GROUP);
         PlayerImpl nearPlayer = null;
 
@@ -110,14 +116,14 @@ public class PathUpdateMovementMsgBehaviour extends PathUpdateMovementMessage im
             }
         } else {
             // chat selection, we search for the closest player
-            Hashtable<String, Player> players = mRouter.getPlayers();
+            // ( the selection is made under the lock of the chat list : players near each
+            //   other could otherwise join each other's chat at the same time )
+            Player list[] = mRouter.getPlayerList();
             ChatRoom chatRoom = null;
 
-            synchronized (players) {
-                Iterator<Player> it = players.values().iterator();
-
-                while (it.hasNext()) {
-                    PlayerImpl p = (PlayerImpl) it.next();
+            synchronized (chatList) {
+                for (int i = 0; i < list.length; i++) {
+                    PlayerImpl p = (PlayerImpl) list[i];
                     nearPlayer = null;
 
                     if (p != player && p.isConnectedToGame()) {
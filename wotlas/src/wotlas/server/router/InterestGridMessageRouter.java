@@ -0,0 +1,536 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server.router;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Timer;
+import java.util.TimerTask;
+import wotlas.common.Player;
+import wotlas.common.WorldManager;
+import wotlas.common.message.description.AddPlayerToRoomMessage;
+import wotlas.common.message.description.RemovePlayerFromRoomMessage;
+import wotlas.common.router.MessageRouter;
+import wotlas.common.universe.WotlasLocation;
+import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.PreEncodedMessage;
+import wotlas.utils.Debug;
+
+/** A message router for TownMaps and WorldMaps that only advertises players to the
+ *  players that are near them. Each player has an area of interest : a circle of
+ *  interestRadius around its position. Two players are near when one is in the area
+ *  of the other. They leave each other when their distance is greater than the
+ *  interestRadius + 25% (so that players standing at the limit don't flicker).
+ *<br>
+ *  Players are placed in a grid of cells as large as this leave distance, so we only
+ *  have to check the 3x3 cells around a player to find its near players. The server
+ *  doesn't follow the players along their path : we use the position estimated from
+ *  their movement ( see MovementComposer.getEstimatedPosition() ). The grid and the near
+ *  players of a player are updated when a movement update is received ( see
+ *  updatePlayer() ) and, while he is moving, every REFRESH_PERIOD ms.
+ *<br>
+ *  Use the NEAR_GROUP send option to send messages to the players near a player, the
+ *  LOCAL_GROUP option still sends messages to all the players of the map.
+ *
+ * @author Aldiss
+ */
+
+public class InterestGridMessageRouter extends MessageRouter {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default radius of the players' area of interest (in map pixels).
+     */
+    public final static int DEFAULT_INTEREST_RADIUS = 500;
+
+    /** Period at which we update the cells and near players of the moving players (ms).
+     */
+    public final static long REFRESH_PERIOD = 1000;
+
+    /** Timer that refreshes all our routers, created with the first router.
+     */
+    private static Timer refreshTimer;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Location of our map.
+     */
+    protected WotlasLocation location;
+
+    /** Radius of the players' area of interest.
+     */
+    protected int interestRadius;
+
+    /** Distance at which near players leave each other. It's also the size of our cells.
+     */
+    protected int leaveDistance;
+
+    /** Our grid : cell key -> players of the cell.
+     */
+    protected HashMap<Long, ArrayList<Player>> cells;
+
+    /** Cell of each player : primary key -> cell key.
+     */
+    protected HashMap<String, Long> playerCells;
+
+    /** Near players of each player : primary key -> near players.
+     */
+    protected HashMap<String, HashSet<Player>> nearPlayers;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor.
+     *
+     * @param interestRadius radius of the players' area of interest (in map pixels).
+     */
+    public InterestGridMessageRouter(int interestRadius) {
+        super();
+
+        if (interestRadius < 1)
+            interestRadius = InterestGridMessageRouter.DEFAULT_INTEREST_RADIUS;
+
+        this.interestRadius = interestRadius;
+        this.leaveDistance = interestRadius + interestRadius / 4;
+        this.cells = new HashMap<Long, ArrayList<Player>>();
+        this.playerCells = new HashMap<String, Long>();
+        this.nearPlayers = new HashMap<String, HashSet<Player>>();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Inititializes this MessageRouter.
+     *
+     * @param location location this MessageRouter is linked to.
+     * @param wManager WorldManager of the application.
+     */
+    @Override
+    public void init(WotlasLocation location, WorldManager wManager) {
+        if (location.isRoom()) {
+            Debug.signal(Debug.FAILURE, this, "Location is a Room ! Can't init router !");
+            return;
+        }
+
+        this.location = new WotlasLocation(location);
+
+        synchronized (InterestGridMessageRouter.class) {
+            if (InterestGridMessageRouter.refreshTimer == null)
+                InterestGridMessageRouter.refreshTimer = new Timer("InterestGridRefresh", true);
+        }
+
+        InterestGridMessageRouter.refreshTimer.schedule(new TimerTask() {
+            @Override
+            public void run() {
+                try {
+                    refreshMovingPlayers();
+                } catch (RuntimeException e) {
+                    Debug.signal(Debug.ERROR, InterestGridMessageRouter.this, e);
+                }
+            }
+        }, InterestGridMessageRouter.REFRESH_PERIOD, InterestGridMessageRouter.REFRESH_PERIOD);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To add a player to this group. The player is advertised to the players near him
+     *  and they are advertised to him. If the player is already in this group (its client
+     *  is asking for the map data again) we just send him his near players again.
+     *
+     * @param player player to add
+     * @return true if the player was added successfully, false if an error occured.
+     */
+    @Override
+    public boolean addPlayer(Player player) {
+        synchronized (this.playersLock) {
+            registerPlayer(player);
+            updateCell(player);
+            updateNearPlayers(player, true);
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To remove a player from this group. The players near him are told to remove him.
+     *
+     * @param player player to remove
+     * @return true if the player was removed successfully, false if an error occured.
+     */
+    @Override
+    public boolean removePlayer(Player player) {
+        synchronized (this.playersLock) {
+            if (!super.removePlayer(player))
+                return false; // non-existent player
+
+            String primaryKey = player.getPrimaryKey();
+            removeFromCell(primaryKey, this.playerCells.remove(primaryKey));
+
+            HashSet<Player> near = this.nearPlayers.remove(primaryKey);
+
+            if (near != null) {
+                NetMessage rMsg = new RemovePlayerFromRoomMessage(primaryKey, this.location);
+
+                if (near.size() > 1)
+                    rMsg = PreEncodedMessage.preEncode(rMsg);
+
+                Iterator<Player> it = near.iterator();
+
+                while (it.hasNext()) {
+                    Player p = it.next();
+                    getNearPlayers(p).remove(player);
+                    p.sendMessage(rMsg);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To replace a player by another object with the same primary key. No messages
+     *  are sent : the new player takes the old one's place in our grid and in the near
+     *  players of the others.
+     *
+     * @param oldPlayer player on our map
+     * @param newPlayer player that takes its place
+     * @return true if the player was replaced, false if oldPlayer was not on our map.
+     */
+    @Override
+    public boolean replacePlayer(Player oldPlayer, Player newPlayer) {
+        synchronized (this.playersLock) {
+            if (!super.replacePlayer(oldPlayer, newPlayer))
+                return false;
+
+            String primaryKey = newPlayer.getPrimaryKey();
+            removeFromCell(primaryKey, this.playerCells.remove(primaryKey));
+            updateCell(newPlayer);
+
+            HashSet<Player> near = this.nearPlayers.get(primaryKey);
+
+            if (near != null) {
+                Iterator<Player> it = near.iterator();
+
+                while (it.hasNext()) {
+                    HashSet<Player> otherNear = getNearPlayers(it.next());
+
+                    if (otherNear.remove(oldPlayer))
+                        otherNear.add(newPlayer);
+                }
+            }
+        }
+
+        return true;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To remove all the players of this group. No messages are sent.
+     */
+    @Override
+    public void removeAllPlayers() {
+        synchronized (this.playersLock) {
+            super.removeAllPlayers();
+            this.cells.clear();
+            this.playerCells.clear();
+            this.nearPlayers.clear();
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** This method does nothing for this router.
+     *
+     * @param player player to move
+     * @return true if the player was moved successfully, false if an error occured.
+     */
+    @Override
+    public boolean movePlayer(Player player, WotlasLocation targetLocation) {
+        return false;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To signal that the position of a player has changed. We update its cell and its
+     *  near players : players entering its area of interest are advertised, players
+     *  leaving it are removed.
+     *
+     * @param player player whose position has changed
+     */
+    public void updatePlayer(Player player) {
+        synchronized (this.playersLock) {
+            if (!this.players.containsKey(player.getPrimaryKey()))
+                return; // not on our map
+
+            updateCell(player);
+            updateNearPlayers(player, false);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To update the cells and near players of the players that are moving : their
+     *  estimated position changes without any message. Called every REFRESH_PERIOD ms.
+     */
+    public void refreshMovingPlayers() {
+        Player list[] = getPlayerList();
+
+        for (int i = 0; i < list.length; i++)
+            if (list[i].getMovementComposer().isMoving())
+                updatePlayer(list[i]);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the number of players near a player.
+     *
+     * @param player player on our map
+     * @return number of players near him
+     */
+    public int getNbNearPlayers(Player player) {
+        synchronized (this.playersLock) {
+            HashSet<Player> near = this.nearPlayers.get(player.getPrimaryKey());
+            return (near == null) ? 0 : near.size();
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To send a list of messages to the specified group with the exception of a player.
+     *  With the NEAR_GROUP option the messages are sent to the players near the excepted
+     *  player, with the LOCAL_GROUP and EXTENDED_GROUP options they are sent to all the
+     *  players of our map. If you use the EXC_EXTENDED_GROUP option no message will be sent.
+     *
+     *  @param msg message to send to the group
+     *  @param exceptThisPlayer player to except from the send of messages, if the
+     *         given player is null the message will be sent to everyone in the selected
+     *         groups.
+     *  @param groupOption gives the groups to send the message to. See the constants
+     *         defined in the MessageRouter class.
+     */
+    @Override
+    public void sendMessages(NetMessage msg[], Player exceptThisPlayer, byte groupOption) {
+
+        if (groupOption == MessageRouter.EXC_EXTENDED_GROUP)
+            return;
+
+        Player list[] = null;
+
+        if (groupOption == MessageRouter.NEAR_GROUP && exceptThisPlayer != null) {
+            synchronized (this.playersLock) {
+                HashSet<Player> near = this.nearPlayers.get(exceptThisPlayer.getPrimaryKey());
+
+                if (near == null)
+                    return; // not on our map
+
+                list = near.toArray(new Player[near.size()]);
+            }
+        } else
+            list = getPlayerList();
+
+        // The messages are encoded only once.
+        if (list.length > 1)
+            msg = PreEncodedMessage.preEncode(msg);
+
+        for (int j = 0; j < list.length; j++)
+            if (list[j] != exceptThisPlayer)
+                for (int i = 0; i < msg.length; i++)
+                    list[j].sendMessage(msg[i]);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Places a player in the cell of its current position. The caller must hold our
+     *  playersLock.
+     *
+     * @param player player to place
+     */
+    protected void updateCell(Player player) {
+        Point position = getPosition(player);
+        Long cellKey = new Long(getCellKey(position.x / this.leaveDistance, position.y / this.leaveDistance));
+        Long oldKey = this.playerCells.put(player.getPrimaryKey(), cellKey);
+
+        if (cellKey.equals(oldKey))
+            return; // same cell
+
+        removeFromCell(player.getPrimaryKey(), oldKey);
+
+        ArrayList<Player> cell = this.cells.get(cellKey);
+
+        if (cell == null) {
+            cell = new ArrayList<Player>(4);
+            this.cells.put(cellKey, cell);
+        }
+
+        cell.add(player);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Removes a player from a cell. Empty cells are removed from our grid. The caller
+     *  must hold our playersLock.
+     *
+     * @param primaryKey primary key of the player to remove
+     * @param cellKey key of the cell, can be null
+     */
+    protected void removeFromCell(String primaryKey, Long cellKey) {
+        if (cellKey == null)
+            return;
+
+        ArrayList<Player> cell = this.cells.get(cellKey);
+
+        if (cell == null)
+            return;
+
+        for (int i = 0; i < cell.size(); i++)
+            if (cell.get(i).getPrimaryKey().equals(primaryKey)) {
+                cell.remove(i);
+                break;
+            }
+
+        if (cell.isEmpty())
+            this.cells.remove(cellKey);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Updates the near players of a player from the 3x3 cells around him and sends
+     *  the add/remove messages to the players concerned. The caller must hold our
+     *  playersLock.
+     *
+     * @param player player to update
+     * @param sendAll if true we send him all his near players, otherwise only the new ones
+     */
+    protected void updateNearPlayers(Player player, boolean sendAll) {
+        HashSet<Player> oldNear = getNearPlayers(player);
+        HashSet<Player> newNear = new HashSet<Player>();
+
+        Point position = getPosition(player);
+        int x = position.x;
+        int y = position.y;
+        int cx = x / this.leaveDistance;
+        int cy = y / this.leaveDistance;
+        long interest2 = (long) this.interestRadius * this.interestRadius;
+        long leave2 = (long) this.leaveDistance * this.leaveDistance;
+
+        // 1 - We search the players near him
+        for (int i = cx - 1; i <= cx + 1; i++)
+            for (int j = cy - 1; j <= cy + 1; j++) {
+                ArrayList<Player> cell = this.cells.get(new Long(getCellKey(i, j)));
+
+                if (cell == null)
+                    continue;
+
+                for (int k = 0; k < cell.size(); k++) {
+                    Player p = cell.get(k);
+
+                    if (p == player)
+                        continue;
+
+                    Point pPosition = getPosition(p);
+                    long dx = pPosition.x - x;
+                    long dy = pPosition.y - y;
+                    long d2 = dx * dx + dy * dy;
+
+                    if (d2 <= interest2 || (d2 <= leave2 && oldNear.contains(p)))
+                        newNear.add(p);
+                }
+            }
+
+        // 2 - Players that left
+        Iterator<Player> it = oldNear.iterator();
+
+        while (it.hasNext()) {
+            Player p = it.next();
+
+            if (newNear.contains(p))
+                continue;
+
+            getNearPlayers(p).remove(player);
+            p.sendMessage(new RemovePlayerFromRoomMessage(player.getPrimaryKey(), this.location));
+            player.sendMessage(new RemovePlayerFromRoomMessage(p.getPrimaryKey(), this.location));
+        }
+
+        // 3 - Players that arrived
+        it = newNear.iterator();
+
+        while (it.hasNext()) {
+            Player p = it.next();
+            boolean isNew = !oldNear.contains(p);
+
+            if (isNew) {
+                getNearPlayers(p).add(player);
+                p.sendMessage(new AddPlayerToRoomMessage(p, player)); // p is needed by the LieManager
+            }
+
+            if (isNew || sendAll)
+                player.sendMessage(new AddPlayerToRoomMessage(player, p));
+        }
+
+        this.nearPlayers.put(player.getPrimaryKey(), newNear);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the position of a player in our grid.
+     *
+     * @param player player
+     * @return its estimated position
+     */
+    protected Point getPosition(Player player) {
+        return player.getMovementComposer().getEstimatedPosition();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the near players of a player. The caller must hold our playersLock.
+     *
+     * @param player player
+     * @return its near players, an empty set is created if needed
+     */
+    protected HashSet<Player> getNearPlayers(Player player) {
+        HashSet<Player> near = this.nearPlayers.get(player.getPrimaryKey());
+
+        if (near == null) {
+            near = new HashSet<Player>();
+            this.nearPlayers.put(player.getPrimaryKey(), near);
+        }
+
+        return near;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the key of a cell.
+     *
+     * @param cx cell x index
+     * @param cy cell y index
+     * @return cell key
+     */
+    protected static long getCellKey(int cx, int cy) {
+        return ((long) cx << 32) | (cy & 0xffffffffL);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -18,7 +18,9 @@
  */
 package wotlas.server.router;
 
+import java.util.ArrayList;
 import java.util.HashMap;
+import java.util.HashSet;
 import java.util.Hashtable;
 import java.util.Iterator;
 import wotlas.common.Player;
@@ -39,6 +41,7 @@ import wotlas.common.router.MessageRouter;
 import wotlas.common.universe.Room;
 import wotlas.common.universe.WotlasLocation;
 import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.PreEncodedMessage;
 import wotlas.server.PlayerImpl;
 import wotlas.server.message.chat.RemPlayerFromChatRoomMsgBehaviour;
 import wotlas.utils.Debug;
@@ -141,7 +144,7 @@ public class MultiGroupMessageRouter extends MessageRouter {
     public boolean addPlayer(Player player) {
 
         // 1 - We add this player to our list & don't care if it's already in there
-        this.players.put(player.getPrimaryKey(), player);
+        registerPlayer(player);
         player.setLocation(this.thisRoom.getLocation()); // update player location
 
         if (!player.isConnectedToGame()) {
@@ -149,42 +152,34 @@ public class MultiGroupMessageRouter extends MessageRouter {
         } // no need to advertise if the player is not connected
 
         // 2 - We advertise our presence to other players in the LOCAL room
-        AddPlayerToRoomMessage aMsg = new AddPlayerToRoomMessage(null, player);
-
-        synchronized (this.players) {
-            Iterator<Player> it = this.players.values().iterator();
-
-            while (it.hasNext()) {
-                Player p = it.next();
-
-                if (p != player) {
-                    aMsg.setOtherPlayer(p); // needed for the LieManager to know who is
-                    p.sendMessage(aMsg); // asking for the player's name....
-                }
+        //    (one message per player : the message is encoded later by the sender's
+        //     thread and the LieManager needs to know who is asking for the name)
+        Player list[] = getPlayerList();
+
+        for (int j = 0; j < list.length; j++) {
+            if (list[j] != player) {
+                ((PlayerImpl) list[j]).playerDataDelivered(player);
+                list[j].sendMessage(new AddPlayerToRoomMessage(list[j], player));
             }
         }
 
         // 3 - We advertise our presence to other players of the 1 step-NEAR rooms
         for (int i = 0; i < this.nearRooms.length; i++) {
-            Hashtable<String, Player> otherPlayers = this.nearRooms[i].getMessageRouter().getPlayers();
-
-            synchronized (otherPlayers) {
-                Iterator<Player> it = otherPlayers.values().iterator();
+            list = this.nearRooms[i].getMessageRouter().getPlayerList();
 
-                while (it.hasNext()) {
-                    Player p = it.next();
-                    aMsg.setOtherPlayer(p); // needed for the LieManager to know who is
-                    p.sendMessage(aMsg); // asking for the player's name....
-                }
+            for (int j = 0; j < list.length; j++) {
+                ((PlayerImpl) list[j]).playerDataDelivered(player);
+                list[j].sendMessage(new AddPlayerToRoomMessage(list[j], player)); // list[j] is needed by the LieManager
             }
         }
 
         // 4 - We send DOORS & PLAYERS data to the added player
-        player.sendMessage(new RoomPlayerDataMessage(this.thisRoom, player));
+        ((PlayerImpl) player).clearDeliveredPlayerData(); // we send everything
+        sendRoomPlayerData((PlayerImpl) player, this.thisRoom, false);
 
         for (int i = 0; i < this.nearRooms.length; i++) {
             player.sendMessage(new DoorsStateMessage(this.nearRooms[i]));
-            player.sendMessage(new RoomPlayerDataMessage(this.nearRooms[i], player));
+            sendRoomPlayerData((PlayerImpl) player, this.nearRooms[i], false);
         }
 
         // 5 - We send CHAT DATA to the added player
@@ -209,19 +204,17 @@ public class MultiGroupMessageRouter extends MessageRouter {
         player.sendMessage(new SetCurrentChatRoomMessage(ChatRoom.DEFAULT_CHAT, this.players));
 
         // 3 - We seek for a valid chatList if any...
-        synchronized (this.players) {
-            Iterator<Player> it = this.players.values().iterator();
+        Player list[] = getPlayerList();
 
-            while (it.hasNext()) {
-                PlayerImpl p = (PlayerImpl) it.next();
+        for (int i = 0; i < list.length; i++) {
+            PlayerImpl p = (PlayerImpl) list[i];
 
-                if (p != player && p.isConnectedToGame()) {
-                    ChatList chatList = p.getChatList();
+            if (p != player && p.isConnectedToGame()) {
+                ChatList chatList = p.getChatList();
 
-                    if (chatList != null) {
-                        player.setChatList(chatList);
-                        break;
-                    }
+                if (chatList != null) {
+                    player.setChatList(chatList);
+                    break;
                 }
             }
         }
@@ -262,6 +255,8 @@ public class MultiGroupMessageRouter extends MessageRouter {
             return false;
         } // non-existent player
 
+        ((PlayerImpl) player).clearDeliveredPlayerData(); // its client leaves the map
+
         // 2 - We send remove messages to local & near players
         sendMessage(new RemovePlayerFromRoomMessage(player.getPrimaryKey(), this.thisRoom.getLocation()), null, MessageRouter.EXTENDED_GROUP);
 
@@ -330,7 +325,8 @@ public class MultiGroupMessageRouter extends MessageRouter {
     public boolean movePlayer(Player player, WotlasLocation targetLocation) {
 
         // 1 - We remove the player from our router...
-        if (!super.removePlayer(player)) {
+        if (!unregisterPlayer(player)) {
+            Debug.signal(Debug.WARNING, this, "Move failed : player not found.");
             return false;
         } // non-existent player
 
@@ -351,7 +347,7 @@ public class MultiGroupMessageRouter extends MessageRouter {
         }
 
         // 3 - Send approriate Remove messages
-        RemovePlayerFromRoomMessage rMsg = new RemovePlayerFromRoomMessage(player.getPrimaryKey(), player.getLocation());
+        NetMessage rMsg = PreEncodedMessage.preEncode(new RemovePlayerFromRoomMessage(player.getPrimaryKey(), player.getLocation()));
 
         for (int i = 0; i < this.nearRooms.length; i++) {
             if (this.nearRooms[i].getRoomID() != targetRoomID) {
@@ -363,9 +359,9 @@ public class MultiGroupMessageRouter extends MessageRouter {
 
         // 4 - Send appropriate Location changes & Messages
         player.setLocation(targetRoom.getLocation());
-        targetRoom.getMessageRouter().getPlayers().put(player.getPrimaryKey(), player);
+        targetRoom.getMessageRouter().registerPlayer(player);
 
-        LocationChangeMessage lMsg = new LocationChangeMessage(player.getPrimaryKey(), player.getLocation(), 0, 0, 0.0f);
+        NetMessage lMsg = PreEncodedMessage.preEncode(new LocationChangeMessage(player.getPrimaryKey(), player.getLocation(), 0, 0, 0.0f));
 
         sendMessage(lMsg); // to this room
         targetRoom.getMessageRouter().sendMessage(lMsg, player); // to the target room
@@ -375,8 +371,13 @@ public class MultiGroupMessageRouter extends MessageRouter {
 
         // 6 - Send appropriate Add Player Messages
         //     to the neighbours of the target room where we are now
-        //     We also send remaining Players & Doors Messages to our player
-        AddPlayerToRoomMessage aMsg = new AddPlayerToRoomMessage(null, player);
+        //     We also send remaining Players & Doors Messages to our player : rooms we
+        //     could not see are sent in full. The client keeps the players of the rooms
+        //     we could see, for them we only send the players it lacks or that changed.
+        PlayerImpl playerImpl = (PlayerImpl) player;
+
+        sendRoomPlayerData(playerImpl, targetRoom, true);
+        sendRoomPlayerData(playerImpl, this.thisRoom, true);
 
         if (targetRoom.getRoomLinks() != null) {
             for (int i = 0; i < targetRoom.getRoomLinks().length; i++) {
@@ -390,29 +391,92 @@ public class MultiGroupMessageRouter extends MessageRouter {
                     continue;
                 }
 
-                player.sendMessage(new DoorsStateMessage(otherRoom));
-                player.sendMessage(new RoomPlayerDataMessage(otherRoom, player));
-
-                Hashtable<String, Player> otherPlayers = otherRoom.getMessageRouter().getPlayers();
+                if (isNearRoom(otherRoom)) {
+                    sendRoomPlayerData(playerImpl, otherRoom, true);
+                } else {
+                    player.sendMessage(new DoorsStateMessage(otherRoom));
+                    sendRoomPlayerData(playerImpl, otherRoom, false);
+                }
 
-                synchronized (otherPlayers) {
-                    Iterator<Player> it = otherPlayers.values().iterator();
+                Player list[] = otherRoom.getMessageRouter().getPlayerList();
 
-                    while (it.hasNext()) {
-                        Player p = it.next();
-                        aMsg.setOtherPlayer(p); // needed for the LieManager to know who is
-                        p.sendMessage(aMsg); // asking for the player's name....
-                    }
+                for (int j = 0; j < list.length; j++) {
+                    ((PlayerImpl) list[j]).playerDataDelivered(player);
+                    list[j].sendMessage(new AddPlayerToRoomMessage(list[j], player)); // list[j] is needed by the LieManager
                 }
             }
         }
 
+        // our client has forgotten the players it can't see anymore (CleanGhostsMessage)
+        playerImpl.retainDeliveredPlayerData(((MultiGroupMessageRouter) targetRoom.getMessageRouter()).getVisiblePlayerKeys());
+
         // 7 - We send CHAT DATA to the added player
         ((MultiGroupMessageRouter) targetRoom.getMessageRouter()).updateChatInformation((PlayerImpl) player);
 
         return true;
     }
 
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To send the players of a room to a player. The players sent are recorded as
+     *  delivered to its client.
+     *
+     * @param player player to send the data to
+     * @param room room whose players we send
+     * @param missingOnly if true we only send the players whose current data the
+     *        client has not received, and nothing if there are none.
+     */
+    protected void sendRoomPlayerData(PlayerImpl player, Room room, boolean missingOnly) {
+        Player list[] = room.getMessageRouter().getPlayerList();
+        ArrayList<Player> toSend = new ArrayList<Player>(list.length);
+
+        for (int i = 0; i < list.length; i++) {
+            if (list[i] == player || (missingOnly && player.isPlayerDataDelivered(list[i]))) {
+                continue;
+            }
+
+            player.playerDataDelivered(list[i]);
+            toSend.add(list[i]);
+        }
+
+        if (missingOnly && toSend.isEmpty()) {
+            return;
+        }
+
+        player.sendMessage(new RoomPlayerDataMessage(room.getLocation(), player, toSend.toArray(new Player[toSend.size()])));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** Is the given room one of our near rooms ?
+     *
+     * @param room room to test
+     * @return true if the room is near ours, false otherwise ( or if it's our room ).
+     */
+    protected boolean isNearRoom(Room room) {
+        for (int i = 0; i < this.nearRooms.length; i++) {
+            if (this.nearRooms[i] == room) {
+                return true;
+            }
+        }
+
+        return false;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+    /** To get the keys of the players a client sees from our room : the players of our
+     *  room and of our near rooms.
+     *
+     * @return primary keys of the visible players
+     */
+    protected HashSet<String> getVisiblePlayerKeys() {
+        HashSet<String> keys = new HashSet<String>(this.players.keySet());
+
+        for (int i = 0; i < this.nearRooms.length; i++) {
+            keys.addAll(this.nearRooms[i].getMessageRouter().getPlayers().keySet());
+        }
+
+        return keys;
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
     /** To send a list of messages to the specified group with the exception of a player.
      *  @param msg message to send to the group
@@ -425,24 +489,23 @@ public class MultiGroupMessageRouter extends MessageRouter {
     @Override
     public void sendMessages(NetMessage msg[], Player exceptThisPlayer, byte groupOption) {
 
+        // The messages are encoded only once for all the players of all the groups.
+        msg = PreEncodedMessage.preEncode(msg);
+
         if (groupOption != MessageRouter.EXC_EXTENDED_GROUP) {
             // We send the messages to the local group.
-            synchronized (this.players) {
-                Iterator<Player> it = this.players.values().iterator();
-
-                while (it.hasNext()) {
-                    Player p = it.next();
+            Player list[] = getPlayerList();
 
-                    if (p != exceptThisPlayer) {
-                        for (int i = 0; i < msg.length; i++) {
-                            p.sendMessage(msg[i]);
-                        }
+            for (int j = 0; j < list.length; j++) {
+                if (list[j] != exceptThisPlayer) {
+                    for (int i = 0; i < msg.length; i++) {
+                        list[j].sendMessage(msg[i]);
                     }
                 }
             }
         }
 
-        if (groupOption != MessageRouter.LOCAL_GROUP) {
+        if (groupOption == MessageRouter.EXTENDED_GROUP || groupOption == MessageRouter.EXC_EXTENDED_GROUP) {
             // We send the messages to near groups.
             for (int i = 0; i < this.nearRooms.length; i++) {
                 this.nearRooms[i].getMessageRouter().sendMessages(msg, exceptThisPlayer, MessageRouter.LOCAL_GROUP);
@@ -35,6 +35,32 @@ import wotlas.common.universe.WorldMap;
 
 public class ServerMessageRouterFactory implements MessageRouterFactory {
 
+    /*------------------------------------------------------------------------------------*/
+
+    /** Radius of the players' area of interest on TownMaps and WorldMaps (in map pixels).
+     *  0 means that players are not advertised on these maps.
+     */
+    private int interestRadius;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor with the default radius of the players' area of interest.
+     */
+    public ServerMessageRouterFactory() {
+        this(InterestGridMessageRouter.DEFAULT_INTEREST_RADIUS);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor.
+     *
+     * @param interestRadius radius of the players' area of interest on TownMaps and
+     *        WorldMaps. 0 means that players are not advertised on these maps.
+     */
+    public ServerMessageRouterFactory(int interestRadius) {
+        this.interestRadius = interestRadius;
+    }
+
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
     /** Inititializes this MessageRouterFactory.
@@ -49,7 +75,7 @@ public class ServerMessageRouterFactory implements MessageRouterFactory {
      * @return a MessageRouter to use for this map
      */
     public MessageRouter createMsgRouterForWorldMap(WorldMap wMap, WorldManager wManager) {
-        MessageRouter mr = new SingleGroupMessageRouter();
+        MessageRouter mr = createMsgRouterForMap();
         mr.init(wMap.getLocation(), wManager);
         return mr;
     }
@@ -61,13 +87,25 @@ public class ServerMessageRouterFactory implements MessageRouterFactory {
      * @return a MessageRouter to use for this map
      */
     public MessageRouter createMsgRouterForTownMap(TownMap tMap, WorldManager wManager) {
-        MessageRouter mr = new SingleGroupMessageRouter();
+        MessageRouter mr = createMsgRouterForMap();
         mr.init(tMap.getLocation(), wManager);
         return mr;
     }
 
     /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
 
+    /** Creates a MessageRouter for a TownMap or a WorldMap.
+     * @return an InterestGridMessageRouter, or a SingleGroupMessageRouter if our
+     *         interestRadius is 0.
+     */
+    private MessageRouter createMsgRouterForMap() {
+        if (this.interestRadius <= 0)
+            return new SingleGroupMessageRouter();
+        return new InterestGridMessageRouter(this.interestRadius);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
     /** Creates or gets a MessageRouter for a Room.
      * @param room Room the router is for...
      * @return a MessageRouter to use for this map
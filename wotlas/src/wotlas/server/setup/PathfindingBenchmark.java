@@ -0,0 +1,201 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server.setup;
+
+import java.awt.Point;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+import javax.imageio.ImageIO;
+import wotlas.common.ResourceManager;
+import wotlas.libs.graphics2d.BinaryMask;
+import wotlas.libs.pathfinding.ClearanceMap;
+import wotlas.libs.pathfinding.GridAStar;
+import wotlas.libs.pathfinding.JumpPointSearch;
+import wotlas.utils.Debug;
+import wotlas.utils.List;
+
+/** A small utility to compare the search modes of our pathfinding on the real map
+ *  masks. We search the mask images of the image library and, for each mask and
+ *  sprite size, we run the same random queries with the classic A* and the Jump
+ *  Point Search. We print the number of expanded cells, the average search time and
+ *  the total length of the paths found by each search.
+ *<br>
+ *  Usage : PathfindingBenchmark [-base basePath] [-queries nbQueries] [-seed seed]
+ *
+ * @author Aldiss
+ */
+
+public class PathfindingBenchmark {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default number of queries per mask and sprite size.
+     */
+    private final static int DEFAULT_QUERIES = 500;
+
+    /** Sprite sizes we test ( town & world maps, rooms ).
+     */
+    private final static int SPRITE_SIZES[] = { 1, 4 };
+
+    /** Number of times we run the queries before measuring (warm-up).
+     */
+    private final static int WARMUP_LOOPS = 2;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Main. Prints the results of each mask.
+     */
+    public static void main(String argv[]) {
+        String basePath = null;
+        int nbQueries = PathfindingBenchmark.DEFAULT_QUERIES;
+        long seed = 0;
+
+        for (int i = 0; i < argv.length - 1; i++) {
+            if (argv[i].equals("-base"))
+                basePath = argv[i + 1];
+            else if (argv[i].equals("-queries"))
+                nbQueries = Integer.parseInt(argv[i + 1]);
+            else if (argv[i].equals("-seed"))
+                seed = Long.parseLong(argv[i + 1]);
+        }
+
+        ResourceManager rManager = new ResourceManager(basePath, true);
+        ArrayList masks = new ArrayList();
+        PathfindingBenchmark.findMasks(new File(rManager.getImageLibraryDir()), masks);
+
+        if (masks.isEmpty()) {
+            Debug.signal(Debug.ERROR, null, "No mask found in " + rManager.getImageLibraryDir());
+            return;
+        }
+
+        long totalExpanded[] = new long[2];
+        long totalTime[] = new long[2];
+
+        for (int m = 0; m < masks.size(); m++) {
+            File maskFile = (File) masks.get(m);
+            boolean mask[][];
+
+            try {
+                BufferedImage image = ImageIO.read(maskFile);
+
+                if (image == null)
+                    continue;
+
+                mask = BinaryMask.create(image);
+            } catch (IOException e) {
+                Debug.signal(Debug.WARNING, null, "Failed to load " + maskFile + " : " + e);
+                continue;
+            }
+
+            ClearanceMap clearance = new ClearanceMap(mask); // shared by the sprite sizes
+
+            for (int s = 0; s < PathfindingBenchmark.SPRITE_SIZES.length; s++) {
+                int spriteSize = PathfindingBenchmark.SPRITE_SIZES[s];
+                GridAStar searches[] = { new GridAStar(clearance, spriteSize), new JumpPointSearch(clearance, spriteSize) };
+
+                Point queries[] = PathfindingBenchmark.createQueries(searches[0], nbQueries, seed);
+
+                if (queries == null)
+                    continue; // no free cell for this sprite size
+
+                long expanded[] = new long[2];
+                long time[] = new long[2];
+                long length[] = new long[2];
+
+                for (int k = 0; k < searches.length; k++)
+                    for (int loop = 0; loop <= PathfindingBenchmark.WARMUP_LOOPS; loop++) {
+                        long start = System.nanoTime();
+
+                        for (int q = 0; q < queries.length; q += 2) {
+                            List path = searches[k].findPath(queries[q], queries[q + 1]);
+
+                            if (loop == PathfindingBenchmark.WARMUP_LOOPS) {
+                                expanded[k] += searches[k].getNbExpanded();
+                                length[k] += path.size();
+                            }
+                        }
+
+                        if (loop == PathfindingBenchmark.WARMUP_LOOPS)
+                            time[k] = System.nanoTime() - start;
+                    }
+
+                for (int k = 0; k < 2; k++) {
+                    totalExpanded[k] += expanded[k];
+                    totalTime[k] += time[k];
+                }
+
+                int nb = queries.length / 2;
+                Debug.signal(Debug.NOTICE, null, maskFile.getParentFile().getName() + "/" + maskFile.getName() + " (" + mask.length + "x" + mask[0].length + ", sprite " + spriteSize + ") : A* " + (expanded[0] / nb) + " cells " + (time[0] / nb / 1000) + " us, JPS " + (expanded[1] / nb) + " cells " + (time[1] / nb / 1000) + " us, path length A* " + length[0] + " JPS " + length[1]);
+            }
+        }
+
+        Debug.signal(Debug.NOTICE, null, "Total : A* " + totalExpanded[0] + " cells " + (totalTime[0] / 1000000) + " ms, JPS " + totalExpanded[1] + " cells " + (totalTime[1] / 1000000) + " ms");
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Adds to a list the mask images of a directory and its sub-directories.
+     */
+    private static void findMasks(File dir, ArrayList masks) {
+        File files[] = dir.listFiles();
+
+        if (files == null)
+            return;
+
+        for (int i = 0; i < files.length; i++) {
+            if (files[i].isDirectory())
+                PathfindingBenchmark.findMasks(files[i], masks);
+            else if (files[i].getName().indexOf("-mask-") >= 0 && files[i].getName().endsWith(".gif"))
+                masks.add(files[i]);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates random queries between the free cells of a mask.
+     *
+     * @return start & goal points of each query, null if the mask has no free cell
+     */
+    private static Point[] createQueries(GridAStar search, int nbQueries, long seed) {
+        ClearanceMap clearance = search.getClearanceMap();
+        ArrayList free = new ArrayList();
+
+        for (int x = 0; x < clearance.getWidth(); x++)
+            for (int y = 0; y < clearance.getHeight(); y++)
+                if (search.isNotBlock(x, y))
+                    free.add(new Point(x, y));
+
+        if (free.isEmpty())
+            return null;
+
+        Random random = new Random(seed);
+        Point queries[] = new Point[2 * nbQueries];
+
+        for (int i = 0; i < queries.length; i++)
+            queries[i] = (Point) free.get(random.nextInt(free.size()));
+
+        return queries;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
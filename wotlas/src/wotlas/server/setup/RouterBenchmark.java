@@ -0,0 +1,300 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server.setup;
+
+import java.util.Hashtable;
+import java.util.Iterator;
+import wotlas.common.Player;
+import wotlas.common.message.chat.SendTextMessage;
+import wotlas.common.router.MessageRouter;
+import wotlas.common.router.SingleGroupMessageRouter;
+import wotlas.libs.net.NetMessage;
+import wotlas.libs.net.PreEncodedMessage;
+import wotlas.server.PlayerImpl;
+import wotlas.utils.Debug;
+
+/** A small utility to measure the player registry of our MessageRouters. For rooms of
+ *  10, 50 and 200 players we measure the time to add all the players, to remove them
+ *  and to broadcast a chat message from each player. We then measure the broadcasts
+ *  per ms when several threads broadcast while another thread moves players in and out
+ *  of the room.
+ *<br>
+ *  Each test runs on a SingleGroupMessageRouter ( copy-on-write player list ) and on a
+ *  router that keeps our old registry : a Hashtable locked during each broadcast.
+ *  Players don't have a connection, they only count the messages they receive.
+ *<br>
+ *  Usage : RouterBenchmark [-loops nbLoops] [-threads nbThreads]
+ *
+ * @author Aldiss
+ */
+
+public class RouterBenchmark {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Number of players per room we test.
+     */
+    private final static int ROOM_SIZES[] = { 10, 50, 200 };
+
+    /** Default number of loops of each test.
+     */
+    private final static int DEFAULT_LOOPS = 200;
+
+    /** Number of loops we ignore before measuring (warm-up).
+     */
+    private final static int WARMUP_LOOPS = 50;
+
+    /** Names of the routers we compare.
+     */
+    private final static String ROUTER_NAMES[] = { "copy-on-write", "locked table" };
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Main. Prints the results of each room size.
+     */
+    public static void main(String argv[]) {
+        int nbLoops = RouterBenchmark.DEFAULT_LOOPS;
+        int nbThreads = Runtime.getRuntime().availableProcessors();
+
+        for (int i = 0; i < argv.length - 1; i++) {
+            if (argv[i].equals("-loops"))
+                nbLoops = Integer.parseInt(argv[i + 1]);
+            else if (argv[i].equals("-threads"))
+                nbThreads = Integer.parseInt(argv[i + 1]);
+        }
+
+        nbThreads = Math.max(nbThreads, 1);
+
+        for (int s = 0; s < RouterBenchmark.ROOM_SIZES.length; s++) {
+            int roomSize = RouterBenchmark.ROOM_SIZES[s];
+            Player players[] = RouterBenchmark.createPlayers(roomSize);
+
+            for (int r = 0; r < RouterBenchmark.ROUTER_NAMES.length; r++) {
+                long addTime = 0, removeTime = 0, broadcastTime = 0;
+
+                for (int loop = 0; loop < RouterBenchmark.WARMUP_LOOPS + nbLoops; loop++) {
+                    MessageRouter router = RouterBenchmark.createRouter(r);
+
+                    long start = System.nanoTime();
+
+                    for (int i = 0; i < players.length; i++)
+                        router.addPlayer(players[i]);
+
+                    long added = System.nanoTime();
+
+                    RouterBenchmark.broadcast(router, players);
+
+                    long broadcasted = System.nanoTime();
+
+                    for (int i = 0; i < players.length; i++)
+                        router.removePlayer(players[i]);
+
+                    long removed = System.nanoTime();
+
+                    if (loop >= RouterBenchmark.WARMUP_LOOPS) {
+                        addTime += added - start;
+                        broadcastTime += broadcasted - added;
+                        removeTime += removed - broadcasted;
+                    }
+                }
+
+                double rate = RouterBenchmark.concurrentBroadcasts(RouterBenchmark.createRouter(r), players, nbThreads, nbLoops);
+
+                Debug.signal(Debug.NOTICE, null, roomSize + " players, " + RouterBenchmark.ROUTER_NAMES[r] + " : add " + (addTime / nbLoops / 1000) + " us, remove " + (removeTime / nbLoops / 1000) + " us, broadcast " + (broadcastTime / nbLoops / roomSize / 1000) + " us/msg, " + nbThreads + " threads with moves " + ((int) rate) + " msg/ms");
+            }
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Creates the players of a room.
+     */
+    private static Player[] createPlayers(int nbPlayers) {
+        Player players[] = new Player[nbPlayers];
+
+        for (int i = 0; i < nbPlayers; i++) {
+            players[i] = new BenchPlayer();
+            players[i].setPrimaryKey("bench-" + i);
+            players[i].setFullPlayerName("Bench " + i);
+        }
+
+        return players;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates a router.
+     *
+     * @param type index in ROUTER_NAMES
+     */
+    private static MessageRouter createRouter(int type) {
+        if (type == 0)
+            return new SingleGroupMessageRouter();
+
+        return new LockedMessageRouter();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Each player sends a chat message to the others.
+     */
+    private static void broadcast(MessageRouter router, Player players[]) {
+        for (int i = 0; i < players.length; i++)
+            router.sendMessage(RouterBenchmark.createMessage(players[i]), players[i]);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates a chat message from a player.
+     */
+    private static NetMessage createMessage(Player player) {
+        return new SendTextMessage(player.getPrimaryKey(), player.getFullPlayerName(null), "bench-room", "Hello everybody !", (byte) 0);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Measures the broadcasts of several threads while another thread moves the first
+     *  player out of the room and back.
+     *
+     * @return number of broadcasts per ms
+     */
+    private static double concurrentBroadcasts(final MessageRouter router, final Player players[], int nbThreads, final int nbLoops) {
+        for (int i = 0; i < players.length; i++)
+            router.addPlayer(players[i]);
+
+        Thread threads[] = new Thread[nbThreads];
+
+        for (int t = 0; t < nbThreads; t++)
+            threads[t] = new Thread("RouterBenchmark-" + t) {
+                @Override
+                public void run() {
+                    for (int loop = 0; loop < nbLoops; loop++)
+                        RouterBenchmark.broadcast(router, players);
+                }
+            };
+
+        final boolean done[] = { false };
+        Thread mover = new Thread("RouterBenchmark-mover") {
+            @Override
+            public void run() {
+                while (true) {
+                    synchronized (done) {
+                        if (done[0])
+                            return;
+                    }
+
+                    router.removePlayer(players[0]);
+                    router.addPlayer(players[0]);
+                }
+            }
+        };
+
+        long start = System.nanoTime();
+        mover.start();
+
+        for (int t = 0; t < nbThreads; t++)
+            threads[t].start();
+
+        try {
+            for (int t = 0; t < nbThreads; t++)
+                threads[t].join();
+        } catch (InterruptedException e) {
+            Debug.signal(Debug.ERROR, null, e);
+        }
+
+        long time = System.nanoTime() - start;
+
+        synchronized (done) {
+            done[0] = true;
+        }
+
+        try {
+            mover.join();
+        } catch (InterruptedException e) {
+            Debug.signal(Debug.ERROR, null, e);
+        }
+
+        return (double) nbThreads * nbLoops * players.length * 1000000 / time;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A player without connection that counts the messages it receives.
+     */
+    private static class BenchPlayer extends PlayerImpl {
+
+        /** Number of messages received.
+         */
+        private int nbMessages;
+
+        @Override
+        public void sendMessage(NetMessage message) {
+            synchronized (this) {
+                this.nbMessages++; // a connection's queue is locked too
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A router with our old player registry : a Hashtable that is locked during the
+     *  broadcasts.
+     */
+    private static class LockedMessageRouter extends SingleGroupMessageRouter {
+
+        /** Our players.
+         */
+        private Hashtable table = new Hashtable(5);
+
+        @Override
+        public boolean addPlayer(Player player) {
+            if (this.table.containsKey(player.getPrimaryKey()))
+                return false;
+
+            this.table.put(player.getPrimaryKey(), player);
+            return true;
+        }
+
+        @Override
+        public boolean removePlayer(Player player) {
+            return this.table.remove(player.getPrimaryKey()) != null;
+        }
+
+        @Override
+        public void sendMessages(NetMessage msg[], Player exceptThisPlayer, byte groupOption) {
+            synchronized (this.table) {
+                if (this.table.size() > 1)
+                    msg = PreEncodedMessage.preEncode(msg);
+
+                Iterator it = this.table.values().iterator();
+
+                while (it.hasNext()) {
+                    Player p = (Player) it.next();
+
+                    if (p != exceptThisPlayer)
+                        for (int i = 0; i < msg.length; i++)
+                            p.sendMessage(msg[i]);
+                }
+            }
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
@@ -0,0 +1,199 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.server.setup;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import wotlas.common.ResourceManager;
+import wotlas.common.UniverseSnapshot;
+import wotlas.common.WorldManager;
+import wotlas.libs.persistence.ObjectStore;
+import wotlas.libs.persistence.PersistenceException;
+import wotlas.libs.persistence.PropertiesConverter;
+import wotlas.utils.Debug;
+
+/** A small utility to measure the time we spend to save & load the universe. The
+ *  default universe is loaded from the disk once, then saved and loaded again in memory
+ *  ( the universe files are not modified ), so that we only measure the
+ *  PropertiesConverter & WorldManager work. We then measure the loading of the binary
+ *  universe snapshot, compiled in a temporary file.
+ *<br>
+ *  Usage : UniverseBenchmark [-base basePath] [-loops nbLoops]
+ *
+ * @author Aldiss
+ */
+
+public class UniverseBenchmark {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default number of save/load loops.
+     */
+    private final static int DEFAULT_LOOPS = 20;
+
+    /** Number of loops we ignore before measuring (warm-up).
+     */
+    private final static int WARMUP_LOOPS = 5;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Main. Prints the average save & load times of the universe.
+     */
+    public static void main(String argv[]) {
+        String basePath = null;
+        int nbLoops = UniverseBenchmark.DEFAULT_LOOPS;
+
+        for (int i = 0; i < argv.length - 1; i++) {
+            if (argv[i].equals("-base"))
+                basePath = argv[i + 1];
+            else if (argv[i].equals("-loops"))
+                nbLoops = Integer.parseInt(argv[i + 1]);
+        }
+
+        ResourceManager rManager = new ResourceManager(basePath, true);
+        WorldManager wManager = new WorldManager(rManager);
+        wManager.setUniverseSnapshot(null); // text files only for now
+        wManager.loadUniverse(true);
+
+        if (wManager.getWorldMaps() == null) {
+            Debug.signal(Debug.ERROR, null, "No universe found.");
+            return;
+        }
+
+        // we now save & load in memory
+        MemoryObjectStore store = new MemoryObjectStore();
+        rManager.setObjectStore(store);
+        Debug.setLevel(Debug.WARNING); // we don't want the load/save notices
+
+        long saveTime = 0, loadTime = 0;
+
+        for (int i = 0; i < UniverseBenchmark.WARMUP_LOOPS + nbLoops; i++) {
+            long start = System.nanoTime();
+            wManager.saveUniverse(true);
+            long saved = System.nanoTime();
+            wManager.loadUniverse(true);
+            long loaded = System.nanoTime();
+
+            if (i >= UniverseBenchmark.WARMUP_LOOPS) {
+                saveTime += saved - start;
+                loadTime += loaded - saved;
+            }
+        }
+
+        // binary snapshot, compiled in a temporary file on the first load
+        long snapshotTime = 0, snapshotSize = 0;
+
+        try {
+            File snapshot = File.createTempFile("universe", UniverseSnapshot.SNAPSHOT_SUFFIX);
+            snapshot.delete();
+            snapshot.deleteOnExit();
+            wManager.setUniverseSnapshot(snapshot.getPath());
+            wManager.loadUniverse(true);
+            snapshotSize = snapshot.length();
+
+            for (int i = 0; i < UniverseBenchmark.WARMUP_LOOPS + nbLoops; i++) {
+                long start = System.nanoTime();
+                wManager.loadUniverse(true);
+
+                if (i >= UniverseBenchmark.WARMUP_LOOPS)
+                    snapshotTime += System.nanoTime() - start;
+            }
+
+            snapshot.delete();
+        } catch (IOException e) {
+            Debug.signal(Debug.ERROR, null, e);
+        }
+
+        Debug.setLevel(Debug.NOTICE);
+        Debug.signal(Debug.NOTICE, null, "Universe : " + store.getNbObjects() + " objects, " + store.getSize() + " bytes.");
+        Debug.signal(Debug.NOTICE, null, "Average save time : " + (saveTime / nbLoops / 1000) + " us");
+        Debug.signal(Debug.NOTICE, null, "Average load time : " + (loadTime / nbLoops / 1000) + " us");
+        Debug.signal(Debug.NOTICE, null, "Snapshot : " + snapshotSize + " bytes.");
+        Debug.signal(Debug.NOTICE, null, "Average snapshot load time : " + (snapshotTime / nbLoops / 1000) + " us");
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** An ObjectStore that keeps the saved objects in memory.
+     */
+    private static class MemoryObjectStore implements ObjectStore {
+
+        /** Saved objects ( path -> byte[] ).
+         */
+        private HashMap objects = new HashMap();
+
+        public Object load(String path) throws PersistenceException {
+            byte data[] = (byte[]) this.objects.get(new File(path).getPath());
+
+            if (data == null)
+                return PropertiesConverter.load(path); // not saved yet
+
+            return PropertiesConverter.load(new ByteArrayInputStream(data));
+        }
+
+        public void save(Object o, String path) throws PersistenceException {
+            ByteArrayOutputStream data = new ByteArrayOutputStream(1024);
+            PropertiesConverter.save(o, data);
+            this.objects.put(new File(path).getPath(), data.toByteArray());
+        }
+
+        public boolean delete(String path) {
+            return this.objects.remove(new File(path).getPath()) != null;
+        }
+
+        public String[] list(String dirName, String ext) {
+            ArrayList list = new ArrayList();
+            Iterator it = this.objects.keySet().iterator();
+
+            while (it.hasNext()) {
+                File file = new File((String) it.next());
+
+                if (file.getParent().equals(new File(dirName).getPath()) && file.getName().endsWith(ext))
+                    list.add(file.getPath());
+            }
+
+            return (String[]) list.toArray(new String[list.size()]);
+        }
+
+        public void close() {
+        }
+
+        protected int getNbObjects() {
+            return this.objects.size();
+        }
+
+        protected long getSize() {
+            long size = 0;
+            Iterator it = this.objects.values().iterator();
+
+            while (it.hasNext())
+                size += ((byte[]) it.next()).length;
+
+            return size;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
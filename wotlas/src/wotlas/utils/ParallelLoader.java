@@ -0,0 +1,174 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.utils;
+
+import java.util.ArrayList;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+/** A ParallelLoader runs independent loading tasks ( file I/O and parsing ) on a small
+ *  pool of threads. The results are given back in the order the tasks were submitted,
+ *  so the caller can merge them exactly as a sequential loop would.
+ *<br>
+ *  Tasks are submitted by batches : submit() the tasks of a batch, then getResults()
+ *  waits for them. A batch can then submit the tasks of the next level ( a world, its
+ *  towns, their buildings, ... ).
+ *<br>
+ *  The default number of threads can be set with setDefaultNbThreads() (by default :
+ *  one thread per available processor). With one thread the tasks are executed by the
+ *  caller's thread in getResults().
+ *
+ * @author Aldiss
+ */
+
+public class ParallelLoader {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Default number of threads (0 means one thread per available processor).
+     */
+    private static int defaultNbThreads = 0;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our executor, null if we run the tasks in the caller's thread.
+     */
+    private ExecutorService executor;
+
+    /** Tasks of the current batch ( Callable, or Future if we have an executor ).
+     */
+    private ArrayList tasks;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To set the default number of threads of the loaders.
+     *
+     * @param nbThreads number of threads, 0 for one per available processor.
+     */
+    public static synchronized void setDefaultNbThreads(int nbThreads) {
+        ParallelLoader.defaultNbThreads = nbThreads;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To get the default number of threads of the loaders.
+     *
+     * @return number of threads, 0 for one per available processor.
+     */
+    public static synchronized int getDefaultNbThreads() {
+        return ParallelLoader.defaultNbThreads;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Constructor with the default number of threads.
+     *
+     * @param name name prefix of our threads
+     */
+    public ParallelLoader(String name) {
+        this(name, ParallelLoader.getDefaultNbThreads());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Constructor.
+     *
+     * @param name name prefix of our threads
+     * @param nbThreads number of threads, 0 for one per available processor.
+     */
+    public ParallelLoader(final String name, int nbThreads) {
+        if (nbThreads <= 0)
+            nbThreads = Runtime.getRuntime().availableProcessors();
+
+        this.tasks = new ArrayList();
+
+        if (nbThreads == 1)
+            return; // we'll run the tasks ourselves
+
+        this.executor = Executors.newFixedThreadPool(nbThreads, new ThreadFactory() {
+            private int nbCreated = 0;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, name + "-" + this.nbCreated++);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To add a task to the current batch. It may start at once.
+     *
+     * @param task loading task, its result is given by getResults().
+     */
+    public void submit(Callable task) {
+        if (this.executor == null)
+            this.tasks.add(task);
+        else
+            this.tasks.add(this.executor.submit(task));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Waits for the tasks of the current batch and starts a new batch. A task that
+     *  failed is signaled and gives a null result.
+     *
+     * @return the task results, in the order they were submitted.
+     */
+    public Object[] getResults() {
+        Object results[] = new Object[this.tasks.size()];
+
+        for (int i = 0; i < results.length; i++) {
+            try {
+                if (this.executor == null)
+                    results[i] = ((Callable) this.tasks.get(i)).call();
+                else
+                    results[i] = ((Future) this.tasks.get(i)).get();
+            } catch (ExecutionException e) {
+                Debug.signal(Debug.ERROR, this, "Loading task failed : " + e.getCause());
+            } catch (InterruptedException e) {
+                Debug.signal(Debug.ERROR, this, "Interrupted while loading.");
+                Thread.currentThread().interrupt();
+            } catch (Exception e) {
+                Debug.signal(Debug.ERROR, this, e);
+            }
+        }
+
+        this.tasks.clear();
+        return results;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** To stop our threads once all the batches have been loaded.
+     */
+    public void shutdown() {
+        if (this.executor != null)
+            this.executor.shutdown();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+}
@@ -0,0 +1,386 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.net;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+import org.junit.Before;
+import org.junit.BeforeClass;
+import org.junit.Test;
+import wotlas.libs.net.message.PingMessage;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Tests of the framed wire format : frames written by a NetFrameWriter are decoded by
+ *  a NetReceiver, with or without compression and compact headers.
+ *
+ * @author Aldiss
+ */
+
+public class NetFrameWriterTest {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Receiver that keeps the messages it decodes.
+     */
+    private FrameReceiver receiver;
+
+    /** Frames written.
+     */
+    private ByteArrayOutputStream frames;
+
+    /** Stream on frames.
+     */
+    private DataOutputStream out;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Our test message must be known by the message factory.
+     */
+    @BeforeClass
+    public static void addTestMessage() {
+        NetMessageFactory.getMessageFactory().addMessage(TextMsgBehaviour.class);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Creates an empty frame stream and a receiver.
+     */
+    @Before
+    public void setUp() {
+        this.receiver = new FrameReceiver();
+        this.frames = new ByteArrayOutputStream();
+        this.out = new DataOutputStream(this.frames);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Small frames are never compressed.
+     */
+    @Test
+    public void testSmallFrame() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(true);
+
+        writer.addMessage(new TextMessage("hello"), null);
+        writer.addMessage(new PingMessage((byte) 7), null);
+        writer.writeFrame(this.out);
+
+        assertEquals(1, readFrames(false));
+        assertEquals("[text:hello, ping:7]", this.receiver.received.toString());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Large frames are compressed if the compression is enabled.
+     */
+    @Test
+    public void testCompressedFrame() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(true);
+        List expected = addLargeBatch(writer, null);
+        writer.writeFrame(this.out);
+
+        assertEquals(1, readFrames(true));
+        assertEquals(expected, this.receiver.received);
+
+        NetFrameWriter uncompressed = new NetFrameWriter(false);
+        ByteArrayOutputStream raw = new ByteArrayOutputStream();
+        addLargeBatch(uncompressed, null);
+        uncompressed.writeFrame(new DataOutputStream(raw));
+
+        assertTrue(this.frames.size() * 4 < raw.size());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Without compression large frames are sent as they are.
+     */
+    @Test
+    public void testUncompressedFrame() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(false);
+        List expected = addLargeBatch(writer, null);
+        writer.writeFrame(this.out);
+
+        assertEquals(1, readFrames(false));
+        assertEquals(expected, this.receiver.received);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Compact headers : message type IDs instead of class names.
+     */
+    @Test
+    public void testCompactHeaders() throws Exception {
+        NetMessageTypeTable peerTable = new NetMessageTypeTable(NetMessageFactory.getMessageFactory().getMessageTypes());
+        NetFrameWriter writer = new NetFrameWriter(true);
+
+        List expected = addLargeBatch(writer, peerTable);
+        writer.writeFrame(this.out);
+        writer.addMessage(new PingMessage((byte) 1), peerTable);
+        writer.writeFrame(this.out);
+        expected.add("ping:1");
+
+        this.receiver.setCompactHeaders(true);
+
+        assertEquals(2, readFrames(true, false));
+        assertEquals(expected, this.receiver.received);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Frames are written when they are full, an empty frame is never written.
+     */
+    @Test
+    public void testFullFrames() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(true);
+        List expected = new ArrayList();
+        int nbFrames = 0;
+
+        writer.writeFrame(this.out);
+        assertEquals(0, this.frames.size());
+
+        for (int i = 0; i < 5000; i++) {
+            writer.addMessage(new TextMessage("message " + i), null);
+            expected.add("text:message " + i);
+
+            if (writer.isFull()) {
+                writer.writeFrame(this.out);
+                nbFrames++;
+            }
+        }
+
+        writer.writeFrame(this.out);
+        nbFrames++;
+
+        assertTrue(nbFrames > 1);
+        assertEquals(nbFrames, readFrames());
+        assertEquals(expected, this.receiver.received);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Messages of an unknown type are skipped, the next ones are decoded.
+     */
+    @Test
+    public void testUnknownMessageSkipped() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(false);
+
+        writer.addMessage(new TextMessage("before"), null);
+        writer.addMessage(new UnknownMessage(), null);
+        writer.addMessage(new TextMessage("after"), null);
+        writer.writeFrame(this.out);
+
+        assertEquals(1, readFrames(false));
+        assertEquals("[text:before, text:after]", this.receiver.received.toString());
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Once its compressor has been ended a writer still writes valid frames.
+     */
+    @Test
+    public void testEndedWriter() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(true);
+        writer.end();
+        writer.end();
+
+        List expected = addLargeBatch(writer, null);
+        writer.writeFrame(this.out);
+
+        assertEquals(1, readFrames(false));
+        assertEquals(expected, this.receiver.received);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A stopped receiver refuses compressed frames : its decompressor has been ended.
+     */
+    @Test
+    public void testStoppedReceiver() throws Exception {
+        NetFrameWriter writer = new NetFrameWriter(true);
+
+        addLargeBatch(writer, null);
+        writer.writeFrame(this.out);
+        addLargeBatch(writer, null);
+        writer.writeFrame(this.out);
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.frames.toByteArray()));
+        assertTrue(readFrame(in));
+
+        this.receiver.stopThread();
+
+        try {
+            readFrame(in);
+            fail("compressed frame decoded by a stopped receiver");
+        } catch (IOException e) {
+            // expected
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Adds enough similar messages to a writer to exceed the compression threshold.
+     *
+     * @return the description of the messages added
+     */
+    private List addLargeBatch(NetFrameWriter writer, NetMessageTypeTable peerTable) throws IOException {
+        List expected = new ArrayList();
+
+        for (int i = 0; i < 100; i++) {
+            writer.addMessage(new TextMessage("player " + (i % 10) + " moves"), peerTable);
+            expected.add("text:player " + (i % 10) + " moves");
+
+            writer.addMessage(new PingMessage((byte) i), peerTable);
+            expected.add("ping:" + i);
+        }
+
+        return expected;
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Gives all the frames written to our receiver.
+     *
+     * @param compressed expected compression flag of each frame, in order
+     * @return number of frames read
+     */
+    private int readFrames(boolean compressed[]) throws Exception {
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(this.frames.toByteArray()));
+        int nbFrames = 0;
+
+        while (in.available() > 0) {
+            boolean isCompressed = readFrame(in);
+
+            if (compressed != null)
+                assertEquals("compression of frame " + nbFrames, compressed[nbFrames], isCompressed);
+
+            nbFrames++;
+        }
+
+        return nbFrames;
+    }
+
+    private int readFrames() throws Exception {
+        return readFrames((boolean[]) null);
+    }
+
+    private int readFrames(boolean compressed) throws Exception {
+        return readFrames(new boolean[] { compressed });
+    }
+
+    private int readFrames(boolean first, boolean second) throws Exception {
+        return readFrames(new boolean[] { first, second });
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Reads a frame and gives it to our receiver.
+     *
+     * @return true if the frame was compressed
+     */
+    private boolean readFrame(DataInputStream in) throws Exception {
+        int length = in.readInt();
+        byte frame[] = new byte[length];
+        in.readFully(frame);
+
+        assertTrue(this.receiver.processFrame(frame, 0, length));
+        return (frame[0] & NetFrameWriter.FRAME_COMPRESSED) != 0;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A receiver without socket that keeps a description of the messages it decodes.
+     */
+    private static class FrameReceiver extends NetReceiver {
+
+        private List received = new ArrayList();
+
+        protected FrameReceiver() {
+            super(null, null, null);
+        }
+
+        @Override
+        protected boolean processMessage(NetMessageBehaviour msg) {
+            if (msg instanceof PingMessage)
+                this.received.add("ping:" + ((PingMessage) msg).getSeqID());
+            else
+                this.received.add("text:" + ((TextMessage) msg).text);
+            return true;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A message with a text.
+     */
+    public static class TextMessage extends NetMessage {
+
+        protected String text;
+
+        public TextMessage() {
+        }
+
+        public TextMessage(String text) {
+            this.text = text;
+        }
+
+        @Override
+        public void encode(DataOutputStream ostream) throws IOException {
+            ostream.writeUTF(this.text);
+        }
+
+        @Override
+        public void decode(DataInputStream istream) throws IOException {
+            this.text = istream.readUTF();
+        }
+    }
+
+    /** Behaviour of our TextMessage.
+     */
+    public static class TextMsgBehaviour extends TextMessage implements NetMessageBehaviour {
+
+        public TextMsgBehaviour() {
+        }
+
+        public void doBehaviour(Object sessionContext) {
+        }
+    }
+
+    /** A message the receiver doesn't know.
+     */
+    public static class UnknownMessage extends NetMessage {
+
+        @Override
+        public void encode(DataOutputStream ostream) throws IOException {
+            ostream.writeUTF("unknown data");
+        }
+
+        @Override
+        public void decode(DataInputStream istream) throws IOException {
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
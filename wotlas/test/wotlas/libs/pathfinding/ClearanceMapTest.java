@@ -0,0 +1,219 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.util.Random;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of the ClearanceMap against a brute-force computation of the largest free
+ *  square of each cell.
+ *
+ * @author Aldiss
+ */
+
+public class ClearanceMapTest {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Largest clearance stored by a ClearanceMap.
+     */
+    private final static int MAX_CLEARANCE = 127;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Random masks, with different densities of blocked cells.
+     */
+    @Test
+    public void testRandomMasks() {
+        Random random = new Random(1);
+
+        for (int t = 0; t < 60; t++) {
+            boolean mask[][] = getRandomMask(random, 1 + random.nextInt(60), 1 + random.nextInt(60), random.nextInt(40));
+            assertClearances(mask, new ClearanceMap(mask));
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A mask large enough to be computed in parallel, with large free areas.
+     */
+    @Test
+    public void testLargeMask() {
+        boolean mask[][] = getRandomMask(new Random(2), 400, 300, 1);
+        assertClearances(mask, new ClearanceMap(mask));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Clearances are limited to 127 cells.
+     */
+    @Test
+    public void testMaxClearance() {
+        boolean mask[][] = getRandomMask(new Random(3), 150, 140, 0);
+        ClearanceMap map = new ClearanceMap(mask);
+
+        assertEquals(ClearanceMapTest.MAX_CLEARANCE, map.getClearance(0, 0));
+        assertEquals(1, map.getClearance(149, 139));
+        assertClearances(mask, map);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Cells out of the mask are blocked.
+     */
+    @Test
+    public void testOutOfMask() {
+        boolean mask[][] = getRandomMask(new Random(4), 10, 8, 0);
+        ClearanceMap map = new ClearanceMap(mask);
+
+        assertEquals(0, map.getClearance(-1, 0));
+        assertEquals(0, map.getClearance(0, 8));
+        assertFalse(map.isFree(10, 0));
+        assertFalse(map.fits(0, -1, 1));
+        assertTrue(map.fits(2, 0, 8));
+        assertFalse(map.fits(3, 0, 8));
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Changed maps (doors) : we block and free rectangles, some of them partially out of
+     *  the mask, and compare the changed map with a brute-force computation of the
+     *  changed mask. The original map must not change.
+     */
+    @Test
+    public void testChangedMaps() {
+        Random random = new Random(5);
+
+        for (int t = 0; t < 40; t++) {
+            int width = 1 + random.nextInt(t < 30 ? 50 : 300);
+            int height = 1 + random.nextInt(t < 30 ? 50 : 300);
+            boolean mask[][] = getRandomMask(random, width, height, (t < 30) ? random.nextInt(3) * 10 : 5);
+            ClearanceMap map = new ClearanceMap(mask);
+
+            for (int k = 0; k < 4; k++) {
+                int x = random.nextInt(width + 10) - 5;
+                int y = random.nextInt(height + 10) - 5;
+                int w = random.nextInt(20);
+                int h = random.nextInt(20);
+                boolean value = random.nextBoolean();
+
+                ClearanceMap original = map;
+                boolean originalMask[][] = copy(mask);
+
+                map = map.getChangedMap(x, y, w, h, value);
+
+                for (int i = Math.max(x, 0); i < x + w && i < width; i++)
+                    for (int j = Math.max(y, 0); j < y + h && j < height; j++)
+                        mask[i][j] = value;
+
+                assertClearances(mask, map);
+                assertClearances(originalMask, original);
+            }
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A door in a large free area : the clearances of the cells up to 127 cells above
+     *  and on the left of the door change when it closes, and again when it opens.
+     */
+    @Test
+    public void testChangedMapMaxClearance() {
+        boolean mask[][] = getRandomMask(new Random(6), 200, 170, 0);
+        ClearanceMap map = new ClearanceMap(mask).getChangedMap(150, 140, 8, 6, false);
+
+        for (int i = 150; i < 158; i++)
+            for (int j = 140; j < 146; j++)
+                mask[i][j] = false;
+
+        assertEquals(ClearanceMapTest.MAX_CLEARANCE, map.getClearance(23, 13));
+        assertEquals(120, map.getClearance(30, 20));
+        assertClearances(mask, map);
+
+        map = map.getChangedMap(150, 140, 8, 6, true);
+
+        for (int i = 150; i < 158; i++)
+            for (int j = 140; j < 146; j++)
+                mask[i][j] = true;
+
+        assertClearances(mask, map);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To create a random mask.
+     *
+     * @param blocked percentage of blocked cells
+     */
+    private static boolean[][] getRandomMask(Random random, int width, int height, int blocked) {
+        boolean mask[][] = new boolean[width][height];
+
+        for (int x = 0; x < width; x++)
+            for (int y = 0; y < height; y++)
+                mask[x][y] = random.nextInt(100) >= blocked;
+
+        return mask;
+    }
+
+    /** To copy a mask.
+     */
+    private static boolean[][] copy(boolean mask[][]) {
+        boolean copy[][] = new boolean[mask.length][];
+
+        for (int x = 0; x < mask.length; x++)
+            copy[x] = (boolean[]) mask[x].clone();
+
+        return copy;
+    }
+
+    /** Checks the clearance of each cell of a map.
+     */
+    private static void assertClearances(boolean mask[][], ClearanceMap map) {
+        assertEquals(mask.length, map.getWidth());
+        assertEquals(mask[0].length, map.getHeight());
+
+        for (int x = 0; x < mask.length; x++)
+            for (int y = 0; y < mask[0].length; y++)
+                assertEquals("clearance of (" + x + "," + y + ")", getClearance(mask, x, y), map.getClearance(x, y));
+    }
+
+    /** Brute-force clearance : we grow the free square at (x,y) until it hits a blocked
+     *  cell or the border of the mask.
+     */
+    private static int getClearance(boolean mask[][], int x, int y) {
+        int size = 0;
+
+        while (size < ClearanceMapTest.MAX_CLEARANCE && x + size < mask.length && y + size < mask[0].length) {
+            // the new column & row of the square
+            for (int i = 0; i <= size; i++)
+                if (!mask[x + size][y + i] || !mask[x + i][y + size])
+                    return size;
+
+            size++;
+        }
+
+        return size;
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
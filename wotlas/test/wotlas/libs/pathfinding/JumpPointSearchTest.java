@@ -0,0 +1,214 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.pathfinding;
+
+import java.awt.Point;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Random;
+import org.junit.Test;
+import wotlas.utils.List;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+/** Tests of the JumpPointSearch : its paths must be valid and as short as the ones
+ *  found by a breadth-first search with the same rules (8 neighbours, each step costs
+ *  1, a cell is valid if the sprite fits on it).
+ *
+ * @author Aldiss
+ */
+
+public class JumpPointSearchTest {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Number of searches per mask.
+     */
+    private final static int NB_SEARCHES = 50;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Random obstacles, with different densities.
+     */
+    @Test
+    public void testRandomMasks() {
+        Random random = new Random(1);
+
+        for (int t = 0; t < 30; t++) {
+            int width = 5 + random.nextInt(80);
+            int height = 5 + random.nextInt(80);
+            boolean mask[][] = new boolean[width][height];
+
+            int blocked = random.nextInt(40);
+
+            for (int x = 0; x < width; x++)
+                for (int y = 0; y < height; y++)
+                    mask[x][y] = random.nextInt(100) >= blocked;
+
+            checkSearches(mask, 1, random);
+            checkSearches(mask, 2, random);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Rooms linked by doors : long paths with few changes of direction.
+     */
+    @Test
+    public void testRooms() {
+        Random random = new Random(2);
+
+        for (int t = 0; t < 10; t++) {
+            int roomSize = 6 + random.nextInt(10);
+            boolean mask[][] = new boolean[120][90];
+
+            for (int x = 0; x < 120; x++)
+                for (int y = 0; y < 90; y++)
+                    mask[x][y] = (x % roomSize != 0 && y % roomSize != 0);
+
+            // doors between the rooms
+            for (int x = 0; x < 120; x += roomSize)
+                for (int y = 0; y < 90; y += roomSize) {
+                    int door = 1 + random.nextInt(roomSize - 3);
+
+                    for (int i = 0; i < 3 && x + door + i < 120 && y + door + i < 90; i++) {
+                        if (random.nextInt(4) != 0)
+                            mask[x + door + i][y] = true;
+                        if (random.nextInt(4) != 0)
+                            mask[x][y + door + i] = true;
+                    }
+                }
+
+            checkSearches(mask, 1, random);
+            checkSearches(mask, 3, random);
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** An empty mask : the paths are straight lines and diagonals.
+     */
+    @Test
+    public void testEmptyMask() {
+        boolean mask[][] = new boolean[100][60];
+
+        for (int x = 0; x < 100; x++)
+            Arrays.fill(mask[x], true);
+
+        JumpPointSearch search = new JumpPointSearch(mask, 1);
+
+        assertEquals(100, search.findPath(new Point(0, 0), new Point(99, 0)).size());
+        assertEquals(100, search.findPath(new Point(0, 0), new Point(99, 59)).size());
+        assertEquals(60, search.findPath(new Point(10, 59), new Point(30, 0)).size());
+
+        checkSearches(mask, 1, new Random(3));
+        checkSearches(mask, 5, new Random(4));
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Runs random searches on a mask and checks them.
+     */
+    private static void checkSearches(boolean mask[][], int spriteSize, Random random) {
+        JumpPointSearch search = new JumpPointSearch(mask, spriteSize);
+        ArrayList valid = new ArrayList();
+
+        for (int x = 0; x < mask.length; x++)
+            for (int y = 0; y < mask[0].length; y++)
+                if (search.isNotBlock(x, y))
+                    valid.add(new Point(x, y));
+
+        if (valid.isEmpty())
+            return;
+
+        for (int i = 0; i < JumpPointSearchTest.NB_SEARCHES; i++) {
+            Point start = (Point) valid.get(random.nextInt(valid.size()));
+            Point goal = (Point) valid.get(random.nextInt(valid.size()));
+
+            checkPath(search, start, goal, getDistance(search, mask.length, mask[0].length, start, goal));
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Checks a path : it goes from the start to the goal, with unit steps on valid
+     *  cells, and it has the expected number of steps.
+     *
+     * @param distance number of steps of the shortest path, -1 if there is none
+     */
+    private static void checkPath(JumpPointSearch search, Point start, Point goal, int distance) {
+        List path = search.findPath(new Point(start), new Point(goal));
+        String name = "path " + start + " -> " + goal;
+
+        if (distance < 0) {
+            assertEquals(name + " should not exist", 0, path.size());
+            return;
+        }
+
+        assertEquals(name + " length", distance, path.size() - 1);
+        assertEquals(name + " start", start, path.elementAt(0));
+        assertEquals(name + " goal", goal, path.elementAt(path.size() - 1));
+
+        for (int i = 1; i < path.size(); i++) {
+            Point previous = (Point) path.elementAt(i - 1);
+            Point p = (Point) path.elementAt(i);
+
+            assertEquals(name + " step " + i, 1, Math.max(Math.abs(p.x - previous.x), Math.abs(p.y - previous.y)));
+            assertTrue(name + " step " + i + " is blocked", search.isNotBlock(p.x, p.y));
+        }
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Breadth-first search : number of steps of the shortest path.
+     *
+     * @return number of steps, -1 if the goal can't be reached
+     */
+    private static int getDistance(GridAStar rules, int width, int height, Point start, Point goal) {
+        int distance[] = new int[width * height];
+        int queue[] = new int[width * height];
+        int head = 0;
+        int tail = 0;
+
+        Arrays.fill(distance, -1);
+        distance[start.y * width + start.x] = 0;
+        queue[tail++] = start.y * width + start.x;
+
+        while (head < tail) {
+            int cell = queue[head++];
+            int x = cell % width;
+            int y = cell / width;
+
+            for (int dx = -1; dx <= 1; dx++)
+                for (int dy = -1; dy <= 1; dy++) {
+                    int next = (y + dy) * width + x + dx;
+
+                    if (rules.isNotBlock(x + dx, y + dy) && distance[next] < 0) {
+                        distance[next] = distance[cell] + 1;
+                        queue[tail++] = next;
+                    }
+                }
+        }
+
+        return distance[goal.y * width + goal.x];
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}
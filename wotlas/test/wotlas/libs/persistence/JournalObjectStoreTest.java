@@ -0,0 +1,419 @@
+/*
+ * Light And Shadow. A Persistent Universe based on Robert Jordan's Wheel of Time Books.
+ * Copyright (C) 2001-2002 WOTLAS Team
+ *
+ * This program is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU General Public License
+ * as published by the Free Software Foundation; either version 2
+ * of the License, or (at your option) any later version.
+ *
+ * This program is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the
+ * GNU General Public License for more details.
+ *
+ * You should have received a copy of the GNU General Public License
+ * along with this program; if not, write to the Free Software
+ * Foundation, Inc., 59 Temple Place - Suite 330, Boston, MA  02111-1307, USA.
+ */
+
+package wotlas.libs.persistence;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.util.Arrays;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+/** Tests of the JournalObjectStore : reopening, torn records, tombstones, compactions
+ *  and the migration of the objects saved in files.
+ *
+ * @author Aldiss
+ */
+
+public class JournalObjectStoreTest {
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Root directory of our objects, the journal is in its "journal" directory.
+     */
+    private File rootDir;
+
+    /** Our journal directory.
+     */
+    private File journalDir;
+
+    /** The store we test.
+     */
+    private JournalObjectStore store;
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Creates an empty root directory and opens a store in it.
+     */
+    @Before
+    public void setUp() throws Exception {
+        this.rootDir = File.createTempFile("journal-test", "");
+        this.rootDir.delete();
+        this.rootDir.mkdirs();
+        this.journalDir = new File(this.rootDir, "journal");
+        this.store = openStore();
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Closes the store and deletes our files.
+     */
+    @After
+    public void tearDown() {
+        if (this.store != null)
+            this.store.close();
+
+        deleteAll(this.rootDir);
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** Saved objects are found again when the journal is reopened.
+     */
+    @Test
+    public void testReopen() throws Exception {
+        this.store.save(new TestObject("first", 1), getPath("first"));
+        this.store.save(new TestObject("second", 2), getPath("second"));
+        this.store.save(new TestObject("first", 3), getPath("first")); // new version
+
+        reopen();
+
+        assertObject("first", 3);
+        assertObject("second", 2);
+        assertEquals(2, this.store.list(getPath(""), ".cfg").length);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A torn record at the end of the last segment is removed at startup, the records
+     *  before it are kept and new records can be appended after it.
+     */
+    @Test
+    public void testTornTailIsTruncated() throws Exception {
+        this.store.save(new TestObject("kept", 1), getPath("kept"));
+        this.store.close();
+
+        File segment = getLastSegment();
+        long validLength = segment.length();
+
+        this.store = openStore();
+        this.store.save(new TestObject("torn", 2), getPath("torn"));
+        this.store.close();
+
+        // crash during the append : only a part of the record was written
+        RandomAccessFile file = new RandomAccessFile(segment, "rw");
+        file.setLength(file.length() - 5);
+        file.close();
+
+        this.store = openStore();
+
+        assertEquals(validLength, segment.length());
+        assertObject("kept", 1);
+        assertMissing("torn");
+
+        this.store.save(new TestObject("after", 3), getPath("after"));
+        reopen();
+
+        assertObject("kept", 1);
+        assertObject("after", 3);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A record whose checksum is wrong ends the valid part of the last segment.
+     */
+    @Test
+    public void testCorruptedTailIsTruncated() throws Exception {
+        this.store.save(new TestObject("kept", 1), getPath("kept"));
+        long validLength = getLastSegment().length();
+        this.store.save(new TestObject("corrupted", 2), getPath("corrupted"));
+        this.store.close();
+
+        // garbage in the data of the last record
+        RandomAccessFile file = new RandomAccessFile(getLastSegment(), "rw");
+        file.seek(file.length() - 6);
+        file.write(0x55);
+        file.close();
+
+        this.store = openStore();
+
+        assertEquals(validLength, getLastSegment().length());
+        assertObject("kept", 1);
+        assertMissing("corrupted");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Deleted objects stay deleted after a reopen and after a compaction.
+     */
+    @Test
+    public void testTombstones() throws Exception {
+        this.store.save(new TestObject("deleted", 1), getPath("deleted"));
+        this.store.save(new TestObject("alive", 2), getPath("alive"));
+
+        assertTrue(this.store.delete(getPath("deleted")));
+        assertFalse(this.store.delete(getPath("deleted")));
+        assertMissing("deleted");
+
+        reopen();
+
+        assertMissing("deleted");
+        assertObject("alive", 2);
+        assertEquals(Arrays.asList(new String[] { getPath("alive") }), Arrays.asList(this.store.list(getPath(""), ".cfg")));
+
+        this.store.compact();
+        assertEquals(0, this.store.getGarbageBytes());
+        reopen();
+
+        assertMissing("deleted");
+        assertObject("alive", 2);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A compaction keeps the latest version of each object and removes the others.
+     */
+    @Test
+    public void testCompaction() throws Exception {
+        for (int i = 0; i < 10; i++)
+            this.store.save(new TestObject("object", i), getPath("object"));
+
+        this.store.save(new TestObject("other", 42), getPath("other"));
+
+        long liveBytes = this.store.getLiveBytes();
+        assertTrue(this.store.getGarbageBytes() > 0);
+
+        this.store.compact();
+
+        assertEquals(liveBytes, this.store.getLiveBytes());
+        assertEquals(0, this.store.getGarbageBytes());
+        assertObject("object", 9);
+
+        this.store.save(new TestObject("object", 10), getPath("object"));
+        reopen();
+
+        assertObject("object", 10);
+        assertObject("other", 42);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A crash while the compacted segment is written leaves a temporary file : it is
+     *  ignored and deleted at startup.
+     */
+    @Test
+    public void testCrashWhileWritingCompaction() throws Exception {
+        this.store.save(new TestObject("object", 1), getPath("object"));
+        this.store.save(new TestObject("object", 2), getPath("object"));
+        this.store.close();
+
+        File tmpFile = new File(this.journalDir, "segment-00000002.log.tmp");
+        copy(getLastSegment(), tmpFile);
+
+        RandomAccessFile file = new RandomAccessFile(tmpFile, "rw");
+        file.setLength(file.length() / 2); // incomplete
+        file.close();
+
+        this.store = openStore();
+
+        assertFalse(tmpFile.exists());
+        assertObject("object", 2);
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** A crash after the compacted segment has been renamed but before the old segments
+     *  have been deleted : the old segments are scanned first, then the compacted one,
+     *  and we get the same objects.
+     */
+    @Test
+    public void testCrashBeforeOldSegmentsAreDeleted() throws Exception {
+        this.store.save(new TestObject("object", 1), getPath("object"));
+        this.store.save(new TestObject("deleted", 2), getPath("deleted"));
+        this.store.save(new TestObject("object", 3), getPath("object"));
+        this.store.delete(getPath("deleted"));
+
+        File oldSegment = getLastSegment();
+        File backup = new File(this.rootDir, "backup.log");
+        copy(oldSegment, backup);
+
+        this.store.compact();
+        this.store.close();
+
+        assertFalse(oldSegment.exists());
+        copy(backup, oldSegment); // as if it had not been deleted
+        backup.delete();
+
+        this.store = openStore();
+
+        assertObject("object", 3);
+        assertMissing("deleted");
+    }
+
+    /* - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - - -*/
+
+    /** Objects that are not in the journal are loaded from their file, and their new
+     *  versions are saved in the journal.
+     */
+    @Test
+    public void testFileFallback() throws Exception {
+        File dir = new File(getPath(""));
+        dir.mkdirs();
+        PropertiesConverter.save(new TestObject("file", 1), getPath("file"));
+
+        assertObject("file", 1);
+        assertEquals(1, this.store.list(getPath(""), ".cfg").length);
+
+        this.store.save(new TestObject("file", 2), getPath("file"));
+        assertObject("file", 2);
+        assertEquals(1, this.store.list(getPath(""), ".cfg").length);
+
+        reopen();
+        assertObject("file", 2);
+
+        assertTrue(this.store.delete(getPath("file")));
+        assertFalse(new File(getPath("file")).exists());
+        assertMissing("file");
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** To open a store on our journal directory, with small segments.
+     */
+    private JournalObjectStore openStore() throws PersistenceException {
+        return new JournalObjectStore(this.journalDir.getPath(), 64 * 1024, false);
+    }
+
+    /** To close and reopen our store.
+     */
+    private void reopen() throws PersistenceException {
+        this.store.close();
+        this.store = null;
+        this.store = openStore();
+    }
+
+    /** To get the path of an object, "" for the path of the objects directory.
+     */
+    private String getPath(String name) {
+        File dir = new File(this.rootDir, "players");
+
+        if (name.length() == 0)
+            return dir.getPath();
+
+        return new File(dir, name + ".cfg").getPath();
+    }
+
+    /** To get the last segment of our journal.
+     */
+    private File getLastSegment() {
+        String names[] = this.journalDir.list();
+        Arrays.sort(names);
+
+        for (int i = names.length - 1; i >= 0; i--)
+            if (names[i].endsWith(".log"))
+                return new File(this.journalDir, names[i]);
+
+        fail("no segment in " + this.journalDir);
+        return null;
+    }
+
+    /** Checks that an object can be loaded and has the expected value.
+     */
+    private void assertObject(String name, int value) throws PersistenceException {
+        TestObject o = (TestObject) this.store.load(getPath(name));
+
+        assertEquals(name, o.getName());
+        assertEquals(value, o.getValue());
+    }
+
+    /** Checks that an object can't be loaded.
+     */
+    private void assertMissing(String name) {
+        try {
+            this.store.load(getPath(name));
+            fail(name + " should not exist");
+        } catch (PersistenceException e) {
+            // expected
+        }
+    }
+
+    /** To copy a file.
+     */
+    private static void copy(File from, File to) throws IOException {
+        FileInputStream in = new FileInputStream(from);
+        FileOutputStream out = new FileOutputStream(to);
+        byte buffer[] = new byte[4096];
+        int nb;
+
+        try {
+            while ((nb = in.read(buffer)) > 0)
+                out.write(buffer, 0, nb);
+        } finally {
+            in.close();
+            out.close();
+        }
+    }
+
+    /** To delete a directory and its content.
+     */
+    private static void deleteAll(File file) {
+        File list[] = file.listFiles();
+
+        if (list != null)
+            for (int i = 0; i < list.length; i++)
+                deleteAll(list[i]);
+
+        file.delete();
+    }
+
+    /*------------------------------------------------------------------------------------*/
+
+    /** A persistent object.
+     */
+    public static class TestObject {
+
+        private String name;
+
+        private int value;
+
+        public TestObject() {
+        }
+
+        public TestObject(String name, int value) {
+            this.name = name;
+            this.value = value;
+        }
+
+        public String getName() {
+            return this.name;
+        }
+
+        public void setName(String name) {
+            this.name = name;
+        }
+
+        public int getValue() {
+            return this.value;
+        }
+
+        public void setValue(int value) {
+            this.value = value;
+        }
+    }
+
+    /*------------------------------------------------------------------------------------*/
+}